@@ -34,6 +34,7 @@ import java.nio.ByteBuffer;
 import com.jogamp.opengl.GL3;
 
 import ch.fhnw.ether.image.Frame;
+import ch.fhnw.ether.image.Tile;
 import ch.fhnw.ether.media.Parameter;
 import ch.fhnw.ether.video.IVideoRenderTarget;
 import ch.fhnw.ether.video.fx.AbstractVideoFX;
@@ -182,68 +183,45 @@ public class Convolution extends AbstractVideoFX implements IVideoFrameFX, IVide
 				);
 	}
 
-	private float[][] outFrame = new float[1][1];
-
 	@Override
 	public void processFrame(final double playOutTime, final IVideoRenderTarget target, final Frame frame) {
-		if(frame.height != outFrame.length || frame.width != outFrame[0].length * 3)
-			outFrame = new float[frame.height][frame.width * 3];
-
-		Mat3    kernel    = KERNELS[(int) getVal(KERNEL)];
-		boolean greyscale = GREYSCALE[(int) getVal(KERNEL)]; 
-
-		for(int j = frame.height - 1; --j >= 1;) {
-			int idx = 0;
-			if(greyscale) {
-				for(int i = 1; i< frame.width - 1; i++) {
-					float val = convolute(frame, i, j, kernel, 0) + convolute(frame, i, j, kernel, 1) + convolute(frame, i, j, kernel, 2); 
-					outFrame[j][idx++] = val; 
-					outFrame[j][idx++] = val; 
-					outFrame[j][idx++] = val; 
-				}
-			} else {
-				for(int i = 1; i< frame.width - 1; i++) {
-					outFrame[j][idx++] = convolute(frame, i, j, kernel, 0); 
-					outFrame[j][idx++] = convolute(frame, i, j, kernel, 1); 
-					outFrame[j][idx++] = convolute(frame, i, j, kernel, 2); 
+		final Mat3    kernel    = KERNELS[(int) getVal(KERNEL)];
+		final boolean greyscale = GREYSCALE[(int) getVal(KERNEL)]; 
+
+		// in place, tiles read the unmodified frame around them
+		frame.processTiles(1, tile -> {
+			for(int j = tile.getY0(); j < tile.getY1(); j++) {
+				ByteBuffer pixels = tile.position(tile.getX0(), j);
+				for(int i = tile.getX0(); i < tile.getX1(); i++) {
+					if(greyscale) {
+						byte val = toByte(convolute(tile, i, j, kernel, 0) + convolute(tile, i, j, kernel, 1) + convolute(tile, i, j, kernel, 2));
+						pixels.put(val);
+						pixels.put(val);
+						pixels.put(val);
+					} else {
+						pixels.put(toByte(convolute(tile, i, j, kernel, 0)));
+						pixels.put(toByte(convolute(tile, i, j, kernel, 1)));
+						pixels.put(toByte(convolute(tile, i, j, kernel, 2)));
+					}
+					if(frame.pixelSize == 4)
+						pixels.put(Frame.B255);
 				}
 			}
-		}
-
-		if(frame.pixelSize == 4) {
-			frame.processLines((pixels, j) -> {
-				int idx = 0;
-				for(int i = frame.width; --i >= 0;) {
-					pixels.put(toByte(outFrame[j][idx++]));
-					pixels.put(toByte(outFrame[j][idx++]));
-					pixels.put(toByte(outFrame[j][idx++]));
-					pixels.put(Frame.B255);
-				}
-			});
-		} else {
-			frame.processLines((ByteBuffer pixels, int j) -> {
-				int idx = 0;
-				for(int i = frame.width; --i >= 0;) {
-					pixels.put(toByte(outFrame[j][idx++]));
-					pixels.put(toByte(outFrame[j][idx++]));
-					pixels.put(toByte(outFrame[j][idx++]));
-				}
-			});
-		}
+		});
 	}
 
-	private float convolute(Frame frame, int x, int y, Mat3 kernel, int c) {
+	private static float convolute(Tile tile, int x, int y, Mat3 kernel, int c) {
 		return
-				frame.getFloatComponent(x-1, y-1, c) * kernel.m00 +
-				frame.getFloatComponent(x-1, y,   c) * kernel.m10 +
-				frame.getFloatComponent(x-1, y+1, c) * kernel.m20 +
+				tile.getFloat(x-1, y-1, c) * kernel.m00 +
+				tile.getFloat(x-1, y,   c) * kernel.m10 +
+				tile.getFloat(x-1, y+1, c) * kernel.m20 +
 
-				frame.getFloatComponent(x,   y-1, c) * kernel.m01 +
-				frame.getFloatComponent(x,   y,   c) * kernel.m11 +
-				frame.getFloatComponent(x,   y+1, c) * kernel.m21 +
+				tile.getFloat(x,   y-1, c) * kernel.m01 +
+				tile.getFloat(x,   y,   c) * kernel.m11 +
+				tile.getFloat(x,   y+1, c) * kernel.m21 +
 
-				frame.getFloatComponent(x+1, y-1, c) * kernel.m02 +
-				frame.getFloatComponent(x+1, y,   c) * kernel.m12 +
-				frame.getFloatComponent(x+1, y+1, c) * kernel.m22;
+				tile.getFloat(x+1, y-1, c) * kernel.m02 +
+				tile.getFloat(x+1, y,   c) * kernel.m12 +
+				tile.getFloat(x+1, y+1, c) * kernel.m22;
 	}
 }
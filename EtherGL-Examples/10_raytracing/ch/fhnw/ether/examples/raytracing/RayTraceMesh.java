@@ -30,7 +30,9 @@
 import java.util.EnumSet;
 
 import ch.fhnw.ether.examples.raytracing.surface.IParametricSurface;
+import ch.fhnw.ether.examples.raytracing.util.Hit;
 import ch.fhnw.ether.examples.raytracing.util.IntersectResult;
+import ch.fhnw.ether.examples.raytracing.util.Ray;
 import ch.fhnw.ether.scene.mesh.IMesh;
 import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
 import ch.fhnw.ether.scene.mesh.material.ColorMaterial;
@@ -66,6 +68,25 @@ public class RayTraceMesh implements IMesh {
 		return new IntersectResult(surface, point, color, ray.getOrigin().subtract(point).length());
 	}
 
+	/**
+	 * Updates hit if this mesh is intersected closer than the current hit.
+	 */
+	public boolean intersect(Ray ray, Hit hit) {
+		float dist = surface.intersect(ray);
+		if (dist < hit.dist) {
+			hit.set(surface, color, ray, dist);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if this mesh is intersected closer than maxDist.
+	 */
+	public boolean occludes(Ray ray, float maxDist) {
+		return surface.intersect(ray) < maxDist;
+	}
+
 	// I3DObject implementation
 
 	@Override
@@ -32,8 +32,12 @@ package ch.fhnw.ether.examples.raytracing;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
 
-import ch.fhnw.ether.examples.raytracing.util.IntersectResult;
+import ch.fhnw.ether.examples.raytracing.util.Hit;
+import ch.fhnw.ether.examples.raytracing.util.Ray;
 import ch.fhnw.ether.image.Frame;
 import ch.fhnw.ether.image.RGBA8Frame;
 import ch.fhnw.ether.media.AbstractFrameSource;
@@ -50,19 +54,25 @@ import ch.fhnw.util.Log;
 import ch.fhnw.util.color.RGB;
 import ch.fhnw.util.color.RGBA;
 import ch.fhnw.util.math.Vec3;
-import ch.fhnw.util.math.geometry.Line;
 
 public class RayTracer extends AbstractFrameSource implements IVideoSource {
 	private static final Log log = Log.create();
 
-	private static final RGBA BACKGROUND_COLOR   = RGBA.WHITE;
 	private static final int  BACKGROUND_COLOR_I = RGBA.WHITE.toRGBA();
 
 	private final List<RayTraceMesh> meshes = new ArrayList<>();
 
+	private static final int          TILE_SIZE = 32;
+	private static final ForkJoinPool POOL      = ForkJoinPool.commonPool();
+
 	private int                   w = 1, h = 1;
 	private ICamera               camera = new Camera();
 	private List<ILight>          lights = new ArrayList<>();
+	private boolean               parallel = true;
+	private final RGBA8Frame[]    frames = new RGBA8Frame[2];
+	private int                   current;
+	private volatile long         raysPerFrame;
+	private volatile double       raysPerSecond;
 
 	public void setSize(int width, int height) {
 		this.w = width;
@@ -84,58 +94,6 @@ public class RayTracer extends AbstractFrameSource implements IVideoSource {
 		meshes.remove(mesh);
 	}
 
-	private void intersection(final int x, final int y, final Line ray, final ILight light, final ByteBuffer pixels) {
-		// find nearest intersection point in scene
-		IntersectResult nearest = new IntersectResult(null, null, BACKGROUND_COLOR, Float.POSITIVE_INFINITY);
-		for (RayTraceMesh r : meshes) {
-			IntersectResult intersect = r.intersect(ray);
-			if (intersect.isValid() && intersect.dist < nearest.dist) {
-				nearest = intersect;
-			}
-		}
-
-		// no object found
-		if (!nearest.isValid()) {
-			pixels.position((y * w + x) * 4);
-			pixels.put((byte)(BACKGROUND_COLOR_I >> 24));
-			pixels.put((byte)(BACKGROUND_COLOR_I >> 16));
-			pixels.put((byte)(BACKGROUND_COLOR_I >> 8));
-			pixels.put((byte)(BACKGROUND_COLOR_I));
-			return;
-		}
-
-		// create vector which is sure over surface
-		Vec3 positionOnSurface = nearest.position.subtract(ray.getDirection().scale(0.01f));
-		positionOnSurface = positionOnSurface.add(nearest.surface.getNormalAt(nearest.position).scale(0.0001f));
-
-		float distanceToLight = light.getPosition().subtract(nearest.position).length();
-
-		// check if path to light is clear
-		Line lightRay = new Line(positionOnSurface, light.getPosition().subtract(positionOnSurface));
-		for (RayTraceMesh r : meshes) {
-			IntersectResult intersect = r.intersect(lightRay);
-			if (intersect.isValid() && intersect.dist < distanceToLight) {
-				pixels.position((y * w + x) * 4);
-				pixels.put((byte)0);
-				pixels.put((byte)0);
-				pixels.put((byte)0);
-				pixels.put(Frame.B255);
-				return;
-			}
-		}
-
-		// diffuse color
-		float f = Math.max(0, lightRay.getDirection().dot(nearest.surface.getNormalAt(nearest.position)));
-		RGBA c = nearest.color;
-		RGB  lc = light.getLightSource().getColor();
-
-		pixels.position((y * w + x) * 4);
-		pixels.put((byte)(f * c.r * lc.r * 255f));
-		pixels.put((byte)(f * c.g * lc.g * 255f));
-		pixels.put((byte)(f * c.b * lc.b * 255f));
-		pixels.put((byte)(c.a * 255f));
-	}
-
 	@Override
 	public int getWidth() {
 		return w;
@@ -161,45 +119,241 @@ public class RayTracer extends AbstractFrameSource implements IVideoSource {
 		return LENGTH_INFINITE;
 	}
 
+	/**
+	 * Enables or disables parallel rendering. In parallel mode, the frame is
+	 * split into tiles which are rendered by a work-stealing fork/join pool.
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * Returns the number of rays (primary and shadow) traced for the last frame.
+	 */
+	public long getRaysPerFrame() {
+		return raysPerFrame;
+	}
+
+	/**
+	 * Returns the ray throughput of the last frame in rays per second.
+	 */
+	public double getRaysPerSecond() {
+		return raysPerSecond;
+	}
+
+	/**
+	 * Renders a frame with the current camera, lights and meshes. Frames are
+	 * double buffered and reused, so the returned frame is only valid until
+	 * the next but one call. Returns null if there are no lights.
+	 */
+	public RGBA8Frame renderFrame() {
+		if(lights.isEmpty()) return null;
+
+		final int w = this.w;
+		final int h = this.h;
+		if(frames[0] == null || frames[0].width != w || frames[0].height != h) {
+			frames[0] = new RGBA8Frame(w, h);
+			frames[1] = new RGBA8Frame(w, h);
+		}
+		final RGBA8Frame frame = frames[current];
+		current ^= 1;
+
+		final long     start = System.nanoTime();
+		final Scene    scene = new Scene(frame, lights.get(0), meshes.toArray(new RayTraceMesh[meshes.size()]));
+		if(parallel)
+			POOL.invoke(new TileTask(scene, 0, scene.numTiles));
+		else {
+			for(int tile = 0; tile < scene.numTiles; tile++)
+				renderTile(scene, tile);
+		}
+		final long elapsed = System.nanoTime() - start;
+		frame.modified();
+
+		raysPerFrame  = scene.rays.sum();
+		raysPerSecond = raysPerFrame / (Math.max(1, elapsed) / 1e9);
+		return frame;
+	}
+
 	@Override
 	protected void run(IRenderTarget<?> target) throws RenderCommandException {
-		if(lights.isEmpty()) return;
+		RGBA8Frame frame = renderFrame();
+		if(frame == null) return;
+		try {
+			// a fresh wrapper per cycle: VideoFrame caches its texture, only
+			// the frame re-uploads the reused pixels after modified()
+			((IVideoRenderTarget)target).setFrame(this, new VideoFrame(frame));
+		} catch(Throwable t) {
+			throw new RenderCommandException(t);
+		}
+	}
 
-		RGBA8Frame frame = new RGBA8Frame(w, h);
+	/**
+	 * Per-frame render parameters, shared read-only by all tiles.
+	 */
+	private final class Scene {
+		final ByteBuffer     pixels;
+		final int            w, h;
+		final int            tilesX, numTiles;
+		final RayTraceMesh[] meshes;
+		final float          camX, camY, camZ;
+		final float          lookX, lookY, lookZ;
+		final float          sideX, sideY, sideZ;
+		final float          upX, upY, upZ;
+		final float          deltaX, deltaY;
+		final float          lightX, lightY, lightZ;
+		final RGB            lightColor;
+		final LongAdder      rays = new LongAdder();
+
+		Scene(RGBA8Frame frame, ILight light, RayTraceMesh[] meshes) {
+			this.pixels   = frame.pixels;
+			this.w        = frame.width;
+			this.h        = frame.height;
+			this.tilesX   = (w + TILE_SIZE - 1) / TILE_SIZE;
+			this.numTiles = tilesX * ((h + TILE_SIZE - 1) / TILE_SIZE);
+			this.meshes   = meshes;
+
+			final Vec3  camPos      = camera.getPosition();
+			final float aspect      = (float)w / (float)h;
+			final float planeWidth  = (float) (2 * Math.tan(camera.getFov() / 2) * camera.getNear());
+			final float planeHeight = planeWidth / aspect;
+
+			final Vec3 lookVector = camera.getTarget().subtract(camera.getPosition()).normalize();
+			final Vec3 upVector   = camera.getUp().normalize();
+			final Vec3 sideVector = lookVector.cross(upVector).normalize();
+
+			camX   = camPos.x;     camY  = camPos.y;     camZ  = camPos.z;
+			lookX  = lookVector.x; lookY = lookVector.y; lookZ = lookVector.z;
+			sideX  = sideVector.x; sideY = sideVector.y; sideZ = sideVector.z;
+			upX    = upVector.x;   upY   = upVector.y;   upZ   = upVector.z;
+			deltaX = planeWidth / w;
+			deltaY = planeHeight / h;
+
+			final Vec3 lightPos = light.getPosition();
+			lightX     = lightPos.x;
+			lightY     = lightPos.y;
+			lightZ     = lightPos.z;
+			lightColor = light.getLightSource().getColor();
+		}
+	}
 
-		final int   w     = frame.width;
-		final int   h     = frame.height;
+	/**
+	 * Mutable ray and hit state of a worker thread.
+	 */
+	private static final class Worker {
+		final Ray     ray    = new Ray();
+		final Ray     shadow = new Ray();
+		final Hit     hit    = new Hit();
+		final float[] normal = new float[3];
+	}
 
-		final ILight light      = lights.get(0);
-		final Vec3   camPos     = camera.getPosition();
+	private static final ThreadLocal<Worker> WORKER = ThreadLocal.withInitial(Worker::new);
 
-		final float aspect      = (float)w / (float)h;
+	private final class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
 
-		final float planeWidth  = (float) (2 * Math.tan(camera.getFov() / 2) * camera.getNear());
-		final float planeHeight = planeWidth / aspect;
+		private final Scene scene;
+		private final int   from;
+		private final int   to;
 
-		final float deltaX = planeWidth / w;
-		final float deltaY = planeHeight / h;
+		TileTask(Scene scene, int from, int to) {
+			this.scene = scene;
+			this.from  = from;
+			this.to    = to;
+		}
 
-		final Vec3    lookVector = camera.getTarget().subtract(camera.getPosition()).normalize();
-		final Vec3    upVector   = camera.getUp().normalize();
-		final Vec3    sideVector = lookVector.cross(upVector).normalize();
+		@Override
+		protected void compute() {
+			if(to - from > 1) {
+				final int mid = (from + to) >>> 1;
+				invokeAll(new TileTask(scene, from, mid), new TileTask(scene, mid, to));
+			} else
+				renderTile(scene, from);
+		}
+	}
 
-		frame.processLines((pixels, line)->{
-			final int j = line - (h / 2);
-			for (int i = -w / 2; i < w / 2; ++i) {
-				final Vec3 x     = sideVector.scale(i * deltaX);
-				final Vec3 y     = upVector.scale(j * deltaY);
-				final Vec3 dir   = lookVector.add(x).add(y);
-				final Line ray   = new Line(camPos, dir);
-				intersection((i + w / 2), (j + h / 2), ray, light, pixels);
+	private void renderTile(final Scene s, final int tile) {
+		final Worker worker = WORKER.get();
+		final int    x0     = (tile % s.tilesX) * TILE_SIZE;
+		final int    y0     = (tile / s.tilesX) * TILE_SIZE;
+		final int    x1     = Math.min(x0 + TILE_SIZE, s.w);
+		final int    y1     = Math.min(y0 + TILE_SIZE, s.h);
+		long         rays   = 0;
+		for(int y = y0; y < y1; y++) {
+			final float j  = (y - s.h / 2) * s.deltaY;
+			final float rx = s.lookX + s.upX * j;
+			final float ry = s.lookY + s.upY * j;
+			final float rz = s.lookZ + s.upZ * j;
+			for(int x = x0; x < x1; x++) {
+				final float i = (x - s.w / 2) * s.deltaX;
+				worker.ray.set(s.camX, s.camY, s.camZ, rx + s.sideX * i, ry + s.sideY * i, rz + s.sideZ * i);
+				rays += trace(s, worker, (y * s.w + x) * 4);
 			}
-		});
-		try {
-			((IVideoRenderTarget)target).setFrame(this, new VideoFrame(frame));
-		} catch(Throwable t) {
-			throw new RenderCommandException(t);
 		}
+		s.rays.add(rays);
+	}
+
+	/**
+	 * Traces the worker's primary ray and writes the resulting color at the
+	 * given byte offset. Returns the number of rays traced.
+	 */
+	private static int trace(final Scene s, final Worker worker, final int offset) {
+		final Ray        ray    = worker.ray;
+		final Hit        hit    = worker.hit;
+		final ByteBuffer pixels = s.pixels;
+
+		// find nearest intersection point in scene
+		hit.clear();
+		for (RayTraceMesh r : s.meshes)
+			r.intersect(ray, hit);
+
+		// no object found
+		if (!hit.isValid()) {
+			pixels.put(offset,     (byte)(BACKGROUND_COLOR_I >> 24));
+			pixels.put(offset + 1, (byte)(BACKGROUND_COLOR_I >> 16));
+			pixels.put(offset + 2, (byte)(BACKGROUND_COLOR_I >> 8));
+			pixels.put(offset + 3, (byte)(BACKGROUND_COLOR_I));
+			return 1;
+		}
+
+		// create position which is sure over surface
+		final float[] n = worker.normal;
+		hit.surface.getNormalAt(hit.x, hit.y, hit.z, n);
+		final float px = hit.x - ray.dx * 0.01f + n[0] * 0.0001f;
+		final float py = hit.y - ray.dy * 0.01f + n[1] * 0.0001f;
+		final float pz = hit.z - ray.dz * 0.01f + n[2] * 0.0001f;
+
+		final float lx = s.lightX - hit.x;
+		final float ly = s.lightY - hit.y;
+		final float lz = s.lightZ - hit.z;
+		final float distanceToLight = (float) Math.sqrt(lx * lx + ly * ly + lz * lz);
+
+		// check if path to light is clear
+		final Ray lightRay = worker.shadow;
+		lightRay.set(px, py, pz, s.lightX - px, s.lightY - py, s.lightZ - pz);
+		for (RayTraceMesh r : s.meshes) {
+			if (r.occludes(lightRay, distanceToLight)) {
+				pixels.put(offset,     (byte)0);
+				pixels.put(offset + 1, (byte)0);
+				pixels.put(offset + 2, (byte)0);
+				pixels.put(offset + 3, Frame.B255);
+				return 2;
+			}
+		}
+
+		// diffuse color
+		final float f  = Math.max(0, lightRay.dx * n[0] + lightRay.dy * n[1] + lightRay.dz * n[2]);
+		final RGBA  c  = hit.color;
+		final RGB   lc = s.lightColor;
+
+		pixels.put(offset,     (byte)(f * c.r * lc.r * 255f));
+		pixels.put(offset + 1, (byte)(f * c.g * lc.g * 255f));
+		pixels.put(offset + 2, (byte)(f * c.b * lc.b * 255f));
+		pixels.put(offset + 3, (byte)(c.a * 255f));
+		return 2;
 	}
 
 	public void setLights(List<ILight> lights) {
@@ -29,6 +29,7 @@
 
 package ch.fhnw.ether.examples.raytracing.surface;
 
+import ch.fhnw.ether.examples.raytracing.util.Ray;
 import ch.fhnw.util.math.Vec3;
 import ch.fhnw.util.math.geometry.Line;
 
@@ -37,6 +38,30 @@ public interface IParametricSurface {
 
 	Vec3 getNormalAt(Vec3 position);
 
+	/**
+	 * Returns the distance from the ray origin to the intersection along the
+	 * ray, or positive infinity if there is none. Implementations should
+	 * override this allocation-free variant.
+	 */
+	default float intersect(Ray ray) {
+		Vec3 o = new Vec3(ray.ox, ray.oy, ray.oz);
+		Vec3 p = intersect(new Line(o, new Vec3(ray.dx, ray.dy, ray.dz), false));
+		if (p == null)
+			return Float.POSITIVE_INFINITY;
+		float dist = o.distance(p);
+		return dist >= 0 ? dist : Float.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Writes the normal at the given surface position to normal[0..2].
+	 */
+	default void getNormalAt(float x, float y, float z, float[] normal) {
+		Vec3 n = getNormalAt(new Vec3(x, y, z));
+		normal[0] = n.x;
+		normal[1] = n.y;
+		normal[2] = n.z;
+	}
+
 	void setPosition(Vec3 position);
 
 	Vec3 getPosition();
@@ -29,6 +29,7 @@
 
 package ch.fhnw.ether.examples.raytracing.surface;
 
+import ch.fhnw.ether.examples.raytracing.util.Ray;
 import ch.fhnw.util.math.Vec3;
 import ch.fhnw.util.math.geometry.Line;
 
@@ -52,11 +53,24 @@ public class Plane implements IParametricSurface {
 		return t < 0 ? null : ray.getOrigin().add(ray.getDirection().scale(t));
 	}
 
+	@Override
+	public float intersect(Ray ray) {
+		float t = -(normal.x * ray.ox + normal.y * ray.oy + normal.z * ray.oz + distance) / (normal.x * ray.dx + normal.y * ray.dy + normal.z * ray.dz);
+		return t >= 0 ? t : Float.POSITIVE_INFINITY;
+	}
+
 	@Override
 	public Vec3 getNormalAt(Vec3 position) {
 		return normal;
 	}
 
+	@Override
+	public void getNormalAt(float x, float y, float z, float[] n) {
+		n[0] = normal.x;
+		n[1] = normal.y;
+		n[2] = normal.z;
+	}
+
 	@Override
 	public String toString() {
 		return "plane(n=" + normal + ",d=" + distance + ")";
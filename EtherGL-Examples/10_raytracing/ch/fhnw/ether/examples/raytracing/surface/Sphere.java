@@ -29,6 +29,7 @@
 
 package ch.fhnw.ether.examples.raytracing.surface;
 
+import ch.fhnw.ether.examples.raytracing.util.Ray;
 import ch.fhnw.util.math.Vec3;
 import ch.fhnw.util.math.geometry.Line;
 
@@ -66,11 +67,39 @@ public class Sphere implements IParametricSurface {
 		return o.add(d.scale(t));
 	}
 
+	@Override
+	public float intersect(Ray ray) {
+		float lx = pos.x - ray.ox;
+		float ly = pos.y - ray.oy;
+		float lz = pos.z - ray.oz;
+		float r2 = r * r;
+		float s = lx * ray.dx + ly * ray.dy + lz * ray.dz;
+		float l2 = lx * lx + ly * ly + lz * lz;
+		if (s < 0 && l2 > r2)
+			return Float.POSITIVE_INFINITY;
+		float m2 = l2 - s * s;
+		if (m2 > r2)
+			return Float.POSITIVE_INFINITY;
+		float q = (float) Math.sqrt(r2 - m2);
+		return l2 > r2 ? s - q : s + q;
+	}
+
 	@Override
 	public Vec3 getNormalAt(Vec3 position) {
 		return position.subtract(pos).normalize();
 	}
 
+	@Override
+	public void getNormalAt(float x, float y, float z, float[] normal) {
+		float nx = x - pos.x;
+		float ny = y - pos.y;
+		float nz = z - pos.z;
+		float l = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+		normal[0] = nx / l;
+		normal[1] = ny / l;
+		normal[2] = nz / l;
+	}
+
 	public float getR() {
 		return r;
 	}
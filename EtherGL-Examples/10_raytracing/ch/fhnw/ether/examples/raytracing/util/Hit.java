@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.raytracing.util;
+
+import ch.fhnw.ether.examples.raytracing.surface.IParametricSurface;
+import ch.fhnw.util.color.RGBA;
+
+/**
+ * Mutable counterpart of IntersectResult, reused across rays.
+ */
+public final class Hit {
+	public IParametricSurface surface;
+	public RGBA               color;
+	public float              dist;
+	public float              x, y, z;
+
+	public void clear() {
+		surface = null;
+		color   = null;
+		dist    = Float.POSITIVE_INFINITY;
+	}
+
+	public void set(IParametricSurface surface, RGBA color, Ray ray, float dist) {
+		this.surface = surface;
+		this.color   = color;
+		this.dist    = dist;
+		this.x       = ray.ox + ray.dx * dist;
+		this.y       = ray.oy + ray.dy * dist;
+		this.z       = ray.oz + ray.dz * dist;
+	}
+
+	public boolean isValid() {
+		return surface != null;
+	}
+}
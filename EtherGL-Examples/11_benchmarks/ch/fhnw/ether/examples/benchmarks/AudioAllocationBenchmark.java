@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.lang.management.ManagementFactory;
+
+import ch.fhnw.ether.audio.AudioUtilities.Window;
+import ch.fhnw.ether.audio.FFT;
+import ch.fhnw.ether.audio.IAudioRenderTarget;
+import ch.fhnw.ether.audio.InvFFT;
+import ch.fhnw.ether.audio.SilenceAudioSource;
+import ch.fhnw.ether.audio.fx.SinGen;
+import ch.fhnw.ether.media.RenderProgram;
+
+/**
+ * Measures the steady state allocation rate of an audio pipeline (silence
+ * source, sine generator, FFT and inverse FFT) driven by a non real-time
+ * target. With pooled frames the pipeline should not allocate at all.
+ */
+public final class AudioAllocationBenchmark {
+	private static final int WARMUP_CYCLES = 20000;
+	private static final int CYCLES = 100000;
+
+	public static void main(String[] args) throws Exception {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+
+		FFT fft = new FFT(100, Window.HANN);
+		Headless.AudioTarget target = new Headless.AudioTarget(2, 48000);
+		target.useProgram(new RenderProgram<IAudioRenderTarget>(new SilenceAudioSource(2, 48000, 512), new SinGen(0), fft, new InvFFT(fft)));
+
+		for (int i = 0; i < WARMUP_CYCLES; i++)
+			target.cycle();
+
+		long bytes = threads.getThreadAllocatedBytes(thread);
+		long t = System.nanoTime();
+		for (int i = 0; i < CYCLES; i++)
+			target.cycle();
+		t = System.nanoTime() - t;
+		bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+		System.out.printf("cycles: %d, %.2f us/cycle\n", CYCLES, t / 1000.0 / CYCLES);
+		System.out.printf("allocated: %d bytes total, %.2f bytes/cycle\n", bytes, (double) bytes / CYCLES);
+	}
+}
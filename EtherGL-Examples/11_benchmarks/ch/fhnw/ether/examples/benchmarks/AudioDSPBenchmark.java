@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import ch.fhnw.ether.audio.AudioFrame;
+import ch.fhnw.ether.audio.AudioUtilities.Window;
+import ch.fhnw.ether.audio.BlockBuffer;
+import ch.fhnw.ether.audio.ButterworthFilter;
+import ch.fhnw.ether.audio.FFT;
+import ch.fhnw.ether.audio.IAudioRenderTarget;
+import ch.fhnw.ether.audio.IAudioSource;
+import ch.fhnw.ether.audio.InvFFT;
+import ch.fhnw.ether.audio.fx.AutoGain;
+import ch.fhnw.ether.audio.fx.BandsButterworth;
+import ch.fhnw.ether.audio.fx.BandsFFT;
+import ch.fhnw.ether.audio.fx.OnsetDetect;
+import ch.fhnw.ether.audio.fx.PitchDetect;
+import ch.fhnw.ether.media.AbstractFrameSource;
+import ch.fhnw.ether.media.AbstractRenderCommand;
+import ch.fhnw.ether.media.IRenderTarget;
+import ch.fhnw.ether.media.RenderCommandException;
+import ch.fhnw.ether.media.RenderProgram;
+
+/**
+ * Measures the audio DSP commands on a headless audio target with a
+ * synthetic signal (sweep plus noise) at several sample rates and frame
+ * sizes. For each command, prints time per sample and bytes allocated per
+ * frame, both with the cost of the signal source subtracted.
+ *
+ * Usage: AudioDSPBenchmark [seconds per measurement]
+ */
+public final class AudioDSPBenchmark {
+	private static final float[] SAMPLE_RATES = { 44100, 48000, 96000 };
+	private static final int[] FRAME_SIZES = { 64, 256, 1024 };
+	private static final int CHANNELS = 2;
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	/**
+	 * Plays a precomputed sweep with noise from pooled frames.
+	 */
+	static final class SignalSource extends AbstractFrameSource implements IAudioSource {
+		private final float sRate;
+		private final int frameSize;
+		private final float[] signal;
+		private long samples;
+		private int rdPtr;
+
+		SignalSource(float sRate, int frameSize) {
+			this.sRate = sRate;
+			this.frameSize = frameSize * CHANNELS;
+			this.signal = new float[(int) sRate * CHANNELS];
+			Random random = new Random(0);
+			double phi = 0;
+			for (int i = 0; i < signal.length; i += CHANNELS) {
+				double f = 50 + 8000 * i / (double) signal.length;
+				phi += 2 * Math.PI * f / sRate;
+				float s = 0.5f * (float) Math.sin(phi) + 0.1f * (random.nextFloat() - 0.5f);
+				for (int c = 0; c < CHANNELS; c++)
+					signal[i + c] = s;
+			}
+		}
+
+		@Override
+		protected void run(IRenderTarget<?> target) throws RenderCommandException {
+			AudioFrame frame = createAudioFrame(samples, frameSize);
+			for (int i = 0; i < frameSize; i++) {
+				frame.getSamples()[i] = signal[rdPtr++];
+				if (rdPtr == signal.length)
+					rdPtr = 0;
+			}
+			((IAudioRenderTarget) target).setFrame(this, frame);
+			samples += frameSize;
+		}
+
+		@Override
+		public long getLengthInFrames() {
+			return FRAMECOUNT_UNKNOWN;
+		}
+
+		@Override
+		public double getLengthInSeconds() {
+			return LENGTH_INFINITE;
+		}
+
+		@Override
+		public float getFrameRate() {
+			return sRate / (frameSize / CHANNELS);
+		}
+
+		@Override
+		public float getSampleRate() {
+			return sRate;
+		}
+
+		@Override
+		public int getNumChannels() {
+			return CHANNELS;
+		}
+	}
+
+	/**
+	 * Feeds mono samples through a half overlapping block buffer.
+	 */
+	static final class BlockBufferCommand extends AbstractRenderCommand<IAudioRenderTarget> {
+		private BlockBuffer buffer;
+
+		@Override
+		protected void init(IAudioRenderTarget target) {
+			buffer = new BlockBuffer(1024, true, Window.HANN);
+		}
+
+		@Override
+		protected void run(IAudioRenderTarget target) throws RenderCommandException {
+			buffer.add(target.getFrame().getMonoSamples());
+			for (float[] block = buffer.nextBlock(); block != null; block = buffer.nextBlock())
+				buffer.recycle(block);
+		}
+	}
+
+	/**
+	 * Band pass filters all samples in place.
+	 */
+	static final class ButterworthCommand extends AbstractRenderCommand<IAudioRenderTarget> {
+		private ButterworthFilter filter;
+
+		@Override
+		protected void init(IAudioRenderTarget target) {
+			filter = ButterworthFilter.getBandpassFilter(target.getSampleRate(), 200, 2000);
+		}
+
+		@Override
+		protected void run(IAudioRenderTarget target) throws RenderCommandException {
+			AudioFrame frame = target.getFrame();
+			filter.processBand(frame.getSamples());
+			frame.modified();
+		}
+	}
+
+	static final class Case {
+		final String name;
+		final Supplier<List<AbstractRenderCommand<IAudioRenderTarget>>> commands;
+
+		Case(String name, Supplier<List<AbstractRenderCommand<IAudioRenderTarget>>> commands) {
+			this.name = name;
+			this.commands = commands;
+		}
+	}
+
+	static List<AbstractRenderCommand<IAudioRenderTarget>> commands(AbstractRenderCommand<IAudioRenderTarget> command) {
+		return Collections.singletonList(command);
+	}
+
+	static List<AbstractRenderCommand<IAudioRenderTarget>> commands(AbstractRenderCommand<IAudioRenderTarget> first, AbstractRenderCommand<IAudioRenderTarget> second) {
+		return Arrays.asList(first, second);
+	}
+
+	static FFT fft() {
+		return new FFT(50, Window.HANN);
+	}
+
+	static final Case[] CASES = {
+		new Case("FFT", () -> commands(fft())),
+		new Case("FFT+InvFFT", () -> {
+			FFT fft = fft();
+			return commands(fft, new InvFFT(fft));
+		}),
+		new Case("BlockBuffer", () -> commands(new BlockBufferCommand())),
+		new Case("ButterworthFilter", () -> commands(new ButterworthCommand())),
+		new Case("BandsButterworth", () -> commands(new BandsButterworth(40, 8000, 40, 16, 1))),
+		new Case("FFT+BandsFFT", () -> {
+			FFT fft = fft();
+			return commands(fft, new BandsFFT(fft, 40, 8000, 16, BandsFFT.Div.LOGARITHMIC));
+		}),
+		new Case("FFT+PitchDetect", () -> {
+			FFT fft = fft();
+			return commands(fft, new PitchDetect(fft, 2));
+		}),
+		new Case("OnsetDetect", () -> commands(new OnsetDetect())),
+		new Case("AutoGain", () -> commands(new AutoGain())),
+	};
+
+	static final class Result {
+		final double nsPerSample;
+		final double bytesPerFrame;
+
+		Result(double nsPerSample, double bytesPerFrame) {
+			this.nsPerSample = nsPerSample;
+			this.bytesPerFrame = bytesPerFrame;
+		}
+	}
+
+	static Result measure(float sRate, int frameSize, List<AbstractRenderCommand<IAudioRenderTarget>> commands, double seconds) throws RenderCommandException {
+		Headless.AudioTarget target = new Headless.AudioTarget(CHANNELS, sRate);
+		RenderProgram<IAudioRenderTarget> program = new RenderProgram<>(new SignalSource(sRate, frameSize));
+		for (AbstractRenderCommand<IAudioRenderTarget> command : commands)
+			program.addLast(command);
+		target.useProgram(program);
+
+		long thread = Thread.currentThread().getId();
+		long warmup = System.nanoTime() + (long) (seconds * 0.5e9);
+		while (System.nanoTime() < warmup)
+			target.cycle();
+
+		long frames = 0;
+		long bytes = THREADS.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		long end = start + (long) (seconds * 1e9);
+		long now;
+		do {
+			for (int i = 0; i < 16; i++)
+				target.cycle();
+			frames += 16;
+			now = System.nanoTime();
+		} while (now < end);
+		bytes = THREADS.getThreadAllocatedBytes(thread) - bytes;
+
+		return new Result((now - start) / (double) (frames * frameSize * CHANNELS), bytes / (double) frames);
+	}
+
+	public static void main(String[] args) throws Exception {
+		double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 0.5;
+
+		System.out.println("command\tsRate\tframe\tns/sample\tbytes/frame");
+		for (float sRate : SAMPLE_RATES) {
+			for (int frameSize : FRAME_SIZES) {
+				Result base = measure(sRate, frameSize, Collections.emptyList(), seconds);
+				for (Case c : CASES) {
+					Result r = measure(sRate, frameSize, c.commands.get(), seconds);
+					System.out.printf("%s\t%.0f\t%d\t%.2f\t%.1f\n", c.name, sRate, frameSize, Math.max(0, r.nsPerSample - base.nsPerSample), Math.max(0, r.bytesPerFrame - base.bytesPerFrame));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import ch.fhnw.ether.audio.IAudioRenderTarget;
+import ch.fhnw.ether.audio.IAudioSource;
+import ch.fhnw.ether.audio.MappedAudioSource;
+import ch.fhnw.ether.audio.URLAudioSource;
+import ch.fhnw.ether.media.AbstractRenderCommand;
+import ch.fhnw.ether.media.RenderCommandException;
+import ch.fhnw.ether.media.RenderProgram;
+
+/**
+ * Compares reading a WAV file through URLAudioSource and MappedAudioSource:
+ * time and bytes allocated to pull the whole file through a headless audio
+ * target, plus the cost of random seeks for the mapped source.
+ *
+ * Usage: AudioReaderBenchmark [seconds of audio] [channels]
+ */
+public final class AudioReaderBenchmark {
+	private static final int SAMPLE_RATE = 48000;
+	private static final int SEEKS = 100000;
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	static File writeWAV(int seconds, int channels, int bits) throws IOException {
+		File file = File.createTempFile("bench", ".wav");
+		file.deleteOnExit();
+		int bytesPerSample = bits / 8;
+		long frames = (long) seconds * SAMPLE_RATE;
+		long dataSize = frames * channels * bytesPerSample;
+		try (OutputStream out = new FileOutputStream(file)) {
+			ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(0x46464952).putInt((int) (36 + dataSize)).putInt(0x45564157);
+			header.putInt(0x20746D66).putInt(16).putShort((short) 1).putShort((short) channels);
+			header.putInt(SAMPLE_RATE).putInt(SAMPLE_RATE * channels * bytesPerSample);
+			header.putShort((short) (channels * bytesPerSample)).putShort((short) bits);
+			header.putInt(0x61746164).putInt((int) dataSize);
+			out.write(header.array());
+
+			byte[] block = new byte[SAMPLE_RATE * channels * bytesPerSample];
+			for (int s = 0; s < seconds; s++) {
+				int idx = 0;
+				for (int i = 0; i < SAMPLE_RATE; i++) {
+					int v = (int) (Math.sin(2 * Math.PI * 440 * i / SAMPLE_RATE) * ((1 << (bits - 1)) - 1));
+					for (int c = 0; c < channels; c++)
+						for (int b = 0; b < bytesPerSample; b++)
+							block[idx++] = (byte) (v >> (8 * b));
+				}
+				out.write(block);
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Counts samples, frames are recycled after each cycle.
+	 */
+	static final class Counter extends AbstractRenderCommand<IAudioRenderTarget> {
+		long samples;
+		boolean last;
+
+		@Override
+		protected void run(IAudioRenderTarget target) throws RenderCommandException {
+			samples += target.getFrame().getSamples().length;
+			last = target.getFrame().isLast();
+		}
+	}
+
+	static void pull(String name, IAudioSource source, int seconds, int channels) throws Exception {
+		Headless.AudioTarget target = new Headless.AudioTarget(channels, SAMPLE_RATE);
+		Counter counter = new Counter();
+		target.useProgram(new RenderProgram<IAudioRenderTarget>(source, counter));
+
+		long thread = Thread.currentThread().getId();
+		long bytes = THREADS.getThreadAllocatedBytes(thread);
+		long t = System.nanoTime();
+		// URLAudioSource may miss flagging its last frame, so stop at the expected length
+		long expected = (long) seconds * SAMPLE_RATE * channels;
+		while (!counter.last && counter.samples < expected)
+			target.cycle();
+		long samples = counter.samples;
+		t = System.nanoTime() - t;
+		bytes = THREADS.getThreadAllocatedBytes(thread) - bytes;
+		System.out.printf("%-24s %8.1f ms, %6.1f Msamples/s, %.2f bytes/sample allocated (render thread)\n", name, t / 1e6, samples / (t / 1e3), (double) bytes / samples);
+	}
+
+	public static void main(String[] args) throws Exception {
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+		int channels = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+		File wav16 = writeWAV(seconds, channels, 16);
+		File wav24 = writeWAV(seconds, channels, 24);
+		System.out.println(seconds + "s, " + channels + " channels, " + (wav16.length() >> 20) + "MB (16 bit), " + (wav24.length() >> 20) + "MB (24 bit)");
+
+		for (int run = 0; run < 2; run++) {
+			try {
+				URLAudioSource url = new URLAudioSource(wav16.toURI().toURL(), 1);
+				pull("URLAudioSource 16 bit", url, seconds, channels);
+				url.dispose();
+			} catch (IOException e) {
+				System.out.println("URLAudioSource 16 bit     unavailable: " + e.getMessage());
+			}
+			MappedAudioSource mapped16 = new MappedAudioSource(wav16, 1);
+			pull("MappedAudioSource 16 bit", mapped16, seconds, channels);
+			mapped16.dispose();
+			MappedAudioSource mapped24 = new MappedAudioSource(wav24, 1);
+			pull("MappedAudioSource 24 bit", mapped24, seconds, channels);
+			mapped24.dispose();
+		}
+
+		MappedAudioSource mapped = new MappedAudioSource(wav16, Integer.MAX_VALUE);
+		Headless.AudioTarget target = new Headless.AudioTarget(channels, SAMPLE_RATE);
+		target.useProgram(new RenderProgram<IAudioRenderTarget>(mapped));
+		Random random = new Random(0);
+		long t = System.nanoTime();
+		for (int i = 0; i < SEEKS; i++) {
+			mapped.seek((long) (random.nextDouble() * mapped.getLengthInSamples()));
+			target.cycle();
+		}
+		t = System.nanoTime() - t;
+		System.out.printf("random seek + frame: %.2f us\n", t / 1e3 / SEEKS);
+		mapped.dispose();
+	}
+}
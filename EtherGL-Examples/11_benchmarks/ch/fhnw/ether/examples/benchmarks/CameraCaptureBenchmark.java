@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import ch.fhnw.ether.image.Frame;
+import ch.fhnw.ether.image.RGB8Frame;
+import ch.fhnw.ether.video.CameraCapture;
+import ch.fhnw.ether.video.VideoFrame;
+
+/**
+ * Drives camera capture with a stand-in camera delivering 720p images every
+ * 10 ms from a grab call that blocks for 5 ms. Compares the previous
+ * capture (new frame per image, per pixel flip) with recycled double
+ * buffered frames on the frame pump and triple buffered frames filled by a
+ * capture thread. Reports pump time and bytes allocated per frame, and
+ * checks that images arrive flipped.
+ */
+public final class CameraCaptureBenchmark {
+	private static final int  WIDTH   = 1280;
+	private static final int  HEIGHT  = 720;
+	private static final int  FRAMES  = 200;
+	private static final long PERIOD  = 10 * 1000 * 1000;
+	private static final long LATENCY = 5 * 1000 * 1000;
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private static final class StandInCamera implements CameraCapture.IGrabber {
+		private final ByteBuffer image = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 3);
+		private final boolean    onlyNew;
+		private long             next  = System.nanoTime();
+		private int              count;
+
+		StandInCamera(boolean onlyNew) {
+			this.onlyNew = onlyNew;
+		}
+
+		@Override
+		public ByteBuffer grab() {
+			long now = System.nanoTime();
+			if(onlyNew && now < next)
+				return null;
+			// camera latency
+			long until = now + LATENCY;
+			while(System.nanoTime() < until)
+				Thread.yield();
+			next = now + PERIOD;
+			count++;
+			// first and last row carry the image number, the last row is marked
+			image.clear();
+			for(int i = 0; i < WIDTH * 3; i++) {
+				image.put(i, (byte)(count & 0x7F));
+				image.put((HEIGHT - 1) * WIDTH * 3 + i, (byte)(count | 0x80));
+			}
+			return image;
+		}
+	}
+
+	private static int errors;
+
+	private static void check(Frame frame) {
+		ByteBuffer pixels = frame.pixels;
+		byte top    = pixels.get(0);
+		byte bottom = pixels.get((HEIGHT - 1) * WIDTH * 3);
+		if(top >= 0 || bottom < 0 || (top & 0x7F) != bottom)
+			errors++;
+	}
+
+	// previous CameraSource.run
+	private static VideoFrame legacy(StandInCamera cam) {
+		RGB8Frame frame = new RGB8Frame(WIDTH, HEIGHT);
+		final ByteBuffer src = cam.grab();
+		src.clear();
+		final ByteBuffer dst = frame.pixels;
+		for(int j = frame.height; --j >= 0;) {
+			dst.position(j * frame.width * 3);
+			for(int i = frame.width; --i >= 0;) {
+				dst.put(src.get());
+				dst.put(src.get());
+				dst.put(src.get());
+			}
+		}
+		return new VideoFrame(frame);
+	}
+
+	private interface Source {
+		VideoFrame next();
+	}
+
+	private static void run(String name, Source source) {
+		long thread = Thread.currentThread().getId();
+		long bytes  = 0;
+		long time   = 0;
+		for(int i = 0; i < 2 * FRAMES; i++) {
+			boolean measure = i >= FRAMES;
+			long b = THREADS.getThreadAllocatedBytes(thread);
+			long t = System.nanoTime();
+			VideoFrame frame = source.next();
+			if(measure) {
+				time  += System.nanoTime() - t;
+				bytes += THREADS.getThreadAllocatedBytes(thread) - b;
+			}
+			check(frame.getFrame());
+			frame.dispose();
+			// frame pump at 100 Hz
+			long until = t + PERIOD;
+			while(System.nanoTime() < until)
+				Thread.yield();
+		}
+		System.out.printf("%-24s %6.2f ms/frame %10.0f bytes/frame\n", name, time / 1e6 / FRAMES, bytes / (double)FRAMES);
+	}
+
+	private static long captureThreadBytes() {
+		for(Thread t : Thread.getAllStackTraces().keySet())
+			if(t.getName().startsWith("camera capture"))
+				return THREADS.getThreadAllocatedBytes(t.getId());
+		return 0;
+	}
+
+	public static void main(String[] args) {
+		StandInCamera legacyCam = new StandInCamera(false);
+		run("new frame per image", () -> legacy(legacyCam));
+
+		CameraCapture pump = new CameraCapture(WIDTH, HEIGHT, 2, false, new StandInCamera(false));
+		run("double buffered", pump::next);
+		System.out.println("  captured " + pump.getCaptured() + ", extra buffers " + pump.getAllocated());
+		pump.dispose();
+
+		CameraCapture threaded = new CameraCapture(WIDTH, HEIGHT, 3, true, new StandInCamera(true));
+		long bytes = captureThreadBytes();
+		run("capture thread", threaded::next);
+		bytes = captureThreadBytes() - bytes;
+		System.out.println("  captured " + threaded.getCaptured() + ", dropped " + threaded.getDropped() + ", extra buffers " + threaded.getAllocated() + ", capture thread " + bytes / threaded.getCaptured() + " bytes/image");
+		threaded.dispose();
+
+		System.out.println(errors == 0 ? "all frames flipped" : errors + " frames not flipped");
+	}
+}
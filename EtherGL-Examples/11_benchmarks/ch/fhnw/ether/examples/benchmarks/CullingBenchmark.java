@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.util.Random;
+
+import ch.fhnw.ether.render.DefaultRenderManager;
+import ch.fhnw.ether.render.IRenderManager;
+import ch.fhnw.ether.scene.camera.Camera;
+import ch.fhnw.ether.scene.camera.ICamera;
+import ch.fhnw.ether.scene.mesh.DefaultMesh;
+import ch.fhnw.ether.scene.mesh.MeshUtilities;
+import ch.fhnw.ether.scene.mesh.geometry.DefaultGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry.Primitive;
+import ch.fhnw.ether.scene.mesh.material.ColorMaterial;
+import ch.fhnw.ether.scene.mesh.material.IMaterial;
+import ch.fhnw.ether.view.IView;
+import ch.fhnw.util.color.RGBA;
+import ch.fhnw.util.math.Vec3;
+
+/**
+ * Measures per-view frustum culling on large synthetic scenes: the camera
+ * orbits through a field of randomly placed cubes, and each frame reports
+ * the number of culled renderables and the CPU time spent for the view.
+ */
+public final class CullingBenchmark {
+	private static final int[] SCENE_SIZES = { 1000, 10000, 100000 };
+	private static final float EXTENT = 1000;
+	private static final int NUM_FRAMES = 100;
+
+	public static void main(String[] args) {
+		System.out.println("meshes\tvisible\tculled\tus/view");
+		for (int size : SCENE_SIZES) {
+			run(size, false);
+			run(size, true);
+		}
+	}
+
+	private static void run(int size, boolean report) {
+		Headless.Renderer renderer = new Headless.Renderer();
+		IRenderManager manager = new DefaultRenderManager(renderer);
+		IView view = new Headless.View(1280, 720);
+		manager.addView(view);
+		ICamera camera = new Camera(Vec3.ZERO, Vec3.X, Vec3.Z, 45, 1, 200);
+		manager.setCamera(view, camera);
+
+		Random random = new Random(size);
+		IMaterial material = new ColorMaterial(RGBA.WHITE);
+		IGeometry geometry = DefaultGeometry.createV(Primitive.TRIANGLES, MeshUtilities.UNIT_CUBE_TRIANGLES);
+		for (int i = 0; i < size; ++i) {
+			DefaultMesh mesh = new DefaultMesh(material, geometry);
+			mesh.setPosition(new Vec3((random.nextFloat() - 0.5f) * EXTENT, (random.nextFloat() - 0.5f) * EXTENT, (random.nextFloat() - 0.5f) * EXTENT / 10));
+			manager.addMesh(mesh);
+		}
+
+		Runnable frame = manager.getRenderRunnable();
+		frame.run();
+
+		long time = 0;
+		long visible = 0;
+		for (int f = 0; f < NUM_FRAMES; ++f) {
+			double a = 2 * Math.PI * f / NUM_FRAMES;
+			camera.setTarget(new Vec3(Math.cos(a), Math.sin(a), 0));
+			long t = System.nanoTime();
+			frame.run();
+			time += System.nanoTime() - t;
+			visible += renderer.getLastState().getRenderStates().get(0).getRenderables().size();
+		}
+		if (report) {
+			long v = visible / NUM_FRAMES;
+			System.out.printf("%d\t%d\t%d\t%.1f\n", size, v, size - v, time / 1000.0 / NUM_FRAMES);
+		}
+	}
+}
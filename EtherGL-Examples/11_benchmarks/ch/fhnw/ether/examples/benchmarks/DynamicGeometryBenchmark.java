@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import com.jogamp.opengl.GL3;
+
+import ch.fhnw.ether.render.DefaultRenderManager;
+import ch.fhnw.ether.render.IRenderManager;
+import ch.fhnw.ether.render.IRenderer.IRenderUpdate;
+import ch.fhnw.ether.render.gl.FloatArrayBuffer;
+import ch.fhnw.ether.scene.camera.Camera;
+import ch.fhnw.ether.scene.mesh.DefaultMesh;
+import ch.fhnw.ether.scene.mesh.IMesh;
+import ch.fhnw.ether.scene.mesh.geometry.DefaultGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry.Primitive;
+import ch.fhnw.ether.scene.mesh.material.ColorMaterial;
+import ch.fhnw.ether.view.IView;
+import ch.fhnw.util.color.RGBA;
+import ch.fhnw.util.math.Mat4;
+import ch.fhnw.util.math.Vec3;
+
+/**
+ * Uploads of a dynamic mesh: a small vertex range modified per frame is
+ * uploaded as sub data, while large ranges and transform changes orphan the
+ * buffer and upload everything. Reports GL buffer calls and uploaded bytes
+ * per frame against a recording GL stand-in.
+ */
+public final class DynamicGeometryBenchmark {
+	private static final int NUM_VERTICES = 3 * 33334;
+
+	public static void main(String[] args) {
+		Headless.Renderer renderer = new Headless.Renderer();
+		IRenderManager manager = new DefaultRenderManager(renderer);
+		IView view = new Headless.View(1280, 720);
+		manager.addView(view);
+		manager.setCamera(view, new Camera(new Vec3(0, -200, 100), Vec3.ZERO, 45, 1, 1000));
+
+		IGeometry geometry = DefaultGeometry.createV(Primitive.TRIANGLES, new float[NUM_VERTICES * 3]);
+		IMesh mesh = new DefaultMesh(new ColorMaterial(RGBA.WHITE), geometry, IMesh.Flag.DYNAMIC);
+		manager.addMesh(mesh);
+
+		Headless.RecordingGL recorder = new Headless.RecordingGL();
+		Runnable frame = manager.getRenderRunnable();
+
+		System.out.println("frame\t\tglBufferData\tglBufferSubData\tbytes");
+		frame("initial", frame, renderer, recorder);
+		for (int f = 0; f < 3; ++f) {
+			int first = f * 1000;
+			geometry.modify(0, first, 1000, (attribute, data) -> {
+				for (int i = first * 3; i < (first + 1000) * 3; ++i)
+					data[i] += 1;
+			});
+			frame("1% range", frame, renderer, recorder);
+		}
+		geometry.modify(0, 0, NUM_VERTICES * 3 / 4, (attribute, data) -> data[0] += 1);
+		frame("75% range", frame, renderer, recorder);
+		geometry.modify(0, (attribute, data) -> data[0] += 1);
+		frame("unranged", frame, renderer, recorder);
+		mesh.setTransform(Mat4.translate(1, 0, 0));
+		frame("transform", frame, renderer, recorder);
+	}
+
+	private static void frame(String name, Runnable frame, Headless.Renderer renderer, Headless.RecordingGL recorder) {
+		GL3 gl = recorder.getGL();
+		frame.run();
+		recorder.reset();
+		long bytes = FloatArrayBuffer.getUploadedBytes();
+		for (IRenderUpdate update : renderer.getLastState().getRenderUpdates())
+			update.update(gl);
+		bytes = FloatArrayBuffer.getUploadedBytes() - bytes;
+		System.out.printf("%s\t%d\t\t%d\t\t%d\n", name, recorder.count("glBufferData"), recorder.count("glBufferSubData"), bytes);
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import ch.fhnw.ether.audio.FileAudioTarget;
+import ch.fhnw.ether.audio.IAudioRenderTarget;
+import ch.fhnw.ether.audio.SilenceAudioSource;
+import ch.fhnw.ether.audio.fx.SinGen;
+import ch.fhnw.ether.media.RenderCommandException;
+import ch.fhnw.ether.media.RenderProgram;
+
+/**
+ * Records a sine from a silence source to a WAV file through FileAudioTarget
+ * as fast as possible. Reports throughput in seconds of audio per second,
+ * bytes allocated per frame on the frame pump and the heap used after the
+ * recording, and checks the resulting file.
+ *
+ * Usage: FileAudioBenchmark [minutes]
+ */
+public final class FileAudioBenchmark {
+	private static final int   CHANNELS   = 2;
+	private static final float RATE       = 48000;
+	private static final int   FRAME_SIZE = 1024;
+
+	private static final class Recorder extends FileAudioTarget {
+		Recorder(File file) {
+			super(file, CHANNELS, RATE);
+		}
+
+		void cycle() throws RenderCommandException {
+			runOneCycle();
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		for(int i = 0; i < 3; i++)
+			System.gc();
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	public static void main(String[] args) throws Exception {
+		double minutes = args.length > 0 ? Double.parseDouble(args[0]) : 10;
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+
+		File file = File.createTempFile("recording", ".wav");
+		file.deleteOnExit();
+		long cycles = (long)(minutes * 60 * RATE * CHANNELS / FRAME_SIZE);
+
+		Recorder target = new Recorder(file);
+		target.useProgram(new RenderProgram<IAudioRenderTarget>(new SilenceAudioSource(CHANNELS, RATE, FRAME_SIZE), new SinGen(0)));
+		long heap = usedHeap();
+		long bytes = 0;
+		long t = System.nanoTime();
+		for(long i = 0; i < cycles; i++) {
+			if(i == cycles / 10)
+				bytes = threads.getThreadAllocatedBytes(thread);
+			target.cycle();
+		}
+		bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+		long heapAfter = usedHeap();
+		target.stop();
+		t = System.nanoTime() - t;
+
+		double seconds = cycles * FRAME_SIZE / (RATE * CHANNELS);
+		System.out.printf("recorded %.0f s in %.2f s: %.0fx real time, %.1f MB/s\n", seconds, t / 1e9, seconds / (t / 1e9), file.length() / (t / 1e3));
+		System.out.printf("pump allocated %.2f bytes/frame, heap growth %d KB (a buffered recording needs %d MB)\n", bytes / (cycles * 0.9), (heapAfter - heap) / 1024, cycles * FRAME_SIZE * 6 / (1024 * 1024));
+
+		try(AudioInputStream in = AudioSystem.getAudioInputStream(file)) {
+			AudioFormat format = in.getFormat();
+			long expected = cycles * FRAME_SIZE / CHANNELS;
+			System.out.println(format + ", " + in.getFrameLength() + " frames" + (in.getFrameLength() == expected ? " (ok)" : " (expected " + expected + ")"));
+		}
+		file.delete();
+	}
+}
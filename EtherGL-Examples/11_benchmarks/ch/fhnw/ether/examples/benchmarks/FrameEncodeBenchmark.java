@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+
+import javax.imageio.ImageIO;
+
+import ch.fhnw.ether.image.Frame;
+import ch.fhnw.ether.image.RGB8Frame;
+import ch.fhnw.ether.media.AbstractFrameSource;
+import ch.fhnw.ether.media.IRenderTarget;
+import ch.fhnw.ether.media.RenderCommandException;
+import ch.fhnw.ether.media.RenderProgram;
+import ch.fhnw.ether.video.FileFrameTarget;
+import ch.fhnw.ether.video.IVideoRenderTarget;
+import ch.fhnw.ether.video.IVideoSource;
+import ch.fhnw.ether.video.VideoFrame;
+
+/**
+ * Writes 1080p frames through FileFrameTarget as PNG and JPEG: converted
+ * through BufferedImage on the frame pump as before, encoded directly on the
+ * frame pump, and as an image sequence with a pool of encoder threads.
+ * Reports frames per second including the generation of a test pattern,
+ * and checks a written PNG against the frame.
+ *
+ * Usage: FrameEncodeBenchmark [encoders]
+ */
+public final class FrameEncodeBenchmark {
+	private static final int WIDTH  = 1920;
+	private static final int HEIGHT = 1080;
+	private static final int FRAMES = 30;
+
+	private static final class PatternSource extends AbstractFrameSource implements IVideoSource {
+		final RGB8Frame frame = new RGB8Frame(WIDTH, HEIGHT);
+		int             count;
+
+		@Override
+		protected void run(IRenderTarget<?> target) throws RenderCommandException {
+			count++;
+			for(int j = 0; j < HEIGHT; j++)
+				for(int i = 0; i < WIDTH; i++) {
+					int idx = (j * WIDTH + i) * 3;
+					int n   = (i * 7919 + j * 104729 + count) * 31;
+					frame.pixels.put(idx,     (byte)(i + count));
+					frame.pixels.put(idx + 1, (byte)(j + (n >> 13 & 7)));
+					frame.pixels.put(idx + 2, (byte)((i + j) / 8));
+				}
+			frame.modified();
+			((IVideoRenderTarget)target).setFrame(this, new VideoFrame(frame));
+		}
+
+		@Override
+		public long getLengthInFrames() {
+			return FRAMECOUNT_UNKNOWN;
+		}
+
+		@Override
+		public double getLengthInSeconds() {
+			return LENGTH_INFINITE;
+		}
+
+		@Override
+		public float getFrameRate() {
+			return 30;
+		}
+
+		@Override
+		public int getWidth() {
+			return WIDTH;
+		}
+
+		@Override
+		public int getHeight() {
+			return HEIGHT;
+		}
+	}
+
+	private static class Target extends FileFrameTarget {
+		Target(File file, int numEncoders) {
+			super(file, numEncoders);
+		}
+
+		void cycle() throws RenderCommandException {
+			runOneCycle();
+		}
+	}
+
+	// previous FileFrameTarget.render
+	private static final class LegacyTarget extends Target {
+		private final File file;
+		private final String ext;
+
+		LegacyTarget(File file, String ext) {
+			super(file, 0);
+			this.file = file;
+			this.ext  = ext;
+		}
+
+		@Override
+		public void render() throws RenderCommandException {
+			try {
+				ImageIO.write(getFrame().getFrame().toBufferedImage(), ext, file);
+			} catch (Throwable e) {
+				throw new RenderCommandException(e);
+			}
+		}
+	}
+
+	private static void run(String name, Target target, PatternSource source) throws Exception {
+		target.useProgram(new RenderProgram<IVideoRenderTarget>(source));
+		for(int i = 0; i < 3; i++)
+			target.cycle();
+		long t = System.nanoTime();
+		for(int i = 0; i < FRAMES; i++)
+			target.cycle();
+		target.stop();
+		t = System.nanoTime() - t;
+		System.out.printf("  %-22s %6.1f frames/s\n", name, FRAMES / (t / 1e9));
+	}
+
+	private static void check(File file, Frame frame) throws Exception {
+		BufferedImage image = ImageIO.read(file);
+		BufferedImage ref   = frame.toBufferedImage();
+		boolean       equal = image.getWidth() == WIDTH && image.getHeight() == HEIGHT;
+		for(int j = 0; equal && j < HEIGHT; j++)
+			for(int i = 0; equal && i < WIDTH; i++)
+				equal = (image.getRGB(i, j) & 0xFFFFFF) == (ref.getRGB(i, j) & 0xFFFFFF);
+		System.out.println("  " + file.getName() + (equal ? " matches last frame" : " DIFFERS from last frame"));
+	}
+
+	public static void main(String[] args) throws Exception {
+		int  encoders = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(2, Runtime.getRuntime().availableProcessors());
+		File dir      = Files.createTempDirectory("frames").toFile();
+		PatternSource source = new PatternSource();
+		for(String ext : new String[] { "png", "jpg" }) {
+			System.out.println(ext + " " + WIDTH + "x" + HEIGHT);
+			File file = new File(dir, "frame." + ext);
+			run("pattern only", new Target(file, 0) {
+				@Override
+				public void render() {}
+			}, source);
+			run("BufferedImage on pump", new LegacyTarget(file, ext), source);
+			run("direct on pump", new Target(file, 0), source);
+			run(encoders + " encoder threads", new Target(new File(dir, "seq%04d." + ext), encoders), source);
+			if(ext.equals("png"))
+				check(new File(dir, String.format("seq%04d.png", FRAMES + 2)), source.frame);
+		}
+
+		for(File f : dir.listFiles())
+			f.delete();
+		dir.delete();
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.fhnw.ether.render.DefaultRenderManager;
+import ch.fhnw.ether.render.IRenderManager;
+import ch.fhnw.ether.scene.mesh.DefaultMesh;
+import ch.fhnw.ether.scene.mesh.IMesh;
+import ch.fhnw.ether.scene.mesh.geometry.DefaultGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry.Primitive;
+import ch.fhnw.ether.scene.mesh.material.IMaterial;
+import ch.fhnw.ether.scene.mesh.material.ShadedMaterial;
+import ch.fhnw.util.color.RGB;
+import ch.fhnw.util.math.Mat4;
+
+/**
+ * Measures render state preparation of animated meshes (i.e. geometry
+ * transformation of all changed meshes per frame) for different degrees of
+ * parallelism.
+ */
+public final class GeometryPrepareBenchmark {
+	private static final int NUM_MESHES = 500;
+	private static final int NUM_TRIANGLES = 2000;
+	private static final int NUM_FRAMES = 100;
+
+	public static void main(String[] args) {
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.println("threads\tms/frame");
+		for (int parallelism = 1; parallelism <= cores; parallelism *= 2) {
+			run(parallelism, false);
+			run(parallelism, true);
+		}
+	}
+
+	private static void run(int parallelism, boolean report) {
+		Headless.Renderer renderer = new Headless.Renderer();
+		IRenderManager manager = new DefaultRenderManager(null, renderer, parallelism);
+		manager.addView(new Headless.View(1024, 768));
+
+		IMaterial material = new ShadedMaterial(RGB.WHITE);
+		List<IMesh> meshes = new ArrayList<>(NUM_MESHES);
+		for (int i = 0; i < NUM_MESHES; ++i) {
+			IMesh mesh = new DefaultMesh(material, createGeometry(i));
+			meshes.add(mesh);
+			manager.addMesh(mesh);
+		}
+
+		Runnable frame = manager.getRenderRunnable();
+		frame.run();
+
+		long time = 0;
+		for (int f = 0; f < NUM_FRAMES; ++f) {
+			for (IMesh mesh : meshes)
+				mesh.setTransform(Mat4.rotate(f, 0, 0, 1));
+			long t = System.nanoTime();
+			frame.run();
+			time += System.nanoTime() - t;
+		}
+		if (report)
+			System.out.printf("%d\t%.2f\n", parallelism, time / 1e6 / NUM_FRAMES);
+	}
+
+	private static IGeometry createGeometry(int seed) {
+		float[] vertices = new float[NUM_TRIANGLES * 9];
+		for (int i = 0; i < vertices.length; ++i)
+			vertices[i] = (float) Math.sin(seed + i);
+		float[] normals = new float[vertices.length];
+		for (int i = 0; i < normals.length; i += 3)
+			normals[i + 2] = 1;
+		return DefaultGeometry.createVN(Primitive.TRIANGLES, vertices, normals);
+	}
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.function.Supplier;
+
+import com.jogamp.opengl.GL3;
+
+import ch.fhnw.ether.audio.AbstractAudioTarget;
+import ch.fhnw.ether.controller.IController;
+import ch.fhnw.ether.media.RenderCommandException;
+import ch.fhnw.ether.render.AbstractRenderer;
+import ch.fhnw.ether.render.Renderable;
+import ch.fhnw.ether.scene.I3DObject;
+import ch.fhnw.ether.scene.IScene;
+import ch.fhnw.ether.scene.camera.ICamera;
+import ch.fhnw.ether.scene.light.ILight;
+import ch.fhnw.ether.scene.mesh.IMesh;
+import ch.fhnw.ether.video.AbstractVideoTarget;
+import ch.fhnw.ether.video.VideoFrame;
+import ch.fhnw.ether.video.fx.AbstractVideoFX;
+import ch.fhnw.ether.view.IView;
+import ch.fhnw.ether.view.IWindow;
+import ch.fhnw.util.Viewport;
+
+/**
+ * Renderer, view, scene, audio and video target stand-ins that allow driving the
+ * scene side of the render pipeline without a GL context and audio or video
+ * programs without a device or window.
+ */
+final class Headless {
+	static final class Renderer extends AbstractRenderer {
+		private IRenderState lastState;
+
+		@Override
+		public ExecutionPolicy getExecutionPolicy() {
+			return ExecutionPolicy.SINGLE_THREADED;
+		}
+
+		@Override
+		public Renderable createRenderable(IMesh mesh) {
+			return new Renderable(mesh, globals.attributes);
+		}
+
+		@Override
+		public void submit(Supplier<IRenderState> supplier) {
+			lastState = supplier.get();
+		}
+
+		IRenderState getLastState() {
+			return lastState;
+		}
+	}
+
+	static final class View implements IView {
+		private final Viewport viewport;
+
+		View(int w, int h) {
+			viewport = new Viewport(0, 0, w, h);
+		}
+
+		@Override
+		public void dispose() {
+		}
+
+		@Override
+		public boolean isEnabled() {
+			return true;
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+		}
+
+		@Override
+		public Config getConfig() {
+			return INTERACTIVE_VIEW;
+		}
+
+		@Override
+		public IController getController() {
+			return null;
+		}
+
+		@Override
+		public Viewport getViewport() {
+			return viewport;
+		}
+
+		@Override
+		public IWindow getWindow() {
+			return null;
+		}
+	}
+
+	/**
+	 * Plain list of objects, not connected to a controller or render manager.
+	 */
+	static final class Scene implements IScene {
+		private final List<I3DObject> objects = new ArrayList<>();
+
+		@Override
+		public void add3DObject(I3DObject object) {
+			objects.add(object);
+		}
+
+		@Override
+		public void add3DObjects(I3DObject... objects) {
+			add3DObjects(Arrays.asList(objects));
+		}
+
+		@Override
+		public void add3DObjects(Collection<? extends I3DObject> objects) {
+			this.objects.addAll(objects);
+		}
+
+		@Override
+		public void remove3DObject(I3DObject object) {
+			objects.remove(object);
+		}
+
+		@Override
+		public void remove3DObjects(I3DObject... objects) {
+			remove3DObjects(Arrays.asList(objects));
+		}
+
+		@Override
+		public void remove3DObjects(Collection<? extends I3DObject> objects) {
+			this.objects.removeAll(objects);
+		}
+
+		@Override
+		public List<I3DObject> get3DObjects() {
+			return Collections.unmodifiableList(objects);
+		}
+
+		@Override
+		public List<ICamera> getCameras() {
+			return objects.stream().filter(p -> p instanceof ICamera).map(p -> (ICamera) p).collect(Collectors.toList());
+		}
+
+		@Override
+		public List<ILight> getLights() {
+			return objects.stream().filter(p -> p instanceof ILight).map(p -> (ILight) p).collect(Collectors.toList());
+		}
+
+		@Override
+		public List<IMesh> getMeshes() {
+			return objects.stream().filter(p -> p instanceof IMesh).map(p -> (IMesh) p).collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * GL stand-in that records the number of calls per GL function. Calls
+	 * return default values, except object names, locations and status
+	 * queries, which report success.
+	 */
+	static final class RecordingGL {
+		private final Map<String, Long> calls = new HashMap<>();
+		private final Map<String, Integer> locations = new HashMap<>();
+		private final GL3 gl;
+		private int names = 1;
+
+		RecordingGL() {
+			gl = (GL3) Proxy.newProxyInstance(GL3.class.getClassLoader(), new Class<?>[] { GL3.class }, (proxy, method, args) -> {
+				String name = method.getName();
+				calls.merge(name, 1L, Long::sum);
+				if (name.startsWith("glGen") && args.length == 3 && args[1] instanceof int[]) {
+					((int[]) args[1])[(Integer) args[2]] = names++;
+					return null;
+				}
+				if (name.startsWith("glGet") && args != null && args.length == 4 && args[2] instanceof int[]) {
+					((int[]) args[2])[(Integer) args[3]] = 1;
+					return null;
+				}
+				if (name.startsWith("glCreate"))
+					return names++;
+				if (name.endsWith("Location"))
+					return locations.computeIfAbsent(args[0] + ":" + args[1], key -> locations.size());
+				Class<?> type = method.getReturnType();
+				if (type == boolean.class)
+					return false;
+				if (type == int.class)
+					return 0;
+				if (type == long.class)
+					return 0L;
+				if (type == float.class)
+					return 0f;
+				if (type == double.class)
+					return 0.0;
+				return null;
+			});
+		}
+
+		GL3 getGL() {
+			return gl;
+		}
+
+		long count(String prefix) {
+			long count = 0;
+			for (Map.Entry<String, Long> e : calls.entrySet())
+				if (e.getKey().startsWith(prefix))
+					count += e.getValue();
+			return count;
+		}
+
+		void reset() {
+			calls.clear();
+		}
+	}
+
+	private Headless() {
+	}
+
+	static final class AudioTarget extends AbstractAudioTarget {
+		private final int nChannels;
+		private final float sRate;
+
+		AudioTarget(int nChannels, float sRate) {
+			super(Thread.NORM_PRIORITY, false);
+			this.nChannels = nChannels;
+			this.sRate = sRate;
+		}
+
+		/**
+		 * Runs the program for one frame on the calling thread.
+		 */
+		void cycle() throws RenderCommandException {
+			runOneCycle();
+		}
+
+		@Override
+		public int getNumChannels() {
+			return nChannels;
+		}
+
+		@Override
+		public float getSampleRate() {
+			return sRate;
+		}
+	}
+
+	/**
+	 * Real-time video target, waits for the play out time of each frame and
+	 * converts it to pixels without displaying it.
+	 */
+	static class VideoTarget extends AbstractVideoTarget {
+		VideoTarget() {
+			super(Thread.NORM_PRIORITY, AbstractVideoFX.FRAMEFX, true);
+		}
+
+		@Override
+		public void render() throws RenderCommandException {
+			VideoFrame frame = getFrame();
+			sleepUntil(frame.getPlayOutTime());
+			show(frame);
+		}
+
+		void show(VideoFrame frame) {
+			frame.getFrame();
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.util.Random;
+
+import com.jogamp.opengl.GL3;
+
+import ch.fhnw.ether.render.DefaultRenderManager;
+import ch.fhnw.ether.render.IRenderManager;
+import ch.fhnw.ether.render.IRenderer.IRenderState;
+import ch.fhnw.ether.render.IRenderer.IRenderUpdate;
+import ch.fhnw.ether.render.Renderable;
+import ch.fhnw.ether.render.gl.FloatArrayBuffer;
+import ch.fhnw.ether.scene.camera.Camera;
+import ch.fhnw.ether.scene.mesh.DefaultMesh;
+import ch.fhnw.ether.scene.mesh.IMesh;
+import ch.fhnw.ether.scene.mesh.InstancedMesh;
+import ch.fhnw.ether.scene.mesh.MeshUtilities;
+import ch.fhnw.ether.scene.mesh.geometry.DefaultGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry.Primitive;
+import ch.fhnw.ether.scene.mesh.material.IMaterial;
+import ch.fhnw.ether.scene.mesh.material.ShadedMaterial;
+import ch.fhnw.ether.view.IView;
+import ch.fhnw.util.color.RGB;
+import ch.fhnw.util.color.RGBA;
+import ch.fhnw.util.math.Mat4;
+import ch.fhnw.util.math.Vec3;
+
+/**
+ * Compares many copies of one geometry as individual meshes against a single
+ * instanced mesh: draw calls, uploaded bytes and scene time for the initial
+ * frame, and for a frame where a single copy is moved. Runs against a
+ * recording GL stand-in, no GPU is required.
+ */
+public final class InstancingBenchmark {
+	private static final int NUM_COPIES = 10000;
+
+	public static void main(String[] args) {
+		System.out.println("mode\tframe\tdraws\tbytes\tus");
+		run(false);
+		run(true);
+	}
+
+	private static void run(boolean instanced) {
+		Headless.Renderer renderer = new Headless.Renderer();
+		IRenderManager manager = new DefaultRenderManager(renderer);
+		IView view = new Headless.View(1280, 720);
+		manager.addView(view);
+		manager.setCamera(view, new Camera(new Vec3(0, -200, 100), Vec3.ZERO, 45, 1, 1000));
+
+		Random random = new Random(0);
+		IMaterial material = new ShadedMaterial(RGB.WHITE);
+		IGeometry geometry = DefaultGeometry.createVN(Primitive.TRIANGLES, MeshUtilities.UNIT_CUBE_TRIANGLES, MeshUtilities.UNIT_CUBE_NORMALS);
+		InstancedMesh instances = new InstancedMesh(material, geometry);
+		IMesh[] copies = new IMesh[NUM_COPIES];
+		for (int i = 0; i < NUM_COPIES; ++i) {
+			Vec3 position = new Vec3(random.nextFloat() * 100 - 50, random.nextFloat() * 100 - 50, random.nextFloat() * 10);
+			RGBA color = new RGBA(random.nextFloat(), random.nextFloat(), random.nextFloat(), 1);
+			if (instanced) {
+				instances.addInstance(Mat4.translate(position), color);
+			} else {
+				copies[i] = new DefaultMesh(material, geometry);
+				copies[i].setPosition(position);
+				manager.addMesh(copies[i]);
+			}
+		}
+		if (instanced)
+			manager.addMesh(instances);
+
+		Headless.RecordingGL recorder = new Headless.RecordingGL();
+		Runnable frame = manager.getRenderRunnable();
+		String mode = instanced ? "instanced" : "meshes";
+
+		frame(mode, "initial", frame, renderer, recorder);
+
+		int index = random.nextInt(NUM_COPIES);
+		Mat4 moved = Mat4.translate(0, 0, 50);
+		if (instanced)
+			instances.setInstanceTransform(index, moved);
+		else
+			copies[index].setTransform(moved);
+		frame(mode, "move one", frame, renderer, recorder);
+	}
+
+	private static void frame(String mode, String name, Runnable frame, Headless.Renderer renderer, Headless.RecordingGL recorder) {
+		GL3 gl = recorder.getGL();
+		long t = System.nanoTime();
+		frame.run();
+		t = System.nanoTime() - t;
+
+		IRenderState state = renderer.getLastState();
+		long bytes = FloatArrayBuffer.getUploadedBytes();
+		for (IRenderUpdate update : state.getRenderUpdates())
+			update.update(gl);
+		bytes = FloatArrayBuffer.getUploadedBytes() - bytes;
+
+		recorder.reset();
+		Renderable previous = null;
+		for (Renderable renderable : state.getRenderStates().get(0).getRenderables()) {
+			renderable.render(gl, previous);
+			previous = renderable;
+		}
+		if (previous != null)
+			previous.disable(gl);
+		System.out.printf("%s\t%s\t%d\t%d\t%.1f\n", mode, name, recorder.count("glDrawArrays"), bytes, t / 1000.0);
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import ch.fhnw.util.net.osc.OSCHandler;
+import ch.fhnw.util.net.osc.OSCMessage;
+import ch.fhnw.util.net.osc.OSCServer;
+
+/**
+ * Sends sensor-like OSC messages over loopback to an OSCServer, once to an
+ * OSCHandler (dispatched on the AWT thread) and once to an OSCTypedHandler
+ * (dispatched on the receive thread). Reports the latency from send to
+ * handler at a fixed message rate, the message rate of a burst and the bytes
+ * allocated per message by the receive thread.
+ *
+ * Usage: OSCBenchmark [rate] [burst size]
+ */
+public final class OSCBenchmark {
+	private static final int    PORT    = 57130;
+	private static final String ADDRESS = "/sensor/3/xyz";
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private final long[]   latencies;
+	private volatile int   received;
+
+	private OSCBenchmark(int capacity) {
+		latencies = new long[capacity];
+	}
+
+	private void record(double sent) {
+		int i = received;
+		if (i < latencies.length)
+			latencies[i] = System.nanoTime() - (long) sent;
+		received = i + 1;
+	}
+
+	private static long allocated(int port) {
+		for (Thread thread : Thread.getAllStackTraces().keySet())
+			if (thread.getName().equals("OSC receive " + port))
+				return THREADS.getThreadAllocatedBytes(thread.getId());
+		return 0;
+	}
+
+	// sends count messages at given rate (0: as fast as possible) and waits until all arrived or the server is idle
+	private long send(DatagramChannel sender, ByteBuffer message, int port, int count, int rate) throws Exception {
+		InetSocketAddress target = new InetSocketAddress("127.0.0.1", port);
+		received = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			if (rate > 0) {
+				long deadline = start + i * 1000000000L / rate;
+				for (long now; (now = System.nanoTime()) < deadline;)
+					LockSupport.parkNanos(deadline - now);
+			} else if (i % 16 == 0) {
+				// avoid overrunning the socket buffer
+				LockSupport.parkNanos(10000);
+			}
+			message.putDouble(message.limit() - 8, System.nanoTime());
+			message.rewind();
+			sender.send(message, target);
+		}
+		for (int last = -1; received != last && received < count;) {
+			last = received;
+			Thread.sleep(200);
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static void run(String name, boolean typed, int port, int rate, int burst) throws Exception {
+		OSCBenchmark bench  = new OSCBenchmark(Math.max(rate * 2, burst));
+		OSCServer    server = new OSCServer(port);
+		if (typed) {
+			server.installHandler("/sensor", message -> {
+				if (message.getFloat(0) + message.getFloat(1) + message.getFloat(2) > -1)
+					bench.record(message.getDouble(3));
+			});
+		} else {
+			server.installHandler("/sensor", (OSCHandler) (address, addrIdx, typeString, timestamp, args) -> {
+				if ((Float) args[0] + (Float) args[1] + (Float) args[2] > -1)
+					bench.record((Double) args[3]);
+				return null;
+			});
+		}
+
+		ByteBuffer message = OSCMessage.getBytes(ADDRESS, 0.1f, 0.2f, 0.3f, 0.0);
+		message.flip();
+		try (DatagramChannel sender = DatagramChannel.open()) {
+			// warm up
+			bench.send(sender, message, port, 20000, 0);
+
+			int count = rate * 2;
+			bench.send(sender, message, port, count, rate);
+			int n = Math.min(bench.received, bench.latencies.length);
+			long[] sorted = Arrays.copyOf(bench.latencies, n);
+			Arrays.sort(sorted);
+			System.out.printf("%-6s %5d msg/s paced: %6d received, latency p50 %7.1f us, p99 %7.1f us, max %8.1f us\n", name, rate, n,
+					sorted[n / 2] / 1e3, sorted[(int) (n * 0.99)] / 1e3, sorted[n - 1] / 1e3);
+
+			long bytes = allocated(port);
+			long time  = bench.send(sender, message, port, burst, 0);
+			bytes      = allocated(port) - bytes;
+			System.out.printf("%-6s burst: %6d of %d received, %8.0f msg/s, %6.1f bytes allocated per message (receive thread)\n", name,
+					bench.received, burst, bench.received / (time / 1e9), bytes / (double) Math.max(1, bench.received));
+		}
+		server.close();
+	}
+
+	public static void main(String[] args) throws Exception {
+		int rate  = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int burst = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+		run("AWT", false, PORT, rate, burst);
+		run("TYPED", true, PORT + 1, rate, burst);
+		System.exit(0);
+	}
+}
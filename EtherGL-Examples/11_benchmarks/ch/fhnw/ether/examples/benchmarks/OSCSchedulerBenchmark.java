@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import ch.fhnw.ether.audio.IAudioRenderTarget;
+import ch.fhnw.ether.audio.SilenceAudioSource;
+import ch.fhnw.ether.media.RenderProgram;
+import ch.fhnw.util.net.osc.OSCMessage;
+import ch.fhnw.util.net.osc.OSCScheduler;
+import ch.fhnw.util.net.osc.OSCServer;
+
+/**
+ * Sends OSC bundles time tagged a fixed latency ahead over loopback and
+ * delivers them through an OSCScheduler, once on an executor and once on the
+ * frame pump of a real-time audio target with 10ms blocks. Reports lateness
+ * with respect to the time tags, the number of batches (thread hops) and the
+ * delivering threads.
+ *
+ * Usage: OSCSchedulerBenchmark [bundles/s] [messages per bundle] [latency ms]
+ */
+public final class OSCSchedulerBenchmark {
+	private static final int    PORT     = 57140;
+	private static final double DURATION = 2;
+
+	private static void run(String name, OSCScheduler scheduler, int port, int rate, int messages, double latency) throws Exception {
+		AtomicInteger            received = new AtomicInteger();
+		Map<String, Integer>     threads  = new ConcurrentHashMap<>();
+		OSCServer                server   = new OSCServer(port);
+		server.setScheduler(scheduler);
+		server.installHandler("/ctl", message -> {
+			received.incrementAndGet();
+			threads.merge(Thread.currentThread().getName(), 1, Integer::sum);
+		});
+
+		ByteBuffer[] elements = new ByteBuffer[messages];
+		int size = 16;
+		for (int i = 0; i < messages; i++) {
+			elements[i] = OSCMessage.getBytes("/ctl/" + i, (float) i, i);
+			size += 4 + elements[i].capacity();
+		}
+		ByteBuffer bundle = ByteBuffer.allocate(size);
+		bundle.put("#bundle".getBytes()).put((byte) 0).putLong(0);
+		for (ByteBuffer element : elements)
+			bundle.putInt(element.capacity()).put(element.array());
+		bundle.flip();
+
+		InetSocketAddress target = new InetSocketAddress("127.0.0.1", port);
+		int count = (int) (rate * DURATION);
+		try (DatagramChannel sender = DatagramChannel.open()) {
+			long start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				long deadline = start + (long) (i * 1e9 / rate);
+				for (long now; (now = System.nanoTime()) < deadline;)
+					LockSupport.parkNanos(deadline - now);
+				bundle.putLong(8, OSCScheduler.now() + OSCScheduler.toNTP(latency));
+				bundle.rewind();
+				sender.send(bundle, target);
+			}
+		}
+		Thread.sleep((long) (latency * 1000) + 500);
+		server.close();
+
+		System.out.printf("%-9s %6d of %d messages, %5d batches (%.1f messages/batch), lateness %s\n", name, received.get(), count * messages,
+				scheduler.getBatches(), received.get() / (double) Math.max(1, scheduler.getBatches()), scheduler.getJitter());
+		System.out.println("          delivered on " + threads);
+		scheduler.dispose();
+	}
+
+	public static void main(String[] args) throws Exception {
+		int    rate     = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int    messages = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		double latency  = (args.length > 2 ? Integer.parseInt(args[2]) : 20) / 1000.0;
+
+		ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "executor"));
+		run("EXECUTOR", new OSCScheduler(executor), PORT, rate, messages, latency);
+		executor.shutdown();
+
+		SchedulingBenchmark.PacedTarget target = new SchedulingBenchmark.PacedTarget(0.01);
+		target.useProgram(new RenderProgram<IAudioRenderTarget>(new SilenceAudioSource(1, 48000, 480)));
+		target.start();
+		run("TARGET", new OSCScheduler(target), PORT + 1, rate, messages, latency);
+		target.stop();
+		System.exit(0);
+	}
+}
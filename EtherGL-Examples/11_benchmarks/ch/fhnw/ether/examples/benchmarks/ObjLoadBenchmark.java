@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import ch.fhnw.ether.formats.MeshCache;
+import ch.fhnw.ether.formats.obj.ObjReader;
+import ch.fhnw.ether.scene.mesh.IMesh;
+import ch.fhnw.ether.scene.mesh.geometry.DefaultGeometry;
+
+/**
+ * Loads a generated OBJ file with each ObjReader mode, reports load time and
+ * bytes allocated, and verifies that all modes produce identical meshes.
+ * The file mixes number formats (exponents, long mantissas, negative zero),
+ * relative indices, faces with and without normals / texture coordinates,
+ * triangles and quads across several groups. The CACHED mode writes its cache
+ * on the first run, the reported last run reads it.
+ *
+ * Usage: ObjLoadBenchmark [grid size]
+ */
+public final class ObjLoadBenchmark {
+	private static final int RUNS = 3;
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private static String number(Random random, float v) {
+		switch (random.nextInt(6)) {
+		case 0:  return Float.toString(v);
+		case 1:  return String.format("%.6f", v);
+		case 2:  return String.format("%.12f", v);
+		case 3:  return String.format("%.4e", v);
+		case 4:  return Double.toString(v + random.nextDouble() * 1e-9);
+		default: return v == 0 ? "-0" : String.format("%.3f", v);
+		}
+	}
+
+	static File writeOBJ(int n) throws IOException {
+		File file = File.createTempFile("bench", ".obj");
+		file.deleteOnExit();
+		Random random = new Random(0);
+		try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file), 1 << 16))) {
+			out.println("# generated by ObjLoadBenchmark");
+			for (int y = 0; y < n; y++) {
+				for (int x = 0; x < n; x++) {
+					float fx = (x - n / 2) * 0.37f;
+					float fy = (y - n / 2) * 0.41f;
+					float fz = (float) Math.sin(x * 0.1) * (float) Math.cos(y * 0.1) * 100;
+					out.println("v " + number(random, fx) + " " + number(random, fy) + "\t" + number(random, fz));
+					out.println("vt " + number(random, (float) x / n) + " " + number(random, (float) y / n));
+					out.println("vn " + number(random, 0) + " " + number(random, (float) Math.sqrt(0.5)) + " " + number(random, (float) Math.sqrt(0.5)));
+				}
+			}
+			int groups = 4;
+			int rows = (n - 1) / groups;
+			for (int g = 0; g < groups; g++) {
+				out.println(g == 0 ? "g" : "g group" + g);
+				for (int y = g * rows; y < (g + 1) * rows; y++) {
+					for (int x = 0; x < n - 1; x++) {
+						int i0 = y * n + x + 1, i1 = i0 + 1, i2 = i0 + n + 1, i3 = i0 + n;
+						switch (g) {
+						case 0: // quads with all attributes
+							out.println("f " + i0 + "/" + i0 + "/" + i0 + " " + i1 + "/" + i1 + "/" + i1 + " " + i2 + "/" + i2 + "/" + i2 + " " + i3 + "/" + i3 + "/" + i3);
+							break;
+						case 1: // triangles with normals only, relative indices
+							int total = n * n;
+							out.println("f " + (i0 - total - 1) + "//" + i0 + " " + i1 + "//" + i1 + " " + i2 + "//" + i2);
+							out.println("f " + i0 + "//" + i0 + " " + i2 + "//" + i2 + "  " + i3 + "//" + i3 + "\r");
+							break;
+						case 2: // quads with positions only
+							out.println("f " + i0 + " " + i1 + " " + i2 + " " + i3);
+							break;
+						default: // triangles with texture coordinates, mixed with trailing slash
+							out.println("f " + i0 + "/" + i0 + " " + i1 + "/" + i1 + "/ " + i2 + "/" + i2);
+							break;
+						}
+					}
+				}
+			}
+		}
+		return file;
+	}
+
+	static List<IMesh> load(String name, File file, ObjReader.Mode mode) throws IOException {
+		List<IMesh> meshes = null;
+		long thread = Thread.currentThread().getId();
+		for (int run = 0; run < RUNS; run++) {
+			System.gc();
+			long bytes = THREADS.getThreadAllocatedBytes(thread);
+			long t = System.nanoTime();
+			meshes = new ObjReader(file, mode).getMeshes();
+			t = System.nanoTime() - t;
+			bytes = THREADS.getThreadAllocatedBytes(thread) - bytes;
+			if (run == RUNS - 1)
+				System.out.printf("%-8s %8.1f ms, %8.1f MB/s, %8.1f MB allocated (loading thread)\n", name, t / 1e6, file.length() / (t / 1e3), bytes / 1e6);
+		}
+		return meshes;
+	}
+
+	static void verify(String name, List<IMesh> expected, List<IMesh> actual) {
+		boolean equal = expected.size() == actual.size();
+		for (int i = 0; equal && i < expected.size(); i++) {
+			IMesh e = expected.get(i);
+			IMesh a = actual.get(i);
+			equal &= e.getName().equals(a.getName());
+			equal &= e.getMaterial().getName() == null ? a.getMaterial().getName() == null : e.getMaterial().getName().equals(a.getMaterial().getName());
+			float[][] ed = ((DefaultGeometry) e.getGeometry()).getData();
+			float[][] ad = ((DefaultGeometry) a.getGeometry()).getData();
+			equal &= Arrays.equals(e.getGeometry().getAttributes(), a.getGeometry().getAttributes()) && ed.length == ad.length;
+			for (int j = 0; equal && j < ed.length; j++)
+				equal &= Arrays.equals(ed[j], ad[j]);
+		}
+		System.out.println(name + (equal ? " identical to LINES" : " DIFFERS from LINES"));
+	}
+
+	public static void main(String[] args) throws Exception {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		File file = writeOBJ(n);
+		MeshCache.getCacheFile(file).deleteOnExit();
+		System.out.println(n * n + " vertices, " + (file.length() >> 20) + "MB");
+
+		List<IMesh> lines = load("LINES", file, ObjReader.Mode.LINES);
+		for (ObjReader.Mode mode : ObjReader.Mode.values()) {
+			if (mode == ObjReader.Mode.LINES)
+				continue;
+			verify(mode.name(), lines, load(mode.name(), file, mode));
+		}
+	}
+}
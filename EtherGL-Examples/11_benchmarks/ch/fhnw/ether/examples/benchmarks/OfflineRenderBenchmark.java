@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import ch.fhnw.ether.audio.FileAudioTarget;
+import ch.fhnw.ether.audio.IAudioSource;
+import ch.fhnw.ether.audio.IAudioRenderTarget;
+import ch.fhnw.ether.audio.SilenceAudioSource;
+import ch.fhnw.ether.audio.fx.SinGen;
+import ch.fhnw.ether.image.RGB8Frame;
+import ch.fhnw.ether.media.AbstractFrameSource;
+import ch.fhnw.ether.media.IRenderTarget;
+import ch.fhnw.ether.media.OfflineRenderer;
+import ch.fhnw.ether.media.RenderCommandException;
+import ch.fhnw.ether.media.RenderProgram;
+import ch.fhnw.ether.video.FileFrameTarget;
+import ch.fhnw.ether.video.IVideoRenderTarget;
+import ch.fhnw.ether.video.IVideoSource;
+import ch.fhnw.ether.video.URLVideoSource;
+import ch.fhnw.ether.video.VideoFrame;
+
+/**
+ * Renders video to an image sequence and audio to a WAV file offline with
+ * an OfflineRenderer. Without arguments a generated test pattern and a sine
+ * are rendered, with a video URL its pictures and sound are rendered.
+ * Reports the ratio of wall clock to media time, checks the number of
+ * written frames and samples, and renders twice to check that the output is
+ * deterministic.
+ *
+ * Usage: OfflineRenderBenchmark [seconds [video url]]
+ */
+public final class OfflineRenderBenchmark {
+	private static final int   WIDTH    = 640;
+	private static final int   HEIGHT   = 360;
+	private static final float FPS      = 30;
+	private static final float RATE     = 48000;
+	private static final int   CHANNELS = 2;
+
+	private static final class PatternSource extends AbstractFrameSource implements IVideoSource {
+		private int count;
+
+		@Override
+		protected void run(IRenderTarget<?> target) throws RenderCommandException {
+			RGB8Frame frame = new RGB8Frame(WIDTH, HEIGHT);
+			for(int j = 0; j < HEIGHT; j++)
+				for(int i = 0; i < WIDTH; i++) {
+					int idx = (j * WIDTH + i) * 3;
+					frame.pixels.put(idx,     (byte)(i + count));
+					frame.pixels.put(idx + 1, (byte)(j - count));
+					frame.pixels.put(idx + 2, (byte)count);
+				}
+			((IVideoRenderTarget)target).setFrame(this, new VideoFrame(frame, count++ / FPS));
+		}
+
+		@Override
+		public long getLengthInFrames() {
+			return FRAMECOUNT_UNKNOWN;
+		}
+
+		@Override
+		public double getLengthInSeconds() {
+			return LENGTH_INFINITE;
+		}
+
+		@Override
+		public float getFrameRate() {
+			return FPS;
+		}
+
+		@Override
+		public int getWidth() {
+			return WIDTH;
+		}
+
+		@Override
+		public int getHeight() {
+			return HEIGHT;
+		}
+	}
+
+	private static OfflineRenderer render(File dir, double seconds, String url) throws Exception {
+		FileFrameTarget video = new FileFrameTarget(new File(dir, "frame%05d.png"), Math.max(2, Runtime.getRuntime().availableProcessors()));
+		FileAudioTarget audio;
+		if(url == null) {
+			video.useProgram(new RenderProgram<IVideoRenderTarget>(new PatternSource()));
+			audio = new FileAudioTarget(new File(dir, "audio.wav"), CHANNELS, RATE);
+			audio.useProgram(new RenderProgram<IAudioRenderTarget>(new SilenceAudioSource(CHANNELS, RATE, 1024), new SinGen(0)));
+		} else {
+			URLVideoSource source = new URLVideoSource(new URL(url), 1);
+			video.useProgram(new RenderProgram<IVideoRenderTarget>((IVideoSource)source));
+			audio = new FileAudioTarget(new File(dir, "audio.wav"), source.getNumChannels(), source.getSampleRate());
+			audio.useProgram(new RenderProgram<IAudioRenderTarget>((IAudioSource)source));
+		}
+		OfflineRenderer renderer = new OfflineRenderer(video, audio);
+		renderer.render(seconds);
+		System.out.printf("rendered %.2f s media in %.2f s wall clock time: wall/media %.3f (%.1fx real time), %d frames, %d images\n",
+				renderer.getMediaTime(), renderer.getWallTime(), renderer.getWallToMediaRatio(), 1 / renderer.getWallToMediaRatio(),
+				renderer.getRenderedFrames(), video.getWrittenFrames());
+		return renderer;
+	}
+
+	private static boolean sameFiles(File a, File b) throws Exception {
+		String[] names = a.list();
+		Arrays.sort(names);
+		for(String name : names)
+			if(!(Arrays.equals(Files.readAllBytes(new File(a, name).toPath()), Files.readAllBytes(new File(b, name).toPath()))))
+				return false;
+		return names.length == b.list().length;
+	}
+
+	private static void delete(File dir) {
+		for(File f : dir.listFiles())
+			f.delete();
+		dir.delete();
+	}
+
+	public static void main(String[] args) throws Exception {
+		double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 10;
+		String url     = args.length > 1 ? args[1] : null;
+		File   a       = Files.createTempDirectory("offline").toFile();
+		File   b       = Files.createTempDirectory("offline").toFile();
+		try {
+			render(a, seconds, url);
+			render(b, seconds, url);
+			if(url == null) {
+				int images = a.list().length - 1;
+				long audio = (new File(a, "audio.wav").length() - 44) / (2 * CHANNELS);
+				System.out.printf("images: %d, expected %d; audio: %.3f s\n", images, (int)Math.ceil(seconds * FPS), audio / RATE);
+			}
+			System.out.println(sameFiles(a, b) ? "both renderings identical" : "renderings DIFFER");
+		} finally {
+			delete(a);
+			delete(b);
+		}
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ch.fhnw.ether.controller.tool.PickUtilities;
+import ch.fhnw.ether.controller.tool.PickUtilities.Hit;
+import ch.fhnw.ether.controller.tool.PickUtilities.PickMode;
+import ch.fhnw.ether.render.DefaultRenderManager;
+import ch.fhnw.ether.render.IRenderManager;
+import ch.fhnw.ether.scene.I3DObject;
+import ch.fhnw.ether.scene.camera.Camera;
+import ch.fhnw.ether.scene.camera.IViewCameraState;
+import ch.fhnw.ether.scene.mesh.DefaultMesh;
+import ch.fhnw.ether.scene.mesh.IMesh;
+import ch.fhnw.ether.scene.mesh.MeshUtilities;
+import ch.fhnw.ether.scene.mesh.geometry.DefaultGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry.Primitive;
+import ch.fhnw.ether.scene.mesh.material.ColorMaterial;
+import ch.fhnw.ether.scene.mesh.material.IMaterial;
+import ch.fhnw.ether.view.IView;
+import ch.fhnw.ether.view.ProjectionUtilities;
+import ch.fhnw.util.color.RGBA;
+import ch.fhnw.util.math.Vec3;
+
+/**
+ * Compares ray picking against the per mesh triangle hierarchy with
+ * picking by projecting all triangles to screen space, on a terrain of
+ * 2M triangles and on a scene of cubes above it. Checks that both
+ * approaches agree, that hits at equal depth are all returned, and that
+ * moved meshes are picked at their new position.
+ */
+public final class PickBenchmark {
+	private static final int W = 1280;
+	private static final int H = 720;
+	private static final float EXTENT = 100;
+	private static final int NUM_CUBES = 1000;
+	private static final int NUM_PICKS = 10000;
+	private static final float DEPTH_TOLERANCE = 0.0001f;
+
+	public static void main(String[] args) {
+		IViewCameraState vcs = createViewCameraState();
+		IMaterial material = new ColorMaterial(RGBA.WHITE);
+		Random random = new Random(1);
+
+		// agreement on a small terrain
+		IMesh small = new DefaultMesh(material, createTerrain(100));
+		int mismatches = 0;
+		int hits = 0;
+		for (int i = 0; i < 2000; ++i) {
+			int x = random.nextInt(W);
+			int y = random.nextInt(H);
+			float a = PickUtilities.pickTriangles(PickMode.POINT, x, y, 0, 0, vcs, small.getTransformedPositionData());
+			float b = PickUtilities.pickObject(PickMode.POINT, x, y, 0, 0, vcs, small);
+			if (a < Float.POSITIVE_INFINITY)
+				hits++;
+			if (!agree(a, b))
+				mismatches++;
+		}
+		System.out.printf("terrain 20K triangles: %d hits, %d mismatches of 2000 picks\n", hits, mismatches);
+
+		// large terrain
+		IMesh terrain = new DefaultMesh(material, createTerrain(1000));
+		System.out.printf("terrain %d triangles\n", terrain.getGeometry().getData()[0].length / 9);
+		mismatches = 0;
+		long legacy = 0;
+		for (int i = 0; i < 5; ++i) {
+			int x = random.nextInt(W);
+			int y = random.nextInt(H);
+			long t = System.nanoTime();
+			float a = PickUtilities.pickTriangles(PickMode.POINT, x, y, 0, 0, vcs, terrain.getTransformedPositionData());
+			legacy += System.nanoTime() - t;
+			float b = PickUtilities.pickObject(PickMode.POINT, x, y, 0, 0, vcs, terrain);
+			if (!agree(a, b))
+				mismatches++;
+			if (i == 0)
+				System.out.printf("  first pick incl. build:   %.1f ms\n", (System.nanoTime() - t - legacy) / 1e6);
+		}
+		System.out.printf("  screen space pick:        %.1f ms/pick (%d mismatches of 5)\n", legacy / 5 / 1e6, mismatches);
+		long time = time(() -> {
+			for (int i = 0; i < NUM_PICKS; ++i)
+				PickUtilities.pickObject(PickMode.POINT, random.nextInt(W), random.nextInt(H), 0, 0, vcs, terrain);
+		});
+		System.out.printf("  hierarchy pick:           %.1f us/pick\n", time / 1e3 / NUM_PICKS);
+
+		// scene: terrain and cubes, plus a duplicate of the first cube
+		Headless.Scene scene = new Headless.Scene();
+		scene.add3DObject(terrain);
+		IGeometry cube = DefaultGeometry.createV(Primitive.TRIANGLES, MeshUtilities.UNIT_CUBE_TRIANGLES);
+		for (int i = 0; i < NUM_CUBES; ++i) {
+			DefaultMesh mesh = new DefaultMesh(material, cube);
+			mesh.setPosition(new Vec3((random.nextFloat() - 0.5f) * EXTENT, (random.nextFloat() - 0.5f) * EXTENT, 5 + random.nextFloat() * 20));
+			scene.add3DObject(mesh);
+		}
+		IMesh first = (IMesh) scene.get3DObjects().get(1);
+		DefaultMesh duplicate = new DefaultMesh(material, cube);
+		duplicate.setPosition(first.getPosition());
+		scene.add3DObject(duplicate);
+
+		mismatches = 0;
+		for (int i = 0; i < 200; ++i) {
+			int x = random.nextInt(W);
+			int y = random.nextInt(H);
+			List<Hit> a = pickLegacy(x, y, vcs, scene.get3DObjects());
+			List<Hit> b = PickUtilities.pickFromScene(PickMode.POINT, x, y, 0, 0, vcs, scene);
+			if (!agree(a, b))
+				mismatches++;
+		}
+		System.out.printf("scene %d objects: %d mismatches of 200 picks\n", scene.get3DObjects().size(), mismatches);
+		time = time(() -> {
+			for (int i = 0; i < NUM_PICKS; ++i)
+				PickUtilities.pickFromScene(PickMode.POINT, random.nextInt(W), random.nextInt(H), 0, 0, vcs, scene);
+		});
+		System.out.printf("  hierarchy scene pick:     %.1f us/pick\n", time / 1e3 / NUM_PICKS);
+
+		Vec3 p = ProjectionUtilities.projectToScreen(vcs, first.getPosition());
+		List<Hit> picked = PickUtilities.pickFromScene(PickMode.POINT, (int) p.x, (int) p.y, 0, 0, vcs, scene);
+		boolean both = picked.size() >= 2 && contains(picked, first) && contains(picked, duplicate) && picked.get(0).depth == picked.get(1).depth;
+		System.out.println("equal depth hits returned: " + both + " " + picked);
+
+		duplicate.setPosition(first.getPosition().add(new Vec3(0, 0, 3)));
+		p = ProjectionUtilities.projectToScreen(vcs, duplicate.getPosition().add(new Vec3(0, 0, 0.5f)));
+		picked = PickUtilities.pickFromScene(PickMode.POINT, (int) p.x, (int) p.y, 0, 0, vcs, scene);
+		System.out.println("moved mesh picked: " + (!picked.isEmpty() && picked.get(0).object == duplicate) + " " + picked);
+	}
+
+	private static IViewCameraState createViewCameraState() {
+		IRenderManager manager = new DefaultRenderManager(new Headless.Renderer());
+		IView view = new Headless.View(W, H);
+		manager.addView(view);
+		manager.setCamera(view, new Camera(new Vec3(0, -EXTENT, EXTENT * 0.6f), Vec3.ZERO, Vec3.Z, 45, 1, 500));
+		manager.getRenderRunnable().run();
+		return manager.getViewCameraState(view);
+	}
+
+	// heightfield of size x size quads (2 triangles each)
+	private static IGeometry createTerrain(int size) {
+		float[] v = new float[size * size * 18];
+		float s = EXTENT / size;
+		int k = 0;
+		for (int j = 0; j < size; ++j) {
+			for (int i = 0; i < size; ++i) {
+				float x0 = i * s - EXTENT / 2, x1 = x0 + s;
+				float y0 = j * s - EXTENT / 2, y1 = y0 + s;
+				float[] q = { x0, y0, height(x0, y0), x1, y0, height(x1, y0), x1, y1, height(x1, y1), x0, y0, height(x0, y0), x1, y1, height(x1, y1), x0, y1, height(x0, y1) };
+				System.arraycopy(q, 0, v, k, 18);
+				k += 18;
+			}
+		}
+		return DefaultGeometry.createV(Primitive.TRIANGLES, v);
+	}
+
+	private static float height(float x, float y) {
+		return (float) (3 * Math.sin(x * 0.2) * Math.cos(y * 0.15) + Math.sin(x * 1.3 + y * 0.7));
+	}
+
+	// scene pick as before: bounds and triangles projected to screen space
+	private static List<Hit> pickLegacy(int x, int y, IViewCameraState vcs, List<I3DObject> objects) {
+		List<Hit> hits = new ArrayList<>();
+		for (I3DObject object : objects) {
+			float d = PickUtilities.pickBoundingBox(PickMode.POINT, x, y, 0, 0, vcs, object.getBounds());
+			if (d < Float.POSITIVE_INFINITY)
+				d = PickUtilities.pickTriangles(PickMode.POINT, x, y, 0, 0, vcs, ((IMesh) object).getTransformedPositionData());
+			if (d < Float.POSITIVE_INFINITY)
+				hits.add(new Hit(object, d));
+		}
+		hits.sort((a, b) -> Float.compare(a.depth, b.depth));
+		return hits;
+	}
+
+	private static boolean agree(float a, float b) {
+		return a == b || Math.abs(a - b) < DEPTH_TOLERANCE;
+	}
+
+	private static boolean agree(List<Hit> a, List<Hit> b) {
+		if (a.size() != b.size())
+			return false;
+		for (Hit hit : a) {
+			if (!contains(b, hit.object))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean contains(List<Hit> hits, I3DObject object) {
+		for (Hit hit : hits) {
+			if (hit.object == object)
+				return true;
+		}
+		return false;
+	}
+
+	private static long time(Runnable runnable) {
+		long t = System.nanoTime();
+		runnable.run();
+		return System.nanoTime() - t;
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import ch.fhnw.ether.audio.AbstractAudioTarget;
+import ch.fhnw.ether.audio.AudioUtilities.Window;
+import ch.fhnw.ether.audio.FFT;
+import ch.fhnw.ether.audio.IAudioRenderTarget;
+import ch.fhnw.ether.audio.InvFFT;
+import ch.fhnw.ether.audio.SilenceAudioSource;
+import ch.fhnw.ether.audio.fx.AutoGain;
+import ch.fhnw.ether.audio.fx.BandsButterworth;
+import ch.fhnw.ether.audio.fx.LowPass;
+import ch.fhnw.ether.audio.fx.PitchDetect;
+import ch.fhnw.ether.audio.fx.SinGen;
+import ch.fhnw.ether.media.OfflineRenderer;
+import ch.fhnw.ether.media.RenderCommandException;
+import ch.fhnw.ether.media.RenderPipeline;
+import ch.fhnw.ether.media.RenderProgram;
+
+/**
+ * Renders a long audio chain (sine, FFT, pitch detection, inverse FFT,
+ * Butterworth bands, auto gain, low pass) offline,
+ * sequentially and pipelined in two and three stages. Reports throughput,
+ * per stage service time, throughput and latency, and checks that all runs
+ * produce the same samples.
+ *
+ * Usage: PipelineBenchmark [seconds]
+ */
+public final class PipelineBenchmark {
+	private static final float RATE     = 48000;
+	private static final int   CHANNELS = 2;
+
+	// sums up rendered samples on the frame pump
+	private static final class ChecksumTarget extends AbstractAudioTarget {
+		long sum;
+
+		ChecksumTarget() {
+			super(Thread.NORM_PRIORITY, false);
+		}
+
+		@Override
+		public void render() {
+			for(float sample : getFrame().getSamples())
+				sum = sum * 31 + Float.floatToIntBits(sample);
+		}
+
+		@Override
+		public int getNumChannels() {
+			return CHANNELS;
+		}
+
+		@Override
+		public float getSampleRate() {
+			return RATE;
+		}
+	}
+
+	private static long run(String name, double seconds, int ... stages) throws RenderCommandException {
+		FFT              fft      = new FFT(100, Window.HANN);
+		BandsButterworth bands    = new BandsButterworth(4, 1, true, 100, 400, 1600, 6400);
+		RenderProgram<IAudioRenderTarget> program = new RenderProgram<>(new SilenceAudioSource(CHANNELS, RATE, 1024),
+				new SinGen(0), fft, new PitchDetect(fft, 3), new InvFFT(fft), bands, new AutoGain(), new LowPass(4));
+		program.setPipeline(stages);
+
+		ChecksumTarget target = new ChecksumTarget();
+		target.useProgram(program);
+		OfflineRenderer renderer = new OfflineRenderer(target);
+		renderer.render(seconds);
+		System.out.printf("%-12s %6.1fx real time, %.3f s for %.0f s audio\n", name, 1 / renderer.getWallToMediaRatio(), renderer.getWallTime(), renderer.getMediaTime());
+		RenderPipeline<IAudioRenderTarget> pipeline = program.getPipeline();
+		if(pipeline != null)
+			System.out.println("  " + pipeline.toString().replace("\n", "\n  "));
+		return target.sum;
+	}
+
+	public static void main(String[] args) throws Exception {
+		double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 60;
+		System.out.println("processors: " + Runtime.getRuntime().availableProcessors());
+		run("warm up", seconds / 4);
+		long sequential = run("sequential", seconds);
+		long two        = run("2 stages", seconds, 5);
+		long three      = run("3 stages", seconds, 2, 5);
+		System.out.println(sequential == two && sequential == three ? "all runs produce the same samples" : "runs DIFFER");
+	}
+}
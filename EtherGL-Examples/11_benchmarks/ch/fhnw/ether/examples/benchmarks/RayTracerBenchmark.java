@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import ch.fhnw.ether.examples.raytracing.RayTraceMesh;
+import ch.fhnw.ether.examples.raytracing.RayTracer;
+import ch.fhnw.ether.examples.raytracing.surface.Plane;
+import ch.fhnw.ether.examples.raytracing.surface.Sphere;
+import ch.fhnw.ether.image.RGBA8Frame;
+import ch.fhnw.ether.scene.camera.Camera;
+import ch.fhnw.ether.scene.light.PointLight;
+import ch.fhnw.util.color.RGB;
+import ch.fhnw.util.color.RGBA;
+import ch.fhnw.util.math.Vec3;
+
+/**
+ * Measures ray tracer throughput in serial and parallel tiled mode and checks
+ * that both modes produce identical images.
+ *
+ * Usage: RayTracerBenchmark [size] [frames]
+ */
+public final class RayTracerBenchmark {
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+		int frames = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+		RayTracer tracer = new RayTracer();
+		tracer.setSize(size, size);
+		tracer.setCamera(new Camera(new Vec3(0, -2, 1), Vec3.ZERO, Vec3.Z, 2.5f, 0.5f, Float.POSITIVE_INFINITY));
+		tracer.addLight(new PointLight(new Vec3(0, 0, 3), RGB.BLACK, RGB.WHITE));
+		RayTraceMesh sphere = new RayTraceMesh(new Sphere(0.5f), RGBA.RED);
+		sphere.setPosition(Vec3.Z.scale(0.5f));
+		tracer.addMesh(sphere);
+		RayTraceMesh small = new RayTraceMesh(new Sphere(0.2f), RGBA.GREEN);
+		small.setPosition(new Vec3(0.6f, -0.4f, 0.3f));
+		tracer.addMesh(small);
+		tracer.addMesh(new RayTraceMesh(new Plane()));
+
+		System.out.println("cores: " + Runtime.getRuntime().availableProcessors() + ", image: " + size + "x" + size);
+		byte[] serial = null;
+		for (boolean parallel : new boolean[] { false, true }) {
+			tracer.setParallel(parallel);
+			for (int i = 0; i < frames / 2; i++)
+				tracer.renderFrame();
+
+			double raysPerSecond = 0;
+			RGBA8Frame frame = null;
+			long t = System.nanoTime();
+			for (int i = 0; i < frames; i++) {
+				frame = tracer.renderFrame();
+				raysPerSecond += tracer.getRaysPerSecond();
+			}
+			t = System.nanoTime() - t;
+
+			byte[] pixels = new byte[frame.pixels.capacity()];
+			frame.pixels.clear();
+			frame.pixels.get(pixels);
+			if (serial == null)
+				serial = pixels;
+			else if (!java.util.Arrays.equals(serial, pixels))
+				System.out.println("ERROR: parallel image differs from serial image");
+
+			System.out.printf("%-8s %.2f ms/frame, %.1f Mrays/s, %d rays/frame\n", parallel ? "parallel" : "serial", t / 1e6 / frames, raysPerSecond / frames / 1e6, tracer.getRaysPerFrame());
+		}
+	}
+}
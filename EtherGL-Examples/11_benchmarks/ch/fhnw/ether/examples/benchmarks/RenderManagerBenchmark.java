@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.fhnw.ether.render.DefaultRenderManager;
+import ch.fhnw.ether.render.IRenderManager;
+import ch.fhnw.ether.scene.mesh.DefaultMesh;
+import ch.fhnw.ether.scene.mesh.IMesh;
+import ch.fhnw.ether.scene.mesh.MeshUtilities;
+import ch.fhnw.ether.scene.mesh.geometry.DefaultGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry.Primitive;
+import ch.fhnw.ether.scene.mesh.material.ColorMaterial;
+import ch.fhnw.ether.scene.mesh.material.IMaterial;
+import ch.fhnw.util.color.RGBA;
+import ch.fhnw.util.math.Mat4;
+
+/**
+ * Measures scene-side cost of building render states with the default render
+ * manager. Frame cost should scale with the number of changed meshes, not
+ * with the total number of meshes in the scene.
+ */
+public final class RenderManagerBenchmark {
+	private static final int[] SCENE_SIZES = { 1000, 5000, 20000, 50000 };
+	private static final int[] CHANGES = { 0, 10, 100, 1000 };
+	private static final int NUM_FRAMES = 200;
+
+	public static void main(String[] args) {
+		System.out.println("meshes\tchanges\tus/frame");
+		for (int size : SCENE_SIZES) {
+			for (int changes : CHANGES) {
+				// run twice, first run is warmup
+				run(size, changes, false);
+				run(size, changes, true);
+			}
+		}
+	}
+
+	private static void run(int size, int changes, boolean report) {
+		Headless.Renderer renderer = new Headless.Renderer();
+		IRenderManager manager = new DefaultRenderManager(renderer);
+		manager.addView(new Headless.View(1024, 768));
+
+		IMaterial material = new ColorMaterial(RGBA.WHITE);
+		IGeometry geometry = DefaultGeometry.createV(Primitive.TRIANGLES, MeshUtilities.UNIT_CUBE_TRIANGLES);
+		List<IMesh> meshes = new ArrayList<>(size);
+		for (int i = 0; i < size; ++i) {
+			IMesh mesh = new DefaultMesh(material, geometry);
+			meshes.add(mesh);
+			manager.addMesh(mesh);
+		}
+
+		// initial frame creates all renderables
+		Runnable frame = manager.getRenderRunnable();
+		frame.run();
+
+		long time = 0;
+		int index = 0;
+		for (int f = 0; f < NUM_FRAMES; ++f) {
+			for (int c = 0; c < changes; ++c) {
+				meshes.get(index).setTransform(Mat4.translate(f, c, 0));
+				index = (index + 1) % size;
+			}
+			long t = System.nanoTime();
+			frame.run();
+			time += System.nanoTime() - t;
+			if (renderer.getLastState().getRenderUpdates().size() != Math.min(changes, size))
+				throw new IllegalStateException("unexpected number of updates");
+		}
+		if (report)
+			System.out.printf("%d\t%d\t%.1f\n", size, changes, time / 1000.0 / NUM_FRAMES);
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ch.fhnw.ether.audio.AbstractAudioTarget;
+import ch.fhnw.ether.audio.IAudioRenderTarget;
+import ch.fhnw.ether.audio.SilenceAudioSource;
+import ch.fhnw.ether.media.JitterHistogram;
+import ch.fhnw.ether.media.RenderProgram;
+
+/**
+ * Measures scheduling jitter of a real-time media target: the frame pump
+ * waits for frame deadlines at 1ms intervals while a number of threads block
+ * on random times of the target. Prints lateness histograms for both.
+ */
+public final class SchedulingBenchmark {
+	private static final double FRAME_PERIOD = 0.001;
+	private static final double DURATION = 3;
+	private static final int NUM_WAITERS = 32;
+
+	static final class PacedTarget extends AbstractAudioTarget {
+		private final double period;
+		private double       deadline;
+
+		PacedTarget(double period) {
+			super(Thread.MAX_PRIORITY, true);
+			this.period = period;
+		}
+
+		@Override
+		public void render() {
+			deadline += period;
+			sleepUntil(deadline);
+		}
+
+		@Override
+		public int getNumChannels() {
+			return 1;
+		}
+
+		@Override
+		public float getSampleRate() {
+			return 48000;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		PacedTarget target = new PacedTarget(FRAME_PERIOD);
+		target.useProgram(new RenderProgram<IAudioRenderTarget>(new SilenceAudioSource(1, 48000, 48)));
+		target.start();
+
+		List<Thread> waiters = new ArrayList<>();
+		for (int i = 0; i < NUM_WAITERS; i++) {
+			Random random = new Random(i);
+			Thread waiter = new Thread(() -> {
+				while (target.getTime() < DURATION)
+					target.sleepUntil(target.getTime() + random.nextDouble() * 0.01);
+			});
+			waiter.start();
+			waiters.add(waiter);
+		}
+		for (Thread waiter : waiters)
+			waiter.join();
+		target.stop();
+
+		System.out.println("frames: " + target.getFrameJitter());
+		System.out.println("events: " + target.getEventJitter());
+		System.out.println("bucket(us)\tframes\tevents");
+		for (int i = 0; i < JitterHistogram.NUM_BUCKETS; i++) {
+			long f = target.getFrameJitter().getCount(i);
+			long e = target.getEventJitter().getCount(i);
+			if (f > 0 || e > 0)
+				System.out.printf("<%.0f\t%d\t%d\n", JitterHistogram.getBucketLimit(i) * 1e6, f, e);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.jogamp.opengl.GL3;
+
+import ch.fhnw.ether.render.DefaultRenderManager;
+import ch.fhnw.ether.render.IRenderManager;
+import ch.fhnw.ether.render.IRenderer.IRenderUpdate;
+import ch.fhnw.ether.render.Renderable;
+import ch.fhnw.ether.render.gl.GLObject;
+import ch.fhnw.ether.scene.camera.Camera;
+import ch.fhnw.ether.scene.mesh.DefaultMesh;
+import ch.fhnw.ether.scene.mesh.IMesh.Queue;
+import ch.fhnw.ether.scene.mesh.MeshUtilities;
+import ch.fhnw.ether.scene.mesh.geometry.DefaultGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry.Primitive;
+import ch.fhnw.ether.scene.mesh.material.ColorMapMaterial;
+import ch.fhnw.ether.scene.mesh.material.ColorMaterial;
+import ch.fhnw.ether.scene.mesh.material.IMaterial;
+import ch.fhnw.ether.scene.mesh.material.ShadedMaterial;
+import ch.fhnw.ether.scene.mesh.material.Texture;
+import ch.fhnw.ether.view.IView;
+import ch.fhnw.util.color.RGB;
+import ch.fhnw.util.color.RGBA;
+import ch.fhnw.util.math.Vec3;
+
+/**
+ * Counts GL state changes for a scene with a few shaders, textures and
+ * materials shared among many meshes: once rendering each renderable on its
+ * own in scene order, and once as a batch in the state-sorted order produced
+ * by the render manager. Runs against a recording GL stand-in, no GPU is
+ * required.
+ */
+public final class StateSortBenchmark {
+	private static final int NUM_MESHES = 10000;
+	private static final int NUM_MATERIALS = 8;
+	private static final int NUM_TEXTURES = 4;
+
+	public static void main(String[] args) {
+		Headless.Renderer renderer = new Headless.Renderer();
+		IRenderManager manager = new DefaultRenderManager(renderer);
+		IView view = new Headless.View(1280, 720);
+		manager.addView(view);
+		manager.setCamera(view, new Camera(new Vec3(0, -20, 10), Vec3.ZERO));
+
+		Random random = new Random(0);
+		List<IMaterial> materials = new ArrayList<>();
+		for (int i = 0; i < NUM_MATERIALS; ++i) {
+			materials.add(new ColorMaterial(new RGBA(random.nextFloat(), random.nextFloat(), random.nextFloat(), 1)));
+			materials.add(new ShadedMaterial(new RGB(random.nextFloat(), random.nextFloat(), random.nextFloat())));
+		}
+		for (int i = 0; i < NUM_TEXTURES; ++i)
+			materials.add(new ColorMapMaterial(new Texture(new GLObject(GLObject.Type.TEXTURE, 1000 + i, () -> {}), 1, 1)));
+
+		IGeometry geometry = DefaultGeometry.createVNM(Primitive.TRIANGLES, MeshUtilities.UNIT_CUBE_TRIANGLES, MeshUtilities.UNIT_CUBE_NORMALS, new float[MeshUtilities.UNIT_CUBE_TRIANGLES.length / 3 * 2]);
+		List<Renderable> unsorted = new ArrayList<>();
+		for (int i = 0; i < NUM_MESHES; ++i) {
+			IMaterial material = materials.get(random.nextInt(materials.size()));
+			DefaultMesh mesh = new DefaultMesh(material, geometry, random.nextInt(10) == 0 ? Queue.TRANSPARENCY : Queue.DEPTH);
+			mesh.setPosition(new Vec3(random.nextFloat() * 10 - 5, random.nextFloat() * 10 - 5, random.nextFloat() * 10 - 5));
+			manager.addMesh(mesh);
+		}
+		manager.getRenderRunnable().run();
+
+		Headless.RecordingGL recorder = new Headless.RecordingGL();
+		GL3 gl = recorder.getGL();
+		for (IRenderUpdate update : renderer.getLastState().getRenderUpdates())
+			update.update(gl);
+
+		List<Renderable> sorted = renderer.getLastState().getRenderStates().get(0).getRenderables();
+		unsorted.addAll(sorted);
+		Collections.shuffle(unsorted, random);
+
+		System.out.println("order\tdraws\tprograms\tuniforms\ttextures");
+
+		recorder.reset();
+		for (Renderable renderable : unsorted)
+			renderable.render(gl);
+		report("scene", recorder);
+
+		recorder.reset();
+		Renderable previous = null;
+		for (Queue queue : Queue.values()) {
+			for (Renderable renderable : sorted) {
+				if (renderable.getQueue() == queue) {
+					renderable.render(gl, previous);
+					previous = renderable;
+				}
+			}
+			if (previous != null)
+				previous.disable(gl);
+			previous = null;
+		}
+		report("sorted", recorder);
+	}
+
+	private static void report(String order, Headless.RecordingGL recorder) {
+		System.out.printf("%s\t%d\t%d\t%d\t%d\n", order, recorder.count("glDrawArrays"), recorder.count("glUseProgram") / 2, recorder.count("glUniform"), recorder.count("glBindTexture"));
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ch.fhnw.ether.image.Frame;
+import ch.fhnw.ether.image.ILineProcessor;
+import ch.fhnw.ether.image.RGB8Frame;
+import ch.fhnw.ether.image.TileEngine;
+
+/**
+ * Compares the previous Frame.processLines implementation (one future per
+ * chunk on a cached thread pool) with the TileEngine at 720p, 1080p and 4K:
+ * a per pixel gain through processLines and tiles, and a 3x3 box blur
+ * through processLines on a copy and through tiles with a halo. Reports
+ * time and bytes allocated by the calling thread per frame, and checks that
+ * both produce the same pixels.
+ *
+ * Usage: TileBenchmark [parallelism]
+ */
+public final class TileBenchmark {
+	private static final int[][] SIZES  = { { 1280, 720 }, { 1920, 1080 }, { 3840, 2160 } };
+	private static final int     FRAMES = 30;
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	// previous implementation of Frame.processLines
+	private static final ExecutorService POOL       = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r);
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static final int             NUM_CHUNKS = Runtime.getRuntime().availableProcessors();
+
+	private static void legacyProcessLines(Frame frame, ILineProcessor processor) {
+		List<Future<?>> result = new ArrayList<>(NUM_CHUNKS + 1);
+		int inc = Math.max(32, frame.height / NUM_CHUNKS);
+		for (int from = 0; from < frame.height; from += inc) {
+			final int start = from;
+			final int end = Math.min(from + inc, frame.height);
+			final ByteBuffer pixels = frame.pixels.duplicate();
+			result.add(POOL.submit(() -> {
+				for (int j = start; j < end; j++) {
+					pixels.position(j * frame.width * frame.pixelSize);
+					processor.process(pixels, j);
+				}
+			}));
+		}
+		try {
+			for (Future<?> f : result)
+				f.get();
+		} catch (Throwable t) {
+			t.printStackTrace();
+		}
+	}
+
+	private static void gain(ByteBuffer pixels, int n) {
+		for (int i = n; --i >= 0;) {
+			int p = pixels.position();
+			pixels.put(p, (byte) Math.min(255, (pixels.get(p) & 0xFF) * 5 / 4));
+			pixels.position(p + 1);
+		}
+	}
+
+	private static int blur(byte[] src, int width, int height, int x, int y, int c) {
+		int sum = 0;
+		for (int dy = -1; dy <= 1; dy++) {
+			int yy = Math.min(height - 1, Math.max(0, y + dy));
+			for (int dx = -1; dx <= 1; dx++) {
+				int xx = Math.min(width - 1, Math.max(0, x + dx));
+				sum += src[(yy * width + xx) * 3 + c] & 0xFF;
+			}
+		}
+		return sum / 9;
+	}
+
+	private static Frame frame(int w, int h) {
+		Frame frame = new RGB8Frame(w, h);
+		for (int i = 0; i < w * h * 3; i++)
+			frame.pixels.put(i, (byte) (i * 31 + (i >> 7)));
+		return frame;
+	}
+
+	private interface Run {
+		void run(Frame frame);
+	}
+
+	private static Frame measure(String name, int w, int h, Run run) {
+		Frame frame = frame(w, h);
+		for (int i = 0; i < 5; i++)
+			run.run(frame);
+		frame = frame(w, h);
+		long thread = Thread.currentThread().getId();
+		long bytes = THREADS.getThreadAllocatedBytes(thread);
+		long t = System.nanoTime();
+		Frame result = null;
+		for (int i = 0; i < FRAMES; i++) {
+			if (i == FRAMES - 1) {
+				result = frame(w, h);
+				bytes -= THREADS.getThreadAllocatedBytes(thread);
+				t -= System.nanoTime();
+				frame = result;
+				t += System.nanoTime();
+				bytes += THREADS.getThreadAllocatedBytes(thread);
+			}
+			run.run(frame);
+		}
+		t = System.nanoTime() - t;
+		bytes = THREADS.getThreadAllocatedBytes(thread) - bytes;
+		System.out.printf("  %-22s %8.2f ms/frame %10.0f bytes/frame\n", name, t / 1e6 / FRAMES, bytes / (double) FRAMES);
+		return result;
+	}
+
+	private static void compare(Frame a, Frame b) {
+		a.pixels.clear();
+		b.pixels.clear();
+		System.out.println(a.pixels.equals(b.pixels) ? "  identical" : "  DIFFERENT");
+	}
+
+	public static void main(String[] args) {
+		TileEngine engine = args.length > 0 ? new TileEngine(Integer.parseInt(args[0])) : TileEngine.getDefault();
+		System.out.println("parallelism: " + engine.getParallelism() + ", processors: " + NUM_CHUNKS);
+		for (int[] size : SIZES) {
+			int w = size[0];
+			int h = size[1];
+			System.out.println(w + "x" + h);
+
+			Frame a = measure("gain processLines", w, h, f -> legacyProcessLines(f, (pixels, j) -> gain(pixels, f.width * 3)));
+			Frame b = measure("gain engine lines", w, h, f -> engine.processLines(f, (pixels, j) -> gain(pixels, f.width * 3)));
+			Frame c = measure("gain engine tiles", w, h, f -> engine.process(f, tile -> {
+				for (int j = tile.getY0(); j < tile.getY1(); j++)
+					gain(tile.position(tile.getX0(), j), (tile.getX1() - tile.getX0()) * 3);
+			}));
+			compare(a, b);
+			compare(a, c);
+
+			byte[] copy = new byte[w * h * 3];
+			Frame d = measure("blur processLines+copy", w, h, f -> {
+				f.pixels.clear();
+				f.pixels.get(copy);
+				legacyProcessLines(f, (pixels, j) -> {
+					for (int i = 0; i < f.width; i++)
+						for (int k = 0; k < 3; k++)
+							pixels.put((byte) blur(copy, f.width, f.height, i, j, k));
+				});
+			});
+			Frame e = measure("blur engine halo tiles", w, h, f -> engine.process(f, 1, tile -> {
+				for (int j = tile.getY0(); j < tile.getY1(); j++) {
+					ByteBuffer pixels = tile.position(tile.getX0(), j);
+					for (int i = tile.getX0(); i < tile.getX1(); i++) {
+						for (int k = 0; k < 3; k++) {
+							int sum = 0;
+							for (int dy = -1; dy <= 1; dy++)
+								for (int dx = -1; dx <= 1; dx++)
+									sum += tile.get(i + dx, j + dy, k);
+							pixels.put((byte) (sum / 9));
+						}
+					}
+				}
+			}));
+			compare(d, e);
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.io.File;
+import java.util.Random;
+
+import ch.fhnw.ether.media.IScheduler;
+import ch.fhnw.ether.media.RenderProgram;
+import ch.fhnw.ether.video.IVideoRenderTarget;
+import ch.fhnw.ether.video.IVideoSource;
+import ch.fhnw.ether.video.URLVideoSource;
+import ch.fhnw.ether.video.VideoFrame;
+
+/**
+ * Plays a synthetic clip in real time through a headless video target that
+ * stalls periodically, with and without decode-ahead, and reports frames
+ * shown late as well as the drop, late and underrun counters of the source.
+ * With decode-ahead, also measures the time from a seek to the next frame
+ * shown.
+ *
+ * Usage: VideoDecodeAheadBenchmark [width] [height] [frames]
+ */
+public final class VideoDecodeAheadBenchmark {
+	private static final int[] DECODE_AHEAD = { 0, 4, 8 };
+	private static final int   STALL_EVERY  = 10;
+	private static final int   SEEKS        = 10;
+
+	static final class StallingTarget extends Headless.VideoTarget {
+		final double period;
+		int          shown;
+		int          late;
+		volatile long seekRequested;
+		long          seekLatency;
+
+		StallingTarget(double period) {
+			this.period = period;
+		}
+
+		@Override
+		void show(VideoFrame frame) {
+			if (getTime() - frame.getPlayOutTime() > period)
+				late++;
+			frame.getFrame();
+			if (seekRequested != 0) {
+				seekLatency += System.nanoTime() - seekRequested;
+				seekRequested = 0;
+			}
+			// simulate a hiccup in the render path, e.g. a texture upload or GC pause
+			if (++shown % STALL_EVERY == 0) {
+				long until = System.nanoTime() + (long) (3 * period * IScheduler.SEC2NS);
+				while (System.nanoTime() < until)
+					Thread.yield();
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int width = args.length > 0 ? Integer.parseInt(args[0]) : 320;
+		int height = args.length > 1 ? Integer.parseInt(args[1]) : 180;
+		int frames = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+		File file = VideoDecodeBenchmark.encode(width, height, frames);
+
+		for (int decodeAhead : DECODE_AHEAD) {
+			URLVideoSource src = new URLVideoSource(file.toURI().toURL(), 1, decodeAhead);
+			StallingTarget target = new StallingTarget(1 / src.getFrameRate());
+			target.useProgram(new RenderProgram<IVideoRenderTarget>((IVideoSource) src));
+			long t = System.nanoTime();
+			target.start();
+			target.sleepUntil(IScheduler.NOT_RENDERING);
+			t = System.nanoTime() - t;
+			System.out.printf("decode-ahead %d: %5.2f s, %4d shown, %4d late, source: %4d dropped, %4d late, %4d underruns\n", decodeAhead, t / IScheduler.SEC2NS, target.shown, target.late, src.getDroppedFrames(), src.getLateFrames(), src.getUnderruns());
+			src.dispose();
+		}
+
+		URLVideoSource src = new URLVideoSource(file.toURI().toURL(), Integer.MAX_VALUE, DECODE_AHEAD[1]);
+		StallingTarget target = new StallingTarget(1 / src.getFrameRate());
+		target.useProgram(new RenderProgram<IVideoRenderTarget>((IVideoSource) src));
+		target.start();
+		Random random = new Random(0);
+		for (int i = 0; i < SEEKS; i++) {
+			Thread.sleep(200);
+			target.seekRequested = System.nanoTime();
+			src.seek(random.nextDouble() * src.getLengthInSeconds());
+		}
+		Thread.sleep(200);
+		target.stop();
+		System.out.printf("seek to next frame shown: %.1f ms\n", target.seekLatency / 1e6 / SEEKS);
+		src.dispose();
+	}
+}
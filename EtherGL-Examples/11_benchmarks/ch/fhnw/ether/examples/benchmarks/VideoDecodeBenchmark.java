@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.examples.benchmarks;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jcodec.api.SequenceEncoder8Bit;
+import org.jcodec.common.NIOUtils;
+import org.jcodec.common.SeekableByteChannel;
+import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.Picture8Bit;
+import org.jcodec.scale.ColorUtil;
+import org.jcodec.scale.Transform8Bit;
+
+import ch.fhnw.ether.image.Frame;
+import ch.fhnw.ether.image.RGB8Frame;
+import ch.fhnw.ether.video.jcodec.FrameGrab;
+import ch.fhnw.ether.video.jcodec.YUVConverter;
+
+/**
+ * Decodes a synthetic H.264 clip with jcodec and compares the per frame
+ * conversion to RGB: the previous path (new frame, jcodec RGB transform and
+ * byte wise copy) against the pooled frame filled by YUVConverter. Runs
+ * headless, no GL context required.
+ *
+ * Usage: VideoDecodeBenchmark [width] [height] [frames]
+ */
+public final class VideoDecodeBenchmark {
+	private static final int RUNS = 5;
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	static File encode(int width, int height, int frames) throws Exception {
+		File file = File.createTempFile("bench", ".mp4");
+		file.deleteOnExit();
+		SequenceEncoder8Bit encoder = new SequenceEncoder8Bit(file);
+		// the encoder takes RGB pictures and converts them to YUV420J
+		Picture8Bit pic = Picture8Bit.create(width, height, ColorSpace.RGB);
+		byte[] data = pic.getPlaneData(0);
+		for (int f = 0; f < frames; f++) {
+			int idx = 0;
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					data[idx++] = (byte) (((x + 4 * f) ^ y) - 128);
+					data[idx++] = (byte) ((x * 255 / width) - 128);
+					data[idx++] = (byte) (((y + 2 * f) * 255 / height) % 256 - 128);
+				}
+			}
+			encoder.encodeNativeFrame(pic);
+		}
+		encoder.finish();
+		return file;
+	}
+
+	// the conversion as done before YUVConverter
+	static Frame convertLegacy(Picture8Bit src, int width, int height) {
+		Frame frame = new RGB8Frame(width, height);
+		Picture8Bit rgb = Picture8Bit.create(src.getWidth(), src.getHeight(), ColorSpace.RGB, src.getCrop());
+		Transform8Bit transform = ColorUtil.getTransform8Bit(src.getColor(), rgb.getColor());
+		transform.transform(src, rgb);
+
+		final ByteBuffer pixels = frame.pixels;
+		final byte[] srcData = rgb.getPlaneData(0);
+		final int line = frame.width * frame.pixelSize;
+		pixels.clear();
+		for (int j = frame.height; --j >= 0;) {
+			int idx = j * line;
+			for (int i = frame.width; --i >= 0;) {
+				pixels.put((byte) (srcData[idx + 2] + 128));
+				pixels.put((byte) (srcData[idx + 1] + 128));
+				pixels.put((byte) (srcData[idx + 0] + 128));
+				idx += 3;
+			}
+		}
+		return frame;
+	}
+
+	static void report(String name, long t, long bytes, int frames, Frame frame) {
+		double ms = t / 1e6 / frames;
+		double mb = (double) frames * frame.width * frame.height * frame.pixelSize / (1 << 20) / (t / 1e9);
+		System.out.printf("%-24s %7.2f ms/frame, %7.1f fps, %7.1f MB/s, %10d bytes/frame allocated (calling thread)\n", name, ms, 1000 / ms, mb, bytes / frames);
+	}
+
+	public static void main(String[] args) throws Exception {
+		int width = args.length > 0 ? Integer.parseInt(args[0]) : 1280;
+		int height = args.length > 1 ? Integer.parseInt(args[1]) : 720;
+		int count = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+		File file = encode(width, height, count);
+		System.out.println(width + "x" + height + ", " + count + " frames, " + (file.length() >> 10) + "KB");
+
+		long thread = Thread.currentThread().getId();
+		List<Picture8Bit> pictures = new ArrayList<>();
+		FrameGrab grab = null;
+		for (int run = 0; run < RUNS; run++) {
+			try (SeekableByteChannel channel = NIOUtils.readableFileChannel(file)) {
+				grab = new FrameGrab(channel);
+				double[] attrs = new double[3];
+				long bytes = THREADS.getThreadAllocatedBytes(thread);
+				long t = System.nanoTime();
+				int frames = 0;
+				for (Picture8Bit pic; (pic = grab.decode(attrs)) != null; frames++) {
+					if (run == 0) {
+						Picture8Bit copy = pic.createCompatible();
+						copy.copyFrom(pic);
+						pictures.add(copy);
+					}
+				}
+				t = System.nanoTime() - t;
+				bytes = THREADS.getThreadAllocatedBytes(thread) - bytes;
+				if (run == RUNS - 1)
+					report("decode", t, bytes, frames, new RGB8Frame(width, height));
+			}
+		}
+		System.out.println("decoded color space: " + pictures.get(0).getColor());
+
+		for (int run = 0; run < RUNS; run++) {
+			long bytes = THREADS.getThreadAllocatedBytes(thread);
+			long t = System.nanoTime();
+			Frame frame = null;
+			for (Picture8Bit pic : pictures)
+				frame = convertLegacy(pic, width, height);
+			t = System.nanoTime() - t;
+			bytes = THREADS.getThreadAllocatedBytes(thread) - bytes;
+			if (run == RUNS - 1)
+				report("legacy convert", t, bytes, pictures.size(), frame);
+		}
+
+		Frame pooled = new RGB8Frame(width, height);
+		for (int run = 0; run < RUNS; run++) {
+			long bytes = THREADS.getThreadAllocatedBytes(thread);
+			long t = System.nanoTime();
+			for (Picture8Bit pic : pictures)
+				grab.grabAndSet(pic, pooled, null);
+			t = System.nanoTime() - t;
+			bytes = THREADS.getThreadAllocatedBytes(thread) - bytes;
+			if (run == RUNS - 1)
+				report("pooled YUVConverter", t, bytes, pictures.size(), pooled);
+		}
+
+		int maxDiff = 0;
+		for (Picture8Bit pic : pictures) {
+			Frame legacy = convertLegacy(pic, width, height);
+			YUVConverter.convert(pic, pooled);
+			for (int i = legacy.pixels.capacity(); --i >= 0;)
+				maxDiff = Math.max(maxDiff, Math.abs((legacy.pixels.get(i) & 0xFF) - (pooled.pixels.get(i) & 0xFF)));
+		}
+		System.out.println("max channel difference legacy vs YUVConverter: " + maxDiff);
+	}
+}
@@ -1,5 +1,6 @@
 package ch.fhnw.ether.audio;
 
+import ch.fhnw.ether.media.AbstractFrameSource;
 import ch.fhnw.ether.media.AbstractMediaTarget;
 
 public abstract class AbstractAudioTarget extends AbstractMediaTarget<AudioFrame, IAudioRenderTarget> implements IAudioRenderTarget {
@@ -11,4 +12,9 @@ public abstract class AbstractAudioTarget extends AbstractMediaTarget<AudioFrame
 	public IAudioSource getAudioSource() {
 		return (IAudioSource) program.getFrameSource();
 	}
+
+	@Override
+	protected double getFrameDuration(AbstractFrameSource src, AudioFrame frame) {
+		return frame.getSamples().length / (frame.getNumChannels() * (double)frame.getSampleRate());
+	}
 }
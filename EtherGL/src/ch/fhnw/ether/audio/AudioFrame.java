@@ -29,14 +29,18 @@
 
 package ch.fhnw.ether.audio;
 
+import java.util.Arrays;
+
 import ch.fhnw.ether.media.AbstractFrame;
 
 public class AudioFrame extends AbstractFrame {
-	public final int     nChannels;
-	public final float[] samples;
-	private      float[] monoSamples;
-	public final float   sRate;
-	public final long    sTime;
+	private int                 nChannels;
+	private float[]             samples;
+	private float[]             monoSamples;
+	private boolean             monoValid;
+	private float               sRate;
+	private long                sTime;
+	private final AudioFramePool pool;
 
 	public AudioFrame(long sTime, int nChannels, float sRate, float[] samples) {
 		super((sTime / nChannels) / (double)sRate);
@@ -44,25 +48,82 @@ public class AudioFrame extends AbstractFrame {
 		this.sRate     = sRate;
 		this.sTime     = sTime;
 		this.samples   = samples;
+		this.pool      = null;
+	}
+
+	AudioFrame(AudioFramePool pool) {
+		super(0);
+		this.pool = pool;
+	}
+
+	void init(long sTime, int nChannels, float sRate, float[] samples) {
+		reset((sTime / nChannels) / (double)sRate);
+		this.nChannels = nChannels;
+		this.sRate     = sRate;
+		this.sTime     = sTime;
+		this.samples   = samples;
+		this.monoValid = false;
+	}
+
+	@Override
+	protected void release() {
+		if(pool == null) return;
+		pool.releaseBuffer(samples);
+		pool.releaseBuffer(monoSamples);
+		samples     = null;
+		monoSamples = null;
+		pool.releaseFrame(this);
+	}
+
+	/**
+	 * Returns the interleaved samples of this frame. Effects modify the
+	 * samples in place and call modified() afterwards.
+	 */
+	public float[] getSamples() {
+		return samples;
+	}
+
+	public int getNumChannels() {
+		return nChannels;
+	}
+
+	public float getSampleRate() {
+		return sRate;
+	}
+
+	/**
+	 * Returns the time of the first sample in samples (counting all channels).
+	 */
+	public long getSampleTime() {
+		return sTime;
 	}
 
 	public float[] getMonoSamples() {
 		if(nChannels == 1)
 			return samples;
 		
-		if(monoSamples == null) {
-			monoSamples = new float[samples.length / nChannels];
+		if(!monoValid) {
+			final int size = samples.length / nChannels;
+			if(monoSamples == null || monoSamples.length != size) {
+				if(pool != null) {
+					pool.releaseBuffer(monoSamples);
+					monoSamples = pool.getBuffer(size);
+				} else
+					monoSamples = new float[size];
+			}
+			Arrays.fill(monoSamples, 0f);
 			for(int i = 0; i < samples.length; i++)
 				monoSamples[i / nChannels] += samples[i];
 			final float cs = nChannels;
 			for(int i = 0; i< monoSamples.length; i++)
 				monoSamples[i] /= cs;
+			monoValid = true;
 		}
 		return monoSamples;
 	}
 
 	public void modified() {
-		monoSamples = null;
+		monoValid = false;
 	}
 
 	public double lengthInSecs() {
@@ -70,6 +131,6 @@ public class AudioFrame extends AbstractFrame {
 	}
 
 	public boolean isModified() {
-		return monoSamples == null;
+		return !monoValid;
 	}
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.audio;
+
+import java.util.Arrays;
+
+/**
+ * Pool of audio frames and sample buffers. Frames taken from the pool own
+ * their sample buffer and return frame and buffers to the pool when their
+ * last reference is disposed, so a running audio pipeline does not allocate
+ * in steady state. Free lists are bounded, surplus objects are left to the
+ * garbage collector.
+ */
+public final class AudioFramePool {
+	private static final int MAX_FREE  = 64;
+	private static final int MAX_SIZES = 16;
+
+	private static final AudioFramePool DEFAULT = new AudioFramePool();
+
+	private final AudioFrame[]  frames  = new AudioFrame[MAX_FREE];
+	private int                 nFrames;
+	private final BufferList[]  buffers = new BufferList[MAX_SIZES];
+	private int                 nSizes;
+
+	private static final class BufferList {
+		final int       size;
+		final float[][] free = new float[MAX_FREE][];
+		int             count;
+
+		BufferList(int size) {
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Returns the pool shared by all audio sources.
+	 */
+	public static AudioFramePool getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Returns a frame with a zeroed sample buffer of the given size.
+	 */
+	public AudioFrame getFrame(long sTime, int nChannels, float sRate, int frameSize) {
+		float[] samples = getBuffer(frameSize);
+		Arrays.fill(samples, 0f);
+		return getFrame(sTime, nChannels, sRate, samples);
+	}
+
+	/**
+	 * Returns a frame wrapping the given samples. The frame takes ownership
+	 * of the samples, which are returned to this pool when the frame is
+	 * released. The samples should therefore be taken from getBuffer().
+	 */
+	public AudioFrame getFrame(long sTime, int nChannels, float sRate, float[] samples) {
+		AudioFrame result = null;
+		synchronized (this) {
+			if(nFrames > 0) {
+				result = frames[--nFrames];
+				frames[nFrames] = null;
+			}
+		}
+		if(result == null)
+			result = new AudioFrame(this);
+		result.init(sTime, nChannels, sRate, samples);
+		return result;
+	}
+
+	/**
+	 * Returns a sample buffer of the given size. The contents of the buffer
+	 * are undefined.
+	 */
+	public float[] getBuffer(int size) {
+		synchronized (this) {
+			BufferList list = find(size);
+			if(list != null && list.count > 0) {
+				float[] result = list.free[--list.count];
+				list.free[list.count] = null;
+				return result;
+			}
+		}
+		return new float[size];
+	}
+
+	/**
+	 * Returns a sample buffer to this pool. The buffer must not be used
+	 * afterwards.
+	 */
+	public void releaseBuffer(float[] buffer) {
+		if(buffer == null) return;
+		synchronized (this) {
+			BufferList list = find(buffer.length);
+			if(list == null && nSizes < MAX_SIZES)
+				list = buffers[nSizes++] = new BufferList(buffer.length);
+			if(list != null && list.count < MAX_FREE)
+				list.free[list.count++] = buffer;
+		}
+	}
+
+	void releaseFrame(AudioFrame frame) {
+		synchronized (this) {
+			if(nFrames < MAX_FREE)
+				frames[nFrames++] = frame;
+		}
+	}
+
+	private BufferList find(int size) {
+		for(int i = 0; i < nSizes; i++)
+			if(buffers[i].size == size)
+				return buffers[i];
+		return null;
+	}
+}
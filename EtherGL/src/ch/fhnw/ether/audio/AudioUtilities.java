@@ -244,7 +244,14 @@ public final class AudioUtilities {
 	}
 	
 	public static final float[] pcmBytes2float(AudioFormat fmt, byte[] src, int length) {
-		float[] fbuffer = new float[length / (fmt.getSampleSizeInBits() / 8)];
+		return pcmBytes2float(fmt, src, length, new float[length / (fmt.getSampleSizeInBits() / 8)]);
+	}
+
+	/**
+	 * Converts 16 bit PCM bytes into the given buffer, which must hold at
+	 * least length / 2 samples.
+	 */
+	public static final float[] pcmBytes2float(AudioFormat fmt, byte[] src, int length, float[] fbuffer) {
 		int     idx     = 0;
 		if(fmt.isBigEndian()) {
 			for(int i = 0; i < length; i += 2) {
@@ -29,13 +29,16 @@
 
 package ch.fhnw.ether.audio;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.LinkedList;
 
 import ch.fhnw.ether.audio.AudioUtilities.Window;
 
 public final class BlockBuffer {
-	private LinkedList<float[]> blocks = new LinkedList<>();
+	private static final int MAX_FREE = 16;
+
+	private final ArrayDeque<float[]> blocks = new ArrayDeque<>();
+	private final ArrayDeque<float[]> free   = new ArrayDeque<>();
 	private float[]             c0;
 	private int                 s0;
 	private float[]             c1;
@@ -55,14 +58,14 @@ public final class BlockBuffer {
 			c0[s0++] = data[i];
 			if(s0 == c0.length) {
 				push(c0);
-				c0 = new float[c0.length];
+				c0 = newBlock();
 				s0 = 0;
 			}
 			if(c1 != null) {
 				c1[s1++] = data[i];
 				if(s1 == c1.length) {
 					push(c1);
-					c1 = new float[c1.length];
+					c1 = newBlock();
 					s1 = 0;
 				}
 			}
@@ -74,8 +77,22 @@ public final class BlockBuffer {
 		blocks.add(block);
 	}
 
+	private float[] newBlock() {
+		final float[] result = free.pollFirst();
+		return result == null ? new float[c0.length] : result;
+	}
+
 	public float[] nextBlock() {
-		return blocks.isEmpty() ? null : blocks.remove(); 
+		return blocks.pollFirst();
+	}
+
+	/**
+	 * Hands a block obtained from nextBlock() back for reuse. The block must
+	 * not be used afterwards.
+	 */
+	public void recycle(float[] block) {
+		if(block != null && block.length == c0.length && free.size() < MAX_FREE)
+			free.addLast(block);
 	}
 
 	public boolean nextBlockComplex(float[] block) {
@@ -85,6 +102,7 @@ public final class BlockBuffer {
 		Arrays.fill(block, 0f);
 		for(int i = 0; i < b.length; i++)
 			block[i*2] = b[i];
+		recycle(b);
 		return true;
 	}
 
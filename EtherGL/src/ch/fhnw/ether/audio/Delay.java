@@ -33,7 +33,7 @@ public class Delay {
 	}
 
 	public void modifySamples(AudioFrame frame, IModifierFloat modifier) {
-		final float[] samples = frame.samples;
+		final float[] samples = frame.getSamples();
 		for(int i = 0; i < samples.length; i++) {
 			final float sample = samples[i];
 			buffer[ptr++] = sample;
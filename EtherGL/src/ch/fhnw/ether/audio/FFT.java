@@ -29,9 +29,8 @@
 
 package ch.fhnw.ether.audio;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
 
 import org.jtransforms.fft.FloatFFT_1D;
 
@@ -51,7 +50,7 @@ public class FFT extends AbstractRenderCommand<IAudioRenderTarget> {
 	private       BlockBuffer   buffer;
 	private       int           fftSize;
 	private       int           fftSize2;
-	private final List<float[]> spectrum = new LinkedList<>();
+	private final ArrayDeque<float[]> spectrum = new ArrayDeque<>();
 	private       float[]       block;
 	private       float         sRate;
 	private       float[]       power;
@@ -112,22 +111,24 @@ public class FFT extends AbstractRenderCommand<IAudioRenderTarget> {
 	}
 
 	public void inverse(final AudioFrame frame) {
-		final float[]    samples = frame.samples;
+		final float[]    samples = frame.getSamples();
 
-		if(spectrum.size() < Math.max(1, 2 * (frame.samples.length / frame.nChannels) / fftSize)) {
+		if(spectrum.size() < Math.max(1, 2 * (frame.getSamples().length / frame.getNumChannels()) / fftSize)) {
 			Arrays.fill(samples, 0f);
 			return;
 		}
 
-		final int nChannels = frame.nChannels;
+		final int nChannels = frame.getNumChannels();
 		if(frame.isModified()) {
 			for(int i = 0; i < samples.length; i += nChannels) {
 				if(pcm0rd >= fftSize) {
-					pcm0  = spectrum.remove(0);
+					buffer.recycle(pcm0);
+					pcm0  = spectrum.pollFirst();
 					pcm0rd = 0;
 				}
 				if(pcm1rd >= fftSize) {
-					pcm1  = spectrum.remove(0);
+					buffer.recycle(pcm1);
+					pcm1  = spectrum.pollFirst();
 					pcm1rd = 0;
 				}
 				pcm0rd++;
@@ -136,12 +137,14 @@ public class FFT extends AbstractRenderCommand<IAudioRenderTarget> {
 		} else {
 			for(int i = 0; i < samples.length; i += nChannels) {
 				if(pcm0rd >= fftSize) {
-					pcm0  = spectrum.remove(0);
+					buffer.recycle(pcm0);
+					pcm0  = spectrum.pollFirst();
 					fft.realInverse(pcm0, true);
 					pcm0rd = 0;
 				}
 				if(pcm1rd >= fftSize) {
-					pcm1  = spectrum.remove(0);
+					buffer.recycle(pcm1);
+					pcm1  = spectrum.pollFirst();
 					fft.realInverse(pcm1, true);
 					pcm1rd = 0;
 				}
@@ -184,6 +187,11 @@ public class FFT extends AbstractRenderCommand<IAudioRenderTarget> {
 			nBlocks++;
 		}
 
+		// keep a few frames of spectra for inverse(), recycle older ones
+		final int maxSpectra = 2 * (2 * (frame.getSamples().length / frame.getNumChannels()) / fftSize) + 4;
+		while(spectrum.size() > maxSpectra)
+			buffer.recycle(spectrum.pollFirst());
+
 		if(nBlocks > 0) {
 			float div = nBlocks;
 			for(int i = 0; i < power.length; i++)
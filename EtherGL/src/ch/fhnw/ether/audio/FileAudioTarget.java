@@ -1,25 +1,43 @@
 package ch.fhnw.ether.audio;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-
-import javax.sound.sampled.AudioFileFormat.Type;
-import javax.sound.sampled.AudioFormat;
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import ch.fhnw.ether.media.RenderCommandException;
-import ch.fhnw.util.FloatList;
 
+/**
+ * Records audio to a 16 bit PCM WAV file. Samples are converted into a
+ * bounded ring of pooled blocks, which a background thread writes to the
+ * file, so memory stays constant regardless of the recording length. The
+ * header is written up front and its sizes are patched periodically and on
+ * stop, so a recording is readable up to the last patch if the process
+ * dies. Sizes are clamped to the 4 GB limit of the format, most readers
+ * then read up to the end of the file.
+ *
+ * @author radar
+ */
 public class FileAudioTarget extends AbstractAudioTarget {
+	private static final int BLOCK_SIZE    = 64 * 1024;
+	private static final int NUM_BLOCKS    = 16;
+	private static final int HEADER_SIZE   = 44;
+	// patch header sizes every this many blocks
+	private static final int PATCH_BLOCKS  = 32;
+	private static final ByteBuffer END    = ByteBuffer.allocate(0);
+
 	private final int        numChannels;
 	private final float      sRate;
 	private double           sTime;
 	private final File       file;
-	private final FloatList  buffer = new FloatList();
-	
+	private Writer           writer;
+	private ByteBuffer       block;
+	private boolean          closed;
+
 	public FileAudioTarget(File file, int numChannels, float sampleRate) {
 		super(Thread.NORM_PRIORITY, false);
 		this.numChannels = numChannels;
@@ -28,9 +46,23 @@ public class FileAudioTarget extends AbstractAudioTarget {
 	}
 
 	@Override
-	public void render() {
-		sTime += getFrame().samples.length;
-		buffer.addAll(getFrame().samples);
+	public synchronized void render() throws RenderCommandException {
+		if(closed) return;
+		final float[] samples = getFrame().getSamples();
+		sTime += samples.length;
+		try {
+			if(writer == null)
+				writer = new Writer(file, numChannels, sRate);
+			writer.check();
+			for(int i = 0; i < samples.length; i++) {
+				if(block == null || !(block.hasRemaining()))
+					block = writer.next(block);
+				float s = samples[i];
+				block.putShort((short) (s >= 1f ? Short.MAX_VALUE : s <= -1f ? -Short.MAX_VALUE : s * Short.MAX_VALUE));
+			}
+		} catch(IOException | InterruptedException e) {
+			throw new RenderCommandException(e);
+		}
 	}
 
 	@Override
@@ -38,7 +70,7 @@ public class FileAudioTarget extends AbstractAudioTarget {
 		if(timebase != null) return timebase.getTime();
 		return sTime / (getSampleRate() * getNumChannels());
 	}
-	
+
 	@Override
 	public int getNumChannels() {
 		return numChannels;
@@ -51,20 +83,127 @@ public class FileAudioTarget extends AbstractAudioTarget {
 
 	@Override
 	public void stop() throws RenderCommandException {
-		byte[] bytes = new byte[buffer.size() * 2];
-		for(int i = buffer.size(); --i >= 0;) {
-			int val = (int) (buffer.get(i) * Short.MAX_VALUE);
-			bytes[i*2+0] = (byte) val;
-			bytes[i*2+1] = (byte) (val >> 8);
-		}
-		AudioInputStream in = new AudioInputStream(new ByteArrayInputStream(bytes), 
-				new AudioFormat(sRate, 16, 1, true, false), 
-				buffer.size());
-		try(FileOutputStream out = new FileOutputStream(file)) {
-			AudioSystem.write(in, Type.WAVE, out);
-		} catch (IOException e) {
+		super.stop();
+		close();
+	}
+
+	private synchronized void close() throws RenderCommandException {
+		if(closed) return;
+		closed = true;
+		if(writer == null) return;
+		try {
+			writer.close(block);
+		} catch(IOException | InterruptedException e) {
 			throw new RenderCommandException(e);
+		} finally {
+			writer = null;
+			block  = null;
+		}
+	}
+
+	private static final class Writer implements Runnable {
+		private final FileChannel             channel;
+		private final BlockingQueue<ByteBuffer> free    = new ArrayBlockingQueue<>(NUM_BLOCKS);
+		private final BlockingQueue<ByteBuffer> full    = new ArrayBlockingQueue<>(NUM_BLOCKS + 1);
+		private final ByteBuffer              header  = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		private final Thread                  thread;
+		private long                          dataSize;
+		private volatile IOException          error;
+
+		Writer(File file, int numChannels, float sampleRate) throws IOException {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			for(int i = 0; i < NUM_BLOCKS; i++)
+				free.add(ByteBuffer.allocateDirect(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+
+			final int blockAlign = numChannels * 2;
+			header.put((byte)'R').put((byte)'I').put((byte)'F').put((byte)'F');
+			header.putInt(0);
+			header.put((byte)'W').put((byte)'A').put((byte)'V').put((byte)'E');
+			header.put((byte)'f').put((byte)'m').put((byte)'t').put((byte)' ');
+			header.putInt(16);
+			header.putShort((short)1);
+			header.putShort((short)numChannels);
+			header.putInt((int)sampleRate);
+			header.putInt((int)sampleRate * blockAlign);
+			header.putShort((short)blockAlign);
+			header.putShort((short)16);
+			header.put((byte)'d').put((byte)'a').put((byte)'t').put((byte)'a');
+			header.putInt(0);
+			header.flip();
+			while(header.hasRemaining())
+				channel.write(header);
+
+			thread = new Thread(this, "audio file writer " + file.getName());
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/**
+		 * Queues the given full block (if any) for writing and returns an
+		 * empty one. Blocks if the writer lags behind by the whole ring.
+		 */
+		ByteBuffer next(ByteBuffer block) throws InterruptedException, IOException {
+			if(block != null) {
+				block.flip();
+				full.put(block);
+			}
+			check();
+			return free.take();
+		}
+
+		void check() throws IOException {
+			if(error != null) throw error;
+		}
+
+		void close(ByteBuffer block) throws InterruptedException, IOException {
+			if(block != null) {
+				block.flip();
+				full.put(block);
+			}
+			full.put(END);
+			thread.join();
+			try {
+				check();
+				patchHeader();
+			} finally {
+				channel.close();
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				int blocks = 0;
+				for(ByteBuffer block; (block = full.take()) != END;) {
+					// after an error, keep recycling blocks until close
+					if(error == null) {
+						try {
+							dataSize += block.remaining();
+							while(block.hasRemaining())
+								channel.write(block);
+							if(++blocks % PATCH_BLOCKS == 0)
+								patchHeader();
+						} catch(IOException e) {
+							error = e;
+						}
+					}
+					block.clear();
+					free.put(block);
+				}
+			} catch(InterruptedException e) {
+				// closed
+			}
+		}
+
+		private void patchHeader() throws IOException {
+			header.clear();
+			header.putInt(4,  (int)Math.min(0xFFFFFFFFL, dataSize + HEADER_SIZE - 8));
+			header.putInt(40, (int)Math.min(0xFFFFFFFFL, dataSize));
+			header.position(4).limit(8);
+			channel.write(header, 4);
+			header.clear();
+			header.position(40);
+			channel.write(header, 40);
 		}
-		super.stop();
 	}
 }
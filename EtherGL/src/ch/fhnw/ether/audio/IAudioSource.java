@@ -7,12 +7,29 @@ public interface IAudioSource {
 	double getLengthInSeconds();
 	float  getFrameRate();
 
+	/**
+	 * Creates a pooled frame with zeroed samples. The frame returns to the
+	 * pool when it is disposed.
+	 */
 	default AudioFrame createAudioFrame(long sTime, int frameSize) {
-		return createAudioFrame(sTime, new float[frameSize]);
+		return AudioFramePool.getDefault().getFrame(sTime, getNumChannels(), getSampleRate(), frameSize);
 	}
 
+	/**
+	 * Creates a frame wrapping the given samples. The samples stay owned by
+	 * the caller.
+	 */
 	default AudioFrame createAudioFrame(long sTime, float[] data) {
 		return new AudioFrame(sTime, getNumChannels(), getSampleRate(), data);
 	}
+
+	/**
+	 * Creates a pooled frame taking ownership of the given samples, which
+	 * should be obtained from AudioFramePool.getDefault().getBuffer(). The
+	 * frame and its samples return to the pool when it is disposed.
+	 */
+	default AudioFrame createPooledAudioFrame(long sTime, float[] data) {
+		return AudioFramePool.getDefault().getFrame(sTime, getNumChannels(), getSampleRate(), data);
+	}
 	
 }
@@ -31,8 +31,8 @@ package ch.fhnw.ether.audio;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioSystem;
@@ -63,7 +63,7 @@ public class JavaSoundSource extends AbstractFrameSource implements Runnable, IA
 	private final byte[]                 buffer;
 	long                                 samples;
 	Throwable                            lastErr;
-	private final BlockingQueue<float[]> data = new LinkedBlockingQueue<>();
+	private final BlockingQueue<float[]> data = new ArrayBlockingQueue<>(64);
 	Thread                               t;
 
 	public JavaSoundSource(int nChannels, float sampleRate, int frameSize) {
@@ -78,15 +78,18 @@ public class JavaSoundSource extends AbstractFrameSource implements Runnable, IA
 	public void run() {
 		for(;;) {
 			try {
-				final float[] fbuffer = new float[frameSize];
+				final float[] fbuffer = AudioFramePool.getDefault().getBuffer(frameSize);
 				final int read = line.read(buffer, 0, buffer.length);
 				int       idx  = 0;
 				for(int i = 0; i < read; i += 2) {
 					int s = buffer[i] << 8 | (buffer[i+1] & 0xFF);
 					fbuffer[idx++] = s / S2F;
 				}
+				for(int i = idx; i < fbuffer.length; i++)
+					fbuffer[i] = 0f;
 				samples += read / 2;
-				data.add(fbuffer);
+				if(!data.offer(fbuffer))
+					AudioFramePool.getDefault().releaseBuffer(fbuffer);
 			} catch(Throwable t) {
 				if(lastErr == null)
 					lastErr = t;
@@ -116,8 +119,8 @@ public class JavaSoundSource extends AbstractFrameSource implements Runnable, IA
 			}
 		}
 		try {
-			while(data.size() > 4) data.take();
-			((IAudioRenderTarget)target).setFrame(this, createAudioFrame(samples, data.take()));
+			while(data.size() > 4) AudioFramePool.getDefault().releaseBuffer(data.take());
+			((IAudioRenderTarget)target).setFrame(this, createPooledAudioFrame(samples, data.take()));
 		} catch(InterruptedException e) {
 			throw new RenderCommandException(e);
 		}
@@ -46,6 +46,7 @@ public final class JavaSoundTarget extends AbstractAudioTarget {
 	private int            bytesPerSample;
 	private final int      bufferSize;
 	private ITimebase      timebase;
+	private byte[]         outBuffer = new byte[0];
 	
 	/**
 	 * Create a new audio target using Java sound output.
@@ -99,10 +100,13 @@ public final class JavaSoundTarget extends AbstractAudioTarget {
 		if(!out.isRunning())
 			out.start();
 
-		final float[] samples  = getFrame().samples;
-		final int     channels = getFrame().nChannels;
+		final float[] samples  = getFrame().getSamples();
+		final int     channels = getFrame().getNumChannels();
 
-		final byte[] outBuffer   = new byte[(samples.length / channels) * outChannels * bytesPerSample];   
+		final int size = (samples.length / channels) * outChannels * bytesPerSample;
+		if(outBuffer.length != size)
+			outBuffer = new byte[size];
+		final byte[] outBuffer   = this.outBuffer;
 		int          outIdx      = 0;
 
 		for(int i = 0; i < samples.length; i += channels) {
@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.fhnw.ether.media.AbstractFrameSource;
+import ch.fhnw.ether.media.IRenderTarget;
+import ch.fhnw.ether.media.RenderCommandException;
+import ch.fhnw.util.IDisposable;
+import ch.fhnw.util.Log;
+
+/**
+ * Audio source reading 16 or 24 bit PCM WAV files through memory-mapped
+ * segments of the file. Samples are converted straight into pooled frame
+ * buffers, seeking is sample accurate and constant time, and looping wraps
+ * within a frame without reopening the file. Suited for long multichannel
+ * recordings, since only the touched pages are resident.
+ */
+public class MappedAudioSource extends AbstractFrameSource implements IDisposable, IAudioSource {
+	private static final Log log = Log.create();
+
+	private static final float S2F_16 = Short.MAX_VALUE;
+	private static final float S2F_24 = 0x7FFFFF;
+
+	// bytes per mapped segment, rounded down to whole sample frames
+	private static final long SEGMENT_BYTES = Integer.MAX_VALUE;
+
+	private final File                file;
+	private final RandomAccessFile    raf;
+	private final MappedByteBuffer[]  segments;
+	private final int                 nChannels;
+	private final float               sRate;
+	private final int                 bytesPerSample;
+	private final int                 blockAlign;
+	private final long                lengthInSamples;
+	private final long                segmentFrames;
+	private final int                 frameSize;
+	private final AtomicLong          seekTo = new AtomicLong(-1);
+	private       int                 numPlays;
+	private volatile long             position;
+	private       long                samples;
+
+	public MappedAudioSource(File file) throws IOException {
+		this(file, Integer.MAX_VALUE, 128);
+	}
+
+	public MappedAudioSource(File file, int numPlays) throws IOException {
+		this(file, numPlays, 128);
+	}
+
+	/**
+	 * Create a new mapped audio source.
+	 *
+	 * @param file The WAV file.
+	 * @param numPlays Number of times the file is played.
+	 * @param frameSize Frame size in samples per channel.
+	 */
+	public MappedAudioSource(File file, int numPlays, int frameSize) throws IOException {
+		this.file      = file;
+		this.numPlays  = numPlays;
+		this.frameSize = Math.max(1, frameSize);
+		this.raf       = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			final ByteBuffer  header  = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+			read(channel, header, 0);
+			if(header.getInt(0) != 0x46464952 || header.getInt(8) != 0x45564157)
+				throw new IOException("Not a RIFF/WAVE file: " + file);
+
+			int  format     = -1;
+			int  channels   = 0;
+			int  rate       = 0;
+			int  bits       = 0;
+			int  align      = 0;
+			long dataOffset = -1;
+			long dataLength = 0;
+			final ByteBuffer chunk = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+			for(long offset = 12; offset + 8 <= channel.size();) {
+				chunk.clear().limit(8);
+				read(channel, chunk, offset);
+				final int  id   = chunk.getInt(0);
+				final long size = chunk.getInt(4) & 0xFFFFFFFFL;
+				if(id == 0x20746D66) { // "fmt "
+					chunk.clear().limit((int)Math.min(40, size));
+					read(channel, chunk, offset + 8);
+					format   = chunk.getShort(0) & 0xFFFF;
+					channels = chunk.getShort(2) & 0xFFFF;
+					rate     = chunk.getInt(4);
+					align    = chunk.getShort(12) & 0xFFFF;
+					bits     = chunk.getShort(14) & 0xFFFF;
+					if(format == 0xFFFE && size >= 26)
+						format = chunk.getShort(24) & 0xFFFF;
+				} else if(id == 0x61746164) { // "data"
+					dataOffset = offset + 8;
+					// sizes of files beyond 4GB are bogus (wrapped or clamped), use the rest of the file
+					final long rest = channel.size() - dataOffset;
+					dataLength = Math.min(size, rest);
+					if(size == 0xFFFFFFFFL || size == 0 || (channel.size() > 0xFFFFFFFFL && size < rest))
+						dataLength = rest;
+					break;
+				}
+				offset += 8 + size + (size & 1);
+			}
+
+			if(format != 1)
+				throw new IOException("Only PCM WAV files supported, got format " + format);
+			if(bits != 16 && bits != 24)
+				throw new IOException("Only 16 and 24 bit audio supported, got " + bits);
+			if(dataOffset < 0)
+				throw new IOException("No data chunk in " + file);
+
+			this.nChannels       = channels;
+			this.sRate           = rate;
+			this.bytesPerSample  = bits / 8;
+			this.blockAlign      = Math.max(align, channels * bytesPerSample);
+			this.lengthInSamples = dataLength / blockAlign;
+
+			this.segmentFrames = SEGMENT_BYTES / blockAlign;
+			final long segmentBytes = segmentFrames * blockAlign;
+			this.segments = new MappedByteBuffer[(int)((lengthInSamples + segmentFrames - 1) / segmentFrames)];
+			for(int i = 0; i < segments.length; i++) {
+				final long from = i * segmentBytes;
+				segments[i] = channel.map(MapMode.READ_ONLY, dataOffset + from, Math.min(segmentBytes, lengthInSamples * blockAlign - from));
+				segments[i].order(ByteOrder.LITTLE_ENDIAN);
+			}
+		} catch(IOException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	private static void read(FileChannel channel, ByteBuffer dst, long position) throws IOException {
+		while(dst.hasRemaining())
+			if(channel.read(dst, position + dst.position()) < 0)
+				throw new IOException("Unexpected end of file");
+	}
+
+	/**
+	 * Sets the play position to the given sample frame. The position takes
+	 * effect at the next frame. May be called from any thread.
+	 */
+	public void seek(long sample) {
+		seekTo.set(Math.max(0, Math.min(sample, lengthInSamples)));
+	}
+
+	/**
+	 * Returns the play position in sample frames.
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * Returns the length of the file in sample frames.
+	 */
+	public long getLengthInSamples() {
+		return lengthInSamples;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	protected void run(IRenderTarget<?> target) throws RenderCommandException {
+		final long seek = seekTo.getAndSet(-1);
+		if(seek >= 0)
+			position = seek;
+
+		int n = frameSize;
+		boolean last = false;
+		if((numPlays <= 1 || lengthInSamples == 0) && position + n >= lengthInSamples) {
+			n    = (int)Math.max(0, lengthInSamples - position);
+			last = true;
+		}
+
+		final float[] data = AudioFramePool.getDefault().getBuffer(n * nChannels);
+		int           off  = 0;
+		while(off < data.length) {
+			if(position >= lengthInSamples) {
+				numPlays--;
+				position = 0;
+			}
+			final int count = (int)Math.min((data.length - off) / nChannels, lengthInSamples - position);
+			convert(position, count, data, off);
+			position += count;
+			off      += count * nChannels;
+		}
+		if(last)
+			numPlays = 0;
+
+		final AudioFrame frame = createPooledAudioFrame(samples, data);
+		frame.setLast(last);
+		((IAudioRenderTarget)target).setFrame(this, frame);
+		samples += data.length;
+	}
+
+	private void convert(long sample, int count, float[] dst, int off) {
+		while(count > 0) {
+			final int        segment = (int)(sample / segmentFrames);
+			final int        first   = (int)(sample % segmentFrames);
+			final int        n       = (int)Math.min(count, segmentFrames - first);
+			final ByteBuffer src     = segments[segment];
+			final int        end     = off + n * nChannels;
+			int              rd      = first * blockAlign;
+			final int        skip    = blockAlign - nChannels * bytesPerSample;
+			if(bytesPerSample == 2) {
+				while(off < end) {
+					for(int c = 0; c < nChannels; c++, rd += 2)
+						dst[off++] = src.getShort(rd) / S2F_16;
+					rd += skip;
+				}
+			} else {
+				while(off < end) {
+					for(int c = 0; c < nChannels; c++, rd += 3) {
+						final int s = (src.get(rd) & 0xFF) | (src.get(rd + 1) & 0xFF) << 8 | src.get(rd + 2) << 16;
+						dst[off++] = s / S2F_24;
+					}
+					rd += skip;
+				}
+			}
+			sample += n;
+			count  -= n;
+		}
+	}
+
+	@Override
+	public void dispose() {
+		try {
+			raf.close();
+		} catch(IOException e) {
+			log.warning(e);
+		}
+	}
+
+	@Override
+	public float getSampleRate() {
+		return sRate;
+	}
+
+	@Override
+	public int getNumChannels() {
+		return nChannels;
+	}
+
+	@Override
+	public long getLengthInFrames() {
+		return (lengthInSamples + frameSize - 1) / frameSize;
+	}
+
+	@Override
+	public double getLengthInSeconds() {
+		return lengthInSamples / (double)sRate;
+	}
+
+	@Override
+	public float getFrameRate() {
+		return sRate / frameSize;
+	}
+
+	@Override
+	public String toString() {
+		return file.toString();
+	}
+}
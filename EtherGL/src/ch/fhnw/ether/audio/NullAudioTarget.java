@@ -13,7 +13,7 @@ public class NullAudioTarget extends AbstractAudioTarget {
 
 	@Override
 	public void render() {
-		sTime += getFrame().samples.length;
+		sTime += getFrame().getSamples().length;
 	}
 
 	@Override
@@ -43,7 +43,7 @@ public class SpectrumAudioTarget implements IAudioRenderTarget {
 
 	@Override
 	public void render() {
-		sTime += getFrame().samples.length;
+		sTime += getFrame().getSamples().length;
 	}
 
 	@Override
@@ -92,6 +92,8 @@ public class SpectrumAudioTarget implements IAudioRenderTarget {
 		render();
 		tmp = getFrame();
 		if(tmp != null) {
+			if(currentFrame != null)
+				currentFrame.dispose();
 			currentFrame = frame.getAndSet(null);
 			buffer.add(currentFrame.getMonoSamples());
 			return true;
@@ -36,9 +36,8 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -86,10 +85,9 @@ public class URLAudioSource extends AbstractFrameSource implements Runnable, IDi
 			return result == 0 ? o1.getMessage().getMessage()[1] - o2.getMessage().getMessage()[1] : result;
 		}
 	});
-	private final BlockingQueue<float[]> data = new LinkedBlockingQueue<>();
-	private final AtomicInteger          numPlays     = new AtomicInteger();
+	private final BlockingQueue<float[]> data     = new ArrayBlockingQueue<>(512);
+	private final AtomicInteger          numPlays = new AtomicInteger();
 	private       long                   samples;
-	private       Semaphore              bufSemaphore = new Semaphore(512);
 
 	public URLAudioSource(URL url) throws IOException {
 		this(url, Integer.MAX_VALUE, -128);
@@ -194,20 +192,23 @@ public class URLAudioSource extends AbstractFrameSource implements Runnable, IDi
 			frameSizeInBytes = frameSizeInSec > 0 
                     ? fmt.getChannels() * fmt.getSampleSizeInBits() / 8 * (int)(frameSizeInSec * fmt.getSampleRate())
                    		 : fmt.getChannels() * fmt.getSampleSizeInBits() / 8 * (int)-frameSizeInSec;
-			byte[] buffer = new byte[frameSizeInBytes];
+			final byte[]         buffer = new byte[frameSizeInBytes];
+			final AudioFramePool pool   = AudioFramePool.getDefault();
 
 			do {
 				try (AudioInputStream in = getStream(url)) {
 					for(;;) {
 						int read = in.read(buffer);
 						if(read < 0) break;								
-						data.add(AudioUtilities.pcmBytes2float(fmt, buffer, read));
-						bufSemaphore.acquire();
+						data.put(AudioUtilities.pcmBytes2float(fmt, buffer, read, pool.getBuffer(read / 2)));
 					}
 				}
 			} while(numPlays.decrementAndGet() > 0);
 		} catch(Throwable t) {
 			t.printStackTrace();
+		} finally {
+			// reader done, lets dispose() return
+			numPlays.set(-1);
 		}
 	}
 	
@@ -215,8 +216,7 @@ public class URLAudioSource extends AbstractFrameSource implements Runnable, IDi
 	protected void run(IRenderTarget<?> target) throws RenderCommandException {
 		try {
 			final float[] outData = data.take();
-			bufSemaphore.release();
-			AudioFrame frame = createAudioFrame(samples, outData);
+			AudioFrame frame = createPooledAudioFrame(samples, outData);
 			frame.setLast(data.isEmpty() && numPlays.get() <= 0);
 			((IAudioRenderTarget)target).setFrame(this, frame);
 			samples += outData.length;
@@ -228,10 +228,9 @@ public class URLAudioSource extends AbstractFrameSource implements Runnable, IDi
 	@Override
 	public void dispose() {
 		try {
-			numPlays.set(0);
+			numPlays.updateAndGet(n -> Math.min(n, 0));
 			while(numPlays.get() >= 0) {
-				if(data.poll(10, TimeUnit.MILLISECONDS) != null)
-					bufSemaphore.release();
+				AudioFramePool.getDefault().releaseBuffer(data.poll(10, TimeUnit.MILLISECONDS));
 			}
 		} catch(Throwable t) {
 			log.warning(t);
@@ -44,7 +44,7 @@ public class AudioGain extends AbstractRenderCommand<IAudioRenderTarget> {
 	@Override
 	protected void run(final IAudioRenderTarget target) throws RenderCommandException {
 		final float   gain    = getVal(GAIN);
-		final float[] samples = target.getFrame().samples;
+		final float[] samples = target.getFrame().getSamples();
 		for(int i = 0; i < samples.length; i++)
 			samples[i] *= gain;
 		
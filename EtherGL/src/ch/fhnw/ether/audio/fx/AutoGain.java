@@ -94,7 +94,7 @@ import ch.fhnw.ether.media.RenderCommandException;
 			 correction = (float)(gain / targetUpper);
 
 		 this.correction = correction;
-		 final float[] samples = frame.samples;
+		 final float[] samples = frame.getSamples();
 		 for (int i = 0; i < samples.length; i++)
 			 samples[i] *= correction;
 
@@ -53,7 +53,7 @@ import ch.fhnw.ether.media.RenderCommandException;
 		 final float              low       = getVal(LOW);
 		 final float              high      = getVal(HIGH);
 		 final int                nChannels = target.getNumChannels();
-		 final float[]            samples   = target.getFrame().samples;
+		 final float[]            samples   = target.getFrame().getSamples();
 
 		 if(low != lowOld || high != highOld) {
 			 bandPass = new ButterworthFilter[nChannels][strength];
@@ -44,13 +44,13 @@ import ch.fhnw.util.ClassUtilities;
 	 @Override
 	 protected void run(final IAudioRenderTarget target) throws RenderCommandException {
 		 final AudioFrame frame = target.getFrame();
-		 if(lastIn.length < frame.nChannels) {
-			 lastIn  = Arrays.copyOf(lastIn,  frame.nChannels);
-			 lastOut = Arrays.copyOf(lastOut, frame.nChannels);
+		 if(lastIn.length < frame.getNumChannels()) {
+			 lastIn  = Arrays.copyOf(lastIn,  frame.getNumChannels());
+			 lastOut = Arrays.copyOf(lastOut, frame.getNumChannels());
 		 }
-		 final float[] samples = frame.samples;
+		 final float[] samples = frame.getSamples();
 		 for(int i = 0; i < samples.length; i ++) {
-			 final int   c      = i % frame.nChannels;
+			 final int   c      = i % frame.getNumChannels();
 			 final float sample = samples[i];
 			 final float diff   = sample - lastIn[c];
 			 final float intg   = POLE * lastOut[c] + diff;
@@ -50,7 +50,7 @@ import ch.fhnw.ether.media.RenderCommandException;
 	 protected void run(final IAudioRenderTarget target) throws RenderCommandException {
 		 final float              freq      = getVal(FREQ);
 		 final int                nChannels = target.getNumChannels();
-		 final float[]            samples   = target.getFrame().samples;
+		 final float[]            samples   = target.getFrame().getSamples();
 
 		 if(freq != freqOld) {
 			 lowPass = new ButterworthFilter[nChannels][strength];
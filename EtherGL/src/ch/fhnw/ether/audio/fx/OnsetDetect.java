@@ -121,6 +121,7 @@ public class OnsetDetect extends AbstractRenderCommand<IAudioRenderTarget> {
 						processBand(band, decay, sens);
 					}
 				}
+				buffer.recycle(block);
 			}
 		} else {
 			OnsetDetect.this.bands.power(bandsa);
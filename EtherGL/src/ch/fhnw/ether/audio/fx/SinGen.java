@@ -55,11 +55,11 @@ public class SinGen extends AbstractRenderCommand<IAudioRenderTarget> {
 		final float      gain      = getVal(GAIN);
 		final float      f         = getVal(F);
 		final double     phi       = getVal(PHI);
-		final float[]    samples   = frame.samples;
-		final int        nChannels = frame.nChannels;
+		final float[]    samples   = frame.getSamples();
+		final int        nChannels = frame.getNumChannels();
 		final int        c         = channel % nChannels;
-		final float      sRate     = frame.sRate;
-		final long       sTime     = frame.sTime;
+		final float      sRate     = frame.getSampleRate();
+		final long       sTime     = frame.getSampleTime();
 		for(int i = 0; i < samples.length; i += nChannels)
 			samples[i+c] += gain * (float)Math.sin(phi + ((f * PI2 * ((sTime + i) / nChannels)) / sRate)); 
 		
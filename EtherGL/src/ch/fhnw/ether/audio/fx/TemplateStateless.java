@@ -54,8 +54,8 @@ public class TemplateStateless extends AbstractRenderCommand<IAudioRenderTarget>
 	protected void run(final IAudioRenderTarget target) throws RenderCommandException {
 		final float      param     = getVal(PARAM);                // Get the param value
 		final AudioFrame frame     = target.getFrame(); // Get audio frame to process
-		final float[]    samples   = frame.samples;                // Get the samples in the frame
-		final int        nChannels = frame.nChannels;              // Get the number of channels (1=Mono, 2=Stereo, ...)
+		final float[]    samples   = frame.getSamples();                // Get the samples in the frame
+		final int        nChannels = frame.getNumChannels();              // Get the number of channels (1=Mono, 2=Stereo, ...)
 		for(int i = 0; i < samples.length; i += nChannels)
 			for(int c = 0; c < nChannels; c++) {
 				// do some audio processing here
@@ -48,7 +48,7 @@ public class WhiteNoise extends AbstractRenderCommand<IAudioRenderTarget> {
 	@Override
 	protected void run(final IAudioRenderTarget target) throws RenderCommandException {
 		final double  gain    = getVal(GAIN);
-		final float[] samples = target.getFrame().samples;
+		final float[] samples = target.getFrame().getSamples();
 		
 		for(int i = 0 ; i < samples.length ; i++)
 			samples[i] += MathUtilities.clamp(((RND.nextFloat() * 2f) - 1f) * gain, -1, 1);
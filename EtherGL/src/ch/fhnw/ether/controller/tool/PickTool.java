@@ -29,12 +29,12 @@
 
 package ch.fhnw.ether.controller.tool;
 
-import java.util.Map;
+import java.util.List;
 
 import ch.fhnw.ether.controller.IController;
 import ch.fhnw.ether.controller.event.IPointerEvent;
+import ch.fhnw.ether.controller.tool.PickUtilities.Hit;
 import ch.fhnw.ether.controller.tool.PickUtilities.PickMode;
-import ch.fhnw.ether.scene.I3DObject;
 
 public class PickTool extends AbstractTool {
 	public PickTool(IController controller) {
@@ -45,10 +45,10 @@ public class PickTool extends AbstractTool {
 	public void pointerPressed(IPointerEvent e) {
 		int x = e.getX();
 		int y = e.getY();
-		Map<Float, I3DObject> pickables = PickUtilities.pickFromScene(PickMode.POINT, x, y, 0, 0, e.getView());
+		List<Hit> pickables = PickUtilities.pickFromScene(PickMode.POINT, x, y, 0, 0, e.getView());
 		if (pickables.isEmpty())
 			System.out.println("no pick");
 		else
-			System.out.println(pickables.values().iterator().next());
+			System.out.println(pickables.get(0).object);
 	}
 }
@@ -29,21 +29,39 @@
 
 package ch.fhnw.ether.controller.tool;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ch.fhnw.ether.scene.I3DObject;
+import ch.fhnw.ether.scene.IScene;
 import ch.fhnw.ether.scene.camera.IViewCameraState;
 import ch.fhnw.ether.scene.mesh.IMesh;
+import ch.fhnw.ether.scene.mesh.InstancedMesh;
 import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry.Primitive;
 import ch.fhnw.ether.view.IView;
 import ch.fhnw.ether.view.ProjectionUtilities;
+import ch.fhnw.util.UpdateRequest;
+import ch.fhnw.util.UpdateRequest.IUpdateListener;
 import ch.fhnw.util.math.Vec3;
 import ch.fhnw.util.math.geometry.BoundingBox;
+import ch.fhnw.util.math.geometry.BoundingVolumeHierarchy;
 import ch.fhnw.util.math.geometry.GeometryUtilities;
+import ch.fhnw.util.math.geometry.TriangleHierarchy;
 
 /**
- * Utilities for 3D object picking
+ * Utilities for 3D object picking. Triangle meshes are picked in world space
+ * by casting the pick ray (between near and far plane) against a triangle
+ * hierarchy per mesh, which is built lazily on the first pick and rebuilt
+ * after the mesh or its geometry requested an update. For scene picks, the
+ * triangle meshes are kept in a hierarchy over their bounds per scene. Lines
+ * and points are picked in screen space with a tolerance of a few pixels.
+ * All distances are window depths in [0, 1].
  */
 public final class PickUtilities {
 	public enum PickMode {
@@ -53,20 +71,77 @@ public final class PickUtilities {
 		// INTERSECT
 	}
 
+	/**
+	 * A picked object and the window depth of the pick.
+	 */
+	public static final class Hit {
+		public final I3DObject object;
+		public final float depth;
+
+		public Hit(I3DObject object, float depth) {
+			this.object = object;
+			this.depth = depth;
+		}
+
+		@Override
+		public String toString() {
+			return object + "@" + depth;
+		}
+	}
+
 	private static final float PICK_DISTANCE = 5;
 
-	public static Map<Float, I3DObject> pickFromScene(PickMode mode, int x, int y, int w, int h, IView view) {
+	private static final Map<IScene, SceneHierarchy> SCENES = new WeakHashMap<>();
+	private static final Map<IMesh, MeshHierarchy> MESHES = new WeakHashMap<>();
+
+	/**
+	 * Pick all objects of the view's scene. Returns all hits sorted by depth,
+	 * objects at equal depth are all included.
+	 */
+	public static List<Hit> pickFromScene(PickMode mode, int x, int y, int w, int h, IView view) {
 		IViewCameraState vcs = view.getController().getRenderManager().getViewCameraState(view);
-		final Map<Float, I3DObject> pickables = new TreeMap<>();
-		for (I3DObject object : view.getController().getScene().get3DObjects()) {
+		return pickFromScene(mode, x, y, w, h, vcs, view.getController().getScene());
+	}
+
+	/**
+	 * Pick all objects of the given scene. Returns all hits sorted by depth,
+	 * objects at equal depth are all included.
+	 */
+	public static List<Hit> pickFromScene(PickMode mode, int x, int y, int w, int h, IViewCameraState vcs, IScene scene) {
+		final List<Hit> hits = new ArrayList<>();
+		final List<I3DObject> others;
+		Vec3[] ray = getRay(vcs, x, y);
+		synchronized (SCENES) {
+			SceneHierarchy hierarchy = SCENES.get(scene);
+			if (hierarchy == null) {
+				hierarchy = new SceneHierarchy();
+				SCENES.put(scene, hierarchy);
+			}
+			hierarchy.validate(scene.get3DObjects());
+			if (ray != null) {
+				hierarchy.meshes.query(ray[0], ray[1], 0, 1, mesh -> {
+					float d = pickMesh(vcs, mesh, ray);
+					if (d < Float.POSITIVE_INFINITY)
+						hits.add(new Hit(mesh, d));
+				});
+			}
+			others = new ArrayList<>(hierarchy.others);
+		}
+		for (I3DObject object : others) {
 			float d = pickObject(mode, x, y, w, h, vcs, object);
 			if (d < Float.POSITIVE_INFINITY)
-				pickables.put(d, object);
+				hits.add(new Hit(object, d));
 		}
-		return pickables;
+		Collections.sort(hits, (a, b) -> Float.compare(a.depth, b.depth));
+		return hits;
 	}
-	
+
 	public static float pickObject(PickMode mode, int x, int y, int w, int h, IViewCameraState vcs, I3DObject object) {
+		if (isTriangleMesh(object)) {
+			Vec3[] ray = getRay(vcs, x, y);
+			return ray != null ? pickMesh(vcs, (IMesh) object, ray) : Float.POSITIVE_INFINITY;
+		}
+
 		BoundingBox b = object.getBounds();
 		
 		if (b == null)
@@ -118,6 +193,10 @@ public final class PickUtilities {
 		return Float.POSITIVE_INFINITY;
 	}
 
+	/**
+	 * Pick triangles by projecting them to screen space. Linear in the number
+	 * of triangles, see pickObject() for accelerated picking of meshes.
+	 */
 	public static float pickTriangles(PickMode mode, int x, int y, int w, int h, IViewCameraState vcs, float[] triangles) {
 		triangles = ProjectionUtilities.projectToScreen(vcs, triangles);
 
@@ -173,4 +252,145 @@ public final class PickUtilities {
 		}
 		return zMin;
 	}
+
+	/**
+	 * Returns the pick ray as origin on the near plane and direction to the
+	 * far plane, or null if the view camera state is degenerate.
+	 */
+	private static Vec3[] getRay(IViewCameraState vcs, int x, int y) {
+		Vec3 near = ProjectionUtilities.unprojectFromScreen(vcs, new Vec3(x, y, 0));
+		Vec3 far = ProjectionUtilities.unprojectFromScreen(vcs, new Vec3(x, y, 1));
+		if (near == null || far == null)
+			return null;
+		return new Vec3[] { near, far.subtract(near) };
+	}
+
+	private static float pickMesh(IViewCameraState vcs, IMesh mesh, Vec3[] ray) {
+		float t = getHierarchy(mesh).intersect(ray[0], ray[1], 1);
+		if (t == Float.POSITIVE_INFINITY)
+			return t;
+		Vec3 p = ProjectionUtilities.projectToScreen(vcs, ray[0].add(ray[1].scale(t)));
+		return p != null ? p.z : Float.POSITIVE_INFINITY;
+	}
+
+	private static boolean isTriangleMesh(I3DObject object) {
+		return object instanceof IMesh && ((IMesh) object).getGeometry().getType() == Primitive.TRIANGLES;
+	}
+
+	private static TriangleHierarchy getHierarchy(IMesh mesh) {
+		MeshHierarchy hierarchy;
+		synchronized (MESHES) {
+			hierarchy = MESHES.get(mesh);
+			if (hierarchy == null) {
+				hierarchy = new MeshHierarchy();
+				MESHES.put(mesh, hierarchy);
+				addListener(mesh, hierarchy);
+			}
+		}
+		return hierarchy.get(mesh);
+	}
+
+	private static void addListener(IMesh mesh, IUpdateListener listener) {
+		mesh.getUpdater().addListener(listener);
+		mesh.getGeometry().getUpdater().addListener(listener);
+		if (mesh instanceof InstancedMesh)
+			((InstancedMesh) mesh).getInstanceUpdater().addListener(listener);
+	}
+
+	private static void removeListener(IMesh mesh, IUpdateListener listener) {
+		mesh.getUpdater().removeListener(listener);
+		mesh.getGeometry().getUpdater().removeListener(listener);
+		if (mesh instanceof InstancedMesh)
+			((InstancedMesh) mesh).getInstanceUpdater().removeListener(listener);
+	}
+
+	/**
+	 * Lazily built world space triangle hierarchy of a mesh. Must not
+	 * reference the mesh, since it is the value of a weak map keyed by the
+	 * mesh.
+	 */
+	private static final class MeshHierarchy implements IUpdateListener {
+		private final AtomicInteger version = new AtomicInteger();
+		private TriangleHierarchy hierarchy;
+		private int builtVersion;
+
+		@Override
+		public void updateRequested(UpdateRequest request) {
+			version.incrementAndGet();
+		}
+
+		synchronized TriangleHierarchy get(IMesh mesh) {
+			int v = version.get();
+			if (hierarchy == null || builtVersion != v) {
+				hierarchy = new TriangleHierarchy(mesh.getTransformedPositionData());
+				builtVersion = v;
+			}
+			return hierarchy;
+		}
+	}
+
+	/**
+	 * Hierarchy over the world space bounds of the triangle meshes of a scene,
+	 * all other objects are kept in a list. Rebuilt when the scene's objects
+	 * change, refitted when meshes requested an update.
+	 */
+	private static final class SceneHierarchy {
+		final List<I3DObject> objects = new ArrayList<>();
+		final List<I3DObject> others = new ArrayList<>();
+		final List<Entry> entries = new ArrayList<>();
+		final BoundingVolumeHierarchy<IMesh> meshes = new BoundingVolumeHierarchy<>();
+		final AtomicBoolean dirty = new AtomicBoolean();
+
+		final class Entry implements IUpdateListener {
+			final IMesh mesh;
+			final int index;
+			final AtomicBoolean changed = new AtomicBoolean();
+
+			Entry(IMesh mesh, int index) {
+				this.mesh = mesh;
+				this.index = index;
+			}
+
+			@Override
+			public void updateRequested(UpdateRequest request) {
+				changed.set(true);
+				dirty.set(true);
+			}
+		}
+
+		void validate(List<I3DObject> current) {
+			if (!objects.equals(current)) {
+				rebuild(current);
+			} else if (dirty.getAndSet(false)) {
+				for (Entry entry : entries) {
+					if (entry.changed.getAndSet(false))
+						meshes.setBounds(entry.index, entry.mesh.getBounds());
+				}
+			}
+		}
+
+		private void rebuild(List<I3DObject> current) {
+			for (Entry entry : entries)
+				removeListener(entry.mesh, entry);
+			entries.clear();
+			objects.clear();
+			others.clear();
+			objects.addAll(current);
+
+			List<IMesh> list = new ArrayList<>();
+			for (I3DObject object : current) {
+				if (isTriangleMesh(object)) {
+					IMesh mesh = (IMesh) object;
+					Entry entry = new Entry(mesh, list.size());
+					addListener(mesh, entry);
+					entries.add(entry);
+					list.add(mesh);
+				} else {
+					others.add(object);
+				}
+			}
+			dirty.set(false);
+			meshes.build(list, IMesh::getBounds);
+		}
+	}
 }
@@ -0,0 +1,405 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.formats;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+import ch.fhnw.ether.scene.mesh.DefaultMesh;
+import ch.fhnw.ether.scene.mesh.IMesh;
+import ch.fhnw.ether.scene.mesh.IMesh.Flag;
+import ch.fhnw.ether.scene.mesh.IMesh.Queue;
+import ch.fhnw.ether.scene.mesh.geometry.DefaultGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry.GeometryAttribute;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry.IGeometryAttribute;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry.Primitive;
+import ch.fhnw.ether.scene.mesh.material.IMaterial;
+import ch.fhnw.ether.scene.mesh.material.ShadedMaterial;
+import ch.fhnw.ether.scene.mesh.material.Texture;
+import ch.fhnw.util.color.RGB;
+import ch.fhnw.util.math.Mat4;
+import ch.fhnw.util.math.Vec3;
+
+/**
+ * Binary cache of the meshes loaded from a model file, stored next to the
+ * model file. The cache holds the final attribute arrays, attribute layout
+ * and primitive type of each geometry as well as the parameters of shaded
+ * materials, and is read through a memory mapping. Textures are stored by
+ * path and loaded again when the cache is read.
+ * 
+ * A cache is valid if the size of the model file matches and either its
+ * modification time or the CRC32 of its content matches. Further files such
+ * as material libraries are checked by size and modification time.
+ * 
+ * Only meshes of type DefaultMesh with DefaultGeometry and ShadedMaterial
+ * can be cached.
+ */
+public final class MeshCache {
+	public static final String EXTENSION = ".ethermesh";
+
+	private static final int MAGIC   = 0x4d485445; // "ETHM" little endian
+	private static final int VERSION = 2;
+
+	private static final IGeometryAttribute[] BUILTIN_ATTRIBUTES = {
+			IGeometry.POSITION_ARRAY, IGeometry.COLOR_ARRAY, IGeometry.COLOR_MAP_ARRAY,
+			IGeometry.NORMAL_ARRAY, IGeometry.LINE_WIDTH_ARRAY, IGeometry.POINT_SIZE_ARRAY,
+	};
+
+	private MeshCache() {
+	}
+
+	/**
+	 * Returns the cache file of the given model file.
+	 */
+	public static File getCacheFile(File model) {
+		return new File(model.getPath() + EXTENSION);
+	}
+
+	/**
+	 * Reads cached meshes of the given model file.
+	 * 
+	 * @param model
+	 *            the model file the cache belongs to
+	 * @param textures
+	 *            loads textures by the path they were written with
+	 * @return the cached meshes, or null if there is no valid cache
+	 * @throws IOException
+	 *             if the cache cannot be read
+	 */
+	public static List<IMesh> read(File model, Function<String, Texture> textures) throws IOException {
+		final File cache = getCacheFile(model);
+		if (!cache.isFile())
+			return null;
+		try (FileChannel channel = FileChannel.open(cache.toPath(), StandardOpenOption.READ)) {
+			final MappedByteBuffer buf = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			buf.order(ByteOrder.LITTLE_ENDIAN);
+			if (buf.getInt() != MAGIC || buf.getInt() != VERSION)
+				return null;
+
+			// key
+			final long   size     = buf.getLong();
+			final long   modified = buf.getLong();
+			final long   crc      = buf.getLong();
+			if (model.length() != size)
+				return null;
+			if (model.lastModified() != modified && crc(model) != crc)
+				return null;
+			boolean valid = true;
+			for (int i = buf.getInt(); --i >= 0;) {
+				final File dependency = new File(getString(buf));
+				valid &= dependency.length() == buf.getLong();
+				valid &= dependency.lastModified() == buf.getLong();
+			}
+			if (!valid)
+				return null;
+
+			// materials
+			final List<IMaterial> materials = new ArrayList<>();
+			for (int i = buf.getInt(); --i >= 0;) {
+				final String  name      = getNullableString(buf);
+				final RGB     emission  = getRGB(buf);
+				final RGB     ambient   = getRGB(buf);
+				final RGB     diffuse   = getRGB(buf);
+				final RGB     specular  = getRGB(buf);
+				final float   shininess = buf.getFloat();
+				final float   strength  = buf.getFloat();
+				final float   alpha     = buf.getFloat();
+				final String  path      = getString(buf);
+				final Texture texture   = path.isEmpty() ? null : textures.apply(path);
+				final IMaterial material = new ShadedMaterial(emission, ambient, diffuse, specular, shininess, strength, alpha, texture);
+				material.setName(name);
+				materials.add(material);
+			}
+
+			// meshes
+			final List<IMesh> meshes = new ArrayList<>();
+			for (int i = buf.getInt(); --i >= 0;) {
+				final String         name     = getNullableString(buf);
+				final IMaterial      material = materials.get(buf.getInt());
+				final Queue          queue    = Queue.values()[buf.getInt()];
+				final EnumSet<Flag>  flags    = EnumSet.noneOf(Flag.class);
+				final int            mask     = buf.getInt();
+				for (Flag flag : Flag.values())
+					if ((mask & (1 << flag.ordinal())) != 0)
+						flags.add(flag);
+				final Vec3           position = new Vec3(buf.getFloat(), buf.getFloat(), buf.getFloat());
+				final float[]        m        = new float[16];
+				for (int j = 0; j < m.length; j++)
+					m[j] = buf.getFloat();
+				final Primitive      type     = Primitive.values()[buf.getInt()];
+				final int            n        = buf.getInt();
+				final IGeometryAttribute[] attributes = new IGeometryAttribute[n];
+				final float[][]      data     = new float[n][];
+				for (int j = 0; j < n; j++) {
+					attributes[j] = getAttribute(getString(buf), buf.getInt());
+					data[j]       = new float[buf.getInt()];
+					align(buf);
+					buf.asFloatBuffer().get(data[j]);
+					buf.position(buf.position() + data[j].length * 4);
+				}
+				final DefaultMesh mesh = new DefaultMesh(material, new DefaultGeometry(type, attributes, data), queue, flags);
+				mesh.setName(name);
+				mesh.setPosition(position);
+				mesh.setTransform(new Mat4(m));
+				meshes.add(mesh);
+			}
+			return meshes;
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException | IllegalArgumentException e) {
+			throw new IOException("corrupt mesh cache: " + cache, e);
+		}
+	}
+
+	/**
+	 * Writes the cache of the given model file. The cache is written to a
+	 * temporary file first and then moved in place, so concurrent readers
+	 * never see a partial cache.
+	 * 
+	 * @param model
+	 *            the model file the cache belongs to
+	 * @param dependencies
+	 *            further files the meshes were loaded from
+	 * @param meshes
+	 *            the meshes to cache
+	 * @param textures
+	 *            returns the path of a texture, used to load it again
+	 * @throws IOException
+	 *             if the cache cannot be written or the meshes cannot be
+	 *             cached
+	 */
+	public static void write(File model, List<File> dependencies, List<IMesh> meshes, Function<Texture, String> textures) throws IOException {
+		final Map<IMaterial, Integer> materials = new IdentityHashMap<>();
+		final List<ShadedMaterial>    shaded    = new ArrayList<>();
+		for (IMesh mesh : meshes) {
+			if (!(mesh instanceof DefaultMesh) || !(mesh.getGeometry() instanceof DefaultGeometry))
+				throw new IOException("cannot cache mesh: " + mesh.getName());
+			if (!(mesh.getMaterial() instanceof ShadedMaterial))
+				throw new IOException("cannot cache material: " + mesh.getMaterial());
+			if (!materials.containsKey(mesh.getMaterial())) {
+				materials.put(mesh.getMaterial(), shaded.size());
+				shaded.add((ShadedMaterial) mesh.getMaterial());
+			}
+		}
+
+		final File cache = getCacheFile(model);
+		final File tmp   = File.createTempFile(cache.getName(), ".tmp", cache.getAbsoluteFile().getParentFile());
+		try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			final Writer out = new Writer(channel);
+
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putLong(model.length());
+			out.putLong(model.lastModified());
+			out.putLong(crc(model));
+			out.putInt(dependencies.size());
+			for (File dependency : dependencies) {
+				out.putString(dependency.getPath());
+				out.putLong(dependency.length());
+				out.putLong(dependency.lastModified());
+			}
+
+			out.putInt(shaded.size());
+			for (ShadedMaterial material : shaded) {
+				out.putNullableString(material.getName());
+				out.putRGB(material.getEmission());
+				out.putRGB(material.getAmbient());
+				out.putRGB(material.getDiffuse());
+				out.putRGB(material.getSpecular());
+				out.putFloat(material.getShininess());
+				out.putFloat(material.getStrength());
+				out.putFloat(material.getAlpha());
+				final String path = material.getColorMap() == null ? null : textures.apply(material.getColorMap());
+				out.putString(path == null ? "" : path);
+			}
+
+			out.putInt(meshes.size());
+			for (IMesh mesh : meshes) {
+				out.putNullableString(mesh.getName());
+				out.putInt(materials.get(mesh.getMaterial()));
+				out.putInt(mesh.getQueue().ordinal());
+				int mask = 0;
+				for (Flag flag : mesh.getFlags())
+					mask |= 1 << flag.ordinal();
+				out.putInt(mask);
+				out.putFloat(mesh.getPosition().x);
+				out.putFloat(mesh.getPosition().y);
+				out.putFloat(mesh.getPosition().z);
+				for (float f : mesh.getTransform().toArray())
+					out.putFloat(f);
+				final IGeometry            geometry   = mesh.getGeometry();
+				final IGeometryAttribute[] attributes = geometry.getAttributes();
+				final float[][]            data       = geometry.getData();
+				out.putInt(geometry.getType().ordinal());
+				out.putInt(attributes.length);
+				for (int i = 0; i < attributes.length; i++) {
+					out.putString(attributes[i].id());
+					out.putInt(attributes[i].getNumComponents());
+					out.putInt(data[i].length);
+					out.putFloats(data[i]);
+				}
+			}
+			out.flush();
+		} catch (IOException e) {
+			tmp.delete();
+			throw e;
+		}
+		Files.move(tmp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static long crc(File file) throws IOException {
+		final CRC32 crc = new CRC32();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final long size = channel.size();
+			for (long pos = 0; pos < size; pos += Integer.MAX_VALUE)
+				crc.update(channel.map(MapMode.READ_ONLY, pos, Math.min(Integer.MAX_VALUE, size - pos)));
+		}
+		return crc.getValue();
+	}
+
+	private static IGeometryAttribute getAttribute(String id, int numComponents) {
+		for (IGeometryAttribute attribute : BUILTIN_ATTRIBUTES)
+			if (attribute.id().equals(id) && attribute.getNumComponents() == numComponents)
+				return attribute;
+		return new GeometryAttribute(id, numComponents);
+	}
+
+	private static String getString(ByteBuffer buf) {
+		final byte[] bytes = new byte[buf.getInt()];
+		buf.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	// names are optional, a presence flag precedes them
+	private static String getNullableString(ByteBuffer buf) {
+		return buf.getInt() == 0 ? null : getString(buf);
+	}
+
+	private static RGB getRGB(ByteBuffer buf) {
+		return new RGB(buf.getFloat(), buf.getFloat(), buf.getFloat());
+	}
+
+	// float arrays start at multiples of 4 bytes
+	private static void align(ByteBuffer buf) {
+		buf.position((buf.position() + 3) & ~3);
+	}
+
+	/**
+	 * Little endian output through a direct buffer, keeping track of the file
+	 * position for alignment.
+	 */
+	private static final class Writer {
+		private final FileChannel channel;
+		private final ByteBuffer  buf = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+		private long              position;
+
+		Writer(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void putInt(int v) throws IOException {
+			ensure(4).putInt(v);
+		}
+
+		void putLong(long v) throws IOException {
+			ensure(8).putLong(v);
+		}
+
+		void putFloat(float v) throws IOException {
+			ensure(4).putFloat(v);
+		}
+
+		void putRGB(RGB v) throws IOException {
+			ensure(12).putFloat(v.r).putFloat(v.g).putFloat(v.b);
+		}
+
+		void putString(String v) throws IOException {
+			final byte[] bytes = (v == null ? "" : v).getBytes(StandardCharsets.UTF_8);
+			putInt(bytes.length);
+			for (int off = 0; off < bytes.length;) {
+				final int n = Math.min(bytes.length - off, ensure(1).remaining());
+				buf.put(bytes, off, n);
+				off += n;
+			}
+		}
+
+		void putNullableString(String v) throws IOException {
+			putInt(v == null ? 0 : 1);
+			if (v != null)
+				putString(v);
+		}
+
+		void putFloats(float[] v) throws IOException {
+			final long aligned = (position() + 3) & ~3;
+			while (position() < aligned)
+				ensure(1).put((byte)0);
+			for (int off = 0; off < v.length;) {
+				final int n = Math.min(v.length - off, ensure(4).remaining() / 4);
+				buf.asFloatBuffer().put(v, off, n);
+				buf.position(buf.position() + n * 4);
+				off += n;
+			}
+		}
+
+		void flush() throws IOException {
+			buf.flip();
+			while (buf.hasRemaining())
+				position += channel.write(buf);
+			buf.clear();
+		}
+
+		private long position() {
+			return position + buf.position();
+		}
+
+		private ByteBuffer ensure(int bytes) throws IOException {
+			if (buf.remaining() < bytes)
+				flush();
+			return buf;
+		}
+	}
+}
@@ -41,6 +41,7 @@ final class Material {
 	private float  shininess;
 	private Frame  texture;
 	private String textureName;
+	private String texturePath;
 
 	public Material(String name) {
 		this.name = name;
@@ -101,4 +102,12 @@ final class Material {
 	public void setTextureName(String textureName) {
 		this.textureName = textureName;
 	}
+
+	public String getTexturePath() {
+		return texturePath;
+	}
+
+	public void setTexturePath(String texturePath) {
+		this.texturePath = texturePath;
+	}
 }
@@ -53,8 +53,10 @@ public final class MtlFileParser extends LineParser {
 			// Could not find the file in the jar.
 			try {
 				File file = new File(pathToMTL);
-				if (file.exists())
+				if (file.exists()) {
 					fileInput = new FileInputStream(file);
+					object.addMaterialLibrary(file);
+				}
 			} catch (Exception e) {
 				throw new RuntimeException("Error parsing: '" + pathToMTL + "'");
 			}
@@ -34,6 +34,7 @@ import ch.fhnw.ether.image.Frame;
 final class MtlKdMapParser extends LineParser {
 	private Frame texture;
 	private String textureName;
+	private String texturePath;
 
 	public MtlKdMapParser() {
 	}
@@ -44,6 +45,7 @@ final class MtlKdMapParser extends LineParser {
 		textureName = textureFileName;
 		String pathToTextureBinary = object.getContextfolder() + textureFileName;
 		texture = TextureLoader.loadTexture(pathToTextureBinary);
+		texturePath = pathToTextureBinary;
 	}
 
 	@Override
@@ -52,6 +54,7 @@ final class MtlKdMapParser extends LineParser {
 			Material currentMaterial = object.getCurrentMaterial();
 			currentMaterial.setTexture(texture);
 			currentMaterial.setTextureName(textureName);
+			currentMaterial.setTexturePath(texturePath);
 		}
 	}
 }
@@ -0,0 +1,566 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.formats.obj;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+import ch.fhnw.util.FloatList;
+import ch.fhnw.util.IntList;
+import ch.fhnw.util.TextUtilities;
+
+/**
+ * Parses OBJ data directly from bytes into primitive lists, without creating
+ * strings or per-vertex objects. Follows the semantics of the line parsers
+ * used by WavefrontObject; mtllib statements are delegated to MtlFileParser.
+ *
+ * Large files can be parsed in chunks split at line boundaries. A first
+ * parallel pass counts vertices, normals and texture coordinates per chunk,
+ * so that each chunk resolves relative indices against global counts in the
+ * second pass. Material libraries are read in between, in file order. Groups
+ * continuing across chunk boundaries are merged afterwards.
+ */
+final class ObjByteParser {
+	static final int T_BIT     = 1 << 30;
+	static final int N_BIT     = 1 << 29;
+	static final int SIZE_MASK = N_BIT - 1;
+
+	private static final double[] POW10 = new double[23];
+	static {
+		POW10[0] = 1;
+		for(int i = 1; i < POW10.length; i++)
+			POW10[i] = POW10[i - 1] * 10;
+	}
+
+	/**
+	 * Faces of a group. Each face corner is stored as vertex, texture
+	 * coordinate and normal index (zero based). Per face, the number of
+	 * corners is stored along with T_BIT / N_BIT if the face has texture
+	 * coordinates / normals.
+	 */
+	static final class ObjGroup {
+		final String   name;
+		Material       material;
+		boolean        materialSet;
+		// faces of the group that was current at the start of a chunk
+		boolean        continued;
+		final IntList  corners = new IntList();
+		final IntList  faces   = new IntList();
+
+		ObjGroup(String name) {
+			this.name = name;
+		}
+	}
+
+	private static final int WINDOW       = 1 << 16;
+	private static final int EXACT_DIGITS = 15;
+	private static final int MAX_DIGITS   = 18;
+
+	private final WavefrontObject object;
+	private final ByteBuffer      buf;
+	private       byte[]          data      = new byte[WINDOW];
+	private final FloatList       vertices  = new FloatList();
+	private final FloatList       normals   = new FloatList();
+	private final FloatList       texCoords = new FloatList();
+	private final List<ObjGroup>  groups    = new ArrayList<>();
+	private final int[]           fields    = new int[3];
+	private       ObjGroup        current;
+	private       int             pos;
+	private       int             end;
+	// chunk state
+	private final boolean         chunk;
+	private       boolean         scan;
+	private       int             vBase;
+	private       int             tBase;
+	private       int             nBase;
+	private       int             vLines;
+	private       int             tLines;
+	private       int             nLines;
+	private final List<String>    mtllibs   = new ArrayList<>();
+
+	/**
+	 * @param object receives the materials of mtllib statements
+	 */
+	ObjByteParser(WavefrontObject object, ByteBuffer buf) {
+		this(object, buf, false);
+	}
+
+	private ObjByteParser(WavefrontObject object, ByteBuffer buf, boolean chunk) {
+		this.object = object;
+		this.buf    = buf;
+		this.chunk  = chunk;
+	}
+
+	/**
+	 * Parses the whole buffer, split into the given number of chunks which
+	 * are parsed in parallel. Returns a parser holding the merged results.
+	 */
+	static ObjByteParser parse(WavefrontObject object, ByteBuffer buf, int nChunks) {
+		final int length = buf.limit();
+		if(nChunks <= 1) {
+			ObjByteParser result = new ObjByteParser(object, buf);
+			result.parse(0, length);
+			return result;
+		}
+
+		final int[] bounds = new int[nChunks + 1];
+		bounds[nChunks] = length;
+		for(int i = 1; i < nChunks; i++) {
+			int b = Math.max(bounds[i - 1], (int)((long)length * i / nChunks));
+			while(b < length && buf.get(b) != '\n')
+				b++;
+			bounds[i] = Math.min(b + 1, length);
+		}
+
+		final ObjByteParser[] chunks = new ObjByteParser[nChunks];
+		for(int i = 0; i < nChunks; i++) {
+			chunks[i]      = new ObjByteParser(object, buf, true);
+			chunks[i].scan = true;
+		}
+		forEach(nChunks, i -> chunks[i].parse(bounds[i], bounds[i + 1]));
+
+		int vCount = 0;
+		int tCount = 0;
+		int nCount = 0;
+		for(ObjByteParser c : chunks) {
+			c.scan  = false;
+			c.vBase = vCount;
+			c.tBase = tCount;
+			c.nBase = nCount;
+			vCount += c.vLines;
+			tCount += c.tLines;
+			nCount += c.nLines;
+			for(String line : c.mtllibs) {
+				LineParser parser = new MtlFileParser(new MtlLineParserFactory(object));
+				parser.setWords(TextUtilities.tokens(line));
+				parser.parse(object);
+			}
+		}
+		forEach(nChunks, i -> chunks[i].parse(bounds[i], bounds[i + 1]));
+
+		final ObjByteParser result = new ObjByteParser(object, buf);
+		result.vertices.ensureCapacity(vCount * 3);
+		result.texCoords.ensureCapacity(tCount * 2);
+		result.normals.ensureCapacity(nCount * 3);
+		ObjGroup current = null;
+		for(ObjByteParser c : chunks) {
+			result.vertices.addAll(c.vertices);
+			result.texCoords.addAll(c.texCoords);
+			result.normals.addAll(c.normals);
+			for(ObjGroup group : c.groups) {
+				if(group.continued && current != null) {
+					current.corners.addAll(group.corners);
+					current.faces.addAll(group.faces);
+					if(group.materialSet) {
+						current.material    = group.material;
+						current.materialSet = true;
+					}
+				} else {
+					group.continued = false;
+					result.groups.add(group);
+					current = group;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Runs task for 0 to n-1 on the common fork/join pool.
+	 */
+	static void forEach(int n, IntConsumer task) {
+		if(n == 1)
+			task.accept(0);
+		else if(n > 1)
+			ForkJoinPool.commonPool().invoke(new ForEach(task, 0, n));
+	}
+
+	private static final class ForEach extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final IntConsumer task;
+		private final int         from;
+		private final int         to;
+
+		ForEach(IntConsumer task, int from, int to) {
+			this.task = task;
+			this.from = from;
+			this.to   = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > 1) {
+				final int mid = (from + to) >>> 1;
+				invokeAll(new ForEach(task, from, mid), new ForEach(task, mid, to));
+			} else
+				task.accept(from);
+		}
+	}
+
+	FloatList getVertices() {
+		return vertices;
+	}
+
+	FloatList getNormals() {
+		return normals;
+	}
+
+	FloatList getTexCoords() {
+		return texCoords;
+	}
+
+	List<ObjGroup> getGroups() {
+		return groups;
+	}
+
+	/**
+	 * Parses the lines in the given byte range of the buffer. Bytes are copied
+	 * in bulk into a window, which is parsed line by line.
+	 */
+	void parse(int from, int to) {
+		final ByteBuffer src = buf.duplicate();
+		src.limit(to).position(from);
+		int filled = 0;
+		for(;;) {
+			if(filled == data.length)
+				data = Arrays.copyOf(data, data.length * 2);
+			final int n = Math.min(src.remaining(), data.length - filled);
+			src.get(data, filled, n);
+			filled += n;
+			final boolean eof = !(src.hasRemaining());
+
+			int start = 0;
+			while(start < filled) {
+				int eol = start;
+				while(eol < filled && data[eol] != '\n' && data[eol] != '\r')
+					eol++;
+				if(eol == filled && !(eof))
+					break;
+				parseLine(start, eol);
+				start = eol + 1;
+			}
+			if(eof)
+				break;
+			// move incomplete line to the front of the window
+			filled -= start;
+			System.arraycopy(data, start, data, 0, filled);
+		}
+	}
+
+	private void parseLine(int start, int eol) {
+		pos = start;
+		end = eol;
+		skipWhitespace();
+		if(pos == end) return;
+		final int  kw  = pos;
+		skipToken();
+		final int  len = pos - kw;
+		final byte c0  = data[kw];
+		if(scan) {
+			if(c0 == 'v' && len == 1)
+				vLines++;
+			else if(c0 == 'v' && len == 2 && data[kw + 1] == 't')
+				tLines++;
+			else if(c0 == 'v' && len == 2 && data[kw + 1] == 'n')
+				nLines++;
+			else if(isKeyword(kw, len, "mtllib"))
+				mtllibs.add(string(start, eol));
+			return;
+		}
+		if(c0 == 'v') {
+			if(len == 1)
+				vertices.addAll(nextFloat(), nextFloat(), nextFloat());
+			else if(len == 2 && data[kw + 1] == 'n')
+				normals.addAll(nextFloat(), nextFloat(), nextFloat());
+			else if(len == 2 && data[kw + 1] == 't')
+				parseTexCoord();
+		} else if(c0 == 'f' && len == 1) {
+			parseFace();
+		} else if((c0 == 'g' || c0 == 'o') && len == 1) {
+			skipWhitespace();
+			setCurrentGroup(new ObjGroup(pos == end ? "default" : nextString()));
+		} else if(isKeyword(kw, len, "usemtl")) {
+			skipWhitespace();
+			final ObjGroup group = getCurrentGroup();
+			group.material    = object.getMaterials().get(nextString());
+			group.materialSet = true;
+		} else if(!(chunk) && isKeyword(kw, len, "mtllib")) {
+			LineParser parser = new MtlFileParser(new MtlLineParserFactory(object));
+			parser.setWords(TextUtilities.tokens(string(start, eol)));
+			parser.parse(object);
+		}
+	}
+
+	private void parseTexCoord() {
+		float u = 0;
+		float v = 0;
+		// OBJ origin is at upper left, OpenGL origin is at lower left
+		skipWhitespace();
+		if(pos < end) {
+			u = nextFloat();
+			skipWhitespace();
+			if(pos < end)
+				v = 1 - nextFloat();
+		}
+		texCoords.addAll(u, v);
+	}
+
+	private void parseFace() {
+		final int vCount = vBase + vertices.size() / 3;
+		final int tCount = tBase + texCoords.size() / 2;
+		final int nCount = nBase + normals.size() / 3;
+		final IntList corners = getCurrentGroup().corners;
+		int size  = 0;
+		int flags = 0;
+		for(;;) {
+			skipWhitespace();
+			if(pos == end) break;
+			final int nFields = nextIndices();
+			int v = fields[0] - 1;
+			if(v < 0) v += vCount + 1;
+			int t = 0;
+			int n = 0;
+			if(nFields > 1 && fields[1] != Integer.MIN_VALUE) {
+				// some exporters write '1' instead of leaving the texture index blank
+				if(fields[1] <= tCount) {
+					t = fields[1] - 1;
+					if(t < 0) t += tCount + 1;
+					flags |= T_BIT;
+				}
+			}
+			if(nFields > 2) {
+				if(fields[2] == Integer.MIN_VALUE) throw new NumberFormatException("missing normal index");
+				n = fields[2] - 1;
+				if(n < 0) n += nCount + 1;
+				flags |= N_BIT;
+			}
+			corners.add(v);
+			corners.add(t);
+			corners.add(n);
+			size++;
+		}
+		getCurrentGroup().faces.add(size | flags);
+	}
+
+	private ObjGroup getCurrentGroup() {
+		if(current == null) {
+			setCurrentGroup(new ObjGroup("default"));
+			current.continued = chunk;
+		}
+		return current;
+	}
+
+	private void setCurrentGroup(ObjGroup group) {
+		groups.add(group);
+		current = group;
+	}
+
+	private boolean isKeyword(int kw, int len, String keyword) {
+		if(len != keyword.length()) return false;
+		for(int i = 0; i < len; i++)
+			if(data[kw + i] != keyword.charAt(i))
+				return false;
+		return true;
+	}
+
+	private void skipWhitespace() {
+		while(pos < end && isWhitespace(data[pos]))
+			pos++;
+	}
+
+	private void skipToken() {
+		while(pos < end && !isWhitespace(data[pos]))
+			pos++;
+	}
+
+	private static boolean isWhitespace(byte c) {
+		return c <= ' ' && c >= 0;
+	}
+
+	private String nextString() {
+		final int start = pos;
+		skipToken();
+		return string(start, pos);
+	}
+
+	private String string(int start, int end) {
+		return new String(data, start, end - start);
+	}
+
+	/**
+	 * Parses up to three slash separated indices into fields and returns the
+	 * number of fields. Empty fields are set to Integer.MIN_VALUE, trailing
+	 * empty fields are not counted (as with String.split()).
+	 */
+	private int nextIndices() {
+		int count = 0;
+		for(;;) {
+			final int start = pos;
+			while(pos < end && data[pos] != '/' && !isWhitespace(data[pos]))
+				pos++;
+			if(count < fields.length)
+				fields[count] = start == pos ? Integer.MIN_VALUE : parseInt(start, pos);
+			count++;
+			if(pos < end && data[pos] == '/') {
+				pos++;
+				if(pos == end || isWhitespace(data[pos]))
+					break;
+			} else
+				break;
+		}
+		if(fields[0] == Integer.MIN_VALUE) throw new NumberFormatException("missing vertex index");
+		count = Math.min(count, fields.length);
+		while(count > 1 && fields[count - 1] == Integer.MIN_VALUE)
+			count--;
+		return count;
+	}
+
+	private int parseInt(int start, int end) {
+		int     i   = start;
+		boolean neg = false;
+		if(data[i] == '-') {
+			neg = true;
+			i++;
+		} else if(data[i] == '+')
+			i++;
+		if(i == end) throw new NumberFormatException(string(start, end));
+		int result = 0;
+		for(; i < end; i++) {
+			final int d = data[i] - '0';
+			if(d < 0 || d > 9) throw new NumberFormatException(string(start, end));
+			result = result * 10 + d;
+		}
+		return neg ? -result : result;
+	}
+
+	private float nextFloat() {
+		skipWhitespace();
+		if(pos == end) throw new NumberFormatException("missing value");
+		final int start = pos;
+		skipToken();
+		return parseFloat(start, pos);
+	}
+
+	/**
+	 * Parses a float with the same result as Float.parseFloat(). The first 18
+	 * significant digits are scaled by an exact power of ten in double
+	 * precision and narrowed to float. With up to 15 digits the double is
+	 * correctly rounded and narrowing is exact unless it is a tie between two
+	 * floats; with more digits the double is off by at most a few units in the
+	 * last place, so it must not be close to a tie. Anything else goes through
+	 * Float.parseFloat().
+	 */
+	float parseFloat(int start, int end) {
+		int     i   = start;
+		boolean neg = false;
+		if(data[i] == '-') {
+			neg = true;
+			i++;
+		} else if(data[i] == '+')
+			i++;
+
+		long    mantissa = 0;
+		int     digits   = 0;
+		int     exp      = 0;
+		boolean any      = false;
+		for(; i < end; i++) {
+			final int d = data[i] - '0';
+			if(d < 0 || d > 9) break;
+			any = true;
+			if(digits > 0 || d != 0) {
+				if(digits < MAX_DIGITS)
+					mantissa = mantissa * 10 + d;
+				else
+					exp++;
+				digits++;
+			}
+		}
+		if(i < end && data[i] == '.') {
+			for(i++; i < end; i++) {
+				final int d = data[i] - '0';
+				if(d < 0 || d > 9) break;
+				any = true;
+				if(digits > 0 || d != 0) {
+					if(digits < MAX_DIGITS) {
+						mantissa = mantissa * 10 + d;
+						exp--;
+					}
+					digits++;
+				} else
+					exp--;
+			}
+		}
+		if(!(any)) return Float.parseFloat(string(start, end));
+		if(i < end && (data[i] == 'e' || data[i] == 'E')) {
+			i++;
+			boolean eneg = false;
+			if(i < end && data[i] == '-') {
+				eneg = true;
+				i++;
+			} else if(i < end && data[i] == '+')
+				i++;
+			int     e    = 0;
+			boolean anyE = false;
+			for(; i < end; i++) {
+				final int d = data[i] - '0';
+				if(d < 0 || d > 9) break;
+				anyE = true;
+				if(e < 1000) e = e * 10 + d;
+			}
+			if(!(anyE)) return Float.parseFloat(string(start, end));
+			exp += eneg ? -e : e;
+		}
+		if(i != end) return Float.parseFloat(string(start, end));
+
+		if(mantissa == 0) return neg ? -0f : 0f;
+		double result;
+		if(exp == 0)
+			result = mantissa;
+		else if(exp > 0 && exp < POW10.length)
+			result = mantissa * POW10[exp];
+		else if(exp < 0 && -exp < POW10.length)
+			result = mantissa / POW10[-exp];
+		else
+			return Float.parseFloat(string(start, end));
+
+		// distance of the double from the closest tie between two floats, in units in the last place
+		final long tie = Math.abs((Double.doubleToRawLongBits(result) & 0x1FFFFFFFL) - 0x10000000L);
+		if(tie <= (digits > EXACT_DIGITS ? 8 : 0) || result < Float.MIN_NORMAL || result > Float.MAX_VALUE)
+			return Float.parseFloat(string(start, end));
+		return neg ? -(float)result : (float)result;
+	}
+}
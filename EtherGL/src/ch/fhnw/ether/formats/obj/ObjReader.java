@@ -29,17 +29,28 @@
 
 package ch.fhnw.ether.formats.obj;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
 import ch.fhnw.ether.formats.AbstractModelReader;
+import ch.fhnw.ether.formats.MeshCache;
+import ch.fhnw.ether.formats.obj.ObjByteParser.ObjGroup;
+import ch.fhnw.ether.image.Frame;
 import ch.fhnw.ether.scene.mesh.DefaultMesh;
 import ch.fhnw.ether.scene.mesh.IMesh;
 import ch.fhnw.ether.scene.mesh.geometry.DefaultGeometry;
@@ -47,22 +58,73 @@ import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
 import ch.fhnw.ether.scene.mesh.geometry.IGeometry.Primitive;
 import ch.fhnw.ether.scene.mesh.material.IMaterial;
 import ch.fhnw.ether.scene.mesh.material.ShadedMaterial;
+import ch.fhnw.ether.scene.mesh.material.Texture;
+import ch.fhnw.util.FloatList;
 import ch.fhnw.util.IntList;
+import ch.fhnw.util.Log;
 import ch.fhnw.util.color.RGB;
 import ch.fhnw.util.math.Vec2;
 import ch.fhnw.util.math.Vec3;
 import ch.fhnw.util.math.geometry.GeometryUtilities;
 
 public final class ObjReader extends AbstractModelReader {
-	private final List<IMesh> meshes = new ArrayList<>();
+	private static final Log log = Log.create();
+
+	public enum Mode {
+		/** Line by line through WavefrontObject and its line parsers. */
+		LINES,
+		/** Byte level parser over a memory mapped file, no per vertex objects. */
+		BYTES,
+		/** Byte level parser, large files are split into chunks parsed and assembled in parallel. */
+		PARALLEL,
+		/**
+		 * Meshes are read from a binary cache next to the file if valid,
+		 * otherwise parsed in parallel and written to the cache.
+		 */
+		CACHED,
+	}
+
+	// minimum number of bytes per chunk in parallel mode
+	private static final int MIN_CHUNK   = 1 << 20;
+	// number of faces assembled per task
+	private static final int RANGE_FACES = 1 << 16;
+
+	private final List<IMesh>              meshes    = new ArrayList<>();
+	private final Map<Material, IMaterial> materials = new IdentityHashMap<>();
 
 	public ObjReader(File file) throws IOException {
 		this(file.toURI().toURL());
 	}
-	
+
+	public ObjReader(File file, Mode mode) throws IOException {
+		this(file.toURI().toURL(), mode);
+	}
+
 	public ObjReader(URL resource) throws IOException {
+		this(resource, Mode.PARALLEL);
+	}
+
+	public ObjReader(URL resource, Mode mode) throws IOException {
 		super(resource);
-		decode(resource.getFile(), resource.openStream());
+		switch(mode) {
+		case LINES:
+			decode(resource.getFile(), resource.openStream());
+			break;
+		case BYTES:
+			decode(resource.getFile(), read(resource), false);
+			break;
+		case PARALLEL:
+			decode(resource.getFile(), read(resource), true);
+			break;
+		case CACHED:
+			File file = toFile(resource);
+			if (file == null || !readCache(file)) {
+				WavefrontObject object = decode(resource.getFile(), read(resource), true);
+				if (file != null)
+					writeCache(file, object);
+			}
+			break;
+		}
 	}
 	
 	@Override
@@ -76,8 +138,6 @@ public final class ObjReader extends AbstractModelReader {
 		List<Vec3> normals = obj.getNormals();
 		List<Vec2> texCoords = obj.getTexCoords();
 
-		Map<Material, IMaterial> materials = new IdentityHashMap<>();
-		
 		for (Group group : obj.getGroups()) {
 			List<Face> faces = group.getFaces();
 			if (faces.isEmpty())
@@ -111,20 +171,8 @@ public final class ObjReader extends AbstractModelReader {
 				}
 			}
 
-			// TODO: proper material handling
-			Material mat = group.getMaterial();
-			IMaterial material = materials.get(mat);
-			if (material == null) {
-				if (mat != null) {
-					material = new ShadedMaterial(RGB.BLACK, mat.getKa(), mat.getKd(), mat.getKs(), mat.getShininess(), 1, 1, mat.getTexture());
-					material.setName(mat.getName());
-				} else {
-					material = new ShadedMaterial(RGB.WHITE);
-				}
-				
-				materials.put(mat,  material);
-			}
-			
+			IMaterial material = getMaterial(group.getMaterial());
+
 			float[] tv = Vec3.toArray(triVertices);
 			float[] tn = hasNormals ? Vec3.toArray(triNormals) : GeometryUtilities.calculateNormals(tv);
 			float[] tt = Vec2.toArray(triTexCoords);
@@ -141,4 +189,255 @@ public final class ObjReader extends AbstractModelReader {
 		}
 		return meshes;
 	}
+
+	private WavefrontObject decode(String path, ByteBuffer buf, boolean parallel) {
+		final WavefrontObject object  = new WavefrontObject(path);
+		final int             nChunks = parallel ? Math.min(4 * Runtime.getRuntime().availableProcessors(), buf.limit() / MIN_CHUNK) : 1;
+		ObjByteParser         parser  = null;
+		if (nChunks > 1) {
+			try {
+				parser = ObjByteParser.parse(object, buf, nChunks);
+			} catch (Exception e) {
+				// parse again serially, keeping the results up to the error
+				parser = null;
+			}
+		}
+		if (parser == null) {
+			parser = new ObjByteParser(object, buf);
+			try {
+				parser.parse(0, buf.limit());
+			} catch (Exception e) {
+				log.warning("could not load obj: " + path, e);
+			}
+		}
+
+		// assemble ranges of faces, in parallel if requested
+		final List<FaceRange> ranges = new ArrayList<>();
+		for (ObjGroup group : parser.getGroups()) {
+			final IntList faces  = group.faces;
+			int           corner = 0;
+			for (int from = 0; from < faces.size(); from += RANGE_FACES) {
+				final int to = Math.min(from + RANGE_FACES, faces.size());
+				ranges.add(new FaceRange(group, from, to, corner));
+				for (int f = from; f < to; f++)
+					corner += faces.get(f) & ObjByteParser.SIZE_MASK;
+			}
+		}
+		final ObjByteParser result = parser;
+		if (parallel)
+			ObjByteParser.forEach(ranges.size(), i -> ranges.get(i).assemble(result));
+		else
+			ranges.forEach(range -> range.assemble(result));
+
+		for (int i = 0; i < ranges.size();) {
+			final ObjGroup group = ranges.get(i).group;
+			int j = i;
+			while (j < ranges.size() && ranges.get(j).group == group)
+				j++;
+			final float[] tv = concat(ranges, i, j, 0);
+			final float[] tn = concat(ranges, i, j, 1);
+			final float[] tt = concat(ranges, i, j, 2);
+			i = j;
+
+			IMaterial material = getMaterial(group.material);
+
+			IGeometry geometry;
+			if (tt != null)
+				geometry = DefaultGeometry.createVNM(Primitive.TRIANGLES, tv, tn, tt);
+			else
+				geometry = DefaultGeometry.createVN(Primitive.TRIANGLES, tv, tn);
+
+			DefaultMesh mesh = new DefaultMesh(material, geometry);
+			mesh.setName(path + '/' + group.name);
+			meshes.add(mesh);
+		}
+		return object;
+	}
+
+	private static float[] concat(List<FaceRange> ranges, int from, int to, int attribute) {
+		if (ranges.get(from).data[attribute] == null)
+			return null;
+		if (to - from == 1)
+			return ranges.get(from).data[attribute];
+		int length = 0;
+		for (int i = from; i < to; i++)
+			length += ranges.get(i).data[attribute].length;
+		final float[] result = new float[length];
+		length = 0;
+		for (int i = from; i < to; i++) {
+			final float[] data = ranges.get(i).data[attribute];
+			System.arraycopy(data, 0, result, length, data.length);
+			length += data.length;
+		}
+		return result;
+	}
+
+	/**
+	 * Consecutive faces of a group, triangulated into vertex, normal and
+	 * texture coordinate arrays.
+	 */
+	private static final class FaceRange {
+		final ObjGroup  group;
+		final int       from;
+		final int       to;
+		final int       corner;
+		final float[][] data = new float[3][];
+
+		FaceRange(ObjGroup group, int from, int to, int corner) {
+			this.group  = group;
+			this.from   = from;
+			this.to     = to;
+			this.corner = corner;
+		}
+
+		void assemble(ObjByteParser parser) {
+			final FloatList vertices     = parser.getVertices();
+			final FloatList normals      = parser.getNormals();
+			final FloatList texCoords    = parser.getTexCoords();
+			final float[]   vs           = vertices._getArray();
+			final float[]   ns           = normals._getArray();
+			final float[]   ts           = texCoords._getArray();
+			final IntList   faces        = group.faces;
+			final int[]     corners      = group.corners._getArray();
+			final boolean   hasNormals   = (faces.get(0) & ObjByteParser.N_BIT) != 0;
+			final boolean   hasTexCoords = (faces.get(0) & ObjByteParser.T_BIT) != 0;
+			float[][]       polygons     = new float[8][];
+
+			int estimate = 0;
+			for (int f = from; f < to; f++)
+				estimate += 3 * ((faces.get(f) & ObjByteParser.SIZE_MASK) - 2);
+			final FloatList triVertices  = new FloatList(Math.max(estimate, 0) * 3);
+			final FloatList triNormals   = hasNormals ? new FloatList(Math.max(estimate, 0) * 3) : null;
+			final FloatList triTexCoords = hasTexCoords ? new FloatList(Math.max(estimate, 0) * 2) : null;
+
+			int corner = this.corner;
+			for (int f = from; f < to; f++) {
+				final int face = faces.get(f);
+				final int size = face & ObjByteParser.SIZE_MASK;
+
+				IntList triangulation = null;
+				if (size != 3) {
+					if (size >= polygons.length)
+						polygons = Arrays.copyOf(polygons, size + 1);
+					float[] polygon = polygons[size];
+					if (polygon == null)
+						polygon = polygons[size] = new float[size * 3];
+					for (int i = 0; i < size; ++i)
+						System.arraycopy(vs, checkIndex(corners[(corner + i) * 3], vertices.size(), 3) * 3, polygon, i * 3, 3);
+					triangulation = GeometryUtilities.triangulate(polygon);
+				}
+
+				final int count = triangulation == null ? 3 : triangulation.size();
+				for (int i = 0; i < count; ++i) {
+					final int c = (corner + (triangulation == null ? i : triangulation.get(i))) * 3;
+					final int v = checkIndex(corners[c], vertices.size(), 3) * 3;
+					triVertices.addAll(vs[v], vs[v + 1], vs[v + 2]);
+					if (hasNormals) {
+						if ((face & ObjByteParser.N_BIT) != 0) {
+							final int n = checkIndex(corners[c + 2], normals.size(), 3) * 3;
+							triNormals.addAll(ns[n], ns[n + 1], ns[n + 2]);
+						} else
+							triNormals.addAll(Vec3.Z.x, Vec3.Z.y, Vec3.Z.z);
+					}
+					if (hasTexCoords) {
+						if ((face & ObjByteParser.T_BIT) != 0) {
+							final int t = checkIndex(corners[c + 1], texCoords.size(), 2) * 2;
+							triTexCoords.addAll(ts[t], ts[t + 1]);
+						} else
+							triTexCoords.addAll(Vec2.ZERO.x, Vec2.ZERO.y);
+					}
+				}
+				corner += size;
+			}
+
+			data[0] = toArray(triVertices);
+			data[1] = hasNormals ? toArray(triNormals) : GeometryUtilities.calculateNormals(data[0]);
+			data[2] = hasTexCoords ? toArray(triTexCoords) : null;
+		}
+
+		// avoids a copy if the estimate was exact
+		private static float[] toArray(FloatList list) {
+			return list.size() == list._getArray().length ? list._getArray() : list.toArray();
+		}
+	}
+
+	private static int checkIndex(int index, int size, int stride) {
+		if (index < 0 || index >= size / stride)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size / stride);
+		return index;
+	}
+
+	private boolean readCache(File file) {
+		try {
+			List<IMesh> cached = MeshCache.read(file, path -> {
+				Frame frame = TextureLoader.loadTexture(path);
+				return frame == null ? null : frame.getTexture();
+			});
+			if (cached != null) {
+				meshes.addAll(cached);
+				return true;
+			}
+		} catch (IOException e) {
+			log.warning("can't read mesh cache: " + MeshCache.getCacheFile(file), e);
+		}
+		return false;
+	}
+
+	private void writeCache(File file, WavefrontObject object) {
+		Map<Texture, String> textures = new IdentityHashMap<>();
+		materials.forEach((mat, material) -> {
+			if (mat != null && mat.getTexturePath() != null)
+				textures.put(((ShadedMaterial) material).getColorMap(), mat.getTexturePath());
+		});
+		try {
+			MeshCache.write(file, object.getMaterialLibraries(), meshes, textures::get);
+		} catch (IOException e) {
+			log.warning("can't write mesh cache: " + MeshCache.getCacheFile(file), e);
+		}
+	}
+
+	private static File toFile(URL resource) {
+		try {
+			return "file".equals(resource.getProtocol()) ? Paths.get(resource.toURI()).toFile() : null;
+		} catch (URISyntaxException e) {
+			return null;
+		}
+	}
+
+	// TODO: proper material handling
+	private IMaterial getMaterial(Material mat) {
+		IMaterial material = materials.get(mat);
+		if (material == null) {
+			if (mat != null) {
+				material = new ShadedMaterial(RGB.BLACK, mat.getKa(), mat.getKd(), mat.getKs(), mat.getShininess(), 1, 1, mat.getTexture());
+				material.setName(mat.getName());
+			} else {
+				material = new ShadedMaterial(RGB.WHITE);
+			}
+			materials.put(mat, material);
+		}
+		return material;
+	}
+
+	/**
+	 * Maps file resources read only, other resources are read into memory.
+	 */
+	private static ByteBuffer read(URL resource) throws IOException {
+		if ("file".equals(resource.getProtocol())) {
+			try (FileChannel channel = FileChannel.open(Paths.get(resource.toURI()), StandardOpenOption.READ)) {
+				if (channel.size() > Integer.MAX_VALUE)
+					throw new IOException("OBJ file too large: " + resource);
+				return channel.map(MapMode.READ_ONLY, 0, channel.size());
+			} catch (URISyntaxException e) {
+				throw new IOException(e);
+			}
+		}
+		try (InputStream in = resource.openStream()) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] block = new byte[64 * 1024];
+			for (int n; (n = in.read(block)) > 0;)
+				out.write(block, 0, n);
+			return ByteBuffer.wrap(out.toByteArray());
+		}
+	}
 }
@@ -30,6 +30,7 @@
 package ch.fhnw.ether.formats.obj;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
@@ -54,6 +55,8 @@ final class WavefrontObject {
 
 	private Map<String, Material> materials = new HashMap<>();
 
+	private List<File> materialLibraries = new ArrayList<>();
+
 	private BoundingBox bounds;
 
 	private ObjLineParserFactory parserFactory;
@@ -107,6 +110,14 @@ final class WavefrontObject {
 		return this.materials;
 	}
 
+	public List<File> getMaterialLibraries() {
+		return materialLibraries;
+	}
+
+	public void addMaterialLibrary(File file) {
+		materialLibraries.add(file);
+	}
+
 	public BoundingBox getBounds() {
 		if (bounds == null) {
 			bounds = new BoundingBox();
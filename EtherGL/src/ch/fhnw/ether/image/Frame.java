@@ -38,11 +38,6 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 import javax.imageio.ImageIO;
 import javax.swing.Icon;
@@ -75,6 +70,7 @@ public abstract class Frame extends AbstractVideoTarget {
 	public int        pixelSize;
 	private int       modCount;
 	private Texture   texture;
+	private int       textureModCount;
 
 	protected Frame(int pixelSize) {
 		super(Thread.MIN_PRIORITY, AbstractVideoFX.FRAMEFX, false);
@@ -471,44 +467,20 @@ public abstract class Frame extends AbstractVideoTarget {
 
 	protected abstract void loadTexture(GL3 gl);
 
-	static final ExecutorService POOL       = Executors.newCachedThreadPool();
-	static final int             NUM_CHUNKS = Runtime.getRuntime().availableProcessors(); 
-
-	final static class Chunk implements Runnable {
-		private final int            from;
-		private final int            to;
-		private final ByteBuffer     pixels;
-		private final ILineProcessor processor;
-		private final int            lineLength;
-
-		Chunk(Frame frame, int from, int to, ILineProcessor processor) {
-			this.from       = from;
-			this.to         = to;
-			this.pixels     = frame.pixels.duplicate();
-			this.processor  = processor;
-			this.lineLength = frame.width * frame.pixelSize;
-		}
-
-		@Override
-		public void run() {
-			for(int j = from; j < to; j++) {
-				pixels.position(j * lineLength);
-				processor.process(pixels, j);
-			}
-		}
+	/**
+	 * Processes the lines of this frame in parallel on the default tile
+	 * engine. Exceptions of the processor are rethrown.
+	 */
+	public final void processLines(ILineProcessor processor) {
+		TileEngine.getDefault().processLines(this, processor);
 	}
 
-	public final void processLines(ILineProcessor processor) {
-		List<Future<?>> result = new ArrayList<>(NUM_CHUNKS + 1);
-		int inc  = Math.max(32, height / NUM_CHUNKS);
-		for(int from = 0; from < height; from += inc)
-			result.add(POOL.submit(new Chunk(this, from, Math.min(from + inc, height), processor)));
-		try {
-			for(Future<?> f : result)
-				f.get();
-		} catch(Throwable t) {
-			t.printStackTrace();
-		}
+	/**
+	 * Processes this frame in parallel tiles on the default tile engine, see
+	 * {@link TileEngine#process(Frame, int, ITileProcessor)}.
+	 */
+	public final void processTiles(int halo, ITileProcessor processor) {
+		TileEngine.getDefault().process(this, halo, processor);
 	}
 
 	public final void position(ByteBuffer pixels, int x, int y) {
@@ -525,21 +497,32 @@ public abstract class Frame extends AbstractVideoTarget {
 			setSubframe(0, 0, frame);
 	}
 
+	/**
+	 * Returns a texture holding the pixels of this frame. The texture is
+	 * created on first use and re-uploaded when the frame was modified since
+	 * the last upload, so frames that are refilled (e.g. pooled video frames)
+	 * keep their texture object.
+	 */
 	public Texture getTexture() {
-		if(texture == null) {
+		if(texture == null || textureModCount != modCount) {
 			try(IGLContext ctx = GLContextManager.acquireContext()) {
 				final GL3        gl        = ctx.getGL();
-				texture                    = new Texture(new GLObject(gl, Type.TEXTURE), width, height);
+				final boolean    create    = texture == null;
+				if(create)
+					texture                = new Texture(new GLObject(gl, Type.TEXTURE), width, height);
 				final int        target    = GL.GL_TEXTURE_2D;
 				gl.glBindTexture(target, texture.getGlObject().getId());
 				pixels.rewind();
 				loadTexture(gl);
 				gl.glGenerateMipmap(target);
-				gl.glTexParameteri(target, GL.GL_TEXTURE_MAG_FILTER, GL.GL_LINEAR);
-				gl.glTexParameteri(target, GL.GL_TEXTURE_MIN_FILTER, GL.GL_LINEAR);
-				gl.glTexParameterf(target, GL.GL_TEXTURE_WRAP_S, GL.GL_REPEAT);
-				gl.glTexParameterf(target, GL.GL_TEXTURE_WRAP_T, GL.GL_REPEAT);
+				if(create) {
+					gl.glTexParameteri(target, GL.GL_TEXTURE_MAG_FILTER, GL.GL_LINEAR);
+					gl.glTexParameteri(target, GL.GL_TEXTURE_MIN_FILTER, GL.GL_LINEAR);
+					gl.glTexParameterf(target, GL.GL_TEXTURE_WRAP_S, GL.GL_REPEAT);
+					gl.glTexParameterf(target, GL.GL_TEXTURE_WRAP_T, GL.GL_REPEAT);
+				}
 				gl.glFinish();
+				textureModCount = modCount;
 			} catch(Throwable t) {
 				log.warning(t);
 			}
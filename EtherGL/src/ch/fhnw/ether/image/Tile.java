@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.image;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Rectangular region of a frame processed by a {@link TileEngine}. Pixels of
+ * the tile are written through {@link #pixels}. If the tile was processed
+ * with a halo, the frame content as it was before processing can be read
+ * around the tile through the get methods, so in place neighborhood filters
+ * see unmodified input.
+ */
+public final class Tile {
+	/** Pixel buffer of the frame, the position is free for use by the processor. */
+	public ByteBuffer pixels;
+
+	private Frame  frame;
+	private byte[] source;
+	private int    x0;
+	private int    y0;
+	private int    x1;
+	private int    y1;
+	private int    halo;
+	private int    width;
+	private int    height;
+	private int    pixelSize;
+
+	Tile() {
+	}
+
+	void set(Frame frame, ByteBuffer pixels, byte[] source, int halo, int x0, int y0, int x1, int y1) {
+		this.frame  = frame;
+		this.pixels = pixels;
+		this.source = source;
+		this.halo   = halo;
+		this.x0     = x0;
+		this.y0     = y0;
+		this.x1     = x1;
+		this.y1     = y1;
+		this.width     = frame.width;
+		this.height    = frame.height;
+		this.pixelSize = frame.pixelSize;
+	}
+
+	public Frame getFrame() {
+		return frame;
+	}
+
+	/** First column of the tile. */
+	public int getX0() {
+		return x0;
+	}
+
+	/** First row of the tile. */
+	public int getY0() {
+		return y0;
+	}
+
+	/** Column after the last column of the tile. */
+	public int getX1() {
+		return x1;
+	}
+
+	/** Row after the last row of the tile. */
+	public int getY1() {
+		return y1;
+	}
+
+	public int getHalo() {
+		return halo;
+	}
+
+	/**
+	 * Sets the position of {@link #pixels} to the given pixel and returns it.
+	 */
+	public ByteBuffer position(int x, int y) {
+		pixels.position((y * width + x) * pixelSize);
+		return pixels;
+	}
+
+	/**
+	 * Returns the unsigned source component at the given pixel, coordinates
+	 * outside the frame are clamped to its border. Valid within the halo of
+	 * the tile.
+	 */
+	public int get(int x, int y, int component) {
+		if (x < 0) x = 0; else if (x >= width)  x = width - 1;
+		if (y < 0) y = 0; else if (y >= height) y = height - 1;
+		return source[(y * width + x) * pixelSize + component] & 0xFF;
+	}
+
+	/**
+	 * Returns the source component at the given pixel in the range 0..1.
+	 */
+	public float getFloat(int x, int y, int component) {
+		return get(x, y, component) / 255f;
+	}
+
+	@Override
+	public String toString() {
+		return "tile[" + x0 + "," + y0 + "-" + x1 + "," + y1 + " halo=" + halo + "]";
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.image;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Processes frames in 2D tiles on a fork/join pool. The tasks of a frame
+ * geometry form a binary tree which is built once and reused for every
+ * frame of that geometry, so processing a frame does not allocate. Tiles
+ * are balanced by work stealing. Exceptions of processors are rethrown to
+ * the caller.
+ * 
+ * Neighborhood filters pass a halo: the frame is copied before processing
+ * and tiles read the unmodified input through {@link Tile#get}.
+ */
+public final class TileEngine {
+	public static final int DEFAULT_TILE_WIDTH  = 128;
+	public static final int DEFAULT_TILE_HEIGHT = 32;
+
+	// lines per tile for line processing
+	private static final int LINES_PER_TILE = 16;
+
+	private static final TileEngine DEFAULT = new TileEngine(ForkJoinPool.commonPool(), DEFAULT_TILE_WIDTH, DEFAULT_TILE_HEIGHT);
+
+	private final ForkJoinPool pool;
+	private final int          tileWidth;
+	private final int          tileHeight;
+	private final Queue<Graph> graphs = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Creates an engine with its own pool of the given parallelism.
+	 */
+	public TileEngine(int parallelism) {
+		this(new ForkJoinPool(parallelism), DEFAULT_TILE_WIDTH, DEFAULT_TILE_HEIGHT);
+	}
+
+	public TileEngine(ForkJoinPool pool, int tileWidth, int tileHeight) {
+		this.pool       = pool;
+		this.tileWidth  = tileWidth;
+		this.tileHeight = tileHeight;
+	}
+
+	/**
+	 * Returns the engine running on the common fork/join pool.
+	 */
+	public static TileEngine getDefault() {
+		return DEFAULT;
+	}
+
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Processes all tiles of the frame in place.
+	 */
+	public void process(Frame frame, ITileProcessor processor) {
+		process(frame, 0, processor);
+	}
+
+	/**
+	 * Processes all tiles of the frame. With a halo greater than zero, tiles
+	 * can read the input frame up to halo pixels around them.
+	 */
+	public void process(Frame frame, int halo, ITileProcessor processor) {
+		run(frame, tileWidth, tileHeight, halo, processor, null);
+	}
+
+	/**
+	 * Processes the lines of the frame, as {@link Frame#processLines}. Lines
+	 * of a tile are processed in order.
+	 */
+	public void processLines(Frame frame, ILineProcessor processor) {
+		run(frame, frame.width, LINES_PER_TILE, 0, null, processor);
+	}
+
+	private void run(Frame frame, int tileWidth, int tileHeight, int halo, ITileProcessor tiles, ILineProcessor lines) {
+		if (frame.width <= 0 || frame.height <= 0)
+			return;
+		Graph graph = acquire(frame.width, frame.height, frame.pixelSize, tileWidth, tileHeight);
+		try {
+			graph.set(frame, halo, tiles, lines);
+			if (graph.root.tiles > 1 && !ForkJoinTask.inForkJoinPool())
+				pool.invoke(graph.root);
+			else
+				graph.root.invoke();
+		} finally {
+			graph.clear();
+			graphs.add(graph);
+		}
+	}
+
+	private Graph acquire(int width, int height, int pixelSize, int tileWidth, int tileHeight) {
+		for (Graph graph : graphs) {
+			if (graph.matches(width, height, pixelSize, tileWidth, tileHeight) && graphs.remove(graph))
+				return graph;
+		}
+		// drop graphs of other geometries, e.g. after a resize
+		graphs.removeIf(graph -> graph.width != width || graph.height != height || graph.pixelSize != pixelSize);
+		return new Graph(width, height, pixelSize, tileWidth, tileHeight);
+	}
+
+	/**
+	 * Task tree of one frame geometry.
+	 */
+	private static final class Graph {
+		final int      width;
+		final int      height;
+		final int      pixelSize;
+		final int      tileWidth;
+		final int      tileHeight;
+		final int      tilesX;
+		final TileTask root;
+
+		Frame          frame;
+		int            halo;
+		byte[]         source;
+		ITileProcessor tiles;
+		ILineProcessor lines;
+
+		Graph(int width, int height, int pixelSize, int tileWidth, int tileHeight) {
+			this.width      = width;
+			this.height     = height;
+			this.pixelSize  = pixelSize;
+			this.tileWidth  = tileWidth;
+			this.tileHeight = tileHeight;
+			this.tilesX     = (width + tileWidth - 1) / tileWidth;
+			this.root       = new TileTask(this, 0, tilesX * ((height + tileHeight - 1) / tileHeight));
+		}
+
+		boolean matches(int width, int height, int pixelSize, int tileWidth, int tileHeight) {
+			return this.width == width && this.height == height && this.pixelSize == pixelSize && this.tileWidth == tileWidth && this.tileHeight == tileHeight;
+		}
+
+		void set(Frame frame, int halo, ITileProcessor tiles, ILineProcessor lines) {
+			this.frame = frame;
+			this.halo  = halo;
+			this.tiles = tiles;
+			this.lines = lines;
+			if (halo > 0) {
+				final int size = width * height * pixelSize;
+				if (source == null || source.length != size)
+					source = new byte[size];
+				ByteBuffer pixels = frame.pixels.duplicate();
+				pixels.clear();
+				pixels.get(source, 0, size);
+			}
+			root.reset();
+		}
+
+		void clear() {
+			frame = null;
+			tiles = null;
+			lines = null;
+		}
+	}
+
+	/**
+	 * Processes the tiles [from, to) of a graph, splitting in half into
+	 * prebuilt subtasks.
+	 */
+	private static final class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 8006787452286536052L;
+
+		private final Graph    graph;
+		private final int      from;
+		private final int      tiles;
+		private final TileTask left;
+		private final TileTask right;
+		private final Tile     tile;
+		private ByteBuffer     frameBuffer;
+		private ByteBuffer     pixels;
+
+		TileTask(Graph graph, int from, int to) {
+			this.graph = graph;
+			this.from  = from;
+			this.tiles = to - from;
+			if (tiles > 1) {
+				final int mid = (from + to) >>> 1;
+				left  = new TileTask(graph, from, mid);
+				right = new TileTask(graph, mid, to);
+				tile  = null;
+			} else {
+				left  = null;
+				right = null;
+				tile  = new Tile();
+			}
+		}
+
+		void reset() {
+			reinitialize();
+			if (left != null) {
+				left.reset();
+				right.reset();
+			}
+		}
+
+		@Override
+		protected void compute() {
+			if (left != null) {
+				invokeAll(left, right);
+				return;
+			}
+
+			final Frame frame = graph.frame;
+			// duplicate pixel buffer only when the frame changed
+			if (frameBuffer != frame.pixels) {
+				frameBuffer = frame.pixels;
+				pixels      = frameBuffer.duplicate();
+			}
+			pixels.clear();
+
+			final int x0 = (from % graph.tilesX) * graph.tileWidth;
+			final int y0 = (from / graph.tilesX) * graph.tileHeight;
+			final int x1 = Math.min(x0 + graph.tileWidth, graph.width);
+			final int y1 = Math.min(y0 + graph.tileHeight, graph.height);
+			if (graph.lines != null) {
+				final int lineLength = graph.width * graph.pixelSize;
+				for (int j = y0; j < y1; j++) {
+					pixels.position(j * lineLength);
+					graph.lines.process(pixels, j);
+				}
+			} else {
+				tile.set(frame, pixels, graph.halo > 0 ? graph.source : null, graph.halo, x0, y0, x1, y1);
+				graph.tiles.process(tile);
+			}
+		}
+	}
+}
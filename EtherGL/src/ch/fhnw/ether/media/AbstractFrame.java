@@ -29,11 +29,24 @@
 
 package ch.fhnw.ether.media;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 import ch.fhnw.util.IDisposable;
 
+/**
+ * Base class for media frames. Frames are reference counted: a frame starts
+ * with one reference, retain() adds one and dispose() drops one. When the
+ * last reference is dropped, release() is called, which allows pooled frames
+ * to return themselves and their buffers to their pool.
+ *
+ * @author radar
+ */
 public abstract class AbstractFrame implements IDisposable {
-	public final double playOutTime;
-	private boolean     last;
+	private static final AtomicIntegerFieldUpdater<AbstractFrame> REFS = AtomicIntegerFieldUpdater.newUpdater(AbstractFrame.class, "refs");
+
+	private double       playOutTime;
+	private boolean      last;
+	private volatile int refs = 1;
 	
 	public AbstractFrame(double playOutTime) {
 		this(playOutTime, false);
@@ -44,6 +57,10 @@ public abstract class AbstractFrame implements IDisposable {
 		this.last      = last;
 	}
 
+	public final double getPlayOutTime() {
+		return playOutTime;
+	}
+
 	public final void setLast(boolean state) {
 		this.last = state;
 	}
@@ -52,6 +69,49 @@ public abstract class AbstractFrame implements IDisposable {
 		return last;
 	}
 	
+	/**
+	 * Adds a reference to this frame. Each call must be balanced by a call
+	 * to dispose(). Use this to keep a frame beyond the current render cycle.
+	 */
+	public final AbstractFrame retain() {
+		for(;;) {
+			final int r = refs;
+			if(r <= 0)
+				throw new IllegalStateException("frame already released: " + this);
+			if(REFS.compareAndSet(this, r, r + 1))
+				return this;
+		}
+	}
+
+	/**
+	 * Drops a reference. Disposing a frame whose last reference was already
+	 * dropped is rejected, since the frame may be in use again by its pool.
+	 */
 	@Override
-	public void dispose() {}
+	public final void dispose() {
+		for(;;) {
+			final int r = refs;
+			if(r <= 0)
+				throw new IllegalStateException("frame already released: " + this);
+			if(REFS.compareAndSet(this, r, r - 1)) {
+				if(r == 1)
+					release();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Called when the last reference to this frame is disposed.
+	 */
+	protected void release() {}
+
+	/**
+	 * Re-initializes a released frame for reuse.
+	 */
+	protected final void reset(double playOutTime) {
+		this.playOutTime = playOutTime;
+		this.last        = false;
+		this.refs        = 1;
+	}
 }
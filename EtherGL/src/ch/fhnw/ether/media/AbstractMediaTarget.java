@@ -30,29 +30,63 @@
 package ch.fhnw.ether.media;
 
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 import ch.fhnw.util.Log;
 
+/**
+ * Base class for media targets. Frames are pulled by a frame pump thread,
+ * which waits for play out deadlines by parking and spinning for the last
+ * fraction of the wait. Threads blocking on a time are kept in a deadline
+ * ordered concurrent queue and released by the frame pump. Wake-up lateness
+ * is recorded in jitter histograms. Targets can also be driven offline by
+ * an {@link OfflineRenderer}, which advances a virtual time base per
+ * rendered frame and never waits.
+ *
+ * @author radar
+ */
 public abstract class AbstractMediaTarget<F extends AbstractFrame, T extends IRenderTarget<F>> implements IRenderTarget<F>, IScheduler {
 	private static final Log log = Log.create();
 
+	// waits shorter than this are spun (yielding), longer waits are parked
+	// until this amount of time before the deadline
+	private static final long SPIN_NS = 200 * 1000;
+
+	// park interval when no deadline estimate is available
+	private static final long NAP_NS = 1000 * 1000;
+
+	// frame duration used offline if the source does not know its frame rate
+	private static final double DEFAULT_FRAME_DURATION = 1.0 / 30.0;
+
+	private static final AtomicLong EVENT_SEQUENCE = new AtomicLong();
+
 	private   final int                     priority;
 	private   final boolean                 realTime;
 	protected RenderProgram<T>              program;
 	protected ITimebase                     timebase;
 	protected final AtomicBoolean           isRendering  = new AtomicBoolean();
 	private   final AtomicReference<F>      frame        = new AtomicReference<>();
+	private volatile boolean                newFrame;
 	private         CountDownLatch          startLatch;
-	private   final List<BlockingTimeEvent> timeEvents   = new LinkedList<>();
-	private   long                          startTime;
-	private   Thread                        framePump;
+	private   final ConcurrentSkipListSet<BlockingTimeEvent> timeEvents = new ConcurrentSkipListSet<>();
+	private   final Queue<BlockingTimeEvent> stopEvents   = new ConcurrentLinkedQueue<>();
+	private   final JitterHistogram         frameJitter  = new JitterHistogram();
+	private   final JitterHistogram         eventJitter  = new JitterHistogram();
+	private   volatile long                 startTime;
+	private   volatile Thread               framePump;
 	private   long                          totalFrames;
 	private   long                          relFrames;
+	// offline rendering state, see OfflineRenderer
+	private   volatile boolean              offline;
+	private   ITimebase                     savedTimebase;
+	private   double                        frameDuration = DEFAULT_FRAME_DURATION;
 	
 	protected AbstractMediaTarget(int threadPriority, boolean realTime) {
 		this.priority = threadPriority;
@@ -72,6 +106,8 @@ public abstract class AbstractMediaTarget<F extends AbstractFrame, T extends IRe
 			setRendering(false);
 		} else {
 			startLatch = new CountDownLatch(1);
+			// set start time before the pump runs its first cycle
+			startTime = System.nanoTime();
 			framePump = new Thread(()->{
 				try {
 					setRendering(true);
@@ -88,7 +124,6 @@ public abstract class AbstractMediaTarget<F extends AbstractFrame, T extends IRe
 			framePump.start();
 			try {
 				startLatch.await();
-				startTime = System.nanoTime();
 			} catch (InterruptedException e) {
 				log.severe(e);
 			}
@@ -103,22 +138,31 @@ public abstract class AbstractMediaTarget<F extends AbstractFrame, T extends IRe
 			render();
 			if(tmp.isLast())
 				setRendering(false);
-			tmp.dispose();
-		}
-		synchronized (timeEvents) {
-			for(final Iterator<BlockingTimeEvent> i = timeEvents.iterator(); i.hasNext();) {
-				final BlockingTimeEvent e = i.next();
-				if(e.time == NOT_RENDERING) {
-					if(!isRendering()) {
-						e.unblock();
-						i.remove();
-					}
-				} else if(e.time >= getTime()) {
-					e.unblock();
-					i.remove();
-				}
+			// a source that did not set a new frame leaves the disposed one in place
+			if(newFrame) {
+				newFrame = false;
+				tmp.dispose();
 			}
 		}
+		releaseEvents();
+	}
+
+	private void releaseEvents() {
+		if(!isRendering()) {
+			for(BlockingTimeEvent e; (e = stopEvents.poll()) != null;)
+				e.unblock();
+		}
+		if(timeEvents.isEmpty()) return;
+		// events are ordered by deadline, stop at first pending one. removal
+		// decides between pump and stop() who unblocks an event.
+		final double now = getTime();
+		for(final Iterator<BlockingTimeEvent> i = timeEvents.iterator(); i.hasNext();) {
+			final BlockingTimeEvent e = i.next();
+			if(e.time > now)
+				break;
+			if(timeEvents.remove(e))
+				e.unblock();
+		}
 	}
 
 	@SuppressWarnings("unchecked")
@@ -131,13 +175,10 @@ public abstract class AbstractMediaTarget<F extends AbstractFrame, T extends IRe
 	@Override
 	public void stop() throws RenderCommandException {
 		setRendering(false);
-		synchronized (timeEvents) {
-			for(final Iterator<BlockingTimeEvent> i = timeEvents.iterator(); i.hasNext();) {
-				BlockingTimeEvent e = i.next();
-				e.unblock();
-			}
-			timeEvents.clear();
-		}
+		for(BlockingTimeEvent e; (e = stopEvents.poll()) != null;)
+			e.unblock();
+		for(BlockingTimeEvent e; (e = timeEvents.pollFirst()) != null;)
+			e.unblock();
 	}
 
 	@Override
@@ -158,50 +199,153 @@ public abstract class AbstractMediaTarget<F extends AbstractFrame, T extends IRe
 	}
 
 	protected void nap() {
-		try {
-			Thread.sleep(1);
-		} catch (Throwable t) {
-			log.warning(t);
-		}
+		LockSupport.parkNanos(this, NAP_NS);
 	}
 
 	@Override
 	public final void sleepUntil(double time, Runnable runnable) {
 		if(time == ASAP) return;
 		if(Thread.currentThread() == framePump)
-			if(time == NOT_RENDERING) {
+			if(offline) {
+				// virtual time, the offline renderer keeps targets in sync
+				return;
+			} else if(time == NOT_RENDERING) {
 				while(isRendering())
 					nap();
 			} else {
-				if(realTime) {
-					try {
-						int sleep = (int)((time - getTime()) * 1000);
-						if(sleep > 0)
-							Thread.sleep(sleep);
-					} catch (Throwable t) {
-						log.warning(t);
-					}
-				}
-				while(getTime() <= time)
-					nap();
+				waitUntil(time);
+				frameJitter.record(getTime() - time);
 			}
-		else if(time == NOT_RENDERING || time > getTime()) {
+		else if(time == NOT_RENDERING) {
 			BlockingTimeEvent event = new BlockingTimeEvent(time, runnable);
-			synchronized (timeEvents) {
-				timeEvents.add(event);
-			}
-			event.sleep();
+			stopEvents.add(event);
+			// re-check in case the pump stopped in the meantime
+			if(!isRendering() && stopEvents.remove(event))
+				event.unblock();
+			if(!event.sleep())
+				stopEvents.remove(event);
+		} else if(time > getTime()) {
+			BlockingTimeEvent event = new BlockingTimeEvent(time, runnable);
+			timeEvents.add(event);
+			// re-check in case the target stopped in the meantime
+			if(!isRendering() && timeEvents.remove(event))
+				event.unblock();
+			// wake up pump so it can take the new deadline into account
+			final Thread pump = framePump;
+			if(pump != null)
+				LockSupport.unpark(pump);
+			if(event.sleep())
+				eventJitter.record(getTime() - time);
+			else
+				timeEvents.remove(event);
+		}
+	}
+
+	/**
+	 * Wait on frame pump until given time, releasing blocked threads in the
+	 * meantime. Assuming the time base advances at real time, the thread
+	 * parks until shortly before the next deadline and spins for the
+	 * remaining time.
+	 */
+	private void waitUntil(double time) {
+		for(;;) {
+			final double now = getTime();
+			if(now > time)
+				return;
+			double next = time;
+			final Iterator<BlockingTimeEvent> events = timeEvents.iterator();
+			if(events.hasNext())
+				next = Math.min(next, events.next().time);
+			final long ns = (long)((next - now) * SEC2NS);
+			if(ns > SPIN_NS)
+				LockSupport.parkNanos(this, ns - SPIN_NS);
+			else
+				Thread.yield();
+			releaseEvents();
 		}
 	}
 
+	/**
+	 * Returns lateness histogram of the frame pump with respect to frame
+	 * play out times.
+	 */
+	public final JitterHistogram getFrameJitter() {
+		return frameJitter;
+	}
+
+	/**
+	 * Returns lateness histogram of threads blocking on this target.
+	 */
+	public final JitterHistogram getEventJitter() {
+		return eventJitter;
+	}
+
+	/**
+	 * Returns true if this target is driven by an offline renderer.
+	 */
+	@Override
+	public final boolean isOffline() {
+		return offline;
+	}
+
+	/**
+	 * Returns the media duration of a frame, which advances the time base in
+	 * offline rendering. The default uses the frame rate of the source.
+	 */
+	protected double getFrameDuration(AbstractFrameSource src, F frame) {
+		float rate = src.getFrameRate();
+		return rate > 0 ? 1.0 / rate : DEFAULT_FRAME_DURATION;
+	}
+
+	final void startOffline(ITimebase clock) {
+		if(program == null) throw new NullPointerException("No program set for this target");
+		savedTimebase = timebase;
+		timebase      = clock;
+		framePump     = Thread.currentThread();
+		offline       = true;
+		setRendering(true);
+	}
+
+	/**
+	 * Runs one cycle on the offline renderer and returns the duration of the
+	 * rendered frame.
+	 */
+	final double cycleOffline() throws RenderCommandException {
+		runOneCycle();
+		return frameDuration;
+	}
+
+	final void stopOffline() throws RenderCommandException {
+		try {
+			stop();
+		} finally {
+			offline   = false;
+			framePump = null;
+			timebase  = savedTimebase;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
 	@Override
 	public final F getFrame() {
+		// commands of a pipelined program see the frame of their stage
+		final Thread thread = Thread.currentThread();
+		if(thread instanceof RenderPipeline.StageThread && ((RenderPipeline<?>.StageThread)thread).target == this)
+			return (F)((RenderPipeline<?>.StageThread)thread).frame;
 		return frame.get();
 	}
 
 	@Override
 	public final void setFrame(AbstractFrameSource src, F frame) {
-		this.frame.set(frame);
+		final Thread thread = Thread.currentThread();
+		if(thread instanceof RenderPipeline.StageThread && ((RenderPipeline<?>.StageThread)thread).target == this)
+			((RenderPipeline<?>.StageThread)thread).frame = frame;
+		else {
+			this.frame.set(frame);
+			newFrame = frame != null;
+		}
+		if(offline)
+			frameDuration = getFrameDuration(src, frame);
 		long length = src.getLengthInFrames();
 		if(length > 0 && getRealtiveElapsedFrames() >= length)
 			relFrames = 0;
@@ -209,10 +353,17 @@ public abstract class AbstractMediaTarget<F extends AbstractFrame, T extends IRe
 		relFrames++;
 	}
 
-	static final class BlockingTimeEvent {
-		public  final double         time;
-		private final CountDownLatch latch = new CountDownLatch(1);
-		private final Runnable       callback;
+	final void setPipelineFrame(F frame) {
+		this.frame.set(frame);
+		newFrame = frame != null;
+	}
+
+	static final class BlockingTimeEvent implements Comparable<BlockingTimeEvent> {
+		public  final double           time;
+		private final long             sequence = EVENT_SEQUENCE.incrementAndGet();
+		private final Thread           waiter   = Thread.currentThread();
+		private final Runnable         callback;
+		private volatile boolean       released;
 
 		public BlockingTimeEvent(double time, Runnable callback) {
 			this.time    = time;
@@ -222,15 +373,27 @@ public abstract class AbstractMediaTarget<F extends AbstractFrame, T extends IRe
 		public void unblock() {
 			if(callback != null)
 				callback.run();
-			latch.countDown();
+			released = true;
+			LockSupport.unpark(waiter);
 		}
 
-		public void sleep() {
-			try {
-				latch.await();
-			} catch(Throwable t) {
-				AbstractMediaTarget.log.warning(t);
+		/**
+		 * Parks until released. Returns false if the waiting thread was
+		 * interrupted before, the interrupt status is left set.
+		 */
+		public boolean sleep() {
+			while(!released) {
+				if(Thread.currentThread().isInterrupted())
+					return released;
+				LockSupport.park(this);
 			}
+			return true;
+		}
+
+		@Override
+		public int compareTo(BlockingTimeEvent o) {
+			int result = Double.compare(time, o.time);
+			return result != 0 ? result : Long.compare(sequence, o.sequence);
 		}
 	}
 
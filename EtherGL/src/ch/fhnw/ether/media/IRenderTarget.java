@@ -35,4 +35,12 @@ public interface IRenderTarget<F extends AbstractFrame> extends ITimebase {
 	F    getFrame();
 	long getTotalElapsedFrames();
 	long getRealtiveElapsedFrames();
+
+	/**
+	 * Returns true if time is virtual and advances with rendered frames
+	 * rather than in real time.
+	 */
+	default boolean isOffline() {
+		return false;
+	}
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.media;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of scheduling lateness (actual wake-up time minus
+ * deadline). Buckets are powers of two in microseconds: bucket 0 counts
+ * lateness below 1us, bucket i lateness in [2^(i-1), 2^i) us, and the last
+ * bucket everything above. Early wake-ups count as zero lateness.
+ */
+public final class JitterHistogram {
+	public static final int NUM_BUCKETS = 24;
+
+	private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+	private final AtomicLongArray stats  = new AtomicLongArray(2); // sum, max (ns)
+
+	/**
+	 * Record lateness in seconds.
+	 */
+	public void record(double lateness) {
+		long ns = lateness > 0 ? (long) (lateness * ITimebase.SEC2NS) : 0;
+		counts.incrementAndGet(getBucket(ns / 1000));
+		stats.addAndGet(0, ns);
+		for (long max = stats.get(1); ns > max && !stats.compareAndSet(1, max, ns); max = stats.get(1));
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++)
+			count += counts.get(i);
+		return count;
+	}
+
+	public long getCount(int bucket) {
+		return counts.get(bucket);
+	}
+
+	/**
+	 * Returns upper bound of given bucket in seconds.
+	 */
+	public static double getBucketLimit(int bucket) {
+		return bucket == NUM_BUCKETS - 1 ? Double.POSITIVE_INFINITY : (1L << bucket) / ITimebase.SEC2US;
+	}
+
+	/**
+	 * Returns mean lateness in seconds.
+	 */
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : stats.get(0) / ITimebase.SEC2NS / count;
+	}
+
+	/**
+	 * Returns maximum lateness in seconds.
+	 */
+	public double getMax() {
+		return stats.get(1) / ITimebase.SEC2NS;
+	}
+
+	/**
+	 * Returns upper bucket limit (in seconds) below which the given fraction
+	 * (0..1) of all recorded values lies.
+	 */
+	public double getPercentile(double fraction) {
+		long count = getCount();
+		long limit = (long) Math.ceil(fraction * count);
+		long sum = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			sum += counts.get(i);
+			if (sum >= limit && sum > 0)
+				return getBucketLimit(i);
+		}
+		return 0;
+	}
+
+	public void reset() {
+		for (int i = 0; i < NUM_BUCKETS; i++)
+			counts.set(i, 0);
+		stats.set(0, 0);
+		stats.set(1, 0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("n=%d mean=%.1fus p99<%.0fus max=%.1fus", getCount(), getMean() * ITimebase.SEC2US, getPercentile(0.99) * ITimebase.SEC2US, getMax() * ITimebase.SEC2US);
+	}
+
+	private static int getBucket(long us) {
+		int bucket = 64 - Long.numberOfLeadingZeros(us);
+		return Math.min(bucket, NUM_BUCKETS - 1);
+	}
+}
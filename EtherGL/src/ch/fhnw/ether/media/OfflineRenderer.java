@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.media;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders media targets offline, as fast as possible. Each target gets a
+ * virtual time base which advances by the duration of each rendered frame,
+ * and the target with the earliest time renders next. Audio and video
+ * targets thus stay in sync within one frame, and results do not depend on
+ * the speed of the machine. All targets are driven by the calling thread,
+ * their frame pumps are not used.
+ */
+public final class OfflineRenderer {
+	// tolerance for accumulated frame durations
+	private static final double EPSILON = 1e-9;
+
+	private static final class Clock implements ITimebase {
+		final AbstractMediaTarget<?, ?> target;
+		volatile double                 time;
+
+		Clock(AbstractMediaTarget<?, ?> target) {
+			this.target = target;
+		}
+
+		@Override
+		public double getTime() {
+			return time;
+		}
+	}
+
+	private final List<Clock> clocks = new ArrayList<>();
+	private double            mediaTime;
+	private long              wallTime;
+	private long              frames;
+
+	public OfflineRenderer(AbstractMediaTarget<?, ?>... targets) {
+		for(AbstractMediaTarget<?, ?> target : targets)
+			add(target);
+	}
+
+	public void add(AbstractMediaTarget<?, ?> target) {
+		clocks.add(new Clock(target));
+	}
+
+	/**
+	 * Renders all targets from time zero until the given media time or
+	 * until all targets rendered their last frame, then stops them.
+	 */
+	public void render(double duration) throws RenderCommandException {
+		long start = System.nanoTime();
+		frames   = 0;
+		duration -= EPSILON;
+		for(Clock clock : clocks) {
+			clock.time = 0;
+			clock.target.startOffline(clock);
+		}
+		Throwable              failure = null;
+		RenderCommandException error   = null;
+		try {
+			for(;;) {
+				Clock next = null;
+				for(Clock clock : clocks)
+					if(clock.target.isRendering() && clock.time < duration && (next == null || clock.time < next.time))
+						next = clock;
+				if(next == null)
+					break;
+				final double frameDuration = next.target.cycleOffline();
+				// a frame without duration would stop the virtual clock
+				if(!(frameDuration > 0) && next.target.isRendering())
+					throw new RenderCommandException("Frame without duration at " + next.time + "s from " + next.target);
+				next.time += frameDuration;
+				frames++;
+			}
+		} catch(Throwable t) {
+			failure = t;
+			throw t;
+		} finally {
+			mediaTime = 0;
+			for(Clock clock : clocks) {
+				mediaTime = Math.max(mediaTime, clock.time);
+				try {
+					clock.target.stopOffline();
+				} catch(RenderCommandException e) {
+					// keep the first failure, secondary ones are attached to it
+					if(failure != null)
+						failure.addSuppressed(e);
+					else if(error != null)
+						error.addSuppressed(e);
+					else
+						error = e;
+				}
+			}
+			wallTime = System.nanoTime() - start;
+		}
+		if(error != null)
+			throw error;
+	}
+
+	/**
+	 * Returns the media time rendered by the last call to render().
+	 */
+	public double getMediaTime() {
+		return mediaTime;
+	}
+
+	/**
+	 * Returns the wall clock time in seconds taken by the last call to
+	 * render(), including stopping the targets.
+	 */
+	public double getWallTime() {
+		return wallTime / ITimebase.SEC2NS;
+	}
+
+	/**
+	 * Returns the ratio of wall clock time to media time of the last call to
+	 * render(). Values below one are faster than real time.
+	 */
+	public double getWallToMediaRatio() {
+		return mediaTime > 0 ? getWallTime() / mediaTime : 0;
+	}
+
+	/**
+	 * Returns the number of frames rendered by all targets in the last call
+	 * to render().
+	 */
+	public long getRenderedFrames() {
+		return frames;
+	}
+}
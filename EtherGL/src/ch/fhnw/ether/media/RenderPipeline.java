@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.media;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import ch.fhnw.util.Log;
+
+/**
+ * Pipelined execution of a render program. The commands are split into
+ * stages, each running on its own thread, connected by bounded single
+ * producer / single consumer rings. The first stage runs the source, so
+ * frame N+1 enters the first stage while frame N is in a later stage, and
+ * the frame pump takes finished frames in order. Commands see the frame of
+ * their stage through the target. Commands sharing per frame state, such as
+ * an FFT and its inverse, must be in the same stage. The number of frames
+ * in flight is bounded, which bounds the added latency.
+ */
+public final class RenderPipeline<T extends IRenderTarget<?>> {
+	private static final Log log = Log.create();
+
+	// frames in flight per stage
+	private static final int FRAMES_PER_STAGE = 2;
+
+	static final class Token {
+		AbstractFrame frame;
+		long          start;
+		long          enqueued;
+	}
+
+	final class StageThread extends Thread {
+		final AbstractMediaTarget<?, ?> target;
+		final int                       index;
+		final int                       first;
+		final SPSCRing<Token>           in;
+		final SPSCRing<Token>           out;
+		AbstractFrame                   frame;
+		volatile long                   frames;
+		volatile long                   serviceNs;
+		volatile long                   latencyNs;
+
+		StageThread(int index, int first, SPSCRing<Token> in, SPSCRing<Token> out) {
+			super("render stage " + index);
+			this.target = RenderPipeline.this.target;
+			this.index  = index;
+			this.first  = first;
+			this.in     = in;
+			this.out    = out;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while(running) {
+					final Token token = in.take(RenderPipeline.this);
+					if(token == null) break;
+					final long start = System.nanoTime();
+					if(index == 0)
+						token.start = start;
+					frame = index == 0 ? null : token.frame;
+					final AbstractRenderCommand<T>[] commands = program.getProgram();
+					final int end = Math.min(commands.length, index + 1 < starts.length ? starts[index + 1] : commands.length);
+					for(int i = Math.min(first, end); i < end; i++)
+						commands[i].run(pumpTarget);
+					token.frame = frame;
+					frame = null;
+					final long now = System.nanoTime();
+					serviceNs += now - start;
+					latencyNs += now - (index == 0 ? start : token.enqueued);
+					frames++;
+					token.enqueued = now;
+					if(!(out.put(token, RenderPipeline.this))) break;
+				}
+			} catch(Throwable t) {
+				error.compareAndSet(null, t);
+				log.severe(t);
+			}
+			halt();
+		}
+	}
+
+	private final RenderProgram<T>              program;
+	private final T                             pumpTarget;
+	private final AbstractMediaTarget<?, ?>     target;
+	private final int[]                         starts;
+	private final RenderPipeline<?>.StageThread[] stages;
+	private final List<SPSCRing<Token>>         rings;
+	private final SPSCRing<Token>               free;
+	private final SPSCRing<Token>               done;
+	private final AtomicReference<Throwable>    error     = new AtomicReference<>();
+	private volatile boolean                    running   = true;
+	private final long                          startTime = System.nanoTime();
+	private long                                latencyNs;
+	private long                                frames;
+
+	RenderPipeline(RenderProgram<T> program, T target, int[] starts) {
+		this.program    = program;
+		this.pumpTarget = target;
+		this.target     = (AbstractMediaTarget<?, ?>)target;
+		this.starts     = starts;
+		this.stages     = new RenderPipeline<?>.StageThread[starts.length];
+		this.rings      = new ArrayList<>(starts.length + 1);
+		final int inFlight = FRAMES_PER_STAGE * starts.length;
+		free = new SPSCRing<>(inFlight);
+		for(int i = 0; i < inFlight; i++)
+			free.offer(new Token());
+		rings.add(free);
+		for(int i = 0; i < starts.length; i++) {
+			rings.add(i == starts.length - 1 ? new SPSCRing<>(inFlight) : new SPSCRing<>(FRAMES_PER_STAGE));
+			stages[i] = new StageThread(i, starts[i], rings.get(i), rings.get(i + 1));
+		}
+		done = rings.get(starts.length);
+		for(Thread stage : stages)
+			stage.start();
+	}
+
+	/**
+	 * Takes the next finished frame on the frame pump and hands it to the
+	 * target. Returns false if the pipeline stopped. Throws the error of a
+	 * failed stage.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	boolean run() throws RenderCommandException {
+		checkError();
+		final Token token = done.take(this);
+		if(token == null) {
+			((AbstractMediaTarget)target).setPipelineFrame(null);
+			checkError();
+			return false;
+		}
+		latencyNs += System.nanoTime() - token.start;
+		frames++;
+		((AbstractMediaTarget)target).setPipelineFrame(token.frame);
+		token.frame = null;
+		free.offer(token);
+		return true;
+	}
+
+	private void checkError() throws RenderCommandException {
+		final Throwable t = error.get();
+		if(t != null)
+			throw t instanceof RenderCommandException ? (RenderCommandException)t : new RenderCommandException(t);
+	}
+
+	boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Returns the error that stopped a stage or null.
+	 */
+	Throwable getError() {
+		return error.get();
+	}
+
+	boolean isActive() {
+		return running && error.get() == null && target.isRendering();
+	}
+
+	private void halt() {
+		running = false;
+		for(Thread stage : stages)
+			LockSupport.unpark(stage);
+		for(SPSCRing<Token> ring : rings)
+			ring.wake();
+	}
+
+	/**
+	 * Stops the stage threads and waits until they terminated.
+	 */
+	void dispose() {
+		halt();
+		boolean interrupted = false;
+		for(Thread stage : stages) {
+			if(stage == Thread.currentThread())
+				continue;
+			for(;;) {
+				try {
+					stage.join();
+					break;
+				} catch(InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	public int getNumStages() {
+		return stages.length;
+	}
+
+	/**
+	 * Returns the index of the first command of the given stage.
+	 */
+	public int getFirstCommand(int stage) {
+		return starts[stage];
+	}
+
+	/**
+	 * Returns the number of frames processed by the given stage.
+	 */
+	public long getFrames(int stage) {
+		return stages[stage].frames;
+	}
+
+	/**
+	 * Returns the average time in seconds the given stage spends on a frame.
+	 */
+	public double getServiceTime(int stage) {
+		final RenderPipeline<?>.StageThread s = stages[stage];
+		return s.frames == 0 ? 0 : s.serviceNs / (s.frames * ITimebase.SEC2NS);
+	}
+
+	/**
+	 * Returns the average latency in seconds added by the given stage,
+	 * including waiting for the stage and processing.
+	 */
+	public double getLatency(int stage) {
+		final RenderPipeline<?>.StageThread s = stages[stage];
+		return s.frames == 0 ? 0 : s.latencyNs / (s.frames * ITimebase.SEC2NS);
+	}
+
+	/**
+	 * Returns the frames per second processed by the given stage since the
+	 * pipeline started.
+	 */
+	public double getThroughput(int stage) {
+		return stages[stage].frames / ((System.nanoTime() - startTime) / ITimebase.SEC2NS);
+	}
+
+	/**
+	 * Returns the average time in seconds from a frame entering the first
+	 * stage until the frame pump takes it.
+	 */
+	public double getLatency() {
+		return frames == 0 ? 0 : latencyNs / (frames * ITimebase.SEC2NS);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for(int i = 0; i < stages.length; i++)
+			result.append(String.format("stage %d (commands %d-): %.0f frames/s, service %.3f ms, latency %.3f ms\n", i, starts[i], getThroughput(i), getServiceTime(i) * ITimebase.SEC2MS, getLatency(i) * ITimebase.SEC2MS));
+		result.append(String.format("total latency %.3f ms", getLatency() * ITimebase.SEC2MS));
+		return result.toString();
+	}
+}
@@ -87,6 +87,8 @@ public class RenderProgram<T extends IRenderTarget<?>> extends AbstractRenderCom
 	}
 
 	private final AtomicReference<AbstractRenderCommand<T>[]> program   = new AtomicReference<>();
+	private volatile int[]                                    stages;
+	private volatile RenderPipeline<T>                        pipeline;
 
 	@SuppressWarnings("unchecked")
 	@SafeVarargs
@@ -186,7 +188,53 @@ public class RenderProgram<T extends IRenderTarget<?>> extends AbstractRenderCom
 		this.program.set(newProgram);
 	}
 
+	/**
+	 * Runs the program pipelined on one thread per stage if the target is a
+	 * media target. The first stage starts with the source, the following
+	 * stages start at the given command indices, which must be ascending.
+	 * Without indices the program runs sequentially on the frame pump.
+	 */
+	public synchronized void setPipeline(int ... stageStarts) {
+		int last = 0;
+		for(int start : stageStarts) {
+			if(start <= last)
+				throw new IllegalArgumentException("Stage start " + start + " not after " + last);
+			last = start;
+		}
+		if(pipeline != null) {
+			pipeline.dispose();
+			pipeline = null;
+		}
+		stages = stageStarts.length == 0 ? null : ArrayUtilities.prepend(0, stageStarts);
+	}
+
+	/**
+	 * Returns the pipeline running this program or null if the program runs
+	 * sequentially.
+	 */
+	public RenderPipeline<T> getPipeline() {
+		return pipeline;
+	}
+
 	protected void run() throws RenderCommandException {
+		final int[] stages = this.stages;
+		if(stages != null && target.get() instanceof AbstractMediaTarget) {
+			RenderPipeline<T> pipeline = this.pipeline;
+			if(pipeline == null || !(pipeline.isRunning())) {
+				synchronized(this) {
+					if(this.stages == null) return;
+					pipeline = this.pipeline;
+					// a pipeline stopped by the target is rebuilt, one stopped by an error throws it
+					if(pipeline == null || !(pipeline.isRunning()) && pipeline.getError() == null) {
+						if(pipeline != null)
+							pipeline.dispose();
+						this.pipeline = pipeline = new RenderPipeline<>(this, target.get(), this.stages);
+					}
+				}
+			}
+			pipeline.run();
+			return;
+		}
 		AbstractRenderCommand<T>[] commands = program.get(); 
 		for(AbstractRenderCommand<T> command : commands)
 			command.run(target.get());
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.media;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded ring connecting exactly one producer and one consumer thread.
+ * Waiting threads park with a timeout, so a missed wake-up only costs a
+ * short delay and waits can observe a stop condition.
+ */
+final class SPSCRing<E> {
+	private static final long WAIT_NS = 1000 * 1000;
+
+	private final Object[]   items;
+	private final int        mask;
+	private volatile long    head;
+	private volatile long    tail;
+	private volatile Thread  consumer;
+	private volatile Thread  producer;
+
+	/**
+	 * Creates a ring with the given capacity, rounded up to a power of two
+	 * of at least two.
+	 */
+	SPSCRing(int capacity) {
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		items = new Object[size];
+		mask  = size - 1;
+	}
+
+	boolean offer(E item) {
+		final long t = tail;
+		if(t - head == items.length)
+			return false;
+		items[(int)t & mask] = item;
+		tail = t + 1;
+		final Thread waiting = consumer;
+		if(waiting != null)
+			LockSupport.unpark(waiting);
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	E poll() {
+		final long h = head;
+		if(h == tail)
+			return null;
+		final int idx = (int)h & mask;
+		final E result = (E)items[idx];
+		items[idx] = null;
+		head = h + 1;
+		final Thread waiting = producer;
+		if(waiting != null)
+			LockSupport.unpark(waiting);
+		return result;
+	}
+
+	/**
+	 * Adds an item, waits while the ring is full. Returns false if the
+	 * pipeline stopped or failed in the meantime.
+	 */
+	boolean put(E item, RenderPipeline<?> pipeline) {
+		while(!(offer(item))) {
+			if(!(pipeline.isActive()))
+				return false;
+			producer = Thread.currentThread();
+			if(!(offer(item)))
+				LockSupport.parkNanos(this, WAIT_NS);
+			else {
+				producer = null;
+				return true;
+			}
+			producer = null;
+		}
+		return true;
+	}
+
+	/**
+	 * Removes an item, waits while the ring is empty. Returns null if the
+	 * pipeline stopped or failed in the meantime.
+	 */
+	E take(RenderPipeline<?> pipeline) {
+		for(;;) {
+			E result = poll();
+			if(result != null)
+				return result;
+			if(!(pipeline.isActive()))
+				return null;
+			consumer = Thread.currentThread();
+			result = poll();
+			if(result == null)
+				LockSupport.parkNanos(this, WAIT_NS);
+			consumer = null;
+			if(result != null)
+				return result;
+		}
+	}
+
+	/**
+	 * Wakes up waiting threads so they re-check their stop condition.
+	 */
+	void wake() {
+		final Thread c = consumer;
+		if(c != null)
+			LockSupport.unpark(c);
+		final Thread p = producer;
+		if(p != null)
+			LockSupport.unpark(p);
+	}
+}
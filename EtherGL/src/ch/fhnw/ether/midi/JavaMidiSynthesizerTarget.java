@@ -52,7 +52,7 @@ public class JavaMidiSynthesizerTarget extends AbstractMediaTarget<MidiFrame,IMi
 
 	@Override
 	public void render() throws RenderCommandException {
-		sleepUntil(getFrame().playOutTime);
+		sleepUntil(getFrame().getPlayOutTime());
 
 		for(MidiMessage msg : getFrame().messages) {
 			if(msg instanceof ShortMessage) {
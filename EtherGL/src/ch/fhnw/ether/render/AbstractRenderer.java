@@ -59,11 +59,17 @@ public abstract class AbstractRenderer implements IRenderer {
 	}
 
 	protected void renderObjects(GL3 gl, IRenderTargetState state, Queue pass) {
+		// renderables are sorted by state, render them as one batch per pass
+		// so redundant program & uniform changes can be skipped
+		Renderable previous = null;
 		for (Renderable renderable : state.getRenderables()) {
 			if (renderable.getQueue() == pass) {
-				renderable.render(gl);
+				renderable.render(gl, previous);
+				previous = renderable;
 			}
 		}
+		if (previous != null)
+			previous.disable(gl);
 	}
 
 	protected void renderShadowVolumes(GL3 gl, IRenderTargetState state, Queue pass) {
@@ -31,10 +31,19 @@ package ch.fhnw.ether.render;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.jogamp.opengl.GL3;
 
@@ -48,19 +57,41 @@ import ch.fhnw.ether.scene.camera.ICamera;
 import ch.fhnw.ether.scene.camera.IViewCameraState;
 import ch.fhnw.ether.scene.light.ILight;
 import ch.fhnw.ether.scene.mesh.IMesh;
+import ch.fhnw.ether.scene.mesh.InstancedMesh;
+import ch.fhnw.ether.scene.mesh.InstancedMesh.InstanceData;
 import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
 import ch.fhnw.ether.scene.mesh.material.IMaterial;
+import ch.fhnw.ether.scene.mesh.material.Texture;
 import ch.fhnw.ether.view.IView;
+import ch.fhnw.util.UpdateRequest;
+import ch.fhnw.util.UpdateRequest.IUpdateListener;
+import ch.fhnw.util.UpdateRequest.IUpdateTracker;
 import ch.fhnw.util.math.Mat4;
+import ch.fhnw.util.math.geometry.BoundingBox;
+import ch.fhnw.util.math.geometry.BoundingVolumeHierarchy;
+import ch.fhnw.util.math.geometry.Frustum;
 
 /**
  * Default render manager. This would also be the place to do various
- * optimizations such as geometry / material merging etc. Currently
- * straightforward, as provided by scene.
+ * optimizations such as geometry / material merging etc. Render state is
+ * built incrementally: meshes, materials and geometries register with their
+ * update requests, and only changed entries are touched per frame. Renderables
+ * are culled per view against a bounding volume hierarchy over the mesh
+ * bounds, which is refitted whenever meshes are transformed.
  *
  * @author radar
  */
 public class DefaultRenderManager implements IRenderManager {
+	// minimum number of position floats to be transformed per frame before
+	// geometry preparation is distributed among worker threads
+	private static final int PARALLEL_PREPARE_THRESHOLD = 64 * 1024;
+	
+	// maximum number of meshes prepared by a single task
+	private static final int PREPARE_BATCH_SIZE = 4;
+
+	// worker pools for non-default parallelism, shared by all render managers
+	private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
 	private static final class SceneViewState {
 		ICamera camera = new Camera();
 		IViewCameraState viewCameraState;
@@ -70,46 +101,306 @@ public class DefaultRenderManager implements IRenderManager {
 		}
 	}
 
-	private static final class SceneMeshState {
-		Renderable renderable;
-	}
-	
 	private static final class RenderUpdate implements IRenderUpdate {
 		public final Renderable renderable;
 		public final Object[] materialData;
-		public final float[][] geometryData;
+		public float[][] geometryData;
+		public final InstanceData instanceData;
+		// vertex range changed since the last update
+		public final int changedFirst;
+		public final int changedEnd;
 
-		public RenderUpdate(Renderable renderable, IMesh mesh, boolean materialChanged, boolean geometryChanged) {
+		private final IMesh mesh;
+		private final AtomicReference<float[][]> geometryBuffer;
+		private final BoundingBox bounds;
+
+		public RenderUpdate(Renderable renderable, IMesh mesh, AtomicReference<float[][]> geometryBuffer, BoundingBox bounds, boolean materialChanged, boolean geometryChanged, int changedFirst, int changedEnd, InstanceData instanceData) {
 			this.renderable = renderable;
+			this.instanceData = instanceData;
+			this.changedFirst = changedFirst;
+			this.changedEnd = changedEnd;
 			if (materialChanged)
 				materialData = mesh.getMaterial().getData();	
 			else
 				materialData = null;
 
-			if (geometryChanged)
-				geometryData = mesh.getTransformedGeometryData();
-			else
-				geometryData = null;
+			if (geometryChanged) {
+				this.mesh = mesh;
+				this.geometryBuffer = geometryBuffer;
+				this.bounds = bounds;
+			} else {
+				this.mesh = null;
+				this.geometryBuffer = null;
+				this.bounds = null;
+			}
 		}
-		
+
+		/**
+		 * Transforms geometry into the mesh's recycled buffer (if available),
+		 * and updates the world space bounds used for culling (if given). May
+		 * be run on any thread.
+		 */
+		void prepare() {
+			if (mesh != null) {
+				geometryData = mesh.getTransformedGeometryData(geometryBuffer.getAndSet(null));
+				if (bounds != null) {
+					bounds.reset();
+					if (geometryData != null)
+						bounds.add(geometryData[0]);
+				}
+			}
+		}
+
+		int getPrepareCost() {
+			return mesh != null ? mesh.getGeometry().getData()[0].length : 0;
+		}
+
 		@Override
 		public void update(GL3 gl) {
-			renderable.update(gl, materialData, geometryData);
+			renderable.update(gl, materialData, geometryData, changedFirst, changedEnd, instanceData);
+			// data has been uploaded, hand buffer back to mesh for reuse
+			if (geometryData != null)
+				geometryBuffer.compareAndSet(null, geometryData);
 		}
 	}
 
-	
+	private static final class PrepareTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<RenderUpdate> updates;
+		private final int from;
+		private final int to;
+
+		PrepareTask(List<RenderUpdate> updates, int from, int to) {
+			this.updates = updates;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= PREPARE_BATCH_SIZE) {
+				for (int i = from; i < to; ++i)
+					updates.get(i).prepare();
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new PrepareTask(updates, from, mid), new PrepareTask(updates, mid, to));
+			}
+		}
+	}
+
+	private static final class RenderTargetState implements IRenderTargetState {
+		private final IView view;
+		private final IViewCameraState viewCameraState;
+		private final List<Renderable> renderables;
+		private final List<ILight> lights;
+
+		RenderTargetState(IView view, IViewCameraState viewCameraState, List<Renderable> renderables, List<ILight> lights) {
+			this.view = view;
+			this.viewCameraState = viewCameraState;
+			this.renderables = renderables;
+			this.lights = lights;
+		}
+
+		@Override
+		public IView getView() {
+			return view;
+		}
+
+		@Override
+		public IViewCameraState getViewCameraState() {
+			return viewCameraState;
+		}
+
+		@Override
+		public List<Renderable> getRenderables() {
+			return renderables;
+		}
+
+		@Override
+		public List<ILight> getLights() {
+			return lights;
+		}
+	}
+
+	private static final class RenderState implements IRenderState {
+		private final List<IRenderUpdate> updates;
+		private final List<IRenderTargetState> targets;
+
+		RenderState(List<IRenderUpdate> updates, List<IRenderTargetState> targets) {
+			this.updates = updates;
+			this.targets = targets;
+		}
+
+		@Override
+		public List<IRenderUpdate> getRenderUpdates() {
+			return updates;
+		}
+
+		@Override
+		public List<IRenderTargetState> getRenderStates() {
+			return targets;
+		}
+	}
 
 	private final class SceneState {
+		/**
+		 * Base for all scene entries that are registered as listeners with an
+		 * update request. Each entry enters the change queue at most once until
+		 * it is processed on the scene thread.
+		 */
+		abstract class ChangeState implements IUpdateListener {
+			private final AtomicBoolean queued = new AtomicBoolean();
+
+			@Override
+			public final void updateRequested(UpdateRequest request) {
+				if (queued.compareAndSet(false, true))
+					changes.add(this);
+			}
+
+			final void process() {
+				queued.set(false);
+				apply();
+			}
+
+			abstract void apply();
+		}
+
+		final class MeshState extends ChangeState {
+			final IMesh mesh;
+			SharedState material;
+			SharedState geometry;
+			InstanceState instances;
+			Renderable renderable;
+			final AtomicReference<float[][]> geometryBuffer = new AtomicReference<>();
+			final BoundingBox bounds = new BoundingBox();
+			int cullIndex = -1;
+			// sort keys, see STATE_ORDER
+			int shaderKey;
+			int textureKey;
+			float depth;
+			boolean materialChanged = true;
+			boolean geometryChanged = true;
+			// changed vertex range, whole geometry by default
+			int changedFirst = 0;
+			int changedEnd = Integer.MAX_VALUE;
+			boolean instancesChanged = true;
+			boolean dirty;
+			boolean removed;
+
+			MeshState(IMesh mesh) {
+				this.mesh = mesh;
+			}
+
+			@Override
+			void apply() {
+				mesh.getUpdater().clear();
+				geometryChanged = true;
+				setChanged(null);
+				markDirty();
+			}
+
+			/**
+			 * Extend changed vertex range, a null range marks all vertices.
+			 */
+			void setChanged(int[] range) {
+				if (range == null) {
+					changedFirst = 0;
+					changedEnd = Integer.MAX_VALUE;
+				} else {
+					changedFirst = Math.min(changedFirst, range[0]);
+					changedEnd = Math.max(changedEnd, range[1]);
+				}
+			}
+
+			void markDirty() {
+				if (!dirty && !removed) {
+					dirty = true;
+					dirtyMeshes.add(this);
+				}
+			}
+		}
+
+		/**
+		 * Change state of the instances of an instanced mesh.
+		 */
+		final class InstanceState extends ChangeState {
+			final MeshState mesh;
+			final UpdateRequest updater;
+
+			InstanceState(MeshState mesh, UpdateRequest updater) {
+				this.mesh = mesh;
+				this.updater = updater;
+			}
+
+			@Override
+			void apply() {
+				updater.clear();
+				mesh.instancesChanged = true;
+				mesh.markDirty();
+			}
+		}
+
+		/**
+		 * Change state of a material or geometry, which may be shared among
+		 * multiple meshes.
+		 */
+		final class SharedState extends ChangeState {
+			final IUpdateTracker object;
+			final UpdateRequest updater;
+			final boolean isMaterial;
+			final Set<MeshState> meshes = Collections.newSetFromMap(new IdentityHashMap<>());
+			final int key;
+
+			SharedState(IUpdateTracker object, boolean isMaterial, int key) {
+				this.object = object;
+				this.updater = object.getUpdater();
+				this.isMaterial = isMaterial;
+				this.key = key;
+			}
+
+			@Override
+			void apply() {
+				updater.clear();
+				int[] range = isMaterial ? null : ((IGeometry) object).takeChangedRange();
+				for (MeshState state : meshes) {
+					if (isMaterial) {
+						state.materialChanged = true;
+					} else {
+						state.geometryChanged = true;
+						state.setChanged(range);
+					}
+					state.markDirty();
+				}
+			}
+		}
+
 		final Map<IView, SceneViewState> views = new IdentityHashMap<>();
 		final List<ILight> lights = new ArrayList<>(Collections.singletonList(ILight.DEFAULT_LIGHT));
-		final Set<IMaterial> materials = Collections.newSetFromMap(new IdentityHashMap<>());
-		final Set<IGeometry> geometries = Collections.newSetFromMap(new IdentityHashMap<>());
-		final Map<IMesh, SceneMeshState> meshes = new IdentityHashMap<>();
-		
-		List<Renderable> renderables = new ArrayList<>();
+		final Map<IMaterial, SharedState> materials = new IdentityHashMap<>();
+		final Map<IGeometry, SharedState> geometries = new IdentityHashMap<>();
+		final Map<IMesh, MeshState> meshes = new IdentityHashMap<>();
+
+		final Queue<ChangeState> changes = new ConcurrentLinkedQueue<>();
+		final List<MeshState> dirtyMeshes = new ArrayList<>();
+
+		// hierarchy over world space bounds for per-view culling, and
+		// renderables that are never culled (screen / device space)
+		final BoundingVolumeHierarchy<MeshState> hierarchy = new BoundingVolumeHierarchy<>();
+		List<MeshState> unculledMeshes = Collections.emptyList();
+
+		// shader ids and shared states are mapped to small integer sort keys
+		final Map<String, Integer> shaderKeys = new HashMap<>();
+		int nextSharedKey;
+
+		// sealed lists handed to the renderer, rebuilt only when changed
+		List<ILight> renderLights;
+		List<IRenderTargetState> renderTargets;
+		IRenderState idleRenderState;
 
 		boolean rebuildMeshes = false;
+		boolean boundsChanged = false;
+		boolean orderChanged = false;
 
 		SceneState() {
 		}
@@ -119,12 +410,14 @@ public class DefaultRenderManager implements IRenderManager {
 			if (views.putIfAbsent(view, vcs) != null)
 				throw new IllegalArgumentException("view already in renderer: " + view);
 			setCamera(view, vcs.camera);
+			renderTargets = null;
 		}
 
 		void removeView(IView view) {
 			SceneViewState vcs = views.remove(view);
 			if (vcs == null)
 				throw new IllegalArgumentException("view not in renderer: " + view);
+			renderTargets = null;
 		}
 
 		ICamera getCamera(IView view) {
@@ -138,6 +431,7 @@ public class DefaultRenderManager implements IRenderManager {
 
 		void lockCamera(IView view, Mat4 viewMatrix, Mat4 projMatrix) {
 			views.get(view).viewCameraState = new ViewCameraState(view, viewMatrix, projMatrix);
+			renderTargets = null;
 		}
 
 		IViewCameraState getViewCameraState(IView view) {
@@ -152,6 +446,7 @@ public class DefaultRenderManager implements IRenderManager {
 			if (lights.get(0) == ILight.DEFAULT_LIGHT)
 				lights.remove(0);
 			lights.add(light);
+			renderLights = null;
 		}
 
 		void removeLight(ILight light) {
@@ -159,135 +454,270 @@ public class DefaultRenderManager implements IRenderManager {
 				throw new IllegalArgumentException("light not in renderer: " + light);
 			if (lights.isEmpty())
 				lights.add(ILight.DEFAULT_LIGHT);
+			renderLights = null;
 		}
 
 		void addMesh(IMesh mesh) {
-			if (meshes.putIfAbsent(mesh, new SceneMeshState()) != null)
+			MeshState state = new MeshState(mesh);
+			if (meshes.putIfAbsent(mesh, state) != null)
 				throw new IllegalArgumentException("mesh already in renderer: " + mesh);
+			state.material = attach(materials, mesh.getMaterial(), state, true);
+			state.geometry = attach(geometries, mesh.getGeometry(), state, false);
+			mesh.getUpdater().addListener(state);
+			if (mesh instanceof InstancedMesh) {
+				state.instances = new InstanceState(state, ((InstancedMesh) mesh).getInstanceUpdater());
+				state.instances.updater.addListener(state.instances);
+			}
+			state.markDirty();
 			rebuildMeshes = true;
 		}
 
 		void removeMesh(IMesh mesh) {
-			if (meshes.remove(mesh) == null)
+			MeshState state = meshes.remove(mesh);
+			if (state == null)
 				throw new IllegalArgumentException("mesh not in renderer: " + mesh);
+			mesh.getUpdater().removeListener(state);
+			if (state.instances != null)
+				state.instances.updater.removeListener(state.instances);
+			detach(materials, mesh.getMaterial(), state.material, state);
+			detach(geometries, mesh.getGeometry(), state.geometry, state);
+			state.removed = true;
 			rebuildMeshes = true;
 		}
 
+		/**
+		 * Transform geometry of all updates, in parallel if worth it. Returns
+		 * when all updates are prepared, so render states remain in order.
+		 */
+		private void prepare(List<RenderUpdate> updates, int cost) {
+			if (updates.size() > 1 && cost >= PARALLEL_PREPARE_THRESHOLD && parallelism > 1)
+				pool.invoke(new PrepareTask(updates, 0, updates.size()));
+			else
+				updates.forEach(RenderUpdate::prepare);
+		}
+
+		/**
+		 * Returns the visible renderables of a view, sorted by queue and
+		 * render state (or by depth for transparent renderables).
+		 */
+		private List<Renderable> cull(IViewCameraState vcs) {
+			final List<MeshState> visible = new ArrayList<>(unculledMeshes);
+			hierarchy.query(new Frustum(vcs.getViewProjMatrix()), visible::add);
+
+			final Mat4 v = vcs.getViewMatrix();
+			for (MeshState state : visible) {
+				if (state.mesh.getQueue() == IMesh.Queue.TRANSPARENCY) {
+					BoundingBox b = state.bounds;
+					state.depth = v.m20 * b.getCenterX() + v.m21 * b.getCenterY() + v.m22 * b.getCenterZ() + v.m23;
+				}
+			}
+			visible.sort(STATE_ORDER);
+
+			final List<Renderable> renderables = new ArrayList<>(visible.size());
+			for (MeshState state : visible)
+				renderables.add(state.renderable);
+			return Collections.unmodifiableList(renderables);
+		}
+
+		private void updateSortKeys(MeshState state, Object[] materialData) {
+			state.shaderKey = shaderKeys.computeIfAbsent(state.renderable.getShader().id(), id -> shaderKeys.size());
+			// GL texture name, 0 (no texture) if the material has none
+			state.textureKey = 0;
+			if (materialData != null) {
+				for (Object data : materialData) {
+					if (data instanceof Texture) {
+						state.textureKey = ((Texture) data).getGlObject().getId();
+						break;
+					}
+				}
+			}
+		}
+
+		private <T extends IUpdateTracker> SharedState attach(Map<T, SharedState> map, T object, MeshState mesh, boolean isMaterial) {
+			SharedState state = map.get(object);
+			if (state == null) {
+				state = new SharedState(object, isMaterial, nextSharedKey++);
+				map.put(object, state);
+				state.updater.addListener(state);
+			}
+			state.meshes.add(mesh);
+			return state;
+		}
+
+		private <T extends IUpdateTracker> void detach(Map<T, SharedState> map, T object, SharedState state, MeshState mesh) {
+			state.meshes.remove(mesh);
+			if (state.meshes.isEmpty()) {
+				map.remove(object);
+				state.updater.removeListener(state);
+			}
+		}
+
 		/**
 		 * Executed at the end of a scene time slice. Will copy all required
-		 * render state that can be executed on a separate thread. Resets all
-		 * scene update flags, this renderer needs to take care that the
-		 * returned render state is always realized, otherwise the states will
-		 * get out of sync resulting in undefined overall state.
+		 * render state that can be executed on a separate thread. Only meshes,
+		 * materials and geometries that registered a change since the last
+		 * call are touched, and the sealed renderable, light and target lists
+		 * are reused as long as they did not change. This renderer needs to
+		 * take care that the returned render state is always realized,
+		 * otherwise the states will get out of sync resulting in undefined
+		 * overall state.
 		 * 
 		 * @param renderer
 		 * @return
 		 */
-		// TODO: there's a lot of room for optimization here: don't rebuild
-		// lists that haven't changed etc.... for now we just don't care...
 		IRenderState create(IRenderer renderer) {
 
-			// 1. add meshes and mesh updates to render state
-			final List<IRenderUpdate> updates = new ArrayList<>();
+			// 1. process change queue and add mesh updates to render state
+			ChangeState change;
+			while ((change = changes.poll()) != null)
+				change.process();
+
+			final List<IRenderUpdate> renderUpdates;
+			if (dirtyMeshes.isEmpty()) {
+				renderUpdates = Collections.emptyList();
+			} else {
+				final List<RenderUpdate> updates = new ArrayList<>(dirtyMeshes.size());
+				final List<MeshState> transformed = new ArrayList<>(dirtyMeshes.size());
+				int cost = 0;
+				for (MeshState state : dirtyMeshes) {
+					state.dirty = false;
+					if (state.removed)
+						continue;
+					boolean created = false;
+					if (state.renderable == null) {
+						// TODO: optionally we could do the first update() on
+						// drawable already here, using a shared context.
+						state.renderable = renderer.createRenderable(state.mesh);
+						state.materialChanged = true;
+						state.geometryChanged = true;
+						state.setChanged(null);
+						created = true;
+					}
+					InstanceData instanceData = null;
+					BoundingBox bounds = state.bounds;
+					if (state.instances != null) {
+						// instanced meshes: bounds depend on instances and
+						// are computed here, only changed instances are
+						// uploaded (unless the renderable is new)
+						InstancedMesh mesh = (InstancedMesh) state.mesh;
+						if (state.instancesChanged || created)
+							instanceData = mesh.getInstanceData(!created);
+						if (state.instancesChanged || state.geometryChanged) {
+							BoundingBox b = mesh.getBounds();
+							state.bounds.reset();
+							if (b.isValid())
+								state.bounds.add(b);
+							transformed.add(state);
+						}
+						bounds = null;
+						state.instancesChanged = false;
+					}
+					RenderUpdate update = new RenderUpdate(state.renderable, state.mesh, state.geometryBuffer, bounds, state.materialChanged, state.geometryChanged, state.changedFirst, state.changedEnd, instanceData);
+					if (state.materialChanged) {
+						updateSortKeys(state, update.materialData);
+						orderChanged = true;
+					}
+					cost += update.getPrepareCost();
+					updates.add(update);
+					if (state.geometryChanged && state.instances == null)
+						transformed.add(state);
+					state.materialChanged = false;
+					state.geometryChanged = false;
+					state.changedFirst = Integer.MAX_VALUE;
+					state.changedEnd = 0;
+				}
+				dirtyMeshes.clear();
+				prepare(updates, cost);
+				renderUpdates = Collections.unmodifiableList(updates);
+
+				// refit culling hierarchy with new bounds
+				for (MeshState state : transformed) {
+					if (state.cullIndex >= 0)
+						hierarchy.setBounds(state.cullIndex, state.bounds);
+				}
+				boundsChanged |= !transformed.isEmpty();
+			}
+
 			if (rebuildMeshes) {
-				renderables = new ArrayList<>();
-				materials.clear();
-				geometries.clear();
+				final List<MeshState> culled = new ArrayList<>(meshes.size());
+				final List<MeshState> unculled = new ArrayList<>();
 				meshes.forEach((mesh, state) -> {
-					materials.add(mesh.getMaterial());
-					geometries.add(mesh.getGeometry());
+					if (isCulled(state.renderable)) {
+						state.cullIndex = culled.size();
+						culled.add(state);
+					} else {
+						state.cullIndex = -1;
+						unculled.add(state);
+					}
 				});
+				hierarchy.build(culled, state -> state.bounds);
+				unculledMeshes = unculled;
+				renderTargets = null;
+				rebuildMeshes = false;
 			}
-			meshes.forEach((mesh, state) -> {
-				IMaterial material = mesh.getMaterial();
-				IGeometry geometry = mesh.getGeometry();
-
-				boolean materialChanged;
-				boolean geometryChanged;
-				if (state.renderable == null) {
-					// TODO: optionally we could do the first update() on
-					// drawable already here, using a shared context.
-					state.renderable = renderer.createRenderable(mesh);
-					materialChanged = true;
-					geometryChanged = true;
-				} else {
-					materialChanged = material.getUpdater().test();
-					geometryChanged = geometry.getUpdater().test() || mesh.getUpdater().testAndClear();
-				}
-
-				if (materialChanged || geometryChanged) {
-					updates.add(new RenderUpdate(state.renderable, mesh, materialChanged, geometryChanged));
-				}
-				if (rebuildMeshes)
-					renderables.add(state.renderable);
-			});
-			// second loop required to clear view flags
-			materials.forEach(material -> material.getUpdater().clear());
-			geometries.forEach(geometry -> geometry.getUpdater().clear());
-			
-			// seal collections
-			final List<Renderable> renderRenderables = Collections.unmodifiableList(renderables);
-			final List<IRenderUpdate> renderUpdates = Collections.unmodifiableList(updates);
 
 			
 			// 2. add lights to render state
-			// currently updates are not checked, we simply update everything
-			final List<ILight> renderLights = Collections.unmodifiableList(new ArrayList<>(lights));
+			// light updates are not checked, the renderer reads the current
+			// light parameters, we only need to track the list itself
+			if (renderLights == null) {
+				renderLights = Collections.unmodifiableList(new ArrayList<>(lights));
+				renderTargets = null;
+			}
 
 			
 			// 3. set view matrices for each updated camera, add to render state
-			final List<IRenderTargetState> targets = new ArrayList<>();
 			views.forEach((view, svs) -> {
-				if (svs.camera.getUpdater().test())
+				if (svs.camera.getUpdater().test()) {
 					svs.viewCameraState = new ViewCameraState(view, svs.camera);
-				targets.add(new IRenderTargetState() {
-					@Override
-					public IView getView() {
-						return view;
-					}
-
-					@Override
-					public IViewCameraState getViewCameraState() {
-						return svs.viewCameraState;
-					}
-					
-					@Override
-					public List<Renderable> getRenderables() {
-						return renderRenderables;
-					}
-					
-					@Override
-					public List<ILight> getLights() {
-						return renderLights;
-					}
-				});
+					renderTargets = null;
+				}
 			});
 			
 			// second loop required to clear view flags
 			views.forEach((view, svs) -> svs.camera.getUpdater().clear());
 			
-			// seal collections
-			final List<IRenderTargetState> renderTargets = Collections.unmodifiableList(targets);
-
+			// 4. cull and sort renderables for each view (only if anything changed)
+			if (renderTargets == null || boundsChanged || orderChanged) {
+				final List<IRenderTargetState> targets = new ArrayList<>(views.size());
+				views.forEach((view, svs) -> targets.add(new RenderTargetState(view, svs.viewCameraState, cull(svs.viewCameraState), renderLights)));
+				renderTargets = Collections.unmodifiableList(targets);
+				idleRenderState = new RenderState(Collections.emptyList(), renderTargets);
+				boundsChanged = false;
+				orderChanged = false;
+			}
 
-			// 4. hey, we're done!
-			rebuildMeshes = false;
-			return new IRenderState() {
-				@Override
-				public List<IRenderUpdate> getRenderUpdates() {
-					return renderUpdates;
-				}
 
-				@Override
-				public List<IRenderTargetState> getRenderStates() {
-					return renderTargets;
-				}
-			};
+			// 5. hey, we're done!
+			if (renderUpdates.isEmpty())
+				return idleRenderState;
+			return new RenderState(renderUpdates, renderTargets);
 		}
 	}
 
+	/**
+	 * Render order within a view: by queue, then transparent renderables back
+	 * to front, all others by shader, texture and material, so consecutive
+	 * renderables share as much state as possible.
+	 */
+	private static final Comparator<SceneState.MeshState> STATE_ORDER = (a, b) -> {
+		IMesh.Queue qa = a.mesh.getQueue();
+		IMesh.Queue qb = b.mesh.getQueue();
+		if (qa != qb)
+			return qa.compareTo(qb);
+		if (qa == IMesh.Queue.TRANSPARENCY)
+			return Float.compare(a.depth, b.depth);
+		if (a.shaderKey != b.shaderKey)
+			return Integer.compare(a.shaderKey, b.shaderKey);
+		if (a.textureKey != b.textureKey)
+			return Integer.compare(a.textureKey, b.textureKey);
+		return Integer.compare(a.material.key, b.material.key);
+	};
+
 	private final IController controller;
 	private final IRenderer renderer;
+	private final int parallelism;
+	private final ForkJoinPool pool;
 
 	private final SceneState sceneState = new SceneState();
 
@@ -296,8 +726,27 @@ public class DefaultRenderManager implements IRenderManager {
 	}
 
 	public DefaultRenderManager(IController controller, IRenderer renderer) {
+		this(controller, renderer, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create render manager with given parallelism for render state
+	 * preparation (i.e. geometry transformation of changed meshes). The
+	 * preparing thread takes part in the work, so it runs on the common pool
+	 * by default, and on a pool shared by all render managers of the same
+	 * parallelism otherwise. No threads are owned by a render manager.
+	 */
+	public DefaultRenderManager(IController controller, IRenderer renderer, int parallelism) {
 		this.controller = controller;
 		this.renderer = renderer;
+		this.parallelism = parallelism;
+		this.pool = getPool(parallelism);
+	}
+
+	private static ForkJoinPool getPool(int parallelism) {
+		if (parallelism <= 1 || parallelism == Runtime.getRuntime().availableProcessors())
+			return ForkJoinPool.commonPool();
+		return POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
 	}
 
 	@Override
@@ -370,6 +819,16 @@ public class DefaultRenderManager implements IRenderManager {
 		};
 	}
 
+	private static boolean isCulled(Renderable renderable) {
+		switch (renderable.getQueue()) {
+		case DEVICE_SPACE_OVERLAY:
+		case SCREEN_SPACE_OVERLAY:
+			return false;
+		default:
+			return true;
+		}
+	}
+
 	private void ensureSceneThread() {
 		if (controller != null)
 			controller.ensureSceneThread();
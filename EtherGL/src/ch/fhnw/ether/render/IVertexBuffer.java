@@ -35,6 +35,13 @@ public interface IVertexBuffer {
 	
 	int getNumVertices();
 
+	/**
+	 * Returns the number of instances to be drawn.
+	 */
+	default int getNumInstances() {
+		return 1;
+	}
+
 	void bind(GL3 gl);
 
 	void unbind(GL3 gl);
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.render;
+
+import java.nio.FloatBuffer;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+
+import ch.fhnw.ether.render.gl.FloatArrayBuffer;
+import ch.fhnw.ether.render.shader.IShader;
+import ch.fhnw.ether.render.variable.IShaderArray;
+import ch.fhnw.ether.scene.mesh.InstancedMesh;
+import ch.fhnw.ether.scene.mesh.InstancedMesh.InstanceData;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry.IGeometryAttribute;
+import ch.fhnw.util.BufferUtilities;
+
+/**
+ * Vertex buffer with an additional streaming buffer of per-instance
+ * attributes, laid out as provided by InstancedMesh. Updates of a range of
+ * instances only upload that range.
+ */
+public final class InstanceBuffer implements IVertexBuffer {
+	private final VertexBuffer vertices;
+	private final FloatArrayBuffer buffer = new FloatArrayBuffer(true);
+	private final int[] sizes;
+	private final int[] offsets;
+
+	private FloatBuffer target;
+	private int numInstances;
+
+	public InstanceBuffer(IShader shader, VertexBuffer vertices) {
+		this.vertices = vertices;
+
+		IGeometryAttribute[] attributes = InstancedMesh.INSTANCE_ATTRIBUTES;
+		sizes = new int[attributes.length];
+		offsets = new int[attributes.length];
+		int offset = 0;
+		for (int i = 0; i < attributes.length; ++i) {
+			sizes[i] = attributes[i].getNumComponents();
+			offsets[i] = offset;
+			offset += sizes[i];
+		}
+
+		boolean hasTransform = false;
+		for (IShaderArray<?> array : shader.getArrays()) {
+			if (!array.isPerInstance())
+				continue;
+			int index = 0;
+			while (index < attributes.length && !attributes[index].id().equals(array.id()))
+				index++;
+			if (index == attributes.length)
+				throw new IllegalArgumentException("shader " + shader + " requires unknown instance attribute " + array.id());
+			array.setBufferIndex(index);
+			hasTransform |= attributes[index] == InstancedMesh.INSTANCE_TRANSFORM_ARRAY;
+		}
+		if (!hasTransform)
+			throw new IllegalArgumentException("shader " + shader + " does not support instancing");
+	}
+
+	public void update(GL3 gl, InstanceData data) {
+		numInstances = data.numInstances;
+		if (target == null || target.capacity() < data.data.length) {
+			target = BufferUtilities.createDirectFloatBuffer(Math.max(data.data.length, 2 * InstancedMesh.STRIDE));
+		}
+		target.clear();
+		target.put(data.data);
+		target.flip();
+		if (data.isComplete())
+			buffer.load(gl, target);
+		else
+			buffer.update(gl, target, data.first * InstancedMesh.STRIDE);
+	}
+
+	@Override
+	public int getNumVertices() {
+		return vertices.getNumVertices();
+	}
+
+	@Override
+	public int getNumInstances() {
+		return numInstances;
+	}
+
+	@Override
+	public void bind(GL3 gl) {
+		vertices.bind(gl);
+	}
+
+	@Override
+	public void unbind(GL3 gl) {
+		vertices.unbind(gl);
+	}
+
+	@Override
+	public void enableAttribute(GL3 gl, int bufferIndex, int shaderIndex) {
+		vertices.enableAttribute(gl, bufferIndex, shaderIndex);
+	}
+
+	@Override
+	public void disableAttribute(GL3 gl, int bufferIndex, int shaderIndex) {
+		vertices.disableAttribute(gl, bufferIndex, shaderIndex);
+	}
+
+	public void enableInstanceAttribute(GL3 gl, int bufferIndex, int shaderIndex) {
+		if (buffer.isEmpty() || shaderIndex < 0)
+			return;
+
+		// attribute pointers refer to the currently bound buffer, rebind
+		// vertex buffer afterwards
+		buffer.bind(gl);
+		int size = sizes[bufferIndex];
+		for (int c = 0; c * 4 < size; ++c) {
+			gl.glEnableVertexAttribArray(shaderIndex + c);
+			gl.glVertexAttribPointer(shaderIndex + c, Math.min(4, size - c * 4), GL.GL_FLOAT, false, InstancedMesh.STRIDE * 4, (offsets[bufferIndex] + c * 4) * 4);
+			gl.glVertexAttribDivisor(shaderIndex + c, 1);
+		}
+		vertices.bind(gl);
+	}
+
+	public void disableInstanceAttribute(GL3 gl, int bufferIndex, int shaderIndex) {
+		if (buffer.isEmpty() || shaderIndex < 0)
+			return;
+
+		int size = sizes[bufferIndex];
+		for (int c = 0; c * 4 < size; ++c) {
+			gl.glVertexAttribDivisor(shaderIndex + c, 0);
+			gl.glDisableVertexAttribArray(shaderIndex + c);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return vertices + " " + numInstances;
+	}
+}
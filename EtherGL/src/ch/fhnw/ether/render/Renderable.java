@@ -38,10 +38,13 @@ import com.jogamp.opengl.GL3;
 import ch.fhnw.ether.render.shader.IShader;
 import ch.fhnw.ether.scene.attribute.IAttribute;
 import ch.fhnw.ether.scene.mesh.IMesh;
+import ch.fhnw.ether.scene.mesh.InstancedMesh;
+import ch.fhnw.ether.scene.mesh.InstancedMesh.InstanceData;
 
 public final class Renderable {
 	private final IShader shader;
 	private final VertexBuffer buffer;
+	private final InstanceBuffer instances;
 	private final IMesh.Queue queue;
 	private final Set<IMesh.Flag> flags;
 
@@ -50,24 +53,58 @@ public final class Renderable {
 	}
 
 	public Renderable(IShader shader, IMesh mesh, Map<IAttribute, Supplier<?>> globals) {
-		this.shader = ShaderBuilder.create(shader, mesh.getMaterial(), globals);
-		this.buffer = new VertexBuffer(this.shader, mesh.getGeometry().getAttributes());
+		boolean instanced = mesh instanceof InstancedMesh;
+		this.shader = ShaderBuilder.create(shader, mesh.getMaterial(), instanced ? InstancedMesh.INSTANCE_ATTRIBUTES : null, globals);
+		this.buffer = new VertexBuffer(this.shader, mesh.getGeometry().getAttributes(), mesh.hasFlag(IMesh.Flag.DYNAMIC));
+		this.instances = instanced ? new InstanceBuffer(this.shader, buffer) : null;
 		this.queue = mesh.getQueue();
 		this.flags = mesh.getFlags();
 	}
 
 	public void update(GL3 gl, Object[] materialData, float[][] geometryData) {
+		update(gl, materialData, geometryData, null);
+	}
+
+	public void update(GL3 gl, Object[] materialData, float[][] geometryData, InstanceData instanceData) {
+		update(gl, materialData, geometryData, 0, Integer.MAX_VALUE, instanceData);
+	}
+
+	/**
+	 * Update with the range of vertices (first, end) that changed since the
+	 * last update. Only dynamic vertex buffers make use of the range.
+	 */
+	public void update(GL3 gl, Object[] materialData, float[][] geometryData, int changedFirst, int changedEnd, InstanceData instanceData) {
 		if (materialData != null)
 			shader.update(gl, materialData);
 		if (geometryData != null)
-			buffer.update(gl, geometryData);
+			buffer.update(gl, geometryData, changedFirst, changedEnd);
+		if (instanceData != null)
+			instances.update(gl, instanceData);
 	}
 
 	public void render(GL3 gl) {
 		shader.enable(gl);
-		shader.render(gl, buffer);
+		shader.render(gl, getDrawBuffer());
 		shader.disable(gl);
 	}
+
+	/**
+	 * Render as part of a batch. The previous renderable of the batch (or
+	 * null) is still enabled, and this renderable stays enabled after
+	 * rendering. Use disable() at the end of the batch.
+	 */
+	public void render(GL3 gl, Renderable previous) {
+		shader.enable(gl, previous != null ? previous.shader : null);
+		shader.render(gl, getDrawBuffer());
+	}
+
+	public void disable(GL3 gl) {
+		shader.disable(gl);
+	}
+
+	public IShader getShader() {
+		return shader;
+	}
 	
 	public IMesh.Queue getQueue() {
 		return queue;
@@ -81,8 +118,12 @@ public final class Renderable {
 		return buffer;
 	}
 
+	private IVertexBuffer getDrawBuffer() {
+		return instances != null ? instances : buffer;
+	}
+
 	@Override
 	public String toString() {
-		return "renderable[queue=" + getQueue() + " shader=" + shader + " buffer=" + buffer + "]";
+		return "renderable[queue=" + getQueue() + " shader=" + shader + " buffer=" + getDrawBuffer() + "]";
 	}
 }
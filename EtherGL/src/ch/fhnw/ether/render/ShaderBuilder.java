@@ -75,10 +75,24 @@ public final class ShaderBuilder {
 		}
 	}
 
-	@SuppressWarnings("unchecked")
 	public static <S extends IShader> S create(S shader, IMaterial material, Map<IAttribute, Supplier<?>> globals) {
+		return create(shader, material, null, globals);
+	}
+
+	/**
+	 * Create shader for given material, with optional per-instance
+	 * attributes.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <S extends IShader> S create(S shader, IMaterial material, IAttribute[] instanceAttributes, Map<IAttribute, Supplier<?>> globals) {
 		Attributes attributes = new Attributes();
 
+		// add instance attributes
+		if (instanceAttributes != null) {
+			for (IAttribute provided : instanceAttributes)
+				attributes.provide(provided, null);
+		}
+
 		// add material & geometry attributes
 		if (material != null) {
 			IAttribute[] provided = material.getProvidedAttributes();
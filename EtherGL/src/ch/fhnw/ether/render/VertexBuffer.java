@@ -30,6 +30,7 @@
 package ch.fhnw.ether.render;
 
 import java.nio.FloatBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.jogamp.opengl.GL;
@@ -48,7 +49,15 @@ public final class VertexBuffer implements IVertexBuffer {
 	private static final ThreadLocal<FloatBuffer> TARGET = 
 			ThreadLocal.withInitial(() -> BufferUtilities.createDirectFloatBuffer(1024 * 1024));
 
-	private final FloatArrayBuffer buffer = new FloatArrayBuffer();
+	private final FloatArrayBuffer buffer;
+
+	// dynamic buffers upload only the changed vertex range, or orphan the
+	// buffer and upload everything if the range covers at least this
+	// fraction of the vertices (sub data updates of the live buffer may
+	// wait for pending draws)
+	private static final float ORPHAN_FRACTION = 0.5f;
+
+	private final boolean dynamic;
 
 	private final int stride;
 	private final int[] sizes;
@@ -56,7 +65,22 @@ public final class VertexBuffer implements IVertexBuffer {
 	private final int[] attributeIndices;
 
 	public VertexBuffer(IShader shader, IGeometryAttribute[] attributes) {
-		List<IShaderArray<?>> arrays = shader.getArrays();
+		this(shader, attributes, false);
+	}
+
+	/**
+	 * Create vertex buffer for given shader and attributes. Dynamic vertex
+	 * buffers are streamed, and updates only upload the modified vertices.
+	 */
+	public VertexBuffer(IShader shader, IGeometryAttribute[] attributes, boolean dynamic) {
+		this.dynamic = dynamic;
+		this.buffer = new FloatArrayBuffer(dynamic);
+
+		List<IShaderArray<?>> arrays = new ArrayList<>();
+		for (IShaderArray<?> array : shader.getArrays()) {
+			if (!array.isPerInstance())
+				arrays.add(array);
+		}
 		if (arrays.isEmpty())
 			throw new IllegalArgumentException("shader " + shader + " does not define any vertex arrays");
 
@@ -88,6 +112,15 @@ public final class VertexBuffer implements IVertexBuffer {
 	}
 
 	public void update(GL3 gl, float[][] data) {
+		update(gl, data, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Update with given data, of which only the vertex range (first, end)
+	 * changed since the last update. The range is ignored for non-dynamic
+	 * buffers.
+	 */
+	public void update(GL3 gl, float[][] data, int first, int end) {
 		float[][] sources = new float[attributeIndices.length][];
 
 		int size = 0;
@@ -96,15 +129,25 @@ public final class VertexBuffer implements IVertexBuffer {
 			sources[attributeIndex] = source;
 			size += source.length;
 		}
-		FloatBuffer buffer = TARGET.get();
-		if (buffer.capacity() < size) {
-			buffer = BufferUtilities.createDirectFloatBuffer(2 * size);
-			TARGET.set(buffer);
+
+		int numVertices = sources[0].length / sizes[0];
+		end = Math.min(end, numVertices);
+		if (dynamic && size == buffer.size() && (end - first) < ORPHAN_FRACTION * numVertices) {
+			// partial update of live buffer
+			if (first >= end)
+				return;
+			FloatBuffer target = getTarget((end - first) * stride);
+			interleave(target, sources, sizes, first, end);
+			target.flip();
+			buffer.update(gl, target, first * stride);
+			return;
 		}
-		buffer.clear();
-		buffer.limit(size);
-		interleave(buffer, sources, sizes);
-		this.buffer.load(gl, buffer);
+
+		// full load, orphans the storage of dynamic buffers
+		FloatBuffer target = getTarget(size);
+		interleave(target, sources, sizes, 0, numVertices);
+		target.flip();
+		buffer.load(gl, target);
 	}
 	
 	@Override
@@ -143,8 +186,18 @@ public final class VertexBuffer implements IVertexBuffer {
 		return buffer.size() + " " + stride;
 	}
 
-	private static void interleave(FloatBuffer target, float[][] data, int[] sizes) {
-		for (int i = 0; i < data[0].length / sizes[0]; ++i) {
+	private static FloatBuffer getTarget(int size) {
+		FloatBuffer buffer = TARGET.get();
+		if (buffer.capacity() < size) {
+			buffer = BufferUtilities.createDirectFloatBuffer(2 * size);
+			TARGET.set(buffer);
+		}
+		buffer.clear();
+		return buffer;
+	}
+
+	private static void interleave(FloatBuffer target, float[][] data, int[] sizes, int first, int end) {
+		for (int i = first; i < end; ++i) {
 			for (int j = 0; j < data.length; ++j) {
 				int k = (i * sizes[j]) % data[j].length;
 				target.put(data[j], k, sizes[j]);
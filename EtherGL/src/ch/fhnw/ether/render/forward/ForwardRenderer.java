@@ -38,6 +38,8 @@ import com.jogamp.opengl.GL3;
 
 import ch.fhnw.ether.render.AbstractRenderer;
 import ch.fhnw.ether.render.Renderable;
+import ch.fhnw.ether.render.gl.FloatArrayBuffer;
+import ch.fhnw.ether.render.gl.Program;
 import ch.fhnw.ether.scene.camera.IViewCameraState;
 import ch.fhnw.ether.scene.mesh.IMesh;
 import ch.fhnw.ether.scene.mesh.IMesh.Queue;
@@ -81,6 +83,10 @@ public final class ForwardRenderer extends AbstractRenderer {
 	private final Thread renderThread;
 	private final BlockingQueue<Runnable> renderQueue = new ArrayBlockingQueue<>(MAX_RENDER_QUEUE_SIZE);
 
+	private volatile long uploadedBytesPerFrame;
+	private volatile long programSwitchesPerFrame;
+	private volatile long uniformUpdatesPerFrame;
+
 	public ForwardRenderer() {
 		this.renderThread = new Thread(this::runRenderThread, "renderthread");
 		renderThread.start();
@@ -91,6 +97,27 @@ public final class ForwardRenderer extends AbstractRenderer {
 		return ExecutionPolicy.DUAL_THREADED;
 	}
 
+	/**
+	 * Returns number of vertex buffer bytes uploaded for the last frame.
+	 */
+	public long getUploadedBytesPerFrame() {
+		return uploadedBytesPerFrame;
+	}
+
+	/**
+	 * Returns number of program switches for the last frame (all views).
+	 */
+	public long getProgramSwitchesPerFrame() {
+		return programSwitchesPerFrame;
+	}
+
+	/**
+	 * Returns number of uniform updates for the last frame (all views).
+	 */
+	public long getUniformUpdatesPerFrame() {
+		return uniformUpdatesPerFrame;
+	}
+
 	@Override
 	public Renderable createRenderable(IMesh mesh) {
 		return new Renderable(mesh, globals.attributes);
@@ -115,13 +142,17 @@ public final class ForwardRenderer extends AbstractRenderer {
 		// note that it's absolutely imperative that this is executed for
 		// every render runnable created. otherwise scene-render state will
 		// get out of sync resulting in ugly fails.
+		long uploaded = FloatArrayBuffer.getUploadedBytes();
 		try (IGLContext ctx = GLContextManager.acquireContext()) {
 			renderState.getRenderUpdates().forEach(update -> update.update(ctx.getGL()));
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
+		uploadedBytesPerFrame = FloatArrayBuffer.getUploadedBytes() - uploaded;
 		
 		// render all views
+		long programSwitches = Program.getProgramSwitches();
+		long uniformUpdates = Program.getUniformUpdates();
 		renderState.getRenderStates().forEach(targetState -> {
 			IView view = targetState.getView();
 			IViewCameraState vcs = targetState.getViewCameraState();
@@ -135,6 +166,8 @@ public final class ForwardRenderer extends AbstractRenderer {
 				return true;
 			});
 		});
+		programSwitchesPerFrame = Program.getProgramSwitches() - programSwitches;
+		uniformUpdatesPerFrame = Program.getUniformUpdates() - uniformUpdates;
 	}
 
 	private void render(GL3 gl, IRenderTargetState renderState, IView view, IViewCameraState vcs) {
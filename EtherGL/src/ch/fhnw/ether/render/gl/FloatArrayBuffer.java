@@ -30,6 +30,7 @@
 package ch.fhnw.ether.render.gl;
 
 import java.nio.Buffer;
+import java.util.concurrent.atomic.AtomicLong;
 
 import ch.fhnw.ether.render.gl.GLObject.Type;
 import ch.fhnw.util.BufferUtilities;
@@ -38,15 +39,28 @@ import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL3;
 
 /**
- * Basic float buffer attribute wrapper.
+ * Basic float buffer attribute wrapper. In streaming mode, the buffer keeps a
+ * fixed capacity that is only grown if required, and full loads orphan the
+ * previous storage instead of reallocating it, which avoids stalls for
+ * geometry that changes every frame.
  *
  * @author radar
  */
 public final class FloatArrayBuffer implements IArrayBuffer {
+	private static final AtomicLong UPLOADED_BYTES = new AtomicLong();
+
+	private final boolean streaming;
+
 	private GLObject vbo;
 	private int      size;
+	private int      capacity;
 
 	public FloatArrayBuffer() {
+		this(false);
+	}
+
+	public FloatArrayBuffer(boolean streaming) {
+		this.streaming = streaming;
 	}
 
 	@Override
@@ -62,14 +76,41 @@ public final class FloatArrayBuffer implements IArrayBuffer {
 
 			// transfer data to VBO
 			int numBytes = size * 4;
-			gl.glBufferData(GL.GL_ARRAY_BUFFER, numBytes, data, GL.GL_STATIC_DRAW);
+			if (streaming) {
+				// orphan current storage (or grow with some headroom) and
+				// fill, the driver can thus avoid waiting for pending draws
+				if (size > capacity)
+					capacity = size + size / 2;
+				gl.glBufferData(GL.GL_ARRAY_BUFFER, capacity * 4, null, GL3.GL_STREAM_DRAW);
+				gl.glBufferSubData(GL.GL_ARRAY_BUFFER, 0, numBytes, data);
+			} else {
+				capacity = size;
+				gl.glBufferData(GL.GL_ARRAY_BUFFER, numBytes, data, GL.GL_STATIC_DRAW);
+			}
+			UPLOADED_BYTES.addAndGet(numBytes);
 		} else {
 			size = 0;
-			gl.glBufferData(GL.GL_ARRAY_BUFFER, 0, BufferUtilities.EMPTY_FLOAT_BUFFER, GL.GL_STATIC_DRAW);
+			capacity = 0;
+			gl.glBufferData(GL.GL_ARRAY_BUFFER, 0, BufferUtilities.EMPTY_FLOAT_BUFFER, streaming ? GL3.GL_STREAM_DRAW : GL.GL_STATIC_DRAW);
 		}
 		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
 	}
 
+	@Override
+	public void update(GL3 gl, Buffer data, int offset) {
+		int length = data.remaining();
+		if (offset < 0 || offset + length > size)
+			throw new IllegalArgumentException("range [" + offset + ", " + (offset + length) + "] exceeds buffer size " + size);
+		if (length == 0)
+			return;
+
+		int numBytes = length * 4;
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vbo.getId());
+		gl.glBufferSubData(GL.GL_ARRAY_BUFFER, offset * 4, numBytes, data);
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+		UPLOADED_BYTES.addAndGet(numBytes);
+	}
+
 	@Override
 	public void clear(GL3 gl) {
 		load(gl, null);
@@ -91,4 +132,15 @@ public final class FloatArrayBuffer implements IArrayBuffer {
 	public boolean isEmpty() {
 		return size == 0;
 	}
+	
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * Returns total number of bytes uploaded by all float array buffers.
+	 */
+	public static long getUploadedBytes() {
+		return UPLOADED_BYTES.get();
+	}
 }
@@ -35,8 +35,21 @@ import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL3;
 
 public interface IArrayBuffer {
+	/**
+	 * Load complete buffer content. The buffer is resized to data.limit().
+	 */
 	void load(GL3 gl, Buffer data);
 
+	/**
+	 * Update a range of the buffer content, starting at given element offset.
+	 * The buffer is not resized, i.e. offset + data.remaining() must not
+	 * exceed size().
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if range exceeds current buffer size.
+	 */
+	void update(GL3 gl, Buffer data, int offset);
+
 	void clear(GL3 gl);
 
 	void bind(GL3 gl);
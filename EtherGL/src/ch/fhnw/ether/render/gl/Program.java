@@ -33,8 +33,10 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import ch.fhnw.ether.render.gl.GLObject.Type;
 import ch.fhnw.ether.render.shader.IShader;
@@ -128,8 +130,14 @@ public final class Program {
 
 	private static final Map<String, Program> PROGRAMS = new HashMap<>();
 
+	// state change counters, for statistics only
+	private static final AtomicLong PROGRAM_SWITCHES = new AtomicLong();
+	private static final AtomicLong UNIFORM_UPDATES = new AtomicLong();
+	private static final AtomicLong SAMPLER_UPDATES = new AtomicLong();
+
 	private final String id;
 	private final GLObject programObject;
+	private int[][] uniformCache = new int[16][];
 
 	private Program(GL3 gl, PrintStream out, Shader... shaders) {
 		programObject = new GLObject(gl, Type.PROGRAM);
@@ -158,6 +166,7 @@ public final class Program {
 
 	public void enable(GL3 gl) {
 		gl.glUseProgram(programObject.getId());
+		PROGRAM_SWITCHES.incrementAndGet();
 	}
 
 	public void disable(GL3 gl) {
@@ -165,48 +174,100 @@ public final class Program {
 	}
 
 	public void setUniform(GL3 gl, int index, boolean value) {
-		if(index >= 0)
-			gl.glUniform1i(index, value ? 1 : 0);
+		setUniform(gl, index, value ? 1 : 0);
 	}
 
 	public void setUniform(GL3 gl, int index, int value) {
-		if(index >= 0)
+		if (index >= 0 && changed(index, value)) {
 			gl.glUniform1i(index, value);
+			UNIFORM_UPDATES.incrementAndGet();
+		}
 	}
 
 	public void setUniform(GL3 gl, int index, float value) {
-		if(index >= 0)
+		if (index >= 0 && changed(index, Float.floatToRawIntBits(value))) {
 			gl.glUniform1f(index, value);
+			UNIFORM_UPDATES.incrementAndGet();
+		}
 	}
 
 	public void setUniformVec2(GL3 gl, int index, float[] value) {
-		if(value != null && index >= 0)
+		if (value != null && index >= 0 && changed(index, value, 2)) {
 			gl.glUniform2fv(index, 1, value, 0);
+			UNIFORM_UPDATES.incrementAndGet();
+		}
 	}
 
 	public void setUniformVec3(GL3 gl, int index, float[] value) {
-		if (value != null && index >= 0)
+		if (value != null && index >= 0 && changed(index, value, 3)) {
 			gl.glUniform3fv(index, 1, value, 0);
+			UNIFORM_UPDATES.incrementAndGet();
+		}
 	}
 
 	public void setUniformVec4(GL3 gl, int index, float[] value) {
-		if (value != null && index >= 0)
+		if (value != null && index >= 0 && changed(index, value, 4)) {
 			gl.glUniform4fv(index, 1, value, 0);
+			UNIFORM_UPDATES.incrementAndGet();
+		}
 	}
 
 	public void setUniformMat3(GL3 gl, int index, float[] value) {
-		if (value != null && index >= 0)
+		if (value != null && index >= 0 && changed(index, value, 9)) {
 			gl.glUniformMatrix3fv(index, 1, false, value, 0);
+			UNIFORM_UPDATES.incrementAndGet();
+		}
 	}
 
 	public void setUniformMat4(GL3 gl, int index, float[] value) {
-		if (value != null && index >= 0)
+		if (value != null && index >= 0 && changed(index, value, 16)) {
 			gl.glUniformMatrix4fv(index, 1, false, value, 0);
+			UNIFORM_UPDATES.incrementAndGet();
+		}
 	}
 
 	public void setUniformSampler(GL3 gl, int index, int unit) {
-		if(index >= 0)
-			setUniform(gl, index, unit);
+		if (index >= 0 && changed(index, unit)) {
+			gl.glUniform1i(index, unit);
+			SAMPLER_UPDATES.incrementAndGet();
+		}
+	}
+
+	// uniform values are program state, so we keep track of the current values
+	// (as raw bits) and skip redundant updates, e.g. when consecutive
+	// renderables share the same program and material values
+	private boolean changed(int index, int value) {
+		int[] cached = getCached(index, 1);
+		if (cached == null)
+			cached = uniformCache[index] = new int[1];
+		else if (cached[0] == value)
+			return false;
+		cached[0] = value;
+		return true;
+	}
+
+	private boolean changed(int index, float[] value, int length) {
+		int[] cached = getCached(index, length);
+		boolean changed = false;
+		if (cached == null) {
+			cached = uniformCache[index] = new int[length];
+			changed = true;
+		}
+		for (int i = 0; i < length; ++i) {
+			int bits = Float.floatToRawIntBits(value[i]);
+			if (cached[i] != bits) {
+				cached[i] = bits;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	private int[] getCached(int index, int length) {
+		if (index >= uniformCache.length)
+			uniformCache = Arrays.copyOf(uniformCache, Math.max(index + 1, 2 * uniformCache.length));
+		int[] cached = uniformCache[index];
+		return cached != null && cached.length == length ? cached : null;
 	}
 
 	public int getAttributeLocation(GL3 gl, String name) {
@@ -230,6 +291,29 @@ public final class Program {
 		return id;
 	}
 
+	/**
+	 * Returns total number of program switches (glUseProgram) of all programs.
+	 */
+	public static long getProgramSwitches() {
+		return PROGRAM_SWITCHES.get();
+	}
+
+	/**
+	 * Returns total number of uniform updates (including samplers) of all
+	 * programs.
+	 */
+	public static long getUniformUpdates() {
+		return UNIFORM_UPDATES.get();
+	}
+
+	/**
+	 * Returns total number of sampler updates (i.e. texture binds) of all
+	 * programs.
+	 */
+	public static long getSamplerUpdates() {
+		return SAMPLER_UPDATES.get();
+	}
+
 	public static Program create(GL3 gl, Class<?> root, String vertShader, String fragShader, String geomShader, PrintStream out) throws IOException {
 		String key = key(root, vertShader, fragShader, geomShader);
 		Program program = PROGRAMS.get(key);
@@ -54,6 +54,14 @@ public interface IShader {
 
 	void enable(GL3 gl);
 
+	/**
+	 * Enable shader as part of a batch. The previous shader (or null) is still
+	 * enabled. Implementations disable the previous shader if required, but
+	 * may skip redundant state changes, e.g. if both shaders share the same
+	 * program and uniform data.
+	 */
+	void enable(GL3 gl, IShader previous);
+
 	void render(GL3 gl, IVertexBuffer buffer);
 
 	void disable(GL3 gl);
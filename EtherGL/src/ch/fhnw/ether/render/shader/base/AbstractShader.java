@@ -111,13 +111,32 @@ public abstract class AbstractShader implements IShader {
 		uniforms.forEach(attr -> attr.enable(gl, program));
 	}
 
+	@Override
+	public final void enable(GL3 gl, IShader previous) {
+		if (previous == this)
+			return;
+		if (previous instanceof AbstractShader && ((AbstractShader) previous).program == program) {
+			// program is already in use, only set uniforms (the program
+			// skips values that did not change)
+			uniforms.forEach(attr -> attr.enable(gl, program));
+			return;
+		}
+		if (previous != null)
+			previous.disable(gl);
+		enable(gl);
+	}
+
 	@Override
 	public final void render(GL3 gl, IVertexBuffer buffer) {
 		buffer.bind(gl);
 		arrays.forEach(attr -> attr.enable(gl, program, buffer));
 
 		int mode = MODE[type.ordinal()];
-		gl.glDrawArrays(mode, 0, buffer.getNumVertices());
+		int numInstances = buffer.getNumInstances();
+		if (numInstances == 1)
+			gl.glDrawArrays(mode, 0, buffer.getNumVertices());
+		else if (numInstances > 1)
+			gl.glDrawArraysInstanced(mode, 0, buffer.getNumVertices(), numInstances);
 
 		arrays.forEach(attr -> attr.disable(gl, program, buffer));
 		buffer.unbind(gl);
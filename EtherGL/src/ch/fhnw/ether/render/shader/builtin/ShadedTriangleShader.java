@@ -39,11 +39,14 @@ import ch.fhnw.ether.render.variable.base.Vec3FloatUniform;
 import ch.fhnw.ether.render.variable.builtin.ColorArray;
 import ch.fhnw.ether.render.variable.builtin.ColorMapArray;
 import ch.fhnw.ether.render.variable.builtin.ColorMapUniform;
+import ch.fhnw.ether.render.variable.builtin.InstanceColorArray;
+import ch.fhnw.ether.render.variable.builtin.InstanceTransformArray;
 import ch.fhnw.ether.render.variable.builtin.LightUniformBlock;
 import ch.fhnw.ether.render.variable.builtin.NormalArray;
 import ch.fhnw.ether.render.variable.builtin.PositionArray;
 import ch.fhnw.ether.render.variable.builtin.ViewUniformBlock;
 import ch.fhnw.ether.scene.attribute.IAttribute;
+import ch.fhnw.ether.scene.mesh.InstancedMesh;
 import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
 import ch.fhnw.ether.scene.mesh.geometry.IGeometry.Primitive;
 import ch.fhnw.ether.scene.mesh.material.IMaterial;
@@ -54,6 +57,7 @@ public class ShadedTriangleShader extends AbstractShader {
 
 		boolean useVertexColors = attributes.contains(IGeometry.COLOR_ARRAY);
 		boolean useTexture = attributes.contains(IGeometry.COLOR_MAP_ARRAY);
+		boolean useInstancing = attributes.contains(InstancedMesh.INSTANCE_TRANSFORM_ARRAY);
 
 		addArray(new PositionArray());
 		addArray(new NormalArray());
@@ -64,8 +68,14 @@ public class ShadedTriangleShader extends AbstractShader {
 		if (useTexture)
 			addArray(new ColorMapArray());
 
+		if (useInstancing) {
+			addArray(new InstanceTransformArray());
+			addArray(new InstanceColorArray());
+		}
+
 		addUniform(new BooleanUniform("shader.vertex_colors_flag", "useVertexColors", () -> useVertexColors));
 		addUniform(new BooleanUniform("shader.color_map_flag", "useColorMap", () -> useTexture));
+		addUniform(new BooleanUniform("shader.instancing_flag", "useInstancing", () -> useInstancing));
 
 		addUniform(new Vec3FloatUniform(IMaterial.EMISSION, "material.emissionColor"));
 		addUniform(new Vec3FloatUniform(IMaterial.AMBIENT, "material.ambientColor"));
@@ -38,9 +38,12 @@ import ch.fhnw.ether.render.variable.builtin.ColorArray;
 import ch.fhnw.ether.render.variable.builtin.ColorMapArray;
 import ch.fhnw.ether.render.variable.builtin.ColorMapUniform;
 import ch.fhnw.ether.render.variable.builtin.ColorUniform;
+import ch.fhnw.ether.render.variable.builtin.InstanceColorArray;
+import ch.fhnw.ether.render.variable.builtin.InstanceTransformArray;
 import ch.fhnw.ether.render.variable.builtin.PositionArray;
 import ch.fhnw.ether.render.variable.builtin.ViewUniformBlock;
 import ch.fhnw.ether.scene.attribute.IAttribute;
+import ch.fhnw.ether.scene.mesh.InstancedMesh;
 import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
 import ch.fhnw.ether.scene.mesh.geometry.IGeometry.Primitive;
 import ch.fhnw.ether.scene.mesh.material.IMaterial;
@@ -52,6 +55,7 @@ public class UnshadedTriangleShader extends AbstractShader {
 
 		boolean useVertexColors = attributes.contains(IGeometry.COLOR_ARRAY);
 		boolean useTexture = attributes.contains(IGeometry.COLOR_MAP_ARRAY);
+		boolean useInstancing = attributes.contains(InstancedMesh.INSTANCE_TRANSFORM_ARRAY);
 
 		addArray(new PositionArray());
 
@@ -61,8 +65,14 @@ public class UnshadedTriangleShader extends AbstractShader {
 		if (useTexture)
 			addArray(new ColorMapArray());
 
+		if (useInstancing) {
+			addArray(new InstanceTransformArray());
+			addArray(new InstanceColorArray());
+		}
+
 		addUniform(new BooleanUniform("shader.vertex_colors_flag", "useVertexColors", () -> useVertexColors));
 		addUniform(new BooleanUniform("shader.texture_flag", "useTexture", () -> useTexture));
+		addUniform(new BooleanUniform("shader.instancing_flag", "useInstancing", () -> useInstancing));
 
 		addUniform(new ColorUniform(attributes.contains(IMaterial.COLOR) ? null : () -> RGBA.WHITE));
 
@@ -11,21 +11,34 @@ struct VertexData {
 
 uniform bool useVertexColors;
 uniform bool useColorMap;
+uniform bool useInstancing;
 
 in vec4 vertexPosition;
 in vec4 vertexNormal;
 in vec4 vertexColor;
 in vec2 vertexTexCoord;
+in mat4 instanceTransform;
+in vec4 instanceColor;
 
 out VertexData vd;
 
 void main() {
-	vd.position = view.viewMatrix * vertexPosition;
-	vd.normal = normalize(view.normalMatrix * vertexNormal.xyz);
+	vec4 position = vertexPosition;
+	vec3 normal = vertexNormal.xyz;
+	if (useInstancing) {
+		// note: assumes instance transforms without non-uniform scale
+		position = instanceTransform * position;
+		normal = mat3(instanceTransform) * normal;
+	}
+
+	vd.position = view.viewMatrix * position;
+	vd.normal = normalize(view.normalMatrix * normal);
 	vd.color = useVertexColors ? vertexColor : vec4(1);
+	if (useInstancing)
+		vd.color *= instanceColor;
 
 	if (useColorMap)
 		vd.texCoord = vertexTexCoord;
 
-	gl_Position = view.viewProjMatrix * vertexPosition;
+	gl_Position = view.viewProjMatrix * position;
 }
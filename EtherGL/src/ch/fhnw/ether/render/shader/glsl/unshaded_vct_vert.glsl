@@ -4,12 +4,15 @@
 
 uniform bool useVertexColors;
 uniform bool useTexture;
+uniform bool useInstancing;
 
 uniform vec4 materialColor;
 
 in vec4 vertexPosition;
 in vec4 vertexColor;
 in vec2 vertexTexCoord;
+in mat4 instanceTransform;
+in vec4 instanceColor;
 
 out vec4 vsColor;
 out vec2 vsTexCoord;
@@ -18,8 +21,11 @@ void main() {
 	vsColor = materialColor;
 	if (useVertexColors)
 		vsColor *= vertexColor;
+	if (useInstancing)
+		vsColor *= instanceColor;
 		
 	if (useTexture)
 		vsTexCoord = vertexTexCoord;
-	gl_Position = view.viewProjMatrix * vertexPosition;
+	vec4 position = useInstancing ? instanceTransform * vertexPosition : vertexPosition;
+	gl_Position = view.viewProjMatrix * position;
 }
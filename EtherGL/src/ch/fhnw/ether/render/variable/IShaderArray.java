@@ -40,4 +40,11 @@ public interface IShaderArray<T> extends IShaderVariable<T> {
 	void enable(GL3 gl, Program program, IVertexBuffer buffer);
 
 	void disable(GL3 gl, Program program, IVertexBuffer buffer);
+
+	/**
+	 * Returns true if this array advances per instance instead of per vertex.
+	 */
+	default boolean isPerInstance() {
+		return false;
+	}
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.render.variable.base;
+
+import com.jogamp.opengl.GL3;
+
+import ch.fhnw.ether.render.IVertexBuffer;
+import ch.fhnw.ether.render.InstanceBuffer;
+import ch.fhnw.ether.render.gl.Program;
+import ch.fhnw.ether.render.variable.IShaderArray;
+import ch.fhnw.ether.scene.attribute.ITypedAttribute;
+
+/**
+ * Float array that advances per instance. Requires an instance buffer. Arrays
+ * with more than four components (e.g. matrices) occupy consecutive attribute
+ * locations.
+ */
+public class InstanceArray extends AbstractVariable<float[]> implements IShaderArray<float[]> {
+	private int bufferIndex;
+
+	public InstanceArray(ITypedAttribute<float[]> attribute, String shaderName) {
+		super(attribute, shaderName);
+	}
+
+	@Override
+	public final void setBufferIndex(int index) {
+		this.bufferIndex = index;
+	}
+
+	@Override
+	public final boolean isPerInstance() {
+		return true;
+	}
+
+	@Override
+	public final void enable(GL3 gl, Program program, IVertexBuffer buffer) {
+		((InstanceBuffer) buffer).enableInstanceAttribute(gl, bufferIndex, getShaderIndex(gl, program));
+	}
+
+	@Override
+	public final void disable(GL3 gl, Program program, IVertexBuffer buffer) {
+		((InstanceBuffer) buffer).disableInstanceAttribute(gl, bufferIndex, getShaderIndex(gl, program));
+	}
+
+	@Override
+	protected final int resolveShaderIndex(GL3 gl, Program program, String shaderName) {
+		return program.getAttributeLocation(gl, shaderName);
+	}
+}
@@ -175,17 +175,27 @@ public final class DefaultMesh implements IMesh {
 	
 	@Override
 	public float[][] getTransformedGeometryData() {
+		return getTransformedGeometryData(null);
+	}
+
+	@Override
+	public float[][] getTransformedGeometryData(float[][] dst) {
 		float[][] src = geometry.getData();
-		float[][] dst = new float[src.length][];
+		if (dst == null || dst.length != src.length)
+			dst = new float[src.length][];
 		IGeometryAttribute[] attrs = geometry.getAttributes();
 		Mat4 tp = Mat4.multiply(Mat4.translate(position), transform);
-		dst[0] = tp.transform(src[0]);
+		Mat3 tn = null;
+		dst[0] = tp.transform(src[0], reuse(dst[0], src[0].length));
 		for (int i = 1; i < src.length; ++i) {
+			float[] target = reuse(dst[i], src[i].length);
 			if (attrs[i].equals(IGeometry.NORMAL_ARRAY)) {
-				Mat3 tn = new Mat3(tp).inverse().transpose();
-				dst[i] = tn.transform(src[i]);
+				if (tn == null)
+					tn = new Mat3(tp).inverse().transpose();
+				dst[i] = tn.transform(src[i], target);
 			} else {
-				dst[i] = Arrays.copyOf(src[i], src[i].length);
+				System.arraycopy(src[i], 0, target, 0, src[i].length);
+				dst[i] = target;
 			}
 		}
 		return dst;
@@ -216,6 +226,10 @@ public final class DefaultMesh implements IMesh {
 		return name;
 	}
 
+	private static float[] reuse(float[] array, int length) {
+		return array != null && array.length == length ? array : new float[length];
+	}
+
 	private static void checkAttributeConsistency(IMaterial material, IGeometry geometry) {
 		// primitive types must match
 		Primitive m = material.getType();
@@ -51,7 +51,9 @@ public interface IMesh extends I3DObject {
 	// FIXME: DONT_CAST_SHADOW should go to material, including CULL_FACE /
 	// DONT_CULL_FACE
 	enum Flag {
-		DONT_CAST_SHADOW
+		DONT_CAST_SHADOW,
+		/** Geometry changes frequently (e.g. every frame), use streaming buffers. */
+		DYNAMIC
 	}
 
 	EnumSet<Flag> NO_FLAGS = EnumSet.noneOf(Flag.class);
@@ -82,4 +84,19 @@ public interface IMesh extends I3DObject {
 	 * @return
 	 */
 	float[][] getTransformedGeometryData();
+
+	/**
+	 * Get the transformed geometry data, reusing the provided arrays as
+	 * target if possible. Arrays that do not match in size are reallocated.
+	 * This method may be called concurrently for different meshes, but the
+	 * provided arrays must not be used elsewhere while the call is in
+	 * progress.
+	 * 
+	 * @param dst
+	 *            the arrays to be reused or null to allocate new arrays
+	 * @return the transformed geometry data
+	 */
+	default float[][] getTransformedGeometryData(float[][] dst) {
+		return getTransformedGeometryData();
+	}
 }
@@ -0,0 +1,410 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.scene.mesh;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry.GeometryAttribute;
+import ch.fhnw.ether.scene.mesh.geometry.IGeometry.IGeometryAttribute;
+import ch.fhnw.ether.scene.mesh.material.IMaterial;
+import ch.fhnw.util.UpdateRequest;
+import ch.fhnw.util.color.RGBA;
+import ch.fhnw.util.math.Mat4;
+import ch.fhnw.util.math.Vec3;
+import ch.fhnw.util.math.geometry.BoundingBox;
+
+/**
+ * Mesh that draws many instances of one geometry and material with a single
+ * draw call. Each instance has its own transform and color (multiplied with
+ * the material color), which are applied on the GPU. The mesh transform is
+ * applied to all instances. Instance changes are tracked separately from
+ * mesh changes, and only the modified range of instances is uploaded.
+ * 
+ * Instanced meshes are supported by the builtin triangle shaders and do not
+ * cast shadows.
+ */
+public final class InstancedMesh implements IMesh {
+	/** Per-instance transform (column-major 4x4 matrix). */
+	public static final IGeometryAttribute INSTANCE_TRANSFORM_ARRAY = new GeometryAttribute("builtin.instance.transform_array", 16);
+
+	/** Per-instance color. */
+	public static final IGeometryAttribute INSTANCE_COLOR_ARRAY = new GeometryAttribute("builtin.instance.color_array", 4);
+
+	/** Per-instance attributes, in the order they are stored. */
+	public static final IGeometryAttribute[] INSTANCE_ATTRIBUTES = { INSTANCE_TRANSFORM_ARRAY, INSTANCE_COLOR_ARRAY };
+
+	/** Number of floats per instance. */
+	public static final int STRIDE = 20;
+
+	private static final int COLOR_OFFSET = 16;
+
+	/**
+	 * Snapshot of a range of instances (world transforms and colors) for
+	 * upload.
+	 */
+	public static final class InstanceData {
+		public final int numInstances;
+		public final int first;
+		public final float[] data;
+
+		InstanceData(int numInstances, int first, float[] data) {
+			this.numInstances = numInstances;
+			this.first = first;
+			this.data = data;
+		}
+
+		public boolean isComplete() {
+			return first == 0 && data.length == numInstances * STRIDE;
+		}
+	}
+
+	private final Queue queue;
+	private final EnumSet<Flag> flags;
+	private final IMaterial material;
+	private final IGeometry geometry;
+	private Vec3 position = Vec3.ZERO;
+	private Mat4 transform = Mat4.ID;
+
+	private float[] instances = new float[16 * STRIDE];
+	private int numInstances;
+
+	// changed range of instances since last snapshot
+	private int numSnapshotInstances = -1;
+	private int dirtyFirst = Integer.MAX_VALUE;
+	private int dirtyLast = -1;
+
+	private String name = "unnamed_instanced_mesh";
+
+	private final UpdateRequest update = new UpdateRequest(true);
+	private final UpdateRequest instanceUpdate = new UpdateRequest(true);
+
+	public InstancedMesh(IMaterial material, IGeometry geometry) {
+		this(material, geometry, Queue.DEPTH);
+	}
+
+	public InstancedMesh(IMaterial material, IGeometry geometry, Queue queue) {
+		this(material, geometry, queue, NO_FLAGS);
+	}
+
+	public InstancedMesh(IMaterial material, IGeometry geometry, Queue queue, EnumSet<Flag> flags) {
+		if (material.getType() != geometry.getType())
+			throw new IllegalArgumentException("primitive types of material and geometry do not match: " + material.getType() + " " + geometry.getType());
+		this.material = material;
+		this.geometry = geometry;
+		this.queue = queue;
+		this.flags = EnumSet.copyOf(flags);
+		this.flags.add(Flag.DONT_CAST_SHADOW);
+	}
+
+	// instances
+
+	public int getNumInstances() {
+		return numInstances;
+	}
+
+	public int addInstance(Mat4 transform) {
+		return addInstance(transform, RGBA.WHITE);
+	}
+
+	/**
+	 * Add instance and return its index.
+	 */
+	public int addInstance(Mat4 transform, RGBA color) {
+		if ((numInstances + 1) * STRIDE > instances.length)
+			instances = Arrays.copyOf(instances, 2 * instances.length);
+		int index = numInstances++;
+		set(index, transform, color);
+		return index;
+	}
+
+	public Mat4 getInstanceTransform(int index) {
+		checkIndex(index);
+		return new Mat4(Arrays.copyOfRange(instances, index * STRIDE, index * STRIDE + 16));
+	}
+
+	public void setInstanceTransform(int index, Mat4 transform) {
+		checkIndex(index);
+		set(index, transform, null);
+	}
+
+	public RGBA getInstanceColor(int index) {
+		checkIndex(index);
+		int i = index * STRIDE + COLOR_OFFSET;
+		return new RGBA(instances[i], instances[i + 1], instances[i + 2], instances[i + 3]);
+	}
+
+	public void setInstanceColor(int index, RGBA color) {
+		checkIndex(index);
+		set(index, null, color);
+	}
+
+	/**
+	 * Remove all instances.
+	 */
+	public void clearInstances() {
+		numInstances = 0;
+		instanceUpdate.request();
+	}
+
+	/**
+	 * Returns update request for instance changes (which includes changes of
+	 * the mesh transform). Note that the mesh's regular update request is
+	 * only triggered by geometry changes.
+	 */
+	public UpdateRequest getInstanceUpdater() {
+		return instanceUpdate;
+	}
+
+	/**
+	 * Returns a snapshot of instance data (instance transforms are multiplied
+	 * with the mesh transform) and resets change tracking. If changedOnly is
+	 * set, only the range of instances modified since the last snapshot is
+	 * returned, or null if nothing changed. If the number of instances
+	 * changed, all instances are returned.
+	 */
+	public InstanceData getInstanceData(boolean changedOnly) {
+		int first = 0;
+		int last = numInstances - 1;
+		if (changedOnly && numInstances == numSnapshotInstances) {
+			if (dirtyLast < 0)
+				return null;
+			first = dirtyFirst;
+			last = dirtyLast;
+		}
+		float[] m = Mat4.multiply(Mat4.translate(position), transform).toArray();
+		float[] data = new float[(last - first + 1) * STRIDE];
+		for (int i = first, j = 0; i <= last; ++i, j += STRIDE) {
+			multiply(m, instances, i * STRIDE, data, j);
+			System.arraycopy(instances, i * STRIDE + COLOR_OFFSET, data, j + COLOR_OFFSET, 4);
+		}
+		numSnapshotInstances = numInstances;
+		dirtyFirst = Integer.MAX_VALUE;
+		dirtyLast = -1;
+		return new InstanceData(numInstances, first, data);
+	}
+
+	// I3DObject implementation
+
+	@Override
+	public BoundingBox getBounds() {
+		BoundingBox local = new BoundingBox();
+		local.add(geometry.getData()[0]);
+		BoundingBox bb = new BoundingBox();
+		if (!local.isValid())
+			return bb;
+
+		float[] corners = new float[24];
+		for (int c = 0; c < 8; ++c) {
+			corners[c * 3] = (c & 1) == 0 ? local.getMinX() : local.getMaxX();
+			corners[c * 3 + 1] = (c & 2) == 0 ? local.getMinY() : local.getMaxY();
+			corners[c * 3 + 2] = (c & 4) == 0 ? local.getMinZ() : local.getMaxZ();
+		}
+		float[] m = Mat4.multiply(Mat4.translate(position), transform).toArray();
+		float[] w = new float[16];
+		for (int i = 0; i < numInstances; ++i) {
+			multiply(m, instances, i * STRIDE, w, 0);
+			for (int c = 0; c < 24; c += 3) {
+				float x = corners[c], y = corners[c + 1], z = corners[c + 2];
+				bb.add(w[0] * x + w[4] * y + w[8] * z + w[12], w[1] * x + w[5] * y + w[9] * z + w[13], w[2] * x + w[6] * y + w[10] * z + w[14]);
+			}
+		}
+		return bb;
+	}
+
+	@Override
+	public Vec3 getPosition() {
+		return position;
+	}
+
+	@Override
+	public void setPosition(Vec3 position) {
+		this.position = position;
+		markAll();
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	// IMesh implementation
+
+	@Override
+	public Queue getQueue() {
+		return queue;
+	}
+
+	@Override
+	public EnumSet<Flag> getFlags() {
+		return flags;
+	}
+
+	@Override
+	public boolean hasFlag(Flag flag) {
+		return flags.contains(flag);
+	}
+
+	@Override
+	public IMaterial getMaterial() {
+		return material;
+	}
+
+	@Override
+	public IGeometry getGeometry() {
+		return geometry;
+	}
+
+	@Override
+	public Mat4 getTransform() {
+		return transform;
+	}
+
+	@Override
+	public void setTransform(Mat4 transform) {
+		if (this.transform != transform) {
+			this.transform = transform;
+			markAll();
+		}
+	}
+
+	/**
+	 * Returns the transformed positions of all instances.
+	 */
+	@Override
+	public float[] getTransformedPositionData() {
+		float[] src = geometry.getData()[0];
+		float[] dst = new float[src.length * numInstances];
+		float[] m = Mat4.multiply(Mat4.translate(position), transform).toArray();
+		float[] w = new float[16];
+		for (int i = 0; i < numInstances; ++i) {
+			multiply(m, instances, i * STRIDE, w, 0);
+			int o = i * src.length;
+			for (int k = 0; k < src.length; k += 3) {
+				float x = src[k], y = src[k + 1], z = src[k + 2];
+				dst[o + k] = w[0] * x + w[4] * y + w[8] * z + w[12];
+				dst[o + k + 1] = w[1] * x + w[5] * y + w[9] * z + w[13];
+				dst[o + k + 2] = w[2] * x + w[6] * y + w[10] * z + w[14];
+			}
+		}
+		return dst;
+	}
+
+	/**
+	 * Returns a copy of the untransformed geometry data, transforms are applied
+	 * per instance when rendering.
+	 */
+	@Override
+	public float[][] getTransformedGeometryData() {
+		return getTransformedGeometryData(null);
+	}
+
+	@Override
+	public float[][] getTransformedGeometryData(float[][] dst) {
+		float[][] src = geometry.getData();
+		if (dst == null || dst.length != src.length)
+			dst = new float[src.length][];
+		for (int i = 0; i < src.length; ++i) {
+			if (dst[i] == null || dst[i].length != src[i].length)
+				dst[i] = new float[src[i].length];
+			System.arraycopy(src[i], 0, dst[i], 0, src[i].length);
+		}
+		return dst;
+	}
+
+	@Override
+	public UpdateRequest getUpdater() {
+		return update;
+	}
+
+	// we purposely leave equals and hashcode at default (identity)
+	@Override
+	public boolean equals(Object obj) {
+		return super.equals(obj);
+	}
+
+	@Override
+	public int hashCode() {
+		return super.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	private void set(int index, Mat4 transform, RGBA color) {
+		int i = index * STRIDE;
+		if (transform != null) {
+			instances[i + 0] = transform.m00; instances[i + 1] = transform.m10; instances[i + 2] = transform.m20; instances[i + 3] = transform.m30;
+			instances[i + 4] = transform.m01; instances[i + 5] = transform.m11; instances[i + 6] = transform.m21; instances[i + 7] = transform.m31;
+			instances[i + 8] = transform.m02; instances[i + 9] = transform.m12; instances[i + 10] = transform.m22; instances[i + 11] = transform.m32;
+			instances[i + 12] = transform.m03; instances[i + 13] = transform.m13; instances[i + 14] = transform.m23; instances[i + 15] = transform.m33;
+		}
+		if (color != null) {
+			instances[i + COLOR_OFFSET] = color.r;
+			instances[i + COLOR_OFFSET + 1] = color.g;
+			instances[i + COLOR_OFFSET + 2] = color.b;
+			instances[i + COLOR_OFFSET + 3] = color.a;
+		}
+		if (index < dirtyFirst)
+			dirtyFirst = index;
+		if (index > dirtyLast)
+			dirtyLast = index;
+		instanceUpdate.request();
+	}
+
+	private void markAll() {
+		dirtyFirst = 0;
+		dirtyLast = numInstances - 1;
+		instanceUpdate.request();
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= numInstances)
+			throw new IndexOutOfBoundsException("instance " + index + " of " + numInstances);
+	}
+
+	// dst = a * b (column-major 4x4)
+	private static void multiply(float[] a, float[] b, int bOffset, float[] dst, int dstOffset) {
+		for (int c = 0; c < 4; ++c) {
+			float b0 = b[bOffset + c * 4], b1 = b[bOffset + c * 4 + 1], b2 = b[bOffset + c * 4 + 2], b3 = b[bOffset + c * 4 + 3];
+			for (int r = 0; r < 4; ++r)
+				dst[dstOffset + c * 4 + r] = a[r] * b0 + a[4 + r] * b1 + a[8 + r] * b2 + a[12 + r] * b3;
+		}
+	}
+}
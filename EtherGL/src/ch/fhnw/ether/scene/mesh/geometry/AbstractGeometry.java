@@ -36,6 +36,11 @@ public abstract class AbstractGeometry implements IGeometry {
 
 	private final UpdateRequest update = new UpdateRequest();
 
+	// elements changed since the last call to takeChangedRange()
+	private int changedFirst = Integer.MAX_VALUE;
+	private int changedEnd;
+	private boolean changedAll;
+
 	protected AbstractGeometry(Primitive type) {
 		this.type = type;
 	}
@@ -50,7 +55,27 @@ public abstract class AbstractGeometry implements IGeometry {
 		return update;
 	}
 
+	@Override
+	public final synchronized int[] takeChangedRange() {
+		int[] range = changedAll ? null : new int[] { changedFirst, changedEnd };
+		changedFirst = Integer.MAX_VALUE;
+		changedEnd = 0;
+		changedAll = false;
+		return range;
+	}
+
 	protected final void updateRequest() {
+		synchronized (this) {
+			changedAll = true;
+		}
+		update.request();
+	}
+
+	protected final void updateRequest(int first, int count) {
+		synchronized (this) {
+			changedFirst = Math.min(changedFirst, first);
+			changedEnd = Math.max(changedEnd, first + count);
+		}
 		update.request();
 	}
 
@@ -114,6 +114,15 @@ public final class DefaultGeometry extends AbstractGeometry {
 		updateRequest();
 	}
 
+	@Override
+	public void modify(int index, int first, int count, IAttributeVisitor visitor) {
+		int numElements = data[index].length / attributes[index].getNumComponents();
+		if (first < 0 || count < 0 || first + count > numElements)
+			throw new IllegalArgumentException("range [" + first + ", " + (first + count) + "] exceeds number of elements " + numElements);
+		visitor.visit(attributes[index], data[index]);
+		updateRequest(first, count);
+	}
+
 	@Override
 	public void modify(IAttributesVisitor visitor) {
 		visitor.visit(attributes, data);
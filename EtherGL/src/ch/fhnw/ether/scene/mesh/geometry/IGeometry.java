@@ -145,6 +145,28 @@ public interface IGeometry extends IUpdateTracker {
 	 */
 	void modify(int index, IAttributeVisitor visitor);
 
+	/**
+	 * Modify a range of elements (e.g. vertices) of a specific attribute
+	 * through visitor. The visitor receives the whole attribute array, but
+	 * must only change the given range, which allows consumers to upload
+	 * only the changed elements.
+	 * 
+	 * @param index
+	 *            index of attribute to be visited
+	 * @param first
+	 *            first element to be modified
+	 * @param count
+	 *            number of elements to be modified
+	 * @param visitor
+	 *            attribute visitor used for modification
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if geometry cannot be modified.
+	 */
+	default void modify(int index, int first, int count, IAttributeVisitor visitor) {
+		modify(index, visitor);
+	}
+
 	/**
 	 * Modify all attributes of this geometry through visitor.
 	 * 
@@ -155,4 +177,14 @@ public interface IGeometry extends IUpdateTracker {
 	 *             if geometry cannot be modified.
 	 */
 	void modify(IAttributesVisitor visitor);
+
+	/**
+	 * Returns the range of elements (first, end) modified since the last call
+	 * and resets it, or null if the whole geometry may have changed. Used by
+	 * the render manager to upload only the changed vertices of dynamic
+	 * meshes.
+	 */
+	default int[] takeChangedRange() {
+		return null;
+	}
 }
@@ -198,7 +198,7 @@ public class ParameterWindow {
 				if(target != null) {
 					AbstractFrame frame = target.getFrame();
 					if(frame != null) {
-						frameTimeUI.setText(FMT.format(frame.playOutTime));
+						frameTimeUI.setText(FMT.format(frame.getPlayOutTime()));
 						if(SHOW_PREVIEW && frame instanceof VideoFrame) {
 							Frame f = ((VideoFrame)frame).getFrame();
 							if(f != null) {
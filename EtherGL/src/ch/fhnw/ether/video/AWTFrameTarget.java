@@ -85,7 +85,7 @@ public class AWTFrameTarget extends AbstractVideoTarget implements Runnable {
 	public void render() {
 		VideoFrame frame = getFrame();
 		image.set(frame.getFrame().toBufferedImage());
-		sleepUntil(frame.playOutTime);		
+		sleepUntil(frame.getPlayOutTime());		
 		if(canvas == null) return;
 		canvas.repaint();
 	}	
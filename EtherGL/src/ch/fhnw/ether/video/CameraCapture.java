@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.video;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import ch.fhnw.ether.image.Frame;
+import ch.fhnw.ether.image.RGB8Frame;
+import ch.fhnw.ether.media.IScheduler;
+import ch.fhnw.util.BufferUtilities;
+import ch.fhnw.util.IDisposable;
+import ch.fhnw.util.Log;
+
+/**
+ * Captures camera images into a fixed set of recycled video frames. Images
+ * are flipped vertically with one bulk copy per row. A frame returns to the
+ * free buffers once the target and the capture have disposed it, so
+ * capturing does not allocate in steady state. Optionally a capture thread
+ * grabs images ahead of the frame pump, keeping only the latest image, so
+ * camera latency does not stall rendering.
+ */
+public final class CameraCapture implements IDisposable {
+	private static final Log log = Log.create();
+
+	// wait of the capture thread if no image or no buffer is available
+	private static final long WAIT_NS = 1000 * 1000;
+
+	/**
+	 * Source of camera images. Images are packed RGB, top row first.
+	 */
+	public interface IGrabber {
+		/**
+		 * Returns the current image or null if no new image is available.
+		 */
+		ByteBuffer grab();
+	}
+
+	private final int                   width;
+	private final int                   height;
+	private final IGrabber              grabber;
+	private final BlockingQueue<Buffer> free;
+	private final AtomicReference<Buffer> ready    = new AtomicReference<>();
+	private final AtomicLong            captured   = new AtomicLong();
+	private final AtomicLong            dropped    = new AtomicLong();
+	private final AtomicLong            allocated  = new AtomicLong();
+	private final Thread                thread;
+	private volatile boolean            running    = true;
+	private volatile Thread             consumer;
+	// last delivered buffer, accessed by the frame pump only
+	private Buffer                      current;
+
+	/**
+	 * Creates a capture with the given number of buffers. Without a capture
+	 * thread two buffers suffice, with a capture thread use three.
+	 */
+	public CameraCapture(int width, int height, int numBuffers, boolean captureThread, IGrabber grabber) {
+		this.width   = width;
+		this.height  = height;
+		this.grabber = grabber;
+		this.free    = new ArrayBlockingQueue<>(numBuffers);
+		for(int i = 0; i < numBuffers; i++)
+			free.add(new Buffer());
+		if(captureThread) {
+			thread = new Thread(this::runCapture, "camera capture " + width + "x" + height);
+			thread.setDaemon(true);
+			thread.start();
+		} else {
+			thread = null;
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the most recent frame. The frame is owned by the caller and
+	 * must be disposed. If no new image was captured since the last call,
+	 * the previous frame is returned again. Blocks until the first image is
+	 * available.
+	 */
+	public VideoFrame next() {
+		for(;;) {
+			Buffer buffer = thread == null ? captureNow() : ready.getAndSet(null);
+			if(buffer != null) {
+				if(current != null)
+					current.video.dispose();
+				current = buffer;
+			}
+			if(current != null)
+				return (VideoFrame)current.video.retain();
+			if(!(running))
+				return null;
+			consumer = Thread.currentThread();
+			LockSupport.parkNanos(this, WAIT_NS);
+		}
+	}
+
+	private Buffer captureNow() {
+		Buffer buffer = free.poll();
+		if(buffer == null) {
+			// all buffers are held by the target
+			allocated.incrementAndGet();
+			buffer = new Buffer();
+		}
+		if(capture(buffer))
+			return buffer;
+		free.offer(buffer);
+		return null;
+	}
+
+	private void runCapture() {
+		try {
+			while(running) {
+				Buffer buffer = free.poll();
+				if(buffer == null && (buffer = ready.getAndSet(null)) != null)
+					dropped.incrementAndGet();
+				if(buffer == null || !(capture(buffer))) {
+					if(buffer != null)
+						free.offer(buffer);
+					LockSupport.parkNanos(this, WAIT_NS);
+					continue;
+				}
+				final Buffer previous = ready.getAndSet(buffer);
+				if(previous != null) {
+					dropped.incrementAndGet();
+					free.offer(previous);
+				}
+				final Thread waiting = consumer;
+				if(waiting != null)
+					LockSupport.unpark(waiting);
+			}
+		} catch(Throwable t) {
+			log.severe(t);
+		}
+	}
+
+	private boolean capture(Buffer buffer) {
+		final ByteBuffer src = grabber.grab();
+		if(src == null) return false;
+		final int row = width * 3;
+		if(src.capacity() < row * height) {
+			log.warning("camera image smaller than " + width + "x" + height);
+			return false;
+		}
+		final ByteBuffer dst = buffer.frame.pixels;
+		for(int j = 0; j < height; j++)
+			BufferUtilities.arraycopy(src, j * row, dst, (height - 1 - j) * row, row);
+		dst.clear();
+		buffer.frame.modified();
+		buffer.video.reuse(IScheduler.ASAP);
+		captured.incrementAndGet();
+		return true;
+	}
+
+	private void release(Buffer buffer) {
+		// surplus buffers are left to the garbage collector
+		free.offer(buffer);
+	}
+
+	/**
+	 * Returns the number of captured images.
+	 */
+	public long getCaptured() {
+		return captured.get();
+	}
+
+	/**
+	 * Returns the number of captured images overwritten before delivery.
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Returns the number of buffers allocated because all buffers were in use.
+	 */
+	public long getAllocated() {
+		return allocated.get();
+	}
+
+	@Override
+	public void dispose() {
+		running = false;
+		if(thread != null) {
+			try {
+				thread.join();
+			} catch(InterruptedException e) {
+				log.warning(e);
+			}
+		}
+		if(current != null) {
+			current.video.dispose();
+			current = null;
+		}
+	}
+
+	private final class Buffer extends FrameAccess {
+		final RGB8Frame  frame;
+		final VideoFrame video;
+
+		Buffer() {
+			super(new RGB8Frame(width, height));
+			this.frame = (RGB8Frame)super.getFrame(null);
+			this.video = new VideoFrame(this, null);
+		}
+
+		@Override
+		protected boolean isPooled() {
+			return true;
+		}
+
+		@Override
+		protected void recycle(Frame frame) {
+			release(this);
+		}
+
+		@Override
+		protected boolean skipFrame() {
+			// released without being read
+			release(this);
+			return true;
+		}
+	}
+}
@@ -31,12 +31,10 @@ package ch.fhnw.ether.video;
 
 import java.awt.Dimension;
 import java.lang.reflect.Method;
-import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.github.sarxos.webcam.Webcam;
 
-import ch.fhnw.ether.image.RGB8Frame;
 import ch.fhnw.ether.media.AbstractFrameSource;
 import ch.fhnw.ether.media.IRenderTarget;
 import ch.fhnw.ether.media.RenderCommandException;
@@ -51,6 +49,8 @@ public class CameraSource extends AbstractFrameSource implements IVideoSource, I
 	private final Webcam     cam;
 	private AtomicBoolean    disposed = new AtomicBoolean(false);
 	private final CameraInfo info;
+	private final boolean    captureThread;
+	private CameraCapture    capture;
 
 	static {
 		Runtime.getRuntime().addShutdownHook(new Thread(()->{
@@ -71,9 +71,10 @@ public class CameraSource extends AbstractFrameSource implements IVideoSource, I
 		}.start();
 	}
 
-	private CameraSource(CameraInfo info) {
-		this.info     = info;
-		this.cam      = info.getNativeCamera();
+	private CameraSource(CameraInfo info, boolean captureThread) {
+		this.info          = info;
+		this.captureThread = captureThread;
+		this.cam           = info.getNativeCamera();
 		this.cam.open(true);
 		Dimension max = cam.getViewSize();
 		for(Dimension dim : this.cam.getViewSizes())
@@ -84,33 +85,43 @@ public class CameraSource extends AbstractFrameSource implements IVideoSource, I
 
 	@Override
 	public void dispose() {
-		if(!(disposed.getAndSet(true)))
+		if(!(disposed.getAndSet(true))) {
+			disposeCapture();
 			cam.close();
+		}
+	}
+
+	private synchronized void disposeCapture() {
+		if(capture != null) {
+			capture.dispose();
+			capture = null;
+		}
 	}
 
 	@Override
 	protected void run(IRenderTarget<?> target) throws RenderCommandException {
 		if(!(cam.isOpen())) return;
-		Dimension size  = cam.getViewSize();
-		RGB8Frame frame = new RGB8Frame(size.width, size.height);
-		final ByteBuffer src = cam.getImageBytes();
-		src.clear();
-		final ByteBuffer dst = frame.pixels;
-		for(int j = frame.height; --j >= 0;) {
-			dst.position(j * frame.width * 3);
-			for(int i = frame.width; --i >= 0;) {
-				dst.put(src.get());
-				dst.put(src.get());
-				dst.put(src.get());
-			}
-		}
+		final VideoFrame frame = getCapture().next();
+		if(frame == null) return;
 		try {
-			((IVideoRenderTarget)target).setFrame(this, new VideoFrame(frame));
+			((IVideoRenderTarget)target).setFrame(this, frame);
 		} catch(Throwable t) {
 			throw new RenderCommandException(t);
 		}
 	}
 
+	private synchronized CameraCapture getCapture() {
+		Dimension size = cam.getViewSize();
+		if(capture == null || capture.getWidth() != size.width || capture.getHeight() != size.height) {
+			disposeCapture();
+			// the capture thread only grabs new images, the frame pump grabs on every cycle
+			capture = captureThread ?
+					new CameraCapture(size.width, size.height, 3, true,  () -> cam.isOpen() && cam.isImageNew() ? cam.getImageBytes() : null) :
+					new CameraCapture(size.width, size.height, 2, false, () -> cam.isOpen() ? cam.getImageBytes() : null);
+		}
+		return capture;
+	}
+
 	public void setSize(int width, int height) {
 		cam.close();
 		cam.setViewSize(new Dimension(width, height));
@@ -160,6 +171,15 @@ public class CameraSource extends AbstractFrameSource implements IVideoSource, I
 	}
 
 	public static CameraSource create(CameraInfo cameraInfo) {
-		return new CameraSource(cameraInfo);
+		return create(cameraInfo, false);
+	}
+
+	/**
+	 * Creates a camera source. With a capture thread, images are grabbed
+	 * ahead of the frame pump into triple buffered frames, otherwise the
+	 * frame pump grabs into double buffered frames.
+	 */
+	public static CameraSource create(CameraInfo cameraInfo, boolean captureThread) {
+		return new CameraSource(cameraInfo, captureThread);
 	}
 }
@@ -20,7 +20,7 @@ public class ColorMapMaterialTarget extends AbstractVideoTarget {
 	public void render() throws RenderCommandException {
 		VideoFrame frame = getFrame();
 		Texture texture = frame.getTexture();
-		sleepUntil(frame.playOutTime);
+		sleepUntil(frame.getPlayOutTime());
 		controller.run(time->{
 			material.setColorMap(texture);
 		});
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.video;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.fhnw.ether.image.Frame;
+import ch.fhnw.ether.media.RenderCommandException;
+import ch.fhnw.util.Log;
+
+/**
+ * Decodes frames of a FrameAccess ahead of time on a dedicated thread into a
+ * bounded ring. The decoder blocks while the ring is full, the consumer takes
+ * frames by play out time and drops frames that are late if a successor is
+ * already decoded. Seeks are executed by the decoder thread, which refills
+ * the ring from the new position right away.
+ */
+final class DecodeAhead implements Runnable {
+	private static final Log log = Log.create();
+
+	private static final long POLL_MS = 10;
+
+	private final FrameAccess                      access;
+	private final BlockingQueue<float[]>           audioData;
+	private final ArrayBlockingQueue<DecodedFrame> ring;
+	private final Thread                           decoder;
+	private final AtomicLong                       decoded   = new AtomicLong();
+	private final AtomicLong                       dropped   = new AtomicLong();
+	private final AtomicLong                       late      = new AtomicLong();
+	private final AtomicLong                       underruns = new AtomicLong();
+	private volatile boolean                       running   = true;
+	private volatile boolean                       finished;
+	private volatile Throwable                     error;
+	// seek state, guarded by this
+	private          double                        seekTo    = Double.NaN;
+	private volatile int                           generation;
+	// consumer state, accessed by the frame pump only
+	private          int                           consumed;
+	private          double                        offset;
+	private          DecodedFrame                  tail;
+
+	DecodeAhead(FrameAccess access, BlockingQueue<float[]> audioData, int size, String name) {
+		this.access    = access;
+		this.audioData = audioData;
+		this.ring      = new ArrayBlockingQueue<>(size);
+		this.decoder   = new Thread(this, "decode-ahead " + name);
+		decoder.setDaemon(true);
+		decoder.start();
+	}
+
+	@Override
+	public void run() {
+		double skipUntil = Double.NEGATIVE_INFINITY;
+		double lastTime  = Double.NEGATIVE_INFINITY;
+		try {
+			while(running) {
+				final int    gen;
+				final double seek;
+				synchronized (this) {
+					gen    = generation;
+					seek   = seekTo;
+					seekTo = Double.NaN;
+				}
+				if(!(Double.isNaN(seek)) && access.seek(seek)) {
+					skipUntil = seek;
+					lastTime  = Double.NEGATIVE_INFINITY;
+				}
+
+				if(!(access.decodeFrame())) {
+					Thread.sleep(1);
+					continue;
+				}
+
+				final double time = access.getPlayOutTimeInSec();
+				// decode from the key frame up to the seek position, stop skipping if the source wrapped around
+				if(time < skipUntil && time >= lastTime) {
+					lastTime = time;
+					continue;
+				}
+				skipUntil = Double.NEGATIVE_INFINITY;
+				lastTime  = time;
+
+				final boolean      last  = access.numPlays <= 0;
+				final Frame        frame = access.getFrame(audioData);
+				final DecodedFrame f     = new DecodedFrame(access, frame, time, access.isKeyframe(), last, gen);
+				decoded.incrementAndGet();
+				ring.put(f);
+
+				if(last) {
+					// keep the thread around for seeks after the end
+					synchronized (this) {
+						finished = true;
+						while(running && Double.isNaN(seekTo))
+							wait();
+						finished = false;
+					}
+				}
+			}
+		} catch(InterruptedException e) {
+			// disposed
+		} catch(Throwable t) {
+			error = t;
+			log.severe(t);
+		} finally {
+			finished = true;
+		}
+	}
+
+	/**
+	 * Returns the frame to be shown at the given target time, blocks if no
+	 * frame is decoded yet. Offline, frames are never dropped. Throws if the
+	 * decoder stopped before decoding the last frame.
+	 */
+	VideoFrame next(double now, boolean offline) throws InterruptedException, RenderCommandException {
+		boolean underrun = false;
+		for(;;) {
+			DecodedFrame f = ring.poll();
+			if(f == null) {
+				if(finished && ring.isEmpty()) {
+					if(tail != null)
+						return createFrame(tail);
+					if(!(decoder.isAlive()))
+						throw error != null ? new RenderCommandException(error) : new RenderCommandException("decoder stopped");
+				}
+				if(!(underrun)) {
+					underruns.incrementAndGet();
+					underrun = true;
+				}
+				f = ring.poll(POLL_MS, TimeUnit.MILLISECONDS);
+				if(f == null) continue;
+			}
+			if(f.generation != generation) {
+				f.discard();
+				continue;
+			}
+			if(f.generation != consumed) {
+				// first frame after a seek plays immediately
+				consumed = f.generation;
+				offset   = now - f.time;
+			}
+			f.playOutTime = f.time + offset;
+			if(f.playOutTime < now && !(f.last) && !(offline)) {
+				if(ring.peek() != null) {
+					dropped.incrementAndGet();
+					f.discard();
+					continue;
+				}
+				late.incrementAndGet();
+			}
+			if(f.last)
+				tail = f;
+			return createFrame(f);
+		}
+	}
+
+	private VideoFrame createFrame(DecodedFrame f) {
+		VideoFrame result = new VideoFrame(f, null);
+		result.setLast(f.last);
+		return result;
+	}
+
+	/**
+	 * Positions decoding at the key frame before the given media time and
+	 * continues decoding from there. Frames already in the ring are discarded.
+	 */
+	void seek(double second) {
+		synchronized (this) {
+			generation++;
+			seekTo = second;
+			notifyAll();
+		}
+		final List<DecodedFrame> stale = new ArrayList<>(ring.size());
+		ring.drainTo(stale);
+		for(DecodedFrame f : stale)
+			f.discard();
+	}
+
+	void dispose() {
+		running = false;
+		decoder.interrupt();
+		final List<DecodedFrame> stale = new ArrayList<>(ring.size());
+		ring.drainTo(stale);
+		for(DecodedFrame f : stale)
+			f.discard();
+	}
+
+	long getDecodedFrames() {
+		return decoded.get();
+	}
+
+	long getDroppedFrames() {
+		return dropped.get();
+	}
+
+	long getLateFrames() {
+		return late.get();
+	}
+
+	long getUnderruns() {
+		return underruns.get();
+	}
+
+	/**
+	 * A decoded frame in the ring. The last frame of a play is not pooled
+	 * because it may be handed out repeatedly.
+	 */
+	static final class DecodedFrame extends FrameAccess {
+		final FrameAccess owner;
+		final double      time;
+		final boolean     keyframe;
+		final boolean     last;
+		final int         generation;
+		final Frame       frame;
+		double            playOutTime;
+
+		DecodedFrame(FrameAccess owner, Frame frame, double time, boolean keyframe, boolean last, int generation) {
+			super(frame);
+			this.owner       = owner;
+			this.frame       = frame;
+			this.time        = time;
+			this.playOutTime = time;
+			this.keyframe    = keyframe;
+			this.last        = last;
+			this.generation  = generation;
+		}
+
+		void discard() {
+			if(isPooled())
+				owner.recycle(frame);
+		}
+
+		@Override
+		protected boolean isPooled() {
+			return !(last) && owner.isPooled();
+		}
+
+		@Override
+		protected void recycle(Frame frame) {
+			owner.recycle(frame);
+		}
+
+		@Override
+		public double getPlayOutTimeInSec() {
+			return playOutTime;
+		}
+
+		@Override
+		public boolean isKeyframe() {
+			return keyframe;
+		}
+	}
+}
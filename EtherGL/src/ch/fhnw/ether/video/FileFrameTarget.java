@@ -27,33 +27,209 @@
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+
 package ch.fhnw.ether.video;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
-import javax.imageio.ImageIO;
-
+import ch.fhnw.ether.image.Frame;
+import ch.fhnw.ether.image.RGB8Frame;
 import ch.fhnw.ether.media.RenderCommandException;
 import ch.fhnw.ether.video.fx.AbstractVideoFX;
 import ch.fhnw.util.TextUtilities;
 
+/**
+ * Writes frames to image files. By default each frame overwrites the given
+ * file and is encoded on the frame pump. In sequence mode frames are written
+ * to numbered files by a pool of encoder threads. The pump only copies the
+ * pixels into a pooled buffer and stalls when all buffers are queued.
+ * 8 bit RGB and RGBA frames are encoded straight from their pixels.
+ *
+ * @author radar
+ */
 public class FileFrameTarget extends AbstractVideoTarget {
-	private final File   file;
-	private final String ext;
+	private static final int BUFFERS_PER_ENCODER = 2;
+	private static final Job END                 = new Job();
+
+	private final File       file;
+	private final String     ext;
+	private final String     pattern;
+	private final int        numEncoders;
+	private final AtomicLong written = new AtomicLong();
+	private long             frameNumber;
+	private Job              job;
+	private FrameEncoder     encoder;
+	private Thread[]         threads;
+	private BlockingQueue<Job> free;
+	private BlockingQueue<Job> queue;
+	private volatile Throwable error;
 
 	public FileFrameTarget(File file) {
+		this(file, 0);
+	}
+
+	/**
+	 * Creates a target writing a numbered image sequence with the given
+	 * number of encoder threads. If the file name contains a format
+	 * specifier such as "frame%05d.png" it is formatted with the frame
+	 * number, otherwise a six digit frame number is appended to the name.
+	 * With zero encoders, each frame overwrites the given file.
+	 */
+	public FileFrameTarget(File file, int numEncoders) {
 		super(Thread.MIN_PRIORITY, AbstractVideoFX.FRAMEFX, false);
-		this.file = file;
-		this.ext  = TextUtilities.getFileExtensionWithoutDot(file.getName()).toUpperCase();
+		this.file        = file;
+		this.ext         = TextUtilities.getFileExtensionWithoutDot(file.getName()).toUpperCase();
+		this.numEncoders = numEncoders;
+		if(numEncoders <= 0)
+			pattern = null;
+		else if(file.getName().indexOf('%') >= 0)
+			pattern = file.getPath();
+		else {
+			String path = file.getPath();
+			int    dot  = path.lastIndexOf('.');
+			pattern = dot > path.lastIndexOf(File.separatorChar) ? path.substring(0, dot) + "%06d" + path.substring(dot) : path + "%06d";
+		}
 	}
 
 	@Override
 	public void render() throws RenderCommandException {
+		if(error != null)
+			throw new RenderCommandException(error);
 		try {
-			ImageIO.write(getFrame().getFrame().toBufferedImage(), ext, file);
+			if(numEncoders <= 0) {
+				if(job == null) {
+					job     = new Job();
+					encoder = new FrameEncoder();
+				}
+				job.set(getFrame().getFrame(), file);
+				job.encode(encoder, ext);
+				written.incrementAndGet();
+			} else {
+				if(threads == null)
+					startEncoders();
+				Job job = free.take();
+				job.set(getFrame().getFrame(), new File(String.format(pattern, frameNumber++)));
+				queue.put(job);
+			}
 		} catch (Throwable e) {
 			throw new RenderCommandException(e);
 		}
-		sleepUntil(getFrame().playOutTime);
+		sleepUntil(getFrame().getPlayOutTime());
+	}
+
+	@Override
+	public void stop() throws RenderCommandException {
+		super.stop();
+		if(threads != null) {
+			try {
+				for(int i = 0; i < threads.length; i++)
+					queue.put(END);
+				for(Thread thread : threads)
+					thread.join();
+			} catch (InterruptedException e) {
+				throw new RenderCommandException(e);
+			} finally {
+				threads = null;
+			}
+		}
+		if(encoder != null) {
+			encoder.dispose();
+			encoder = null;
+			job     = null;
+		}
+		if(error != null)
+			throw new RenderCommandException(error);
+	}
+
+	/**
+	 * Returns the number of frames written to files.
+	 */
+	public long getWrittenFrames() {
+		return written.get();
+	}
+
+	private void startEncoders() {
+		free    = new ArrayBlockingQueue<>(numEncoders * BUFFERS_PER_ENCODER);
+		queue   = new ArrayBlockingQueue<>(numEncoders * BUFFERS_PER_ENCODER + numEncoders);
+		threads = new Thread[numEncoders];
+		for(int i = 0; i < numEncoders * BUFFERS_PER_ENCODER; i++)
+			free.add(new Job());
+		for(int i = 0; i < numEncoders; i++) {
+			threads[i] = new Thread(this::runEncoder, "frame encoder " + i);
+			threads[i].setDaemon(true);
+			threads[i].setPriority(Thread.MIN_PRIORITY);
+			threads[i].start();
+		}
+	}
+
+	private void runEncoder() {
+		FrameEncoder encoder = new FrameEncoder();
+		try {
+			for(Job job; (job = queue.take()) != END;) {
+				try {
+					if(error == null) {
+						job.encode(encoder, ext);
+						written.incrementAndGet();
+					}
+				} catch(Throwable t) {
+					error = t;
+				}
+				free.put(job);
+			}
+		} catch(InterruptedException e) {
+			// stopped
+		} finally {
+			encoder.dispose();
+		}
+	}
+
+	private static final class Job {
+		byte[] pixels = new byte[0];
+		int    width;
+		int    height;
+		int    pixelSize;
+		File   file;
+
+		/**
+		 * Copies the frame top row first. 8 bit RGB(A) rows are copied in
+		 * bulk, other frames are converted to RGBA.
+		 */
+		void set(Frame frame, File file) {
+			this.file      = file;
+			this.width     = frame.width;
+			this.height    = frame.height;
+			final boolean bytes = frame instanceof RGB8Frame;
+			this.pixelSize = bytes ? frame.pixelSize : 4;
+			final int stride = width * pixelSize;
+			if(pixels.length != stride * height)
+				pixels = new byte[stride * height];
+			if(bytes) {
+				final ByteBuffer src = frame.pixels;
+				for(int j = 0; j < height; j++) {
+					src.position(j * stride);
+					src.get(pixels, (height - 1 - j) * stride, stride);
+				}
+				src.clear();
+			} else {
+				int idx = 0;
+				for(int j = height; --j >= 0;) {
+					for(int i = 0; i < width; i++) {
+						int argb = frame.getARGB(i, j);
+						pixels[idx++] = (byte)(argb >> 16);
+						pixels[idx++] = (byte)(argb >> 8);
+						pixels[idx++] = (byte)argb;
+						pixels[idx++] = (byte)(argb >> 24);
+					}
+				}
+			}
+		}
+
+		void encode(FrameEncoder encoder, String format) throws Exception {
+			encoder.write(file, format, pixels, width, height, pixelSize);
+		}
 	}
 }
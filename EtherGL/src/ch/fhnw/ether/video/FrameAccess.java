@@ -41,6 +41,25 @@ public class FrameAccess {
 		return frame.getTexture();
 	}
 
+	/**
+	 * Returns true if frames returned by getFrame() are pooled and must be
+	 * handed back through recycle() once they are no longer used.
+	 */
+	protected boolean isPooled() {
+		return false;
+	}
+
+	protected void recycle(Frame frame) {}
+
+	/**
+	 * Positions decoding at the key frame at or before the given media time.
+	 * Play out times of subsequent frames are media times. Returns false if
+	 * seeking is not supported.
+	 */
+	protected boolean seek(double second) {
+		return false;
+	}
+
 	protected int getWidth() {
 		return frame.width;
 	}
@@ -78,6 +97,15 @@ public class FrameAccess {
 
 	public boolean decodeFrame() {return true;}
 
+	/**
+	 * Moves audio decoded so far to audioData without reading a frame, so
+	 * synchronous offline rendering can feed an audio target that runs
+	 * ahead of the video target. Returns false if no audio can be provided.
+	 */
+	protected boolean decodeAudio(BlockingQueue<float[]> audioData) {
+		return false;
+	}
+
 	public boolean isKeyframe() {
 		return true;
 	}
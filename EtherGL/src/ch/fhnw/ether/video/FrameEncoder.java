@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.video;
+
+import java.awt.Point;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Encodes packed 8 bit RGB or RGBA pixels, top row first, to an image file.
+ * PNG is encoded directly from the pixels, other formats go through ImageIO
+ * with an image wrapping the pixels, so no per pixel conversion takes place.
+ * Instances keep their buffers and are not thread safe.
+ */
+final class FrameEncoder {
+	private static final byte[] PNG_SIGNATURE = { (byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+	private static final byte[] IHDR          = { 'I', 'H', 'D', 'R' };
+	private static final byte[] IDAT          = { 'I', 'D', 'A', 'T' };
+	private static final byte[] IEND          = { 'I', 'E', 'N', 'D' };
+	private static final int    CHUNK_SIZE    = 64 * 1024;
+	// PNG "up" filter, predicts each byte from the byte above
+	private static final byte   FILTER_UP     = 2;
+
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private final CRC32    crc      = new CRC32();
+	private final byte[]   chunk    = new byte[CHUNK_SIZE];
+	private final byte[]   header   = new byte[13];
+	private byte[]         line     = new byte[0];
+
+	/**
+	 * Writes the given pixels to the file in the given format (e.g. "PNG" or
+	 * "JPG").
+	 */
+	void write(File file, String format, byte[] pixels, int width, int height, int pixelSize) throws IOException {
+		if("PNG".equalsIgnoreCase(format))
+			writePNG(file, pixels, width, height, pixelSize);
+		else if(!(ImageIO.write(wrap(pixels, width, height, pixelSize, !("JPG".equalsIgnoreCase(format) || "JPEG".equalsIgnoreCase(format))), format, file)))
+			throw new IOException("No image writer for " + format);
+	}
+
+	/**
+	 * Releases native compression resources.
+	 */
+	void dispose() {
+		deflater.end();
+	}
+
+	private static BufferedImage wrap(byte[] pixels, int width, int height, int pixelSize, boolean alpha) {
+		alpha &= pixelSize == 4;
+		int[]          bands  = alpha ? new int[] { 0, 1, 2, 3 } : new int[] { 0, 1, 2 };
+		WritableRaster raster = Raster.createInterleavedRaster(new DataBufferByte(pixels, width * height * pixelSize), width, height, width * pixelSize, pixelSize, bands, new Point());
+		ComponentColorModel model = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), alpha, false, alpha ? Transparency.TRANSLUCENT : Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+		return new BufferedImage(model, raster, false, null);
+	}
+
+	private void writePNG(File file, byte[] pixels, int width, int height, int pixelSize) throws IOException {
+		final int stride = width * pixelSize;
+		if(line.length != stride + 1)
+			line = new byte[stride + 1];
+		try(OutputStream out = new BufferedOutputStream(new FileOutputStream(file), CHUNK_SIZE)) {
+			out.write(PNG_SIGNATURE);
+			putInt(header, 0, width);
+			putInt(header, 4, height);
+			header[8]  = 8;
+			header[9]  = (byte)(pixelSize == 4 ? 6 : 2);
+			header[10] = 0;
+			header[11] = 0;
+			header[12] = 0;
+			writeChunk(out, IHDR, header, header.length);
+
+			deflater.reset();
+			int fill = 0;
+			for(int j = 0; j < height; j++) {
+				final int off = j * stride;
+				line[0] = FILTER_UP;
+				if(j == 0)
+					System.arraycopy(pixels, 0, line, 1, stride);
+				else
+					for(int i = 0; i < stride; i++)
+						line[i + 1] = (byte)(pixels[off + i] - pixels[off - stride + i]);
+				deflater.setInput(line, 0, stride + 1);
+				while(!(deflater.needsInput())) {
+					fill += deflater.deflate(chunk, fill, CHUNK_SIZE - fill);
+					if(fill == CHUNK_SIZE) {
+						writeChunk(out, IDAT, chunk, fill);
+						fill = 0;
+					}
+				}
+			}
+			deflater.finish();
+			while(!(deflater.finished())) {
+				fill += deflater.deflate(chunk, fill, CHUNK_SIZE - fill);
+				if(fill == CHUNK_SIZE) {
+					writeChunk(out, IDAT, chunk, fill);
+					fill = 0;
+				}
+			}
+			if(fill > 0)
+				writeChunk(out, IDAT, chunk, fill);
+			writeChunk(out, IEND, chunk, 0);
+		}
+	}
+
+	private void writeChunk(OutputStream out, byte[] type, byte[] data, int length) throws IOException {
+		writeInt(out, length);
+		out.write(type);
+		out.write(data, 0, length);
+		crc.reset();
+		crc.update(type);
+		crc.update(data, 0, length);
+		writeInt(out, (int)crc.getValue());
+	}
+
+	private static void writeInt(OutputStream out, int value) throws IOException {
+		out.write(value >>> 24);
+		out.write(value >>> 16);
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+	private static void putInt(byte[] dst, int off, int value) {
+		dst[off]     = (byte)(value >>> 24);
+		dst[off + 1] = (byte)(value >>> 16);
+		dst[off + 2] = (byte)(value >>> 8);
+		dst[off + 3] = (byte)value;
+	}
+}
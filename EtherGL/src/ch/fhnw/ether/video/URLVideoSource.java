@@ -33,6 +33,7 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import javax.imageio.ImageIO;
 
@@ -42,11 +43,18 @@ import ch.fhnw.ether.media.AbstractFrameSource;
 import ch.fhnw.ether.media.IRenderTarget;
 import ch.fhnw.ether.media.RenderCommandException;
 import ch.fhnw.ether.video.jcodec.JCodecAccess;
+import ch.fhnw.util.IDisposable;
 import ch.fhnw.util.TextUtilities;
 
-public class URLVideoSource extends AbstractFrameSource implements IAudioSource, IVideoSource {
+public class URLVideoSource extends AbstractFrameSource implements IAudioSource, IVideoSource, IDisposable {
 	private static final boolean USE_JCODEC = false;
 
+	/** Typical number of frames to decode ahead, decode ahead is off unless requested. */
+	public static final int DECODE_AHEAD = 4;
+
+	// max wait for the decode ahead thread in offline rendering
+	private static final long OFFLINE_AUDIO_WAIT = 1000;
+
 	private final int                    width;
 	private final int                    height;
 	private final float                  frameRate;
@@ -57,14 +65,25 @@ public class URLVideoSource extends AbstractFrameSource implements IAudioSource,
 	protected final URL                  url;
 	private final FrameAccess            frameAccess;
 	private final BlockingQueue<float[]> audioData = new LinkedBlockingQueue<>();
+	private final DecodeAhead            decodeAhead;
 
 	long samples;
+	long dropped;
 
 	public URLVideoSource(URL url) throws IOException {
 		this(url, Integer.MAX_VALUE);
 	}
 
 	public URLVideoSource(URL url, int numPlays) throws IOException {
+		this(url, numPlays, 0);
+	}
+
+	/**
+	 * Creates a video source decoding up to decodeAhead frames in advance on
+	 * a separate thread. With decodeAhead <= 0 frames are decoded on demand by
+	 * the frame pump. Sources decoding ahead must be disposed.
+	 */
+	public URLVideoSource(URL url, int numPlays, int decodeAhead) throws IOException {
 		this.url      = url;
 		try {
 			frameAccess       = isStillImage(url) ? new FrameAccess(this) : USE_JCODEC ? new JCodecAccess(this, numPlays) : new XuggleAccess(this, numPlays);
@@ -78,6 +97,7 @@ public class URLVideoSource extends AbstractFrameSource implements IAudioSource,
 		} catch(Throwable t) {
 			throw new IOException(t);
 		}
+		this.decodeAhead = decodeAhead > 0 && frameCount != 1 ? new DecodeAhead(frameAccess, audioData, decodeAhead, url.toString()) : null;
 	}
 
 	public static boolean isStillImage(URL url) {
@@ -128,19 +148,85 @@ public class URLVideoSource extends AbstractFrameSource implements IAudioSource,
 		return numChannels;
 	}
 
+	/**
+	 * Seeks to the key frame at or before the given media time. With decode
+	 * ahead enabled, the ring is refilled from there and the first frame
+	 * after the seek plays immediately. Returns false if the underlying
+	 * decoder does not support seeking.
+	 */
+	public boolean seek(double second) {
+		if(decodeAhead != null) {
+			decodeAhead.seek(second);
+			return true;
+		}
+		return frameAccess.seek(second);
+	}
+
+	/**
+	 * Returns number of frames dropped because a later frame was already
+	 * decoded when they were due.
+	 */
+	public long getDroppedFrames() {
+		return decodeAhead == null ? dropped : decodeAhead.getDroppedFrames();
+	}
+
+	/**
+	 * Returns number of frames handed out after their play out time.
+	 */
+	public long getLateFrames() {
+		return decodeAhead == null ? 0 : decodeAhead.getLateFrames();
+	}
+
+	/**
+	 * Returns number of times the frame pump found no decoded frame and had
+	 * to wait for the decoder.
+	 */
+	public long getUnderruns() {
+		return decodeAhead == null ? 0 : decodeAhead.getUnderruns();
+	}
+
+	@Override
+	public void dispose() {
+		if(decodeAhead != null)
+			decodeAhead.dispose();
+	}
+
 	@Override
 	protected void run(IRenderTarget<?> target) throws RenderCommandException {
 		if(target instanceof IVideoRenderTarget) {
-			do {
+			VideoFrame frame;
+			if(decodeAhead != null) {
+				try {
+					frame = decodeAhead.next(target.getTime(), target.isOffline());
+				} catch(InterruptedException e) {
+					throw new RenderCommandException(e);
+				}
+			} else {
 				frameAccess.decodeFrame();
-			} while(frameAccess.getPlayOutTimeInSec() < target.getTime());
-			VideoFrame frame = new VideoFrame(frameAccess, audioData);
-			if(frameAccess.numPlays <= 0)
-				frame.setLast(true);
+				while(!(target.isOffline()) && frameAccess.getPlayOutTimeInSec() < target.getTime()) {
+					frameAccess.decodeFrame();
+					dropped++;
+				}
+				frame = new VideoFrame(frameAccess, audioData);
+				if(frameAccess.numPlays <= 0)
+					frame.setLast(true);
+			}
 			((IVideoRenderTarget)target).setFrame(this, frame);
 		} else if(target instanceof IAudioRenderTarget) {
+			// still images and videos without sound never fill the audio queue
+			if(numChannels <= 0)
+				throw new RenderCommandException("no audio in " + url);
 			try {
 				float[] frameData = audioData.poll();
+				// offline, get decoded audio instead of inserting silence. Without
+				// decode ahead nothing fills the queue until the video target reads
+				// its frame, so audio is taken from the decoder on demand.
+				if(frameData == null && target.isOffline()) {
+					if(decodeAhead != null)
+						frameData = audioData.poll(OFFLINE_AUDIO_WAIT, TimeUnit.MILLISECONDS);
+					else if(frameAccess.decodeAudio(audioData))
+						frameData = audioData.poll();
+				}
 				if(frameData == null) {
 					((IAudioRenderTarget)target).setFrame(this, createAudioFrame(samples, 64));
 					samples += 64;
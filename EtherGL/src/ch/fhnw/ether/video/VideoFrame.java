@@ -40,11 +40,18 @@ public class VideoFrame extends AbstractFrame {
 	private       Frame                  frame;
 	private       Texture                texture;
 	private       boolean                frameRead;
+	private       boolean                frameOwned;
 	private final BlockingQueue<float[]> audioData;
 
 	public VideoFrame(Frame frame) {
 		this(new FrameAccess(frame), null);
 	}
+
+	public VideoFrame(Frame frame, double playOutTime) {
+		super(playOutTime);
+		this.framea    = new FrameAccess(frame);
+		this.audioData = null;
+	}
 		
 	public VideoFrame(FrameAccess framea, BlockingQueue<float[]> audioData) {
 		super(framea.getPlayOutTimeInSec());
@@ -57,8 +64,9 @@ public class VideoFrame extends AbstractFrame {
 			if(texture != null) {
 				frame = Frame.create(texture);
 			} else {
-				frameRead = true;
-				frame = framea.getFrame(audioData);
+				frameRead  = true;
+				frame      = framea.getFrame(audioData);
+				frameOwned = framea.isPooled();
 			}
 		}
 		return frame;
@@ -72,14 +80,32 @@ public class VideoFrame extends AbstractFrame {
 	}
 
 	@Override
-	public synchronized void dispose() {
+	protected synchronized void release() {
 		skip();
+		if(frameOwned) {
+			framea.recycle(frame);
+			frame      = null;
+			texture    = null;
+			frameOwned = false;
+		}
+	}
+
+	/**
+	 * Re-initializes a released frame for reuse by its frame access.
+	 */
+	synchronized void reuse(double playOutTime) {
+		reset(playOutTime);
+		frame      = null;
+		texture    = null;
+		frameRead  = false;
+		frameOwned = false;
 	}
 
 	public synchronized Texture getTexture() {
 		if(texture == null) {
-			if(frame != null) {
-				setTexture(frame.getTexture());
+			if(frame != null || framea.isPooled()) {
+				// pooled frames keep their texture, upload through the frame
+				setTexture(getFrame().getTexture());
 			} else {
 				frameRead = true;
 				setTexture(framea.getTexture(audioData));
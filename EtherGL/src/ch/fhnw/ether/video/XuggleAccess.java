@@ -34,6 +34,7 @@ import java.nio.ByteBuffer;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.sound.sampled.AudioFormat;
@@ -297,6 +298,26 @@ public final class XuggleAccess extends FrameAccess implements Runnable {
 		return decodeFrame();
 	}
 
+	@Override
+	protected boolean decodeAudio(BlockingQueue<float[]> audioData) {
+		try {
+			// wait only while the decoder runs and is not blocked on a full picture queue
+			for(;;) {
+				float[] data = this.audioData.poll(1, TimeUnit.MILLISECONDS);
+				if(data != null) {
+					audioData.add(data);
+					this.audioData.drainTo(audioData);
+					return true;
+				}
+				if(!(decoderThread.isAlive()) || queueSize.availablePermits() == 0)
+					return false;
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
 	@Override
 	protected Frame getFrame(BlockingQueue<float[]> audioData) {
 		Frame result = null;
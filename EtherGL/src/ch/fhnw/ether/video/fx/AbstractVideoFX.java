@@ -281,7 +281,7 @@ public abstract class AbstractVideoFX extends AbstractRenderCommand<IVideoRender
 		if(target instanceof AbstractVideoTarget && ((AbstractVideoTarget)target).runAs() == GLFX) {
 			try(IGLContext ctx = GLContextManager.acquireContext()) {
 				final GL3 gl = ctx.getGL();
-				processFrame(gl, target.getFrame().playOutTime, target);
+				processFrame(gl, target.getFrame().getPlayOutTime(), target);
 				material.prepare(gl, (AbstractVideoTarget)target);
 				renderable.update(gl, material.getData(), quad.getTransformedGeometryData());
 				material.fbo.bind(gl);
@@ -301,7 +301,7 @@ public abstract class AbstractVideoFX extends AbstractRenderCommand<IVideoRender
 			}
 		} else if(target instanceof AbstractVideoTarget && ((AbstractVideoTarget)target).runAs() == FRAMEFX) {
 			VideoFrame frame = target.getFrame();
-			((IVideoFrameFX)this).processFrame(frame.playOutTime, target, frame.getFrame());
+			((IVideoFrameFX)this).processFrame(frame.getPlayOutTime(), target, frame.getFrame());
 		}
 	}
 
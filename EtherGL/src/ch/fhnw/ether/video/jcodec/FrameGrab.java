@@ -65,6 +65,9 @@ public class FrameGrab {
 	private final AudioFormat             audioInfo;
 	private final AudioDecoder            audioDecoder;
 	private final ByteBuffer              audioBuffer;
+	private       Picture8Bit             rgb;
+	private       ColorSpace              rgbSrcColor;
+	private       Transform8Bit           transform;
 
 	public FrameGrab(SeekableByteChannel in) throws IOException, JCodecException {
 		ByteBuffer header = ByteBuffer.allocate(65536);
@@ -167,6 +170,7 @@ public class FrameGrab {
 	public FrameGrab seekToSecondSloppy(double second) throws IOException, JCodecException {
 		sdt().seek(second);
 		goToPrevKeyframe();
+		seekPos = -1;
 		return this;
 	}
 
@@ -326,16 +330,24 @@ public class FrameGrab {
 	}
 
 	public void grabAndSet(Picture8Bit src, Frame frame, BlockingQueue<float[]> audioData) {
+		if(YUVConverter.canConvert(src)) {
+			YUVConverter.convert(src, frame);
+			return;
+		}
+
 		if (src.getColor() != ColorSpace.RGB) {
-			Picture8Bit   rgb       = Picture8Bit.create(src.getWidth(), src.getHeight(), ColorSpace.RGB, src.getCrop());
-			Transform8Bit transform = ColorUtil.getTransform8Bit(src.getColor(), rgb.getColor());
+			if(rgb == null || rgb.getWidth() != src.getWidth() || rgb.getHeight() != src.getHeight() || rgbSrcColor != src.getColor()) {
+				rgb         = Picture8Bit.create(src.getWidth(), src.getHeight(), ColorSpace.RGB, src.getCrop());
+				transform   = ColorUtil.getTransform8Bit(src.getColor(), rgb.getColor());
+				rgbSrcColor = src.getColor();
+			}
 			transform.transform(src, rgb);
 			src = rgb;
 		}
 
 		final ByteBuffer pixels  = frame.pixels;
 		final byte[]     srcData = src.getPlaneData(0);
-		final int        line    = frame.width * frame.pixelSize;
+		final int        line    = src.getPlaneWidth(0) * 3;
 
 		pixels.clear();
 		if(frame.pixelSize == 4) {
@@ -360,6 +372,7 @@ public class FrameGrab {
 				}
 			}
 		}
+		frame.modified();
 
 		/*
 			// --- audio
@@ -32,6 +32,7 @@ package ch.fhnw.ether.video.jcodec;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayDeque;
 import java.util.concurrent.BlockingQueue;
 
 import org.jcodec.api.JCodecException;
@@ -49,8 +50,12 @@ import ch.fhnw.util.Log;
 public final class JCodecAccess extends FrameAccess {
 	private static final Log log = Log.create();
 
+	// decoded frames kept for reuse, enough for a frame in flight per stage
+	private static final int MAX_POOLED = 4;
+
 	private   SeekableByteChannel channel;
 	protected FrameGrab           grab;
+	private final ArrayDeque<Frame> pool = new ArrayDeque<>(MAX_POOLED);
 
 	public JCodecAccess(URLVideoSource src, int numPlays) throws IOException, URISyntaxException {
 		super(src, numPlays);
@@ -69,6 +74,9 @@ public final class JCodecAccess extends FrameAccess {
 		}
 		this.channel = null;
 		this.grab    = null;
+		synchronized (pool) {
+			pool.clear();
+		}
 	}
 
 	@Override
@@ -112,6 +120,18 @@ public final class JCodecAccess extends FrameAccess {
 	}
 
 
+	@Override
+	protected boolean seek(double second) {
+		try {
+			grab.seekToSecondSloppy(second);
+			attrs[ATTR_BASE_TIME] = 0;
+			return true;
+		} catch (Throwable t) {
+			log.warning(t);
+			return false;
+		}
+	}
+
 	@Override
 	protected boolean skipFrame() {
 		boolean result = false;
@@ -162,11 +182,30 @@ public final class JCodecAccess extends FrameAccess {
 
 	@Override
 	protected Frame getFrame(BlockingQueue<float[]> audioData) {
-		Frame result = new RGB8Frame(getWidth(), getHeight());
+		Frame result;
+		synchronized (pool) {
+			result = pool.poll();
+		}
+		if(result == null)
+			result = new RGB8Frame(getWidth(), getHeight());
 		grab.grabAndSet(currentPicture, result, audioData);
 		return result;
 	}
 
+	@Override
+	protected boolean isPooled() {
+		return true;
+	}
+
+	@Override
+	protected void recycle(Frame frame) {
+		if(grab == null || frame.width != getWidth() || frame.height != getHeight()) return;
+		synchronized (pool) {
+			if(pool.size() < MAX_POOLED)
+				pool.add(frame);
+		}
+	}
+
 	@Override
 	public Texture getTexture(BlockingQueue<float[]> audioData) {
 		return getFrame(audioData).getTexture();
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.ether.video.jcodec;
+
+import java.nio.ByteBuffer;
+
+import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.Picture8Bit;
+
+import ch.fhnw.ether.image.Frame;
+
+/**
+ * Converts decoded YUV 4:2:0 pictures straight into RGB(A) frames, line by
+ * line in parallel. Each line is converted with integer arithmetic into a
+ * per-thread scratch line, which is then copied into the frame in bulk.
+ * Frames are filled bottom-up, matching the orientation of the previous
+ * conversion through jcodec's RGB transform.
+ */
+public final class YUVConverter {
+	// full range (JPEG) coefficients, identical to jcodec's Yuv420jToRgb8Bit
+	private static final int SCALEBITS   = 10;
+	private static final int ONE_HALF    = 1 << (SCALEBITS - 1);
+	private static final int FIX_1_402   = fix(1.402);
+	private static final int FIX_0_34414 = fix(0.34414);
+	private static final int FIX_0_71414 = fix(0.71414);
+	private static final int FIX_1_772   = fix(1.772);
+
+	private static final ThreadLocal<byte[]> LINE = ThreadLocal.withInitial(() -> new byte[0]);
+
+	private YUVConverter() {}
+
+	private static int fix(double x) {
+		return (int) (x * (1 << SCALEBITS) + 0.5);
+	}
+
+	public static boolean canConvert(Picture8Bit src) {
+		return src.getColor() == ColorSpace.YUV420 || src.getColor() == ColorSpace.YUV420J;
+	}
+
+	/**
+	 * Converts src into dst. Source planes hold signed bytes (value - 128),
+	 * src must satisfy canConvert().
+	 */
+	public static void convert(final Picture8Bit src, final Frame dst) {
+		final boolean fullRange = src.getColor() == ColorSpace.YUV420J;
+		final byte[]  ys        = src.getPlaneData(0);
+		final byte[]  us        = src.getPlaneData(1);
+		final byte[]  vs        = src.getPlaneData(2);
+		final int     yStride   = src.getPlaneWidth(0);
+		final int     cStride   = src.getPlaneWidth(1);
+		final int     width     = Math.min(dst.width, src.getWidth());
+		final int     height    = dst.height;
+		final int     srcHeight = src.getHeight();
+		final int     pixelSize = dst.pixelSize;
+
+		dst.processLines((pixels, line) -> {
+			final int row = height - 1 - line;
+			if(row >= srcHeight) return;
+			convertLine(fullRange, ys, row * yStride, us, vs, (row >> 1) * cStride, width, pixelSize, pixels);
+		});
+		dst.modified();
+	}
+
+	private static void convertLine(final boolean fullRange, final byte[] ys, final int yOff, final byte[] us, final byte[] vs, final int cOff, final int width, final int pixelSize, final ByteBuffer pixels) {
+		final int length = width * pixelSize;
+		byte[]    line   = LINE.get();
+		if(line.length < length) {
+			line = new byte[length];
+			LINE.set(line);
+		}
+
+		int idx = 0;
+		if(fullRange) {
+			for(int i = 0; i < width; i++) {
+				final int y = (ys[yOff + i] + 128) << SCALEBITS;
+				final int u = us[cOff + (i >> 1)];
+				final int v = vs[cOff + (i >> 1)];
+				line[idx]     = clip((y + FIX_1_402 * v + ONE_HALF) >> SCALEBITS);
+				line[idx + 1] = clip((y - FIX_0_34414 * u - FIX_0_71414 * v + ONE_HALF) >> SCALEBITS);
+				line[idx + 2] = clip((y + FIX_1_772 * u + ONE_HALF) >> SCALEBITS);
+				if(pixelSize == 4) line[idx + 3] = (byte) 0xFF;
+				idx += pixelSize;
+			}
+		} else {
+			// studio range (ITU-R BT.601)
+			for(int i = 0; i < width; i++) {
+				final int y = (ys[yOff + i] + 128 - 16) * 298;
+				final int u = us[cOff + (i >> 1)];
+				final int v = vs[cOff + (i >> 1)];
+				line[idx]     = clip((y + 409 * v + 128) >> 8);
+				line[idx + 1] = clip((y - 100 * u - 208 * v + 128) >> 8);
+				line[idx + 2] = clip((y + 516 * u + 128) >> 8);
+				if(pixelSize == 4) line[idx + 3] = (byte) 0xFF;
+				idx += pixelSize;
+			}
+		}
+		pixels.put(line, 0, length);
+	}
+
+	private static byte clip(int v) {
+		return (byte) (v < 0 ? 0 : v > 255 ? 255 : v);
+	}
+}
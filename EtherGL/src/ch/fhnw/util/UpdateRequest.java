@@ -29,6 +29,7 @@
 
 package ch.fhnw.util;
 
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -41,8 +42,19 @@ public final class UpdateRequest {
 		UpdateRequest getUpdater();
 	}
 	
+	@FunctionalInterface
+	public interface IUpdateListener {
+		/**
+		 * Called whenever an update is requested. Note that this may be
+		 * called from any thread that requests an update.
+		 */
+		void updateRequested(UpdateRequest request);
+	}
+
+	private static final IUpdateListener[] NO_LISTENERS = {};
 	
 	private final AtomicBoolean update = new AtomicBoolean();
+	private volatile IUpdateListener[] listeners = NO_LISTENERS;
 
 	public UpdateRequest() {
 	}
@@ -57,6 +69,8 @@ public final class UpdateRequest {
 	 */
 	public void request() {
 		update.set(true);
+		for (IUpdateListener listener : listeners)
+			listener.updateRequested(this);
 	}
 
 	/**
@@ -86,6 +100,29 @@ public final class UpdateRequest {
 		update.set(false);
 	}
 	
+	/**
+	 * Add a listener that is notified on each update request.
+	 */
+	public synchronized void addListener(IUpdateListener listener) {
+		IUpdateListener[] result = Arrays.copyOf(listeners, listeners.length + 1);
+		result[listeners.length] = listener;
+		listeners = result;
+	}
+
+	/**
+	 * Remove a previously added listener.
+	 */
+	public synchronized void removeListener(IUpdateListener listener) {
+		for (int i = 0; i < listeners.length; ++i) {
+			if (listeners[i] == listener) {
+				IUpdateListener[] result = new IUpdateListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, result, 0, i);
+				System.arraycopy(listeners, i + 1, result, i, result.length - i);
+				listeners = result;
+				return;
+			}
+		}
+	}
 
 	@Override
 	public String toString() {
@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package ch.fhnw.util.math.geometry;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import ch.fhnw.util.math.Vec3;
+import ch.fhnw.util.math.geometry.Frustum.Containment;
+
+/**
+ * Bounding volume hierarchy (binary AABB tree) over a set of items. The
+ * hierarchy is built top down, and refitted bottom up whenever bounds of
+ * individual items change. Structural changes (adding or removing items)
+ * require a rebuild. Not thread safe.
+ *
+ */
+public final class BoundingVolumeHierarchy<T> {
+	private static final int MAX_LEAF_SIZE = 4;
+
+	private Object[] items = {};
+
+	// per item: bounds (minX, minY, minZ, maxX, maxY, maxZ) and leaf node
+	private float[] itemBounds = {};
+	private int[] itemLeaf = {};
+
+	// item indices in leaf order
+	private int[] order = {};
+
+	// per node: bounds, first item in order (leaf) or right child (inner
+	// node), item count (0 for inner nodes), parent, dirty flag
+	private int numNodes;
+	private float[] nodeBounds = {};
+	private int[] nodeStart = {};
+	private int[] nodeCount = {};
+	private int[] nodeParent = {};
+	private boolean[] nodeDirty = {};
+	private boolean dirty;
+
+	public BoundingVolumeHierarchy() {
+	}
+
+	/**
+	 * Rebuild hierarchy for given items. The index of an item in the list is
+	 * used as item index in subsequent calls.
+	 */
+	public void build(List<? extends T> items, Function<? super T, BoundingBox> bounds) {
+		int n = items.size();
+		this.items = items.toArray();
+		itemBounds = new float[n * 6];
+		itemLeaf = new int[n];
+		order = new int[n];
+		for (int i = 0; i < n; ++i) {
+			setItemBounds(i, bounds.apply(items.get(i)));
+			order[i] = i;
+		}
+
+		int capacity = Math.max(1, 2 * n);
+		numNodes = 0;
+		nodeBounds = new float[capacity * 6];
+		nodeStart = new int[capacity];
+		nodeCount = new int[capacity];
+		nodeParent = new int[capacity];
+		nodeDirty = new boolean[capacity];
+		dirty = false;
+		if (n > 0)
+			build(0, n, -1);
+	}
+
+	/**
+	 * Get number of items.
+	 */
+	public int size() {
+		return items.length;
+	}
+
+	/**
+	 * Get item with given index.
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		return (T) items[index];
+	}
+
+	/**
+	 * Update bounds of item with given index. The hierarchy is refitted
+	 * lazily before the next query or when calling refit() explicitly.
+	 */
+	public void setBounds(int index, BoundingBox bounds) {
+		setItemBounds(index, bounds);
+		for (int node = itemLeaf[index]; node >= 0 && !nodeDirty[node]; node = nodeParent[node])
+			nodeDirty[node] = true;
+		dirty = true;
+	}
+
+	/**
+	 * Refit bounds of all nodes affected by changed item bounds.
+	 */
+	public void refit() {
+		if (dirty && numNodes > 0)
+			refit(0);
+		dirty = false;
+	}
+
+	/**
+	 * Visit all items whose bounds intersect the given frustum.
+	 */
+	public void query(Frustum frustum, Consumer<? super T> visitor) {
+		refit();
+		if (numNodes > 0)
+			query(0, frustum, visitor);
+	}
+
+	/**
+	 * Visit all items whose bounds intersect the ray segment origin + t *
+	 * direction with t in [tMin, tMax].
+	 */
+	public void query(Vec3 origin, Vec3 direction, float tMin, float tMax, Consumer<? super T> visitor) {
+		refit();
+		if (numNodes > 0) {
+			float ix = GeometryUtilities.inverseDirection(direction.x);
+			float iy = GeometryUtilities.inverseDirection(direction.y);
+			float iz = GeometryUtilities.inverseDirection(direction.z);
+			query(0, origin.x, origin.y, origin.z, ix, iy, iz, tMin, tMax, visitor);
+		}
+	}
+
+	/**
+	 * Visit all items.
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(Consumer<? super T> visitor) {
+		for (Object item : items)
+			visitor.accept((T) item);
+	}
+
+	private void setItemBounds(int index, BoundingBox b) {
+		int i = index * 6;
+		if (b != null && b.isValid()) {
+			itemBounds[i] = b.getMinX();
+			itemBounds[i + 1] = b.getMinY();
+			itemBounds[i + 2] = b.getMinZ();
+			itemBounds[i + 3] = b.getMaxX();
+			itemBounds[i + 4] = b.getMaxY();
+			itemBounds[i + 5] = b.getMaxZ();
+		} else {
+			// empty items collapse to origin
+			Arrays.fill(itemBounds, i, i + 6, 0);
+		}
+	}
+
+	private int build(int start, int end, int parent) {
+		int node = numNodes++;
+		nodeParent[node] = parent;
+		computeBounds(node, start, end);
+
+		int count = end - start;
+		if (count <= MAX_LEAF_SIZE) {
+			nodeStart[node] = start;
+			nodeCount[node] = count;
+			for (int i = start; i < end; ++i)
+				itemLeaf[order[i]] = node;
+			return node;
+		}
+
+		// split at center of largest centroid extent
+		float[] c = centroidBounds(start, end);
+		int axis = 0;
+		if (c[4] - c[1] > c[3 + axis] - c[axis])
+			axis = 1;
+		if (c[5] - c[2] > c[3 + axis] - c[axis])
+			axis = 2;
+		float split = (c[axis] + c[3 + axis]) * 0.5f;
+
+		int mid = start;
+		for (int i = start; i < end; ++i) {
+			if (centroid(order[i], axis) < split) {
+				int t = order[i];
+				order[i] = order[mid];
+				order[mid] = t;
+				mid++;
+			}
+		}
+		if (mid == start || mid == end)
+			mid = (start + end) >>> 1;
+
+		nodeCount[node] = 0;
+		build(start, mid, node);
+		nodeStart[node] = build(mid, end, node);
+		return node;
+	}
+
+	private void refit(int node) {
+		if (!nodeDirty[node])
+			return;
+		nodeDirty[node] = false;
+		if (nodeCount[node] > 0) {
+			computeBounds(node, nodeStart[node], nodeStart[node] + nodeCount[node]);
+		} else {
+			int left = node + 1;
+			int right = nodeStart[node];
+			refit(left);
+			refit(right);
+			int n = node * 6;
+			int l = left * 6;
+			int r = right * 6;
+			for (int i = 0; i < 3; ++i) {
+				nodeBounds[n + i] = Math.min(nodeBounds[l + i], nodeBounds[r + i]);
+				nodeBounds[n + 3 + i] = Math.max(nodeBounds[l + 3 + i], nodeBounds[r + 3 + i]);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void query(int node, Frustum frustum, Consumer<? super T> visitor) {
+		int n = node * 6;
+		Containment containment = frustum.classify(nodeBounds[n], nodeBounds[n + 1], nodeBounds[n + 2], nodeBounds[n + 3], nodeBounds[n + 4], nodeBounds[n + 5]);
+		if (containment == Containment.OUTSIDE)
+			return;
+		if (containment == Containment.INSIDE) {
+			visit(node, visitor);
+			return;
+		}
+		if (nodeCount[node] > 0) {
+			for (int i = nodeStart[node], e = i + nodeCount[node]; i < e; ++i) {
+				int b = order[i] * 6;
+				if (frustum.classify(itemBounds[b], itemBounds[b + 1], itemBounds[b + 2], itemBounds[b + 3], itemBounds[b + 4], itemBounds[b + 5]) != Containment.OUTSIDE)
+					visitor.accept((T) items[order[i]]);
+			}
+		} else {
+			query(node + 1, frustum, visitor);
+			query(nodeStart[node], frustum, visitor);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void query(int node, float ox, float oy, float oz, float ix, float iy, float iz, float tMin, float tMax, Consumer<? super T> visitor) {
+		if (GeometryUtilities.intersectRayWithBox(ox, oy, oz, ix, iy, iz, nodeBounds, node * 6, tMin, tMax) == Float.POSITIVE_INFINITY)
+			return;
+		if (nodeCount[node] > 0) {
+			for (int i = nodeStart[node], e = i + nodeCount[node]; i < e; ++i) {
+				if (GeometryUtilities.intersectRayWithBox(ox, oy, oz, ix, iy, iz, itemBounds, order[i] * 6, tMin, tMax) != Float.POSITIVE_INFINITY)
+					visitor.accept((T) items[order[i]]);
+			}
+		} else {
+			query(node + 1, ox, oy, oz, ix, iy, iz, tMin, tMax, visitor);
+			query(nodeStart[node], ox, oy, oz, ix, iy, iz, tMin, tMax, visitor);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void visit(int node, Consumer<? super T> visitor) {
+		if (nodeCount[node] > 0) {
+			for (int i = nodeStart[node], e = i + nodeCount[node]; i < e; ++i)
+				visitor.accept((T) items[order[i]]);
+		} else {
+			visit(node + 1, visitor);
+			visit(nodeStart[node], visitor);
+		}
+	}
+
+	private void computeBounds(int node, int start, int end) {
+		int n = node * 6;
+		for (int i = 0; i < 3; ++i) {
+			nodeBounds[n + i] = Float.POSITIVE_INFINITY;
+			nodeBounds[n + 3 + i] = Float.NEGATIVE_INFINITY;
+		}
+		for (int i = start; i < end; ++i) {
+			int b = order[i] * 6;
+			for (int j = 0; j < 3; ++j) {
+				nodeBounds[n + j] = Math.min(nodeBounds[n + j], itemBounds[b + j]);
+				nodeBounds[n + 3 + j] = Math.max(nodeBounds[n + 3 + j], itemBounds[b + 3 + j]);
+			}
+		}
+	}
+
+	private float[] centroidBounds(int start, int end) {
+		float[] c = { Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY };
+		for (int i = start; i < end; ++i) {
+			for (int j = 0; j < 3; ++j) {
+				float v = centroid(order[i], j);
+				c[j] = Math.min(c[j], v);
+				c[3 + j] = Math.max(c[3 + j], v);
+			}
+		}
+		return c;
+	}
+
+	private float centroid(int item, int axis) {
+		return (itemBounds[item * 6 + axis] + itemBounds[item * 6 + 3 + axis]) * 0.5f;
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package ch.fhnw.util.math.geometry;
+
+import ch.fhnw.util.math.Mat4;
+
+/**
+ * View frustum given by six planes extracted from a view-projection matrix
+ * (Gribb / Hartmann). Planes are not normalized, thus the frustum is only
+ * suitable for containment tests, not for distance calculations.
+ *
+ */
+public final class Frustum {
+	public enum Containment {
+		OUTSIDE, INTERSECTS, INSIDE
+	}
+
+	// six planes (left, right, bottom, top, near, far) with a, b, c, d each
+	private final float[] planes = new float[24];
+
+	public Frustum(Mat4 viewProjMatrix) {
+		Mat4 m = viewProjMatrix;
+		set(0, m.m30 + m.m00, m.m31 + m.m01, m.m32 + m.m02, m.m33 + m.m03);
+		set(1, m.m30 - m.m00, m.m31 - m.m01, m.m32 - m.m02, m.m33 - m.m03);
+		set(2, m.m30 + m.m10, m.m31 + m.m11, m.m32 + m.m12, m.m33 + m.m13);
+		set(3, m.m30 - m.m10, m.m31 - m.m11, m.m32 - m.m12, m.m33 - m.m13);
+		set(4, m.m30 + m.m20, m.m31 + m.m21, m.m32 + m.m22, m.m33 + m.m23);
+		set(5, m.m30 - m.m20, m.m31 - m.m21, m.m32 - m.m22, m.m33 - m.m23);
+	}
+
+	/**
+	 * Classify axis aligned box with respect to this frustum. Note that the
+	 * test is conservative, i.e. boxes close to frustum corners may be
+	 * classified as intersecting even if they are outside.
+	 */
+	public Containment classify(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		Containment result = Containment.INSIDE;
+		for (int i = 0; i < 24; i += 4) {
+			float a = planes[i];
+			float b = planes[i + 1];
+			float c = planes[i + 2];
+			float d = planes[i + 3];
+
+			// test vertex farthest along plane normal (p-vertex)
+			float px = a >= 0 ? maxX : minX;
+			float py = b >= 0 ? maxY : minY;
+			float pz = c >= 0 ? maxZ : minZ;
+			if (a * px + b * py + c * pz + d < 0)
+				return Containment.OUTSIDE;
+
+			// test vertex nearest along plane normal (n-vertex)
+			float nx = a >= 0 ? minX : maxX;
+			float ny = b >= 0 ? minY : maxY;
+			float nz = c >= 0 ? minZ : maxZ;
+			if (!(a * nx + b * ny + c * nz + d >= 0))
+				result = Containment.INTERSECTS;
+		}
+		return result;
+	}
+
+	public Containment classify(BoundingBox b) {
+		if (!b.isValid())
+			return Containment.INTERSECTS;
+		return classify(b.getMinX(), b.getMinY(), b.getMinZ(), b.getMaxX(), b.getMaxY(), b.getMaxZ());
+	}
+
+	public boolean intersects(BoundingBox b) {
+		return classify(b) != Containment.OUTSIDE;
+	}
+
+	private void set(int plane, float a, float b, float c, float d) {
+		planes[plane * 4] = a;
+		planes[plane * 4 + 1] = b;
+		planes[plane * 4 + 2] = c;
+		planes[plane * 4 + 3] = d;
+	}
+}
@@ -287,6 +287,37 @@ public final class GeometryUtilities {
 		return (t > EPSILON) ? t : Float.POSITIVE_INFINITY;
 	}
 
+	/**
+	 * Slab test of a ray against an axis aligned box, given as (minX, minY,
+	 * minZ, maxX, maxY, maxZ) at index. The ray direction is passed as its
+	 * component wise inverse, with zero components replaced by a large value.
+	 *
+	 * @return ray parameter where the ray enters the box (clamped to tMin), or
+	 *         positive infinity if the ray misses the box within [tMin, tMax]
+	 */
+	public static float intersectRayWithBox(float ox, float oy, float oz, float ix, float iy, float iz, float[] box, int index, float tMin, float tMax) {
+		float t0 = (box[index] - ox) * ix;
+		float t1 = (box[index + 3] - ox) * ix;
+		tMin = Math.max(tMin, Math.min(t0, t1));
+		tMax = Math.min(tMax, Math.max(t0, t1));
+		t0 = (box[index + 1] - oy) * iy;
+		t1 = (box[index + 4] - oy) * iy;
+		tMin = Math.max(tMin, Math.min(t0, t1));
+		tMax = Math.min(tMax, Math.max(t0, t1));
+		t0 = (box[index + 2] - oz) * iz;
+		t1 = (box[index + 5] - oz) * iz;
+		tMin = Math.max(tMin, Math.min(t0, t1));
+		tMax = Math.min(tMax, Math.max(t0, t1));
+		return tMin <= tMax ? tMin : Float.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Inverse of a ray direction component for intersectRayWithBox().
+	 */
+	public static float inverseDirection(float d) {
+		return d != 0 ? 1 / d : Math.copySign(Float.MAX_VALUE, d);
+	}
+
 	public static boolean is2DPointInTriangle(float x, float y, float[] triangle) {
 		return is2DPointInTriangle(x, y, triangle, 0);
 	}
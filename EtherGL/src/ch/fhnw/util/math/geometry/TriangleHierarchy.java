@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.util.math.geometry;
+
+import java.util.Arrays;
+
+import ch.fhnw.util.math.Vec3;
+
+/**
+ * Bounding volume hierarchy (binary AABB tree) over a triangle soup, for
+ * fast ray queries on large meshes. The triangles are copied in leaf order
+ * into a flat array, nodes are stored in flat arrays as well, so a query
+ * does not allocate besides a small traversal stack. The hierarchy is
+ * immutable; rebuild it when the triangles change.
+ *
+ */
+public final class TriangleHierarchy {
+	private static final int MAX_LEAF_SIZE = 4;
+	private static final float EPSILON = 0.000001f;
+
+	private final int numTriangles;
+
+	// triangles in leaf order (9 floats each)
+	private final float[] triangles;
+
+	// per node: bounds, first triangle (leaf) or right child (inner node),
+	// triangle count (0 for inner nodes). left child of inner node is node + 1.
+	private int numNodes;
+	private float[] nodeBounds;
+	private int[] nodeStart;
+	private int[] nodeCount;
+	private int depth;
+
+	/**
+	 * Build hierarchy for given triangles (9 floats per triangle). The array
+	 * is not retained.
+	 */
+	public TriangleHierarchy(float[] triangles) {
+		int n = triangles.length / 9;
+		numTriangles = n;
+
+		float[] centroids = new float[n * 3];
+		int[] order = new int[n];
+		for (int i = 0; i < n; ++i) {
+			int t = i * 9;
+			centroids[i * 3] = (triangles[t] + triangles[t + 3] + triangles[t + 6]) / 3;
+			centroids[i * 3 + 1] = (triangles[t + 1] + triangles[t + 4] + triangles[t + 7]) / 3;
+			centroids[i * 3 + 2] = (triangles[t + 2] + triangles[t + 5] + triangles[t + 8]) / 3;
+			order[i] = i;
+		}
+
+		int capacity = Math.max(1, n / 2);
+		nodeBounds = new float[capacity * 6];
+		nodeStart = new int[capacity];
+		nodeCount = new int[capacity];
+		if (n > 0)
+			build(triangles, centroids, order, 0, n, 1);
+
+		this.triangles = new float[n * 9];
+		for (int i = 0; i < n; ++i)
+			System.arraycopy(triangles, order[i] * 9, this.triangles, i * 9, 9);
+	}
+
+	/**
+	 * Get number of triangles.
+	 */
+	public int size() {
+		return numTriangles;
+	}
+
+	/**
+	 * Get bounds of all triangles, or an empty bounding box if there are no
+	 * triangles.
+	 */
+	public BoundingBox getBounds() {
+		BoundingBox b = new BoundingBox();
+		if (numNodes > 0) {
+			b.add(nodeBounds[0], nodeBounds[1], nodeBounds[2]);
+			b.add(nodeBounds[3], nodeBounds[4], nodeBounds[5]);
+		}
+		return b;
+	}
+
+	/**
+	 * Intersect ray with triangles and return the ray parameter t of the
+	 * nearest hit with t in (0, tMax], or positive infinity if no triangle
+	 * is hit. The direction does not need to be normalized, t is in units
+	 * of the direction vector.
+	 */
+	public float intersect(Vec3 origin, Vec3 direction, float tMax) {
+		return intersect(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z, tMax);
+	}
+
+	/**
+	 * See intersect(Vec3, Vec3, float).
+	 */
+	public float intersect(float ox, float oy, float oz, float dx, float dy, float dz, float tMax) {
+		if (numNodes == 0)
+			return Float.POSITIVE_INFINITY;
+
+		float ix = GeometryUtilities.inverseDirection(dx);
+		float iy = GeometryUtilities.inverseDirection(dy);
+		float iz = GeometryUtilities.inverseDirection(dz);
+
+		float best = Float.POSITIVE_INFINITY;
+		if (GeometryUtilities.intersectRayWithBox(ox, oy, oz, ix, iy, iz, nodeBounds, 0, 0, tMax) == Float.POSITIVE_INFINITY)
+			return best;
+
+		int[] stack = new int[depth + 1];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			int count = nodeCount[node];
+			if (count > 0) {
+				for (int i = nodeStart[node], e = i + count; i < e; ++i) {
+					float t = intersectTriangle(ox, oy, oz, dx, dy, dz, i * 9);
+					if (t <= tMax && t < best)
+						best = t;
+				}
+				continue;
+			}
+
+			// visit nearer child first, skip children beyond the best hit
+			float limit = Math.min(tMax, best);
+			int left = node + 1;
+			int right = nodeStart[node];
+			float tl = GeometryUtilities.intersectRayWithBox(ox, oy, oz, ix, iy, iz, nodeBounds, left * 6, 0, limit);
+			float tr = GeometryUtilities.intersectRayWithBox(ox, oy, oz, ix, iy, iz, nodeBounds, right * 6, 0, limit);
+			if (tl <= tr) {
+				if (tr != Float.POSITIVE_INFINITY)
+					stack[top++] = right;
+				if (tl != Float.POSITIVE_INFINITY)
+					stack[top++] = left;
+			} else {
+				if (tl != Float.POSITIVE_INFINITY)
+					stack[top++] = left;
+				stack[top++] = right;
+			}
+		}
+		return best;
+	}
+
+	// Möller–Trumbore, see GeometryUtilities.intersectRayWithTriangle()
+	private float intersectTriangle(float ox, float oy, float oz, float dx, float dy, float dz, int index) {
+		float[] v = triangles;
+		float e1x = v[index + 3] - v[index];
+		float e1y = v[index + 4] - v[index + 1];
+		float e1z = v[index + 5] - v[index + 2];
+		float e2x = v[index + 6] - v[index];
+		float e2y = v[index + 7] - v[index + 1];
+		float e2z = v[index + 8] - v[index + 2];
+
+		float px = dy * e2z - dz * e2y;
+		float py = dz * e2x - dx * e2z;
+		float pz = dx * e2y - dy * e2x;
+		float det = e1x * px + e1y * py + e1z * pz;
+		if (det > -EPSILON && det < EPSILON)
+			return Float.POSITIVE_INFINITY;
+		float detInv = 1f / det;
+
+		float tx = ox - v[index];
+		float ty = oy - v[index + 1];
+		float tz = oz - v[index + 2];
+		float u = (tx * px + ty * py + tz * pz) * detInv;
+		if (u < 0 || u > 1)
+			return Float.POSITIVE_INFINITY;
+
+		float qx = ty * e1z - tz * e1y;
+		float qy = tz * e1x - tx * e1z;
+		float qz = tx * e1y - ty * e1x;
+		float w = (dx * qx + dy * qy + dz * qz) * detInv;
+		if (w < 0 || u + w > 1)
+			return Float.POSITIVE_INFINITY;
+
+		float t = (e2x * qx + e2y * qy + e2z * qz) * detInv;
+		return t > EPSILON ? t : Float.POSITIVE_INFINITY;
+	}
+
+	private int build(float[] triangles, float[] centroids, int[] order, int start, int end, int level) {
+		int node = allocateNode();
+		depth = Math.max(depth, level);
+
+		int count = end - start;
+		if (count <= MAX_LEAF_SIZE) {
+			computeBounds(node, triangles, order, start, end);
+			nodeStart[node] = start;
+			nodeCount[node] = count;
+			return node;
+		}
+
+		// split at center of largest centroid extent
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+		for (int i = start; i < end; ++i) {
+			int c = order[i] * 3;
+			minX = Math.min(minX, centroids[c]);
+			minY = Math.min(minY, centroids[c + 1]);
+			minZ = Math.min(minZ, centroids[c + 2]);
+			maxX = Math.max(maxX, centroids[c]);
+			maxY = Math.max(maxY, centroids[c + 1]);
+			maxZ = Math.max(maxZ, centroids[c + 2]);
+		}
+		int axis = 0;
+		float extent = maxX - minX;
+		float split = (minX + maxX) * 0.5f;
+		if (maxY - minY > extent) {
+			axis = 1;
+			extent = maxY - minY;
+			split = (minY + maxY) * 0.5f;
+		}
+		if (maxZ - minZ > extent) {
+			axis = 2;
+			split = (minZ + maxZ) * 0.5f;
+		}
+
+		int mid = start;
+		for (int i = start; i < end; ++i) {
+			if (centroids[order[i] * 3 + axis] < split) {
+				int t = order[i];
+				order[i] = order[mid];
+				order[mid] = t;
+				mid++;
+			}
+		}
+		if (mid == start || mid == end)
+			mid = (start + end) >>> 1;
+
+		nodeCount[node] = 0;
+		int left = build(triangles, centroids, order, start, mid, level + 1);
+		int right = build(triangles, centroids, order, mid, end, level + 1);
+		nodeStart[node] = right;
+
+		// inner bounds are the union of the children's bounds
+		int n = node * 6;
+		int l = left * 6;
+		int r = right * 6;
+		for (int i = 0; i < 3; ++i) {
+			nodeBounds[n + i] = Math.min(nodeBounds[l + i], nodeBounds[r + i]);
+			nodeBounds[n + 3 + i] = Math.max(nodeBounds[l + 3 + i], nodeBounds[r + 3 + i]);
+		}
+		return node;
+	}
+
+	private int allocateNode() {
+		if (numNodes == nodeStart.length) {
+			int capacity = nodeStart.length * 2;
+			nodeBounds = Arrays.copyOf(nodeBounds, capacity * 6);
+			nodeStart = Arrays.copyOf(nodeStart, capacity);
+			nodeCount = Arrays.copyOf(nodeCount, capacity);
+		}
+		return numNodes++;
+	}
+
+	private void computeBounds(int node, float[] triangles, int[] order, int start, int end) {
+		int n = node * 6;
+		for (int i = 0; i < 3; ++i) {
+			nodeBounds[n + i] = Float.POSITIVE_INFINITY;
+			nodeBounds[n + 3 + i] = Float.NEGATIVE_INFINITY;
+		}
+		for (int i = start; i < end; ++i) {
+			int t = order[i] * 9;
+			for (int v = 0; v < 9; v += 3) {
+				for (int j = 0; j < 3; ++j) {
+					nodeBounds[n + j] = Math.min(nodeBounds[n + j], triangles[t + v + j]);
+					nodeBounds[n + 3 + j] = Math.max(nodeBounds[n + 3 + j], triangles[t + v + j]);
+				}
+			}
+		}
+	}
+}
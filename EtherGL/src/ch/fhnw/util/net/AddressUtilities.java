@@ -47,6 +47,31 @@ public final class AddressUtilities {
 		return getLocalHost(true);
 	}
 
+	/**
+	 * Returns the interface bound to the given address, or the first
+	 * multicast capable interface that is up if the address is not bound to
+	 * an interface (e.g. a host name mapped to 127.0.1.1). Non-loopback
+	 * interfaces are preferred.
+	 */
+	public static NetworkInterface getMulticastInterface(InetAddress addr) throws SocketException {
+		NetworkInterface result = NetworkInterface.getByInetAddress(addr);
+		if (result != null)
+			return result;
+		NetworkInterface loopback = null;
+		for (Enumeration<NetworkInterface> e = NetworkInterface.getNetworkInterfaces(); e.hasMoreElements();) {
+			NetworkInterface nif = e.nextElement();
+			if (!nif.isUp() || !nif.supportsMulticast())
+				continue;
+			if (!nif.isLoopback())
+				return nif;
+			if (loopback == null)
+				loopback = nif;
+		}
+		if (loopback == null)
+			throw new SocketException("No multicast interface for " + addr);
+		return loopback;
+	}
+
 	private static InetAddress getFirstNonLoopbackAddress(boolean ipv4only) throws SocketException {
 		for (InetAddress addr : AddressUtilities.getLocalAddresses(ipv4only)) {
 			if (!addr.isLoopbackAddress()) {
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.util.net.osc;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable view of a received OSC message. Arguments are read directly from
+ * the receive buffer, accessors of primitive types do not allocate.
+ */
+public final class OSCArguments {
+	private final CharSequence address = new CharSequence() {
+		@Override
+		public int length() {
+			return addressLength;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= addressLength)
+				throw new IndexOutOfBoundsException(Integer.toString(index));
+			return (char) (packet.get(addressStart + index) & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return toString().subSequence(start, end);
+		}
+
+		@Override
+		public String toString() {
+			return string(addressStart);
+		}
+	};
+
+	private ByteBuffer    packet;
+	private SocketAddress peer;
+	private long          timetag;
+	private int           addressStart;
+	private int           addressLength;
+	private int           typeStart;
+	private int           count;
+	private int[]         offsets = new int[16];
+
+	OSCArguments() {
+	}
+
+	/**
+	 * Sets this view to the message starting at the given position. Returns
+	 * the position after the message.
+	 */
+	int set(SocketAddress peer, ByteBuffer packet, int start, int addressLength, long timetag) {
+		this.packet        = packet;
+		this.peer          = peer;
+		this.timetag       = timetag;
+		this.addressStart  = start;
+		this.addressLength = addressLength;
+		this.typeStart     = align(start + addressLength + 1);
+		if (packet.get(typeStart) != ',')
+			throw new IllegalArgumentException("Missing type string in message " + address);
+
+		int types = typeStart + 1;
+		int end   = types;
+		while (packet.get(end) != 0)
+			end++;
+		count = end - types;
+		if (offsets.length < count)
+			offsets = new int[Math.max(count, 2 * offsets.length)];
+
+		int pos = align(end + 1);
+		for (int i = 0; i < count; i++) {
+			offsets[i] = pos;
+			char type = (char) packet.get(types + i);
+			switch (type) {
+			case 'i':
+			case 'f':
+				pos += 4;
+				break;
+			case 'd':
+				pos += 8;
+				break;
+			case 's':
+				while (packet.get(pos) != 0)
+					pos++;
+				pos = align(pos + 1);
+				break;
+			case 'b':
+				pos = align(pos + 4 + packet.getInt(pos));
+				break;
+			case 'T':
+			case 'F':
+			case 'N':
+				break;
+			default:
+				throw new IllegalArgumentException("Illegal type string: '" + type + "' in message " + address);
+			}
+		}
+		if (pos > packet.limit())
+			throw new IllegalArgumentException("Truncated message " + address);
+		return pos;
+	}
+
+	public SocketAddress getPeer() {
+		return peer;
+	}
+
+	public long getTimetag() {
+		return timetag;
+	}
+
+	/**
+	 * Returns the address of this message. The returned sequence is only valid
+	 * during the handler call, use toString() to keep it.
+	 */
+	public CharSequence getAddress() {
+		return address;
+	}
+
+	/**
+	 * Returns true if the address of this message equals the given address.
+	 */
+	public boolean isAddress(String address) {
+		return equals(addressStart, addressLength, address);
+	}
+
+	/**
+	 * Returns the number of arguments.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Returns the type tag of the given argument.
+	 */
+	public char getType(int index) {
+		check(index);
+		return (char) packet.get(typeStart + 1 + index);
+	}
+
+	public int getInt(int index) {
+		switch (getType(index)) {
+		case 'i':
+			return packet.getInt(offsets[index]);
+		default:
+			throw mismatch(index, "int");
+		}
+	}
+
+	/**
+	 * Returns a float, int or double argument as float.
+	 */
+	public float getFloat(int index) {
+		switch (getType(index)) {
+		case 'f':
+			return packet.getFloat(offsets[index]);
+		case 'i':
+			return packet.getInt(offsets[index]);
+		case 'd':
+			return (float) packet.getDouble(offsets[index]);
+		default:
+			throw mismatch(index, "float");
+		}
+	}
+
+	/**
+	 * Returns a double, float or int argument as double.
+	 */
+	public double getDouble(int index) {
+		switch (getType(index)) {
+		case 'd':
+			return packet.getDouble(offsets[index]);
+		case 'f':
+			return packet.getFloat(offsets[index]);
+		case 'i':
+			return packet.getInt(offsets[index]);
+		default:
+			throw mismatch(index, "double");
+		}
+	}
+
+	/**
+	 * Returns a true / false argument, or an int argument as boolean.
+	 */
+	public boolean getBoolean(int index) {
+		switch (getType(index)) {
+		case 'T':
+			return true;
+		case 'F':
+			return false;
+		case 'i':
+			return packet.getInt(offsets[index]) != 0;
+		default:
+			throw mismatch(index, "boolean");
+		}
+	}
+
+	public boolean isNull(int index) {
+		return getType(index) == 'N';
+	}
+
+	/**
+	 * Returns a string argument. Allocates a new string, see
+	 * {@link #appendString(int, StringBuilder)} and
+	 * {@link #isString(int, String)} for alternatives.
+	 */
+	public String getString(int index) {
+		checkString(index);
+		return string(offsets[index]);
+	}
+
+	/**
+	 * Appends a string argument to the given builder.
+	 */
+	public StringBuilder appendString(int index, StringBuilder result) {
+		checkString(index);
+		for (int pos = offsets[index]; packet.get(pos) != 0; pos++)
+			result.append((char) (packet.get(pos) & 0xFF));
+		return result;
+	}
+
+	/**
+	 * Returns true if the given string argument equals the given string.
+	 */
+	public boolean isString(int index, String string) {
+		checkString(index);
+		int length = 0;
+		while (packet.get(offsets[index] + length) != 0)
+			length++;
+		return equals(offsets[index], length, string);
+	}
+
+	public int getBlobLength(int index) {
+		checkBlob(index);
+		return packet.getInt(offsets[index]);
+	}
+
+	/**
+	 * Copies a blob argument to the given array.
+	 * 
+	 * @return the length of the blob
+	 */
+	public int getBlob(int index, byte[] dst, int offset) {
+		final int length = getBlobLength(index);
+		final int start  = offsets[index] + 4;
+		for (int i = 0; i < length; i++)
+			dst[offset + i] = packet.get(start + i);
+		return length;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		result.append(address).append('(');
+		for (int i = 0; i < count; i++) {
+			if (i > 0)
+				result.append(' ');
+			switch (getType(i)) {
+			case 's':
+				appendString(i, result.append('"')).append('"');
+				break;
+			case 'b':
+				result.append('{').append(getBlobLength(i)).append(" bytes}");
+				break;
+			case 'N':
+				result.append("null");
+				break;
+			case 'T':
+			case 'F':
+				result.append(getBoolean(i));
+				break;
+			default:
+				result.append(getDouble(i));
+			}
+		}
+		return result.append(")@").append(timetag).toString();
+	}
+
+	private boolean equals(int start, int length, String string) {
+		if (length != string.length())
+			return false;
+		for (int i = 0; i < length; i++)
+			if ((packet.get(start + i) & 0xFF) != string.charAt(i))
+				return false;
+		return true;
+	}
+
+	private String string(int start) {
+		StringBuilder result = new StringBuilder();
+		for (int pos = start; packet.get(pos) != 0; pos++)
+			result.append((char) (packet.get(pos) & 0xFF));
+		return result.toString();
+	}
+
+	private void check(int index) {
+		if (index < 0 || index >= count)
+			throw new IndexOutOfBoundsException("Argument " + index + " of " + count + " in message " + address);
+	}
+
+	private void checkString(int index) {
+		if (getType(index) != 's')
+			throw mismatch(index, "string");
+	}
+
+	private void checkBlob(int index) {
+		if (getType(index) != 'b')
+			throw mismatch(index, "blob");
+	}
+
+	private IllegalArgumentException mismatch(int index, String type) {
+		return new IllegalArgumentException("Argument " + index + " of message " + address + " is '" + getType(index) + "', not " + type);
+	}
+
+	private static int align(int pos) {
+		return (pos + 3) & ~3;
+	}
+}
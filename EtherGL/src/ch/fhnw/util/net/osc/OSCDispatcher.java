@@ -59,22 +59,151 @@ public abstract class OSCDispatcher {
 		}
 	};
 
+	// maximum number of cached address lookups of typed dispatch
+	private static final int MAX_CACHED_ADDRESSES = 1024;
+
+	private static final int BUNDLE_HASH = "#bundle".hashCode();
+
 	private OSCNode addressSpace = new OSCNode(DEFAULT_HANDLER);
 	protected int messageCount;
 
+	// typed dispatch state, owned by the receiving thread
+	private final OSCArguments   arguments    = new OSCArguments();
+	private       AddressCache   addressCache = new AddressCache(64);
+	private       int            cacheVersion;
+	private volatile int         version;
+	private volatile OSCScheduler scheduler;
+
 	protected OSCDispatcher() {
 	}
 
 	public void installHandler(String address, OSCHandler handler) {
+		getNode(address).setHandler(handler);
+		version++;
+	}
+
+	/**
+	 * Installs a typed handler for the given address and all addresses below
+	 * it without a handler of their own. Replaces any handler at this address.
+	 */
+	public void installHandler(String address, OSCTypedHandler handler) {
+		getNode(address).setHandler(handler);
+		version++;
+	}
+
+	/**
+	 * Sets the scheduler for messages with time tags, or null to dispatch
+	 * all messages when received.
+	 */
+	public void setScheduler(OSCScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	public OSCScheduler getScheduler() {
+		return scheduler;
+	}
+
+	private OSCNode getNode(String address) {
 		if (address.equals("/"))
-			addressSpace.setHandler(handler);
-		else {
-			String[] parts = OSCCommon.split(address, '/');
-			OSCNode node = addressSpace;
-			for (int i = 1; i < parts.length - 1; i++)
-				node = node.get(parts[i]);
-			node.get(parts[parts.length - 1]).setHandler(handler);
+			return addressSpace;
+		String[] parts = OSCCommon.split(address, '/');
+		OSCNode node = addressSpace;
+		for (int i = 1; i < parts.length - 1; i++)
+			node = node.get(parts[i]);
+		return node.get(parts[parts.length - 1]);
+	}
+
+	/**
+	 * Dispatches all messages of a packet which have a typed handler. The
+	 * packet is read with absolute positions, no objects are allocated for
+	 * addresses seen before.
+	 * 
+	 * @return true if the packet contains messages without typed handler,
+	 *         which are left to {@link #process}. With a scheduler, these
+	 *         messages as well as all messages with a time tag are passed
+	 *         to the scheduler.
+	 */
+	protected boolean dispatchTyped(SocketAddress peer, ByteBuffer packet, long timetag) {
+		if (cacheVersion != version) {
+			cacheVersion = version;
+			addressCache = new AddressCache(64);
+		}
+		return dispatchTyped(peer, packet, packet.position(), packet.limit(), timetag);
+	}
+
+	private boolean dispatchTyped(SocketAddress peer, ByteBuffer packet, int start, int end, long timetag) {
+		int length = 0;
+		int hash   = 0;
+		for (byte b; (b = packet.get(start + length)) != 0; length++)
+			hash = 31 * hash + b;
+
+		if (length == 7 && hash == BUNDLE_HASH && isBundle(packet, start)) {
+			boolean untyped = false;
+			timetag = packet.getLong(start + 8);
+			for (int pos = start + 16; pos < end;) {
+				int size = packet.getInt(pos);
+				if (size <= 0 || (size & 3) != 0 || pos + 4 + size > end)
+					throw new IllegalArgumentException("Invalid bundle element size " + size + " at " + pos);
+				untyped |= dispatchTyped(peer, packet, pos + 4, pos + 4 + size, timetag);
+				pos += 4 + size;
+			}
+			return untyped;
+		}
+
+		OSCTypedHandler handler = addressCache.get(packet, start, length, hash);
+		if (handler == null && !addressCache.contains(packet, start, length, hash))
+			handler = resolveTyped(packet, start, length, hash);
+
+		final OSCScheduler scheduler = this.scheduler;
+		if (scheduler != null && (handler == null || timetag != OSCCommon.TIMETAG_IMMEDIATE)) {
+			if (handler != null)
+				messageCount++;
+			scheduler.schedule(this, peer, packet, start, end, length, handler, timetag);
+			return false;
+		}
+		if (handler == null)
+			return true;
+		arguments.set(peer, packet, start, length, timetag);
+		messageCount++;
+		handler.handle(arguments);
+		return false;
+	}
+
+	private static boolean isBundle(ByteBuffer packet, int start) {
+		for (int i = 0; i < 7; i++)
+			if (packet.get(start + i) != "#bundle".charAt(i))
+				return false;
+		return true;
+	}
+
+	// resolves address as in dispatch() and caches the typed handler
+	private OSCTypedHandler resolveTyped(ByteBuffer packet, int start, int length, int hash) {
+		byte[] key = new byte[length];
+		for (int i = 0; i < length; i++)
+			key[i] = packet.get(start + i);
+		StringBuilder address = new StringBuilder(length);
+		for (byte b : key)
+			address.append((char) (b & 0xFF));
+		OSCNode node = resolve(OSCCommon.split(address.toString(), '/'));
+
+		if (addressCache.size() >= MAX_CACHED_ADDRESSES)
+			addressCache = new AddressCache(64);
+		addressCache = addressCache.put(key, hash, node.getTypedHandler());
+		return node.getTypedHandler();
+	}
+
+	// returns the deepest node with a handler along the address
+	private OSCNode resolve(String[] parts) {
+		OSCNode node   = addressSpace;
+		OSCNode result = node;
+		for (int i = 1; i < parts.length; i++) {
+			node = node.lookup(parts[i]);
+			if (node == null)
+				break;
+			if (node.getHandler() != null || node.getTypedHandler() != null)
+				result = node;
 		}
+		return result;
 	}
 
 	protected void process(SocketAddress peer, ByteBuffer packet, long timetag, OSCSender sender) {
@@ -90,6 +219,8 @@ public abstract class OSCDispatcher {
 	}
 
 	private void dispatch(SocketAddress peer, String address, ByteBuffer packet, long timetag, OSCSender sender) {
+		// note: messages with typed handlers are skipped, they were already
+		// dispatched by dispatchTyped() on the receiving thread
 		if (address.equals("#bundle")) {
 			timetag = packet.getLong();
 			while (packet.position() < packet.limit()) {
@@ -97,7 +228,6 @@ public abstract class OSCDispatcher {
 				process(peer, packet, timetag, sender);
 			}
 		} else {
-			messageCount++;
 			int messageStart = packet.position() - (4 * ((address.length() / 4) + 1));
 			StringBuilder typeString = new StringBuilder();
 			for (;;) {
@@ -159,7 +289,7 @@ public abstract class OSCDispatcher {
 			for (int i = 1; i < parts.length; i++) {
 				OSCNode tmp = node.lookup(parts[i]);
 				if (tmp != null) {
-					if (tmp.getHandler() != null) {
+					if (tmp.getHandler() != null || tmp.getTypedHandler() != null) {
 						handler = tmp.getHandler();
 						idx = i;
 					}
@@ -167,9 +297,12 @@ public abstract class OSCDispatcher {
 				} else
 					break;
 			}
+			if (handler == null)
+				return;
+			messageCount++;
 
 			Object[] reply = handler.handle(parts, idx + 1, typeString, timetag, args);
-			if (reply != null) {
+			if (reply != null && sender != null) {
 				byte[] request = new byte[messageEnd - messageStart];
 				packet.position(messageStart);
 				packet.get(request);
@@ -188,8 +321,9 @@ public abstract class OSCDispatcher {
 	}
 
 	class OSCNode {
-		private ConcurrentHashMap<String, OSCNode> children;
-		private OSCHandler handler;
+		private volatile ConcurrentHashMap<String, OSCNode> children;
+		private volatile OSCHandler handler;
+		private volatile OSCTypedHandler typedHandler;
 
 		public OSCNode() {
 		}
@@ -202,6 +336,10 @@ public abstract class OSCDispatcher {
 			return handler;
 		}
 
+		public OSCTypedHandler getTypedHandler() {
+			return typedHandler;
+		}
+
 		public OSCNode lookup(String name) {
 			return children == null ? null : children.get(name);
 		}
@@ -219,6 +357,84 @@ public abstract class OSCDispatcher {
 
 		public void setHandler(OSCHandler handler) {
 			this.handler = handler;
+			this.typedHandler = null;
+		}
+
+		public void setHandler(OSCTypedHandler handler) {
+			this.typedHandler = handler;
+			this.handler = null;
+		}
+	}
+
+	/**
+	 * Open addressing map from address bytes to typed handlers, a null
+	 * handler marks an address without typed handler. Lookups compare
+	 * against the packet in place.
+	 */
+	private static final class AddressCache {
+		private final byte[][]          keys;
+		private final int[]             hashes;
+		private final OSCTypedHandler[] handlers;
+		private int                     size;
+
+		AddressCache(int capacity) {
+			keys     = new byte[capacity][];
+			hashes   = new int[capacity];
+			handlers = new OSCTypedHandler[capacity];
+		}
+
+		int size() {
+			return size;
+		}
+
+		OSCTypedHandler get(ByteBuffer packet, int start, int length, int hash) {
+			int i = find(packet, start, length, hash);
+			return i < 0 ? null : handlers[i];
+		}
+
+		boolean contains(ByteBuffer packet, int start, int length, int hash) {
+			return find(packet, start, length, hash) >= 0;
+		}
+
+		AddressCache put(byte[] key, int hash, OSCTypedHandler handler) {
+			if (2 * (size + 1) > keys.length) {
+				AddressCache result = new AddressCache(2 * keys.length);
+				for (int i = 0; i < keys.length; i++)
+					if (keys[i] != null)
+						result.put(keys[i], hashes[i], handlers[i]);
+				return result.put(key, hash, handler);
+			}
+			int mask = keys.length - 1;
+			int i = mix(hash) & mask;
+			while (keys[i] != null)
+				i = (i + 1) & mask;
+			keys[i]     = key;
+			hashes[i]   = hash;
+			handlers[i] = handler;
+			size++;
+			return this;
+		}
+
+		private int find(ByteBuffer packet, int start, int length, int hash) {
+			int mask = keys.length - 1;
+			for (int i = mix(hash) & mask; keys[i] != null; i = (i + 1) & mask) {
+				if (hashes[i] == hash && equals(keys[i], packet, start, length))
+					return i;
+			}
+			return -1;
+		}
+
+		private static boolean equals(byte[] key, ByteBuffer packet, int start, int length) {
+			if (key.length != length)
+				return false;
+			for (int i = 0; i < length; i++)
+				if (key[i] != packet.get(start + i))
+					return false;
+			return true;
+		}
+
+		private static int mix(int hash) {
+			return hash ^ (hash >>> 16);
 		}
 	}
 }
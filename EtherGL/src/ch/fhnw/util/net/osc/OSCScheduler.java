@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 2013 - 2015 Stefan Muller Arisona, Simon Schubiger, Samuel von Stachelski
+ * Copyright (c) 2013 - 2015 FHNW & ETH Zurich
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *  Neither the name of FHNW / ETH Zurich nor the names of its contributors may
+ *   be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package ch.fhnw.util.net.osc;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.swing.SwingUtilities;
+
+import ch.fhnw.ether.media.IScheduler;
+import ch.fhnw.ether.media.JitterHistogram;
+
+/**
+ * Schedules OSC messages on their bundle time tags. Messages are copied into
+ * pooled entries and kept in a timing wheel keyed by NTP time, with ticks of
+ * 2^-10 seconds and one revolution per second. Messages due at the same time
+ * are delivered in one batch, in time tag order, either on an executor or on
+ * the scheduling thread of a media target.
+ * 
+ * Install with {@link OSCDispatcher#setScheduler(OSCScheduler)}. Messages with
+ * time tag "immediately" for typed handlers are still dispatched on the
+ * receive thread, all other messages go through the scheduler.
+ */
+public final class OSCScheduler {
+	// NTP time of a tick: 2^(32 - TICK_SHIFT) ticks per second
+	private static final int    TICK_SHIFT = 22;
+	private static final int    SLOTS      = 1024;
+	private static final int    MAX_POOLED = 1024;
+
+	// maximum wait on a media target, bounds the delay of messages arriving
+	// with an earlier time tag while waiting
+	private static final double MAX_WAIT   = 0.005;
+
+	// minimum wait on a media target, so that the wait is registered and
+	// delivery happens on the target's thread
+	private static final double MIN_WAIT   = 0.0001;
+
+	// seconds between 1900 (NTP epoch) and 1970
+	private static final long   NTP_EPOCH  = 2208988800L;
+
+	private static final long   NTP_BASE   = toNTP((System.currentTimeMillis() / 1000.0) + NTP_EPOCH);
+	private static final long   NANO_BASE  = System.nanoTime();
+
+	private final Executor        executor;
+	private final IScheduler      target;
+	private final Thread          thread;
+	private final Entry[]         slots   = new Entry[SLOTS];
+	private final JitterHistogram jitter  = new JitterHistogram();
+	private final OSCArguments    targetArguments;
+	private final Runnable        targetDelivery;
+	private long                  cursor  = toTick(now());
+	private int                   pending;
+	private Entry                 pool;
+	private int                   pooled;
+	private long                  batches;
+	private volatile long         waitingFor = Long.MAX_VALUE;
+	private volatile boolean      disposed;
+	private double                offset  = Double.NaN;
+
+	/**
+	 * Creates a scheduler delivering batches on the AWT event thread.
+	 */
+	public OSCScheduler() {
+		this(SwingUtilities::invokeLater);
+	}
+
+	/**
+	 * Creates a scheduler delivering batches on the given executor.
+	 */
+	public OSCScheduler(Executor executor) {
+		this.executor        = executor;
+		this.target          = null;
+		this.targetArguments = null;
+		this.targetDelivery  = null;
+		this.thread          = new Thread(this::runExecutor, "OSC scheduler");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+		thread.start();
+	}
+
+	/**
+	 * Creates a scheduler delivering batches on the scheduling thread of a
+	 * media target (e.g. the frame pump), i.e. on frame or audio block
+	 * boundaries. Time tags are mapped to the time of the target when the
+	 * target starts rendering. While the target is not rendering, messages
+	 * are delivered on the scheduler thread.
+	 */
+	public OSCScheduler(IScheduler target) {
+		this.executor        = null;
+		this.target          = target;
+		this.targetArguments = new OSCArguments();
+		this.targetDelivery  = () -> deliver(collect(toNTP(target.getTime() + offset)), targetArguments);
+		this.thread          = new Thread(this::runTarget, "OSC scheduler");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+		thread.start();
+	}
+
+	/**
+	 * Returns the current time as NTP time.
+	 */
+	public static long now() {
+		return NTP_BASE + toNTP((System.nanoTime() - NANO_BASE) / 1e9);
+	}
+
+	/**
+	 * Converts seconds to NTP time (32.32 fixed point).
+	 */
+	public static long toNTP(double seconds) {
+		long s = (long) Math.floor(seconds);
+		return (s << 32) + (long) ((seconds - s) * 4294967296.0);
+	}
+
+	/**
+	 * Converts NTP time (32.32 fixed point, unsigned) to seconds.
+	 */
+	public static double toSeconds(long ntp) {
+		return (ntp >>> 32) + (ntp & 0xFFFFFFFFL) / 4294967296.0;
+	}
+
+	/**
+	 * Returns the lateness of delivered messages with respect to their time
+	 * tags.
+	 */
+	public JitterHistogram getJitter() {
+		return jitter;
+	}
+
+	public synchronized int getPending() {
+		return pending;
+	}
+
+	public synchronized long getBatches() {
+		return batches;
+	}
+
+	/**
+	 * Stops the scheduler thread, pending messages are dropped.
+	 */
+	public void dispose() {
+		disposed = true;
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Schedules the message at [start, end) of the given packet. Called on
+	 * the receive thread.
+	 */
+	void schedule(OSCDispatcher dispatcher, SocketAddress peer, ByteBuffer packet, int start, int end, int addressLength, OSCTypedHandler handler, long timetag) {
+		final long now = now();
+		final long due = timetag == OSCCommon.TIMETAG_IMMEDIATE || timetag < now ? now : timetag;
+		synchronized (this) {
+			Entry entry = pool;
+			if (entry != null) {
+				pool = entry.next;
+				pooled--;
+			} else {
+				entry = new Entry();
+			}
+			entry.set(dispatcher, peer, packet, start, end, addressLength, handler, timetag, due);
+			insert(entry);
+		}
+		if (due < waitingFor)
+			LockSupport.unpark(thread);
+	}
+
+	// inserts entry into its slot, ordered by due time and arrival
+	private void insert(Entry entry) {
+		long tick = Math.max(toTick(entry.due), cursor);
+		entry.tick = tick;
+		int slot = (int) (tick & (SLOTS - 1));
+		Entry prev = null;
+		Entry e = slots[slot];
+		while (e != null && e.due <= entry.due) {
+			prev = e;
+			e = e.next;
+		}
+		entry.next = e;
+		if (prev == null)
+			slots[slot] = entry;
+		else
+			prev.next = entry;
+		pending++;
+	}
+
+	// removes all entries due at given time, returns them in order
+	private synchronized Entry collect(long now) {
+		final long  last  = toTick(now);
+		Entry       head  = null;
+		Entry       tail  = null;
+		for (int i = 0; i < SLOTS && cursor <= last && pending > 0; i++) {
+			final int slot = (int) (cursor & (SLOTS - 1));
+			while (slots[slot] != null && slots[slot].due <= now) {
+				final Entry e = slots[slot];
+				slots[slot] = e.next;
+				e.next = null;
+				if (tail == null)
+					head = e;
+				else
+					tail.next = e;
+				tail = e;
+				pending--;
+			}
+			if (cursor == last)
+				break;
+			cursor++;
+		}
+		if (pending == 0 || cursor < last - SLOTS)
+			cursor = last;
+		if (head != null)
+			batches++;
+		return head;
+	}
+
+	// returns NTP time of the earliest pending entry
+	private synchronized long nextDue() {
+		if (pending == 0)
+			return Long.MAX_VALUE;
+		long result = Long.MAX_VALUE;
+		for (int i = 0; i < SLOTS; i++) {
+			final Entry e = slots[(int) ((cursor + i) & (SLOTS - 1))];
+			if (e != null) {
+				if (e.tick <= cursor + i)
+					return Math.min(result, e.due);
+				result = Math.min(result, e.due);
+			}
+		}
+		return result;
+	}
+
+	private synchronized void recycle(Entry head) {
+		while (head != null) {
+			final Entry next = head.next;
+			head.clear();
+			if (pooled < MAX_POOLED) {
+				head.next = pool;
+				pool = head;
+				pooled++;
+			}
+			head = next;
+		}
+	}
+
+	private void deliver(Entry batch, OSCArguments arguments) {
+		if (batch == null)
+			return;
+		final long now = now();
+		for (Entry e = batch; e != null; e = e.next) {
+			try {
+				if (e.timetag != OSCCommon.TIMETAG_IMMEDIATE)
+					jitter.record(seconds(now - e.due));
+				e.deliver(arguments);
+			} catch (Throwable t) {
+				OSCCommon.handleException(t, this);
+			}
+		}
+		recycle(batch);
+	}
+
+	private void runExecutor() {
+		while (!disposed) {
+			final long due = nextDue();
+			final long now = now();
+			if (due > now) {
+				waitingFor = due;
+				if (due == Long.MAX_VALUE)
+					LockSupport.park(this);
+				else
+					LockSupport.parkNanos(this, (long) (seconds(due - now) * 1e9));
+				waitingFor = Long.MAX_VALUE;
+				continue;
+			}
+			final Entry batch = collect(now);
+			if (batch != null) {
+				try {
+					executor.execute(() -> deliver(batch, new OSCArguments()));
+				} catch (Throwable t) {
+					OSCCommon.handleException(t, this);
+					recycle(batch);
+				}
+			}
+		}
+	}
+
+	private void runTarget() {
+		while (!disposed) {
+			final long due = nextDue();
+			if (due == Long.MAX_VALUE) {
+				waitingFor = due;
+				LockSupport.park(this);
+				waitingFor = Long.MAX_VALUE;
+				continue;
+			}
+			if (!target.isRendering()) {
+				offset = Double.NaN;
+				final long now = now();
+				if (due > now) {
+					waitingFor = due;
+					LockSupport.parkNanos(this, (long) (Math.min(seconds(due - now), MAX_WAIT) * 1e9));
+					waitingFor = Long.MAX_VALUE;
+				} else {
+					deliver(collect(now), targetArguments);
+				}
+				continue;
+			}
+			if (Double.isNaN(offset))
+				offset = toSeconds(now()) - target.getTime();
+			final double time = target.getTime();
+			target.sleepUntil(Math.max(Math.min(toSeconds(due) - offset, time + MAX_WAIT), time + MIN_WAIT), targetDelivery);
+		}
+	}
+
+	// converts a difference of NTP times to seconds
+	private static double seconds(long ntp) {
+		return ntp / 4294967296.0;
+	}
+
+	private static long toTick(long ntp) {
+		return ntp >>> TICK_SHIFT;
+	}
+
+	/**
+	 * A copy of a scheduled message.
+	 */
+	private static final class Entry {
+		Entry           next;
+		long            due;
+		long            tick;
+		long            timetag;
+		OSCDispatcher   dispatcher;
+		SocketAddress   peer;
+		OSCTypedHandler handler;
+		int             addressLength;
+		ByteBuffer      buffer = ByteBuffer.allocate(256);
+
+		void set(OSCDispatcher dispatcher, SocketAddress peer, ByteBuffer packet, int start, int end, int addressLength, OSCTypedHandler handler, long timetag, long due) {
+			if (buffer.capacity() < end - start)
+				buffer = ByteBuffer.allocate(Integer.highestOneBit(end - start) * 2);
+			buffer.clear();
+			for (int i = start; i < end; i++)
+				buffer.put(packet.get(i));
+			buffer.flip();
+			this.dispatcher    = dispatcher;
+			this.peer          = peer;
+			this.addressLength = addressLength;
+			this.handler       = handler;
+			this.timetag       = timetag;
+			this.due           = due;
+		}
+
+		void deliver(OSCArguments arguments) {
+			if (handler != null) {
+				arguments.set(peer, buffer, 0, addressLength, timetag);
+				handler.handle(arguments);
+			} else {
+				buffer.rewind();
+				dispatcher.process(peer, buffer, timetag, dispatcher instanceof OSCSender ? (OSCSender) dispatcher : null);
+			}
+		}
+
+		void clear() {
+			dispatcher = null;
+			peer       = null;
+			handler    = null;
+		}
+	}
+}
@@ -32,11 +32,15 @@ package ch.fhnw.util.net.osc;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
+import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.MulticastSocket;
 import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
@@ -47,11 +51,21 @@ import javax.swing.SwingUtilities;
 
 import ch.fhnw.util.net.AddressUtilities;
 
+/**
+ * OSC server receiving through a datagram channel into a reused direct
+ * buffer. Messages with a typed handler are dispatched on the receive thread
+ * without allocation, all other messages are copied and dispatched on the AWT
+ * thread.
+ *
+ * @author radar
+ */
 public final class OSCServer extends OSCDispatcher implements OSCSender {
 	private static final int RECEIVE_BUFFER_SIZE = 1024 * 1024;
 	private static final int SEND_BUFFER_SIZE = 1024 * 1024;
+	private static final int MAX_PACKET_SIZE = 64 * 1024;
 
 	private final InetSocketAddress address;
+	private final DatagramChannel channel;
 	private final DatagramSocket socket;
 
 	private final BlockingQueue<DatagramPacket> receiveQueue = new LinkedBlockingQueue<>();
@@ -68,12 +82,16 @@ public final class OSCServer extends OSCDispatcher implements OSCSender {
 	public OSCServer(int port, String multicastAddress) throws IOException {
 		address = new InetSocketAddress(AddressUtilities.getDefaultInterface(), port);
 		if (multicastAddress == null) {
-			socket = new DatagramSocket(address.getPort());
+			channel = DatagramChannel.open();
+			channel.bind(new InetSocketAddress(address.getPort()));
 		} else {
-			MulticastSocket multicastSocket = new MulticastSocket(address.getPort());
-			multicastSocket.joinGroup(InetAddress.getByName(multicastAddress));
-			socket = multicastSocket;
+			InetAddress group = InetAddress.getByName(multicastAddress);
+			channel = DatagramChannel.open(group instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET);
+			channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+			channel.bind(new InetSocketAddress(address.getPort()));
+			channel.join(group, AddressUtilities.getMulticastInterface(address.getAddress()));
 		}
+		socket = channel.socket();
 		int dec = socket.getReceiveBufferSize();
 		for (int size = RECEIVE_BUFFER_SIZE; socket.getReceiveBufferSize() < size; size -= dec) {
 			socket.setReceiveBufferSize(size);
@@ -102,19 +120,27 @@ public final class OSCServer extends OSCDispatcher implements OSCSender {
 		final Thread receiveThread = new Thread(new Runnable() {
 			@Override
 			public void run() {
+				final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_PACKET_SIZE);
 				for (;;) {
 					try {
-						byte[] buffer = new byte[socket.getReceiveBufferSize()];
-						DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-						socket.receive(packet);
-						receiveQueue.add(packet);
-						if (!awtPending.getAndSet(true))
-							SwingUtilities.invokeLater(awtHandler);
-					} catch (Exception ignored) {
+						buffer.clear();
+						SocketAddress peer = channel.receive(buffer);
+						buffer.flip();
+						if (dispatchTyped(peer, buffer, OSCCommon.TIMETAG_IMMEDIATE)) {
+							byte[] data = new byte[buffer.limit()];
+							buffer.get(data);
+							receiveQueue.add(new DatagramPacket(data, data.length, peer));
+							if (!awtPending.getAndSet(true))
+								SwingUtilities.invokeLater(awtHandler);
+						}
+					} catch (ClosedChannelException e) {
+						return;
+					} catch (Exception ex) {
+						OSCCommon.handleException(ex, OSCServer.this);
 					}
 				}
 			}
-		});
+		}, "OSC receive " + address.getPort());
 		receiveThread.setDaemon(true);
 		receiveThread.setPriority(Thread.MAX_PRIORITY);
 		receiveThread.start();
@@ -149,6 +175,13 @@ public final class OSCServer extends OSCDispatcher implements OSCSender {
 		});
 	}
 
+	/**
+	 * Closes the channel of this server, the receive thread terminates.
+	 */
+	public void close() throws IOException {
+		channel.close();
+	}
+
 	public void send(String address, Object... args) {
 		ByteBuffer packet = OSCMessage.getBytes(address, args);
 		for (SocketAddress destination : remotePeers.values()) {